@@ -8,8 +8,10 @@ import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = {"itx.fileserver"})
+@EnableScheduling
 public class FileServer extends SpringBootServletInitializer {
 
     private static final Logger LOG = LoggerFactory.getLogger(FileServer.class);
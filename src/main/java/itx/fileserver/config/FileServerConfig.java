@@ -1,5 +1,6 @@
 package itx.fileserver.config;
 
+import itx.fileserver.dto.DurabilityConfig;
 import itx.fileserver.dto.FilterConfig;
 import itx.fileserver.dto.UserConfig;
 import org.springframework.beans.factory.annotation.Value;
@@ -35,10 +36,138 @@ public class FileServerConfig {
     @Value("${fileserver.data.basedir:#{null}}")
     private String dataBasedir;
 
+    @Value("${fileserver.buffers.size:65536}")
+    private int bufferSize;
+
+    @Value("${fileserver.buffers.count:64}")
+    private int bufferCount;
+
+    @Value("${fileserver.download.zero-copy:true}")
+    private boolean downloadZeroCopy;
+
+    @Value("${fileserver.download.sendfile-min-size:49152}")
+    private long downloadSendfileMinSize;
+
+    @Value("${fileserver.download.metadata-cache-size:10000}")
+    private int downloadMetadataCacheSize;
+
+    @Value("${fileserver.download.cache.enabled:true}")
+    private boolean downloadCacheEnabled;
+
+    @Value("${fileserver.download.cache.max-size:33554432}")
+    private long downloadCacheMaxSize;
+
+    @Value("${fileserver.download.cache.max-file-size:131072}")
+    private long downloadCacheMaxFileSize;
+
+    @Value("${fileserver.download.mmap.enabled:true}")
+    private boolean downloadMmapEnabled;
+
+    @Value("${fileserver.download.mmap.min-size:67108864}")
+    private long downloadMmapMinSize;
+
+    @Value("${fileserver.download.mmap.max-regions:32}")
+    private int downloadMmapMaxRegions;
+
+    @Value("${fileserver.download.compression.enabled:true}")
+    private boolean downloadCompressionEnabled;
+
+    @Value("${fileserver.download.compression.cache-dir:#{null}}")
+    private String downloadCompressionCacheDir;
+
+    @Value("${fileserver.download.compression.max-size:268435456}")
+    private long downloadCompressionMaxSize;
+
+    @Value("${fileserver.download.compression.min-file-size:1024}")
+    private long downloadCompressionMinFileSize;
+
+    @Value("${fileserver.download.compression.mime-types:text/*,application/json,application/xml,application/javascript,image/svg+xml}")
+    private List<String> downloadCompressionMimeTypes;
+
+    @Value("${fileserver.upload.sessions-dir:#{null}}")
+    private String uploadSessionsDir;
+
+    @Value("${fileserver.upload.session-timeout:86400}")
+    private long uploadSessionTimeout;
+
+    @Value("${fileserver.upload.durability:FDATASYNC}")
+    private String uploadDurability;
+
+    @Value("${fileserver.upload.dedup.enabled:false}")
+    private boolean uploadDedupEnabled;
+
+    @Value("${fileserver.upload.dedup.blob-dir:#{null}}")
+    private String uploadDedupBlobDir;
+
+    @Value("${fileserver.upload.checksums:sha-256}")
+    private String uploadChecksums;
+
+    @Value("${fileserver.upload.digest-index.enabled:true}")
+    private boolean uploadDigestIndexEnabled;
+
+    @Value("${fileserver.listing.max-page-size:1000}")
+    private int listingMaxPageSize;
+
+    @Value("${fileserver.listing.tree-parallelism:4}")
+    private int listingTreeParallelism;
+
+    @Value("${fileserver.listing.cache.enabled:true}")
+    private boolean listingCacheEnabled;
+
+    @Value("${fileserver.listing.cache.max-entries:50000}")
+    private long listingCacheMaxEntries;
+
+    @Value("${fileserver.listing.cache.ttl:60}")
+    private long listingCacheTtl;
+
+    @Value("${fileserver.usage.enabled:true}")
+    private boolean usageEnabled;
+
+    @Value("${fileserver.usage.reconcile-interval:3600}")
+    private long usageReconcileInterval;
+
+    @Value("${fileserver.usage.reconcile-rate:1000}")
+    private int usageReconcileRate;
+
+    @Value("${fileserver.search.enabled:true}")
+    private boolean searchEnabled;
+
+    @Value("${fileserver.search.rebuild-interval:3600}")
+    private long searchRebuildInterval;
+
+    @Value("${fileserver.search.rebuild-rate:1000}")
+    private int searchRebuildRate;
+
+    @Value("${fileserver.search.max-results:1000}")
+    private int searchMaxResults;
+
+    @Value("${fileserver.journal.enabled:true}")
+    private boolean journalEnabled;
+
+    @Value("${fileserver.journal.retention:604800}")
+    private long journalRetention;
+
+    @Value("${fileserver.journal.max-entries:100000}")
+    private int journalMaxEntries;
+
+    @Value("${fileserver.journal.max-results:1000}")
+    private int journalMaxResults;
+
+    @Value("${fileserver.journal.max-wait:60}")
+    private int journalMaxWait;
+
+    @Value("${fileserver.access.cache.enabled:true}")
+    private boolean accessCacheEnabled;
+
+    @Value("${fileserver.access.cache.max-entries:100000}")
+    private long accessCacheMaxEntries;
+
     private List<UserConfig> users;
 
     private List<FilterConfig> filters;
 
+    private List<DurabilityConfig> durabilityRules;
+
     public String getHome() {
         return home;
     }
@@ -110,4 +239,349 @@ public class FileServerConfig {
     public void setRealm(String realm) {
         this.realm = realm;
     }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBufferCount() {
+        return bufferCount;
+    }
+
+    public void setBufferCount(int bufferCount) {
+        this.bufferCount = bufferCount;
+    }
+
+    public boolean isDownloadZeroCopy() {
+        return downloadZeroCopy;
+    }
+
+    public void setDownloadZeroCopy(boolean downloadZeroCopy) {
+        this.downloadZeroCopy = downloadZeroCopy;
+    }
+
+    public long getDownloadSendfileMinSize() {
+        return downloadSendfileMinSize;
+    }
+
+    public void setDownloadSendfileMinSize(long downloadSendfileMinSize) {
+        this.downloadSendfileMinSize = downloadSendfileMinSize;
+    }
+
+    public int getDownloadMetadataCacheSize() {
+        return downloadMetadataCacheSize;
+    }
+
+    public void setDownloadMetadataCacheSize(int downloadMetadataCacheSize) {
+        this.downloadMetadataCacheSize = downloadMetadataCacheSize;
+    }
+
+    public boolean isDownloadCacheEnabled() {
+        return downloadCacheEnabled;
+    }
+
+    public void setDownloadCacheEnabled(boolean downloadCacheEnabled) {
+        this.downloadCacheEnabled = downloadCacheEnabled;
+    }
+
+    public long getDownloadCacheMaxSize() {
+        return downloadCacheMaxSize;
+    }
+
+    public void setDownloadCacheMaxSize(long downloadCacheMaxSize) {
+        this.downloadCacheMaxSize = downloadCacheMaxSize;
+    }
+
+    public long getDownloadCacheMaxFileSize() {
+        return downloadCacheMaxFileSize;
+    }
+
+    public void setDownloadCacheMaxFileSize(long downloadCacheMaxFileSize) {
+        this.downloadCacheMaxFileSize = downloadCacheMaxFileSize;
+    }
+
+    public boolean isDownloadMmapEnabled() {
+        return downloadMmapEnabled;
+    }
+
+    public void setDownloadMmapEnabled(boolean downloadMmapEnabled) {
+        this.downloadMmapEnabled = downloadMmapEnabled;
+    }
+
+    public long getDownloadMmapMinSize() {
+        return downloadMmapMinSize;
+    }
+
+    public void setDownloadMmapMinSize(long downloadMmapMinSize) {
+        this.downloadMmapMinSize = downloadMmapMinSize;
+    }
+
+    public int getDownloadMmapMaxRegions() {
+        return downloadMmapMaxRegions;
+    }
+
+    public void setDownloadMmapMaxRegions(int downloadMmapMaxRegions) {
+        this.downloadMmapMaxRegions = downloadMmapMaxRegions;
+    }
+
+    public boolean isDownloadCompressionEnabled() {
+        return downloadCompressionEnabled;
+    }
+
+    public void setDownloadCompressionEnabled(boolean downloadCompressionEnabled) {
+        this.downloadCompressionEnabled = downloadCompressionEnabled;
+    }
+
+    public String getDownloadCompressionCacheDir() {
+        return downloadCompressionCacheDir;
+    }
+
+    public void setDownloadCompressionCacheDir(String downloadCompressionCacheDir) {
+        this.downloadCompressionCacheDir = downloadCompressionCacheDir;
+    }
+
+    public long getDownloadCompressionMaxSize() {
+        return downloadCompressionMaxSize;
+    }
+
+    public void setDownloadCompressionMaxSize(long downloadCompressionMaxSize) {
+        this.downloadCompressionMaxSize = downloadCompressionMaxSize;
+    }
+
+    public long getDownloadCompressionMinFileSize() {
+        return downloadCompressionMinFileSize;
+    }
+
+    public void setDownloadCompressionMinFileSize(long downloadCompressionMinFileSize) {
+        this.downloadCompressionMinFileSize = downloadCompressionMinFileSize;
+    }
+
+    public List<String> getDownloadCompressionMimeTypes() {
+        return downloadCompressionMimeTypes;
+    }
+
+    public void setDownloadCompressionMimeTypes(List<String> downloadCompressionMimeTypes) {
+        this.downloadCompressionMimeTypes = downloadCompressionMimeTypes;
+    }
+
+    public String getUploadSessionsDir() {
+        return uploadSessionsDir;
+    }
+
+    public void setUploadSessionsDir(String uploadSessionsDir) {
+        this.uploadSessionsDir = uploadSessionsDir;
+    }
+
+    public long getUploadSessionTimeout() {
+        return uploadSessionTimeout;
+    }
+
+    public void setUploadSessionTimeout(long uploadSessionTimeout) {
+        this.uploadSessionTimeout = uploadSessionTimeout;
+    }
+
+    public String getUploadDurability() {
+        return uploadDurability;
+    }
+
+    public void setUploadDurability(String uploadDurability) {
+        this.uploadDurability = uploadDurability;
+    }
+
+    public List<DurabilityConfig> getDurabilityRules() {
+        return durabilityRules;
+    }
+
+    public void setDurabilityRules(List<DurabilityConfig> durabilityRules) {
+        this.durabilityRules = durabilityRules;
+    }
+
+    public boolean isUploadDedupEnabled() {
+        return uploadDedupEnabled;
+    }
+
+    public void setUploadDedupEnabled(boolean uploadDedupEnabled) {
+        this.uploadDedupEnabled = uploadDedupEnabled;
+    }
+
+    public String getUploadDedupBlobDir() {
+        return uploadDedupBlobDir;
+    }
+
+    public void setUploadDedupBlobDir(String uploadDedupBlobDir) {
+        this.uploadDedupBlobDir = uploadDedupBlobDir;
+    }
+
+    public boolean isUploadDigestIndexEnabled() {
+        return uploadDigestIndexEnabled;
+    }
+
+    public void setUploadDigestIndexEnabled(boolean uploadDigestIndexEnabled) {
+        this.uploadDigestIndexEnabled = uploadDigestIndexEnabled;
+    }
+
+    public String getUploadChecksums() {
+        return uploadChecksums;
+    }
+
+    public void setUploadChecksums(String uploadChecksums) {
+        this.uploadChecksums = uploadChecksums;
+    }
+
+    public int getListingMaxPageSize() {
+        return listingMaxPageSize;
+    }
+
+    public void setListingMaxPageSize(int listingMaxPageSize) {
+        this.listingMaxPageSize = listingMaxPageSize;
+    }
+
+    public boolean isListingCacheEnabled() {
+        return listingCacheEnabled;
+    }
+
+    public void setListingCacheEnabled(boolean listingCacheEnabled) {
+        this.listingCacheEnabled = listingCacheEnabled;
+    }
+
+    public long getListingCacheMaxEntries() {
+        return listingCacheMaxEntries;
+    }
+
+    public void setListingCacheMaxEntries(long listingCacheMaxEntries) {
+        this.listingCacheMaxEntries = listingCacheMaxEntries;
+    }
+
+    public long getListingCacheTtl() {
+        return listingCacheTtl;
+    }
+
+    public void setListingCacheTtl(long listingCacheTtl) {
+        this.listingCacheTtl = listingCacheTtl;
+    }
+
+    public int getListingTreeParallelism() {
+        return listingTreeParallelism;
+    }
+
+    public void setListingTreeParallelism(int listingTreeParallelism) {
+        this.listingTreeParallelism = listingTreeParallelism;
+    }
+
+    public boolean isUsageEnabled() {
+        return usageEnabled;
+    }
+
+    public void setUsageEnabled(boolean usageEnabled) {
+        this.usageEnabled = usageEnabled;
+    }
+
+    public long getUsageReconcileInterval() {
+        return usageReconcileInterval;
+    }
+
+    public void setUsageReconcileInterval(long usageReconcileInterval) {
+        this.usageReconcileInterval = usageReconcileInterval;
+    }
+
+    public int getUsageReconcileRate() {
+        return usageReconcileRate;
+    }
+
+    public void setUsageReconcileRate(int usageReconcileRate) {
+        this.usageReconcileRate = usageReconcileRate;
+    }
+
+    public boolean isSearchEnabled() {
+        return searchEnabled;
+    }
+
+    public void setSearchEnabled(boolean searchEnabled) {
+        this.searchEnabled = searchEnabled;
+    }
+
+    public long getSearchRebuildInterval() {
+        return searchRebuildInterval;
+    }
+
+    public void setSearchRebuildInterval(long searchRebuildInterval) {
+        this.searchRebuildInterval = searchRebuildInterval;
+    }
+
+    public int getSearchRebuildRate() {
+        return searchRebuildRate;
+    }
+
+    public void setSearchRebuildRate(int searchRebuildRate) {
+        this.searchRebuildRate = searchRebuildRate;
+    }
+
+    public int getSearchMaxResults() {
+        return searchMaxResults;
+    }
+
+    public void setSearchMaxResults(int searchMaxResults) {
+        this.searchMaxResults = searchMaxResults;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public void setJournalEnabled(boolean journalEnabled) {
+        this.journalEnabled = journalEnabled;
+    }
+
+    public long getJournalRetention() {
+        return journalRetention;
+    }
+
+    public void setJournalRetention(long journalRetention) {
+        this.journalRetention = journalRetention;
+    }
+
+    public int getJournalMaxEntries() {
+        return journalMaxEntries;
+    }
+
+    public void setJournalMaxEntries(int journalMaxEntries) {
+        this.journalMaxEntries = journalMaxEntries;
+    }
+
+    public int getJournalMaxResults() {
+        return journalMaxResults;
+    }
+
+    public void setJournalMaxResults(int journalMaxResults) {
+        this.journalMaxResults = journalMaxResults;
+    }
+
+    public int getJournalMaxWait() {
+        return journalMaxWait;
+    }
+
+    public void setJournalMaxWait(int journalMaxWait) {
+        this.journalMaxWait = journalMaxWait;
+    }
+
+    public boolean isAccessCacheEnabled() {
+        return accessCacheEnabled;
+    }
+
+    public void setAccessCacheEnabled(boolean accessCacheEnabled) {
+        this.accessCacheEnabled = accessCacheEnabled;
+    }
+
+    public long getAccessCacheMaxEntries() {
+        return accessCacheMaxEntries;
+    }
+
+    public void setAccessCacheMaxEntries(long accessCacheMaxEntries) {
+        this.accessCacheMaxEntries = accessCacheMaxEntries;
+    }
+
 }
@@ -0,0 +1,26 @@
+package itx.fileserver.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class WebServerConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WebServerConfig.class);
+
+    /**
+     * Send "100 Continue" only when request body is read for the first time, so uploads rejected
+     * before reading the body (access denied, not enough space) are answered before client sends any data.
+     */
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> continueResponseTimingCustomizer() {
+        LOG.info("registering tomcat continueResponseTiming=onRead");
+        return factory -> factory.addConnectorCustomizers(
+                connector -> connector.setProperty("continueResponseTiming", "onRead"));
+    }
+
+}
@@ -2,12 +2,15 @@ package itx.fileserver.controler;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
 import itx.fileserver.dto.*;
+import itx.fileserver.services.AccessDecisionCache;
 import itx.fileserver.services.FileService;
 import itx.fileserver.services.OperationNotAllowedException;
 import itx.fileserver.services.SecurityService;
 import itx.fileserver.services.data.AuditService;
 import itx.fileserver.services.data.FileAccessManagerService;
 import itx.fileserver.services.data.UserManagerService;
+import itx.fileserver.services.download.FileContentCache;
+import itx.fileserver.services.upload.BlobStore;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +18,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.HashSet;
@@ -33,15 +37,22 @@ public class AdminController {
     private final UserManagerService userManagerService;
     private final FileAccessManagerService fileAccessManagerService;
     private final AuditService auditService;
+    private final FileContentCache fileContentCache;
+    private final BlobStore blobStore;
+    private final AccessDecisionCache accessDecisionCache;
 
     public AdminController(FileService fileService, SecurityService securityService,
                            UserManagerService userManagerService, FileAccessManagerService fileAccessManagerService,
-                           AuditService auditService) {
+                           AuditService auditService, FileContentCache fileContentCache, BlobStore blobStore,
+                           AccessDecisionCache accessDecisionCache) {
         this.fileService = fileService;
         this.securityService = securityService;
         this.userManagerService = userManagerService;
         this.fileAccessManagerService = fileAccessManagerService;
         this.auditService = auditService;
+        this.fileContentCache = fileContentCache;
+        this.blobStore = blobStore;
+        this.accessDecisionCache = accessDecisionCache;
     }
 
     @GetMapping("/storage/info")
@@ -50,6 +61,29 @@ public class AdminController {
         return ResponseEntity.ok().body(fileService.getFileStorageInfo());
     }
 
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStats> getCacheStats() {
+        LOG.info("getCacheStats:");
+        return ResponseEntity.ok().body(fileContentCache.getStats());
+    }
+
+    @GetMapping("/access/stats")
+    public ResponseEntity<AccessCacheStats> getAccessStats() {
+        LOG.info("getAccessStats:");
+        return ResponseEntity.ok().body(accessDecisionCache.getStats());
+    }
+
+    @GetMapping("/storage/dedup")
+    public ResponseEntity<DedupStats> getDedupStats() {
+        LOG.info("getDedupStats:");
+        try {
+            return ResponseEntity.ok().body(blobStore.getStats());
+        } catch (IOException e) {
+            LOG.error("getDedupStats: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/sessions")
     public ResponseEntity<Sessions> getSessions() {
         LOG.info("getSessions:");
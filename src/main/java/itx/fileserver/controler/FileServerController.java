@@ -1,15 +1,33 @@
 package itx.fileserver.controler;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import itx.fileserver.dto.ArchiveFormat;
+import itx.fileserver.dto.ArchiveUploadResult;
+import itx.fileserver.dto.ChangeList;
+import itx.fileserver.dto.ChecksumAlgorithm;
+import itx.fileserver.dto.DirectoryUsage;
 import itx.fileserver.dto.FileList;
 import itx.fileserver.dto.MoveRequest;
 import itx.fileserver.dto.ResourceAccessInfo;
+import itx.fileserver.dto.SearchResult;
+import itx.fileserver.dto.SearchType;
+import itx.fileserver.dto.UploadOptions;
 import itx.fileserver.dto.UserData;
+import itx.fileserver.services.DigestMismatchException;
+import itx.fileserver.services.ETags;
 import itx.fileserver.services.FileService;
+import itx.fileserver.services.InsufficientStorageException;
 import itx.fileserver.services.OperationNotAllowedException;
 import itx.fileserver.services.SecurityService;
+import itx.fileserver.services.download.ArchiveService;
+import itx.fileserver.services.download.DownloadService;
+import itx.fileserver.services.journal.ChangeJournalService;
+import itx.fileserver.services.listing.ListingService;
+import itx.fileserver.services.search.SearchService;
+import itx.fileserver.services.upload.ContentDigests;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
@@ -18,15 +36,20 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping(path = FileServerController.URI_PREFIX)
@@ -37,8 +60,16 @@ public class FileServerController {
 
     public static final String URI_PREFIX = "/services/files";
     public static final String LIST_PREFIX = "/list/";
+    public static final String LIST_PAGE_PREFIX = "/list-page/";
+    public static final String TREE_PREFIX = "/tree/";
+    public static final String USAGE_PREFIX = "/usage/";
+    public static final String SEARCH_PREFIX = "/search/";
+    public static final String CHANGES_PREFIX = "/changes/";
     public static final String DOWNLOAD_PREFIX = "/download/";
+    public static final String DOWNLOAD_ARCHIVE_PREFIX = "/download-archive/";
     public static final String UPLOAD_PREFIX = "/upload/";
+    public static final String UPLOAD_BY_DIGEST_PREFIX = "/upload-by-digest/";
+    public static final String UPLOAD_ARCHIVE_PREFIX = "/upload-archive/";
     public static final String DELETE_PREFIX = "/delete/";
     public static final String CREATEDIR_PREFIX = "/createdir/";
     public static final String MOVE_PREFIX = "/move/";
@@ -46,15 +77,28 @@ public class FileServerController {
 
     private final FileService fileService;
     private final SecurityService securityService;
+    private final DownloadService downloadService;
+    private final ArchiveService archiveService;
+    private final ListingService listingService;
+    private final SearchService searchService;
+    private final ChangeJournalService changeJournalService;
 
-    public FileServerController(FileService fileService, SecurityService securityService) {
+    public FileServerController(FileService fileService, SecurityService securityService,
+                                DownloadService downloadService, ArchiveService archiveService,
+                                ListingService listingService, SearchService searchService,
+                                ChangeJournalService changeJournalService) {
         this.fileService = fileService;
         this.securityService = securityService;
+        this.downloadService = downloadService;
+        this.archiveService = archiveService;
+        this.listingService = listingService;
+        this.searchService = searchService;
+        this.changeJournalService = changeJournalService;
     }
 
     @GetMapping(DOWNLOAD_PREFIX + "{*path}")
-    public ResponseEntity<Resource> downloadFile(HttpSession httpSession,
-                                                 @PathVariable(value = "path", required = false) String path) {
+    public void downloadFile(HttpSession httpSession, HttpServletRequest request, HttpServletResponse response,
+                             @PathVariable(value = "path", required = false) String path) {
         try {
             String sessionId = httpSession.getId();
             Optional<UserData> userData = securityService.isAuthorized(sessionId);
@@ -62,19 +106,44 @@ public class FileServerController {
                 Path filePath = getPath(path);
                 LOG.info("downloadFile: {}", filePath);
                 Resource resource = fileService.loadFileAsResource(userData.get(), filePath);
-                String contentType = StringUtils.defaultString(Files.probeContentType(resource.getFile().toPath()),
-                        "application/octet-stream");
-                return ResponseEntity.ok().contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CONTENT_DISPOSITION,
-                                "attachment; filename=\"" + resource.getFilename() + "\"").body(resource);
+                downloadService.download(resource, request, response);
+                return;
             }
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            response.setStatus(HttpStatus.FORBIDDEN.value());
         } catch (FileNotFoundException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            response.setStatus(HttpStatus.NOT_FOUND.value());
         } catch (OperationNotAllowedException e) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            response.setStatus(HttpStatus.FORBIDDEN.value());
         } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            LOG.error("downloadFile: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+        }
+    }
+
+    @GetMapping(DOWNLOAD_ARCHIVE_PREFIX + "{*path}")
+    public void downloadArchive(HttpSession httpSession, HttpServletResponse response,
+                                @PathVariable(value = "path", required = false) String path) {
+        try {
+            String sessionId = httpSession.getId();
+            Optional<UserData> userData = securityService.isAuthorized(sessionId);
+            if (userData.isPresent()) {
+                Path filePath = getPath(path);
+                LOG.info("downloadArchive: {}", filePath);
+                archiveService.downloadArchive(userData.get(), filePath, response);
+                return;
+            }
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+        } catch (FileNotFoundException e) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+        } catch (OperationNotAllowedException e) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+        } catch (IOException e) {
+            LOG.error("downloadArchive: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
 
@@ -88,7 +157,8 @@ public class FileServerController {
                 Path filePath = getPath(path);
                 LOG.info("getFiles: {}", filePath);
                 FileList fileInfo = fileService.getFilesInfo(userData.get(), filePath);
-                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(fileInfo);
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                        .eTag(ETags.weakETag(fileInfo)).body(fileInfo);
             }
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         } catch (NoSuchFileException e) {
@@ -100,6 +170,154 @@ public class FileServerController {
         }
     }
 
+    @GetMapping(value = LIST_PAGE_PREFIX + "{*path}", produces = "application/json")
+    public void getFilesPage(HttpSession httpSession, HttpServletResponse response,
+                             @PathVariable(value = "path", required = false) String path,
+                             @RequestParam(value = "limit", required = false, defaultValue = "0") int limit,
+                             @RequestParam(value = "cursor", required = false) String cursor,
+                             @RequestParam(value = "order", required = false, defaultValue = "none") String order) {
+        try {
+            String sessionId = httpSession.getId();
+            Optional<UserData> userData = securityService.isAuthorized(sessionId);
+            if (userData.isPresent()) {
+                Path filePath = getPath(path);
+                LOG.info("getFilesPage: {}", filePath);
+                boolean sorted = "name".equals(order);
+                if (!sorted && !"none".equals(order)) {
+                    response.setStatus(HttpStatus.BAD_REQUEST.value());
+                    return;
+                }
+                listingService.list(userData.get(), filePath, cursor, limit, sorted, response);
+                return;
+            }
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+        } catch (FileNotFoundException e) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+        } catch (OperationNotAllowedException e) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+        } catch (IOException e) {
+            LOG.error("getFilesPage: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+        }
+    }
+
+    @GetMapping(value = TREE_PREFIX + "{*path}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void getTree(HttpSession httpSession, HttpServletResponse response,
+                        @PathVariable(value = "path", required = false) String path,
+                        @RequestParam(value = "depth", required = false, defaultValue = "0") int depth) {
+        try {
+            String sessionId = httpSession.getId();
+            Optional<UserData> userData = securityService.isAuthorized(sessionId);
+            if (userData.isPresent()) {
+                Path filePath = getPath(path);
+                LOG.info("getTree: {}", filePath);
+                listingService.tree(userData.get(), filePath, depth, response);
+                return;
+            }
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+        } catch (FileNotFoundException e) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+        } catch (OperationNotAllowedException e) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+        } catch (IOException e) {
+            LOG.error("getTree: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+        }
+    }
+
+    @GetMapping(value = USAGE_PREFIX + "{*path}", produces = "application/json")
+    public ResponseEntity<DirectoryUsage> getUsage(HttpSession httpSession,
+                                                   @PathVariable(value = "path", required = false) String path) {
+        try {
+            String sessionId = httpSession.getId();
+            Optional<UserData> userData = securityService.isAuthorized(sessionId);
+            if (userData.isPresent()) {
+                Path filePath = getPath(path);
+                LOG.info("getUsage: {}", filePath);
+                DirectoryUsage usage = fileService.getUsage(userData.get(), filePath);
+                if (usage == null) {
+                    //usage index is disabled or the directory has not been indexed yet
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+                }
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(usage);
+            }
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (OperationNotAllowedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+    }
+
+    @GetMapping(value = SEARCH_PREFIX + "{*path}", produces = "application/json")
+    public ResponseEntity<SearchResult> search(HttpSession httpSession,
+                                               @PathVariable(value = "path", required = false) String path,
+                                               @RequestParam("q") String query,
+                                               @RequestParam(value = "type", required = false, defaultValue = "substring") String type,
+                                               @RequestParam(value = "limit", required = false, defaultValue = "0") int limit) {
+        try {
+            String sessionId = httpSession.getId();
+            Optional<UserData> userData = securityService.isAuthorized(sessionId);
+            if (userData.isPresent()) {
+                Path filePath = getPath(path);
+                LOG.info("search: {}", filePath);
+                SearchType searchType = SearchType.valueOf(type.toUpperCase(Locale.ROOT));
+                SearchResult result = searchService.search(userData.get(), filePath, searchType, query, limit);
+                if (result == null) {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+                }
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(result);
+            }
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        } catch (OperationNotAllowedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+    }
+
+    @GetMapping(value = CHANGES_PREFIX + "{*path}", produces = "application/json")
+    public DeferredResult<ResponseEntity<ChangeList>> getChanges(HttpSession httpSession,
+                                                                 @PathVariable(value = "path", required = false) String path,
+                                                                 @RequestParam(value = "token", required = false) String token,
+                                                                 @RequestParam(value = "wait", required = false, defaultValue = "0") int wait,
+                                                                 @RequestParam(value = "limit", required = false, defaultValue = "0") int limit) {
+        DeferredResult<ResponseEntity<ChangeList>> result = new DeferredResult<>(TimeUnit.SECONDS.toMillis(wait) + 10000);
+        try {
+            String sessionId = httpSession.getId();
+            Optional<UserData> userData = securityService.isAuthorized(sessionId);
+            if (userData.isPresent()) {
+                Path filePath = getPath(path);
+                LOG.info("getChanges: {}", filePath);
+                if (wait <= 0) {
+                    result.setResult(toChangesResponse(changeJournalService.getChanges(userData.get(), filePath,
+                            token, limit)));
+                    return result;
+                }
+                //long poll, request thread is released while waiting for changes
+                changeJournalService.waitForChanges(userData.get(), filePath, token, limit, wait)
+                        .whenComplete((changes, e) -> result.setResult((e == null) ? toChangesResponse(changes)
+                                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build()));
+                result.onTimeout(() -> result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build()));
+                return result;
+            }
+            result.setResult(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        } catch (IllegalArgumentException e) {
+            result.setResult(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+        } catch (OperationNotAllowedException e) {
+            result.setResult(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+        return result;
+    }
+
     @PostMapping(value = UPLOAD_PREFIX + "{*path}", produces = "application/json")
     public ResponseEntity<Resource> fileUpload(HttpSession httpSession,
                                                @PathVariable(value = "path", required = false) String path,
@@ -121,6 +339,101 @@ public class FileServerController {
         }
     }
 
+    @PutMapping(UPLOAD_PREFIX + "{*path}")
+    public ResponseEntity<Void> fileUploadStream(HttpSession httpSession, HttpServletRequest request,
+                                                 @PathVariable(value = "path", required = false) String path) {
+        try {
+            String sessionId = httpSession.getId();
+            Optional<UserData> userData = securityService.isAuthorized(sessionId);
+            if (userData.isPresent()) {
+                Path filePath = getPath(path);
+                LOG.info("uploadStream: {} {}", filePath, request.getContentLengthLong());
+                Map<ChecksumAlgorithm, byte[]> expectedDigests;
+                try {
+                    expectedDigests = getExpectedDigests(request);
+                } catch (IllegalArgumentException e) {
+                    LOG.info("uploadStream: {}", e.getMessage());
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+                }
+                UploadOptions uploadOptions = UploadOptions.newBuilder()
+                        .withContentLength(request.getContentLengthLong())
+                        .withExpectedDigests(expectedDigests).build();
+                fileService.saveFile(userData.get(), filePath, request.getInputStream(), uploadOptions);
+                return ResponseEntity.ok().build();
+            }
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IOException e) {
+            LOG.error("uploadStream: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (OperationNotAllowedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (InsufficientStorageException e) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).build();
+        } catch (DigestMismatchException e) {
+            LOG.info("uploadStream: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @PutMapping(value = UPLOAD_ARCHIVE_PREFIX + "{*path}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ArchiveUploadResult> fileUploadArchive(HttpSession httpSession, HttpServletRequest request,
+                                                                 @PathVariable(value = "path", required = false) String path) {
+        try {
+            String sessionId = httpSession.getId();
+            Optional<UserData> userData = securityService.isAuthorized(sessionId);
+            if (userData.isPresent()) {
+                Path filePath = getPath(path);
+                ArchiveFormat format = getArchiveFormat(request);
+                if (format == null) {
+                    return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+                }
+                LOG.info("uploadArchive: {} {}", filePath, format);
+                return ResponseEntity.ok(fileService.extractArchive(userData.get(), filePath,
+                        request.getInputStream(), format));
+            }
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IOException e) {
+            LOG.error("uploadArchive: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (OperationNotAllowedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (InsufficientStorageException e) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).build();
+        }
+    }
+
+    @PutMapping(UPLOAD_BY_DIGEST_PREFIX + "{*path}")
+    public ResponseEntity<Void> fileUploadByDigest(HttpSession httpSession, HttpServletRequest request,
+                                                   @PathVariable(value = "path", required = false) String path) {
+        try {
+            String sessionId = httpSession.getId();
+            Optional<UserData> userData = securityService.isAuthorized(sessionId);
+            if (userData.isPresent()) {
+                Path filePath = getPath(path);
+                byte[] digest = ContentDigests.parse(request.getHeader(ContentDigests.REPR_DIGEST),
+                        ContentDigests.SHA_256);
+                if (digest == null) {
+                    digest = ContentDigests.parse(request.getHeader(ContentDigests.DIGEST), ContentDigests.SHA_256);
+                }
+                if (digest == null || digest.length != 32) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+                }
+                LOG.info("uploadByDigest: {}", filePath);
+                if (fileService.saveFileByDigest(userData.get(), filePath, digest)) {
+                    return ResponseEntity.ok().build();
+                }
+                //content is not known, client has to upload the data
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IOException e) {
+            LOG.error("uploadByDigest: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (OperationNotAllowedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+    }
+
     @DeleteMapping(value = DELETE_PREFIX + "{*path}", produces = "application/json")
     public ResponseEntity<Resource> delete(HttpSession httpSession,
                                            @PathVariable(value = "path", required = false) String path) {
@@ -201,6 +514,56 @@ public class FileServerController {
         }
     }
 
+    /**
+     * Archive format of request body given by Content-Type and Content-Encoding headers.
+     * @return archive format or null if not supported.
+     */
+    private static ArchiveFormat getArchiveFormat(HttpServletRequest request) {
+        String contentEncoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        boolean gzip = "gzip".equalsIgnoreCase(contentEncoding);
+        if (contentEncoding != null && !gzip && !"identity".equalsIgnoreCase(contentEncoding)) {
+            return null;
+        }
+        String contentType = request.getContentType();
+        if (contentType == null) {
+            return null;
+        }
+        return switch (MediaType.parseMediaType(contentType).getSubtype().toLowerCase(Locale.ROOT)) {
+            case "x-tar", "tar" -> gzip ? ArchiveFormat.TAR_GZIP : ArchiveFormat.TAR;
+            case "gzip", "x-gzip", "x-gtar", "x-compressed-tar" -> gzip ? null : ArchiveFormat.TAR_GZIP;
+            case "zip", "x-zip-compressed" -> gzip ? null : ArchiveFormat.ZIP;
+            default -> null;
+        };
+    }
+
+    /**
+     * Digests of request body declared in Repr-Digest, Content-Digest, Digest and Content-MD5 headers.
+     * @throws IllegalArgumentException if some declared digest is malformed.
+     */
+    private static Map<ChecksumAlgorithm, byte[]> getExpectedDigests(HttpServletRequest request) {
+        Map<ChecksumAlgorithm, byte[]> digests = new EnumMap<>(ChecksumAlgorithm.class);
+        digests.putAll(ContentDigests.parseAll(request.getHeader(ContentDigests.DIGEST)));
+        digests.putAll(ContentDigests.parseAll(request.getHeader(ContentDigests.CONTENT_DIGEST)));
+        digests.putAll(ContentDigests.parseAll(request.getHeader(ContentDigests.REPR_DIGEST)));
+        String contentMd5 = request.getHeader(ContentDigests.CONTENT_MD5);
+        if (contentMd5 != null) {
+            digests.put(ChecksumAlgorithm.MD5, Base64.getDecoder().decode(contentMd5.trim()));
+        }
+        return digests;
+    }
+
+    /**
+     * Changes are returned with 410 when they are no longer known and client must resync.
+     */
+    private static ResponseEntity<ChangeList> toChangesResponse(ChangeList changes) {
+        if (changes == null) {
+            //change journal is disabled
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        HttpStatus status = changes.isResyncRequired() ? HttpStatus.GONE : HttpStatus.OK;
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(changes);
+    }
+
     private static Path getPath(String path) {
         if (path.startsWith("/")) {
             return Paths.get(path.substring(1));
@@ -0,0 +1,178 @@
+package itx.fileserver.controler;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import itx.fileserver.dto.UploadSessionInfo;
+import itx.fileserver.dto.UploadSessionRequest;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.InsufficientStorageException;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.SecurityService;
+import itx.fileserver.services.upload.UploadConflictException;
+import itx.fileserver.services.upload.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Resumable chunked uploads, modelled on tus protocol. Client creates session, sends chunks by PATCH
+ * with Upload-Offset header (in parallel if it wants to), asks for received ranges after interruption
+ * and finishes the session when all data has been sent.
+ */
+@RestController
+@RequestMapping(path = UploadSessionController.URI_PREFIX)
+@Tag(name = "Upload Sessions")
+public class UploadSessionController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UploadSessionController.class);
+
+    public static final String URI_PREFIX = "/services/files/upload-sessions";
+    public static final String UPLOAD_OFFSET = "Upload-Offset";
+    public static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final SecurityService securityService;
+    private final UploadSessionService uploadSessionService;
+
+    public UploadSessionController(SecurityService securityService, UploadSessionService uploadSessionService) {
+        this.securityService = securityService;
+        this.uploadSessionService = uploadSessionService;
+    }
+
+    @PostMapping
+    public ResponseEntity<UploadSessionInfo> createSession(HttpSession httpSession,
+                                                           @RequestBody UploadSessionRequest uploadSessionRequest) {
+        try {
+            Optional<UserData> userData = securityService.isAuthorized(httpSession.getId());
+            if (userData.isPresent()) {
+                LOG.info("createSession: {} {}", uploadSessionRequest.getPath(), uploadSessionRequest.getLength());
+                if (uploadSessionRequest.getPath() == null || uploadSessionRequest.getLength() < 0) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+                }
+                Path filePath = getPath(uploadSessionRequest.getPath());
+                if (filePath.startsWith("..") || filePath.toString().isEmpty()) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+                }
+                UploadSessionInfo info = uploadSessionService.createSession(userData.get(), filePath,
+                        uploadSessionRequest.getLength());
+                return ResponseEntity.created(URI.create(URI_PREFIX + "/" + info.getId())).body(info);
+            }
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (IOException e) {
+            LOG.error("createSession: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (OperationNotAllowedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (InsufficientStorageException e) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).build();
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadSessionInfo> getSession(HttpSession httpSession, @PathVariable("id") String id) {
+        try {
+            Optional<UserData> userData = securityService.isAuthorized(httpSession.getId());
+            if (userData.isPresent()) {
+                UploadSessionInfo info = uploadSessionService.getSession(userData.get(), id);
+                return ResponseEntity.ok().cacheControl(CacheControl.noStore())
+                        .header(UPLOAD_OFFSET, String.valueOf(info.getOffset()))
+                        .header(UPLOAD_LENGTH, String.valueOf(info.getLength()))
+                        .body(info);
+            }
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (OperationNotAllowedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+    }
+
+    @PatchMapping("/{id}")
+    public ResponseEntity<UploadSessionInfo> writeChunk(HttpSession httpSession, HttpServletRequest request,
+                                                        @PathVariable("id") String id,
+                                                        @RequestHeader(UPLOAD_OFFSET) long offset) {
+        try {
+            Optional<UserData> userData = securityService.isAuthorized(httpSession.getId());
+            if (userData.isPresent()) {
+                LOG.info("writeChunk: {} {} {}", id, offset, request.getContentLengthLong());
+                UploadSessionInfo info = uploadSessionService.writeChunk(userData.get(), id, offset,
+                        request.getContentLengthLong(), request.getInputStream());
+                return ResponseEntity.ok().header(UPLOAD_OFFSET, String.valueOf(info.getOffset())).body(info);
+            }
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (IOException e) {
+            LOG.error("writeChunk: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (OperationNotAllowedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (UploadConflictException e) {
+            LOG.info("writeChunk: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PostMapping("/{id}/finish")
+    public ResponseEntity<Void> finishSession(HttpSession httpSession, @PathVariable("id") String id) {
+        try {
+            Optional<UserData> userData = securityService.isAuthorized(httpSession.getId());
+            if (userData.isPresent()) {
+                uploadSessionService.finishSession(userData.get(), id);
+                return ResponseEntity.ok().build();
+            }
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (IOException e) {
+            LOG.error("finishSession: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (OperationNotAllowedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (UploadConflictException e) {
+            LOG.info("finishSession: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancelSession(HttpSession httpSession, @PathVariable("id") String id) {
+        try {
+            Optional<UserData> userData = securityService.isAuthorized(httpSession.getId());
+            if (userData.isPresent()) {
+                uploadSessionService.cancelSession(userData.get(), id);
+                return ResponseEntity.noContent().build();
+            }
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (IOException e) {
+            LOG.error("cancelSession: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (OperationNotAllowedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+    }
+
+    private static Path getPath(String path) {
+        if (path.startsWith("/")) {
+            return Paths.get(path.substring(1)).normalize();
+        } else {
+            return Paths.get(path).normalize();
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package itx.fileserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class AccessCacheStats {
+
+    private final boolean enabled;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long entries;
+    private final long maxEntries;
+    private final long checkCount;
+    private final long checkTimeNanos;
+
+    @JsonCreator
+    public AccessCacheStats(@JsonProperty("enabled") boolean enabled,
+                            @JsonProperty("hitCount") long hitCount,
+                            @JsonProperty("missCount") long missCount,
+                            @JsonProperty("evictionCount") long evictionCount,
+                            @JsonProperty("entries") long entries,
+                            @JsonProperty("maxEntries") long maxEntries,
+                            @JsonProperty("checkCount") long checkCount,
+                            @JsonProperty("checkTimeNanos") long checkTimeNanos) {
+        this.enabled = enabled;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.entries = entries;
+        this.maxEntries = maxEntries;
+        this.checkCount = checkCount;
+        this.checkTimeNanos = checkTimeNanos;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return number of access checks, cached or not.
+     */
+    public long getCheckCount() {
+        return checkCount;
+    }
+
+    /**
+     * @return total time spent in access checks in nanoseconds.
+     */
+    public long getCheckTimeNanos() {
+        return checkTimeNanos;
+    }
+
+    /**
+     * @return average time of one access check in nanoseconds.
+     */
+    public double getAverageCheckNanos() {
+        return (checkCount == 0) ? 0.0 : (double) checkTimeNanos / checkCount;
+    }
+
+}
@@ -0,0 +1,12 @@
+package itx.fileserver.dto;
+
+/**
+ * Formats of archives extracted by archive uploads.
+ */
+public enum ArchiveFormat {
+
+    TAR,
+    TAR_GZIP,
+    ZIP
+
+}
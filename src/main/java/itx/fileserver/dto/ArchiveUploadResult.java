@@ -0,0 +1,55 @@
+package itx.fileserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class ArchiveUploadResult {
+
+    private final long files;
+    private final long directories;
+    private final long bytes;
+    private final List<String> skipped;
+
+    @JsonCreator
+    public ArchiveUploadResult(@JsonProperty("files") long files,
+                               @JsonProperty("directories") long directories,
+                               @JsonProperty("bytes") long bytes,
+                               @JsonProperty("skipped") List<String> skipped) {
+        this.files = files;
+        this.directories = directories;
+        this.bytes = bytes;
+        this.skipped = skipped;
+    }
+
+    /**
+     * @return number of extracted files.
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * @return number of created directories.
+     */
+    public long getDirectories() {
+        return directories;
+    }
+
+    /**
+     * @return total size of extracted files.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return names of archive entries which have not been extracted, because of access rights,
+     * unsafe names or unsupported entry types.
+     */
+    public List<String> getSkipped() {
+        return skipped;
+    }
+
+}
@@ -19,8 +19,13 @@ public class AuditConstants {
         private CategoryFileAccess() {}
         public static final String NAME = "FILE_ACCESS";
         public static final String LIST_DIR = "LIST_DIR";
+        public static final String LIST_TREE = "LIST_TREE";
+        public static final String SEARCH = "SEARCH";
+        public static final String GET_CHANGES = "GET_CHANGES";
         public static final String DOWNLOAD = "DOWNLOAD";
+        public static final String DOWNLOAD_ARCHIVE = "DOWNLOAD_ARCHIVE";
         public static final String UPLOAD = "UPLOAD";
+        public static final String UPLOAD_ARCHIVE = "UPLOAD_ARCHIVE";
         public static final String DELETE = "DELETE";
         public static final String CREATE_DIR = "CREATE_DIR";
         public static final String MOVE = "MOVE";
@@ -0,0 +1,59 @@
+package itx.fileserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long entries;
+    private final long bytesUsed;
+    private final long bytesMax;
+
+    @JsonCreator
+    public CacheStats(@JsonProperty("hitCount") long hitCount,
+                      @JsonProperty("missCount") long missCount,
+                      @JsonProperty("evictionCount") long evictionCount,
+                      @JsonProperty("entries") long entries,
+                      @JsonProperty("bytesUsed") long bytesUsed,
+                      @JsonProperty("bytesMax") long bytesMax) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.entries = entries;
+        this.bytesUsed = bytesUsed;
+        this.bytesMax = bytesMax;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    public long getBytesMax() {
+        return bytesMax;
+    }
+
+}
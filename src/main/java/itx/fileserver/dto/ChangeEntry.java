@@ -0,0 +1,54 @@
+package itx.fileserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeEntry {
+
+    private final String type;
+    private final String path;
+    private final String destination;
+    private final long timestamp;
+
+    @JsonCreator
+    public ChangeEntry(@JsonProperty("type") String type,
+                       @JsonProperty("path") String path,
+                       @JsonProperty("destination") String destination,
+                       @JsonProperty("timestamp") long timestamp) {
+        this.type = type;
+        this.path = path;
+        this.destination = destination;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return CREATED, MODIFIED, DELETED or MOVED, changes of directories apply to their whole subtree.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return changed path relative to file storage home, source path of moved file or directory.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return destination path of moved file or directory, null for other changes.
+     */
+    public String getDestination() {
+        return destination;
+    }
+
+    /**
+     * @return time of the change in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+}
@@ -0,0 +1,52 @@
+package itx.fileserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class ChangeList {
+
+    private final List<ChangeEntry> changes;
+    private final String token;
+    private final boolean more;
+    private final boolean resyncRequired;
+
+    @JsonCreator
+    public ChangeList(@JsonProperty("changes") List<ChangeEntry> changes,
+                      @JsonProperty("token") String token,
+                      @JsonProperty("more") boolean more,
+                      @JsonProperty("resyncRequired") boolean resyncRequired) {
+        this.changes = changes;
+        this.token = token;
+        this.more = more;
+        this.resyncRequired = resyncRequired;
+    }
+
+    public List<ChangeEntry> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return token passed to get changes made after these changes.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return true if there are more changes, which are returned for the token.
+     */
+    public boolean isMore() {
+        return more;
+    }
+
+    /**
+     * @return true if changes since passed token are no longer known, client must list the whole directory tree
+     * again and continue with returned token.
+     */
+    public boolean isResyncRequired() {
+        return resyncRequired;
+    }
+
+}
@@ -0,0 +1,41 @@
+package itx.fileserver.dto;
+
+/**
+ * Checksum algorithms computed while uploaded data is written, named as in Digest and Repr-Digest headers.
+ */
+public enum ChecksumAlgorithm {
+
+    CRC32C("crc32c"),
+    MD5("md5"),
+    SHA_256("sha-256"),
+    SHA_512("sha-512"),
+
+    /**
+     * 64 bit xxHash with seed 0, not registered for HTTP digest fields.
+     */
+    XXH64("xxh64");
+
+    private final String headerName;
+
+    ChecksumAlgorithm(String headerName) {
+        this.headerName = headerName;
+    }
+
+    public String getHeaderName() {
+        return headerName;
+    }
+
+    /**
+     * @param name algorithm name used in HTTP headers or configuration, case insensitive.
+     * @return algorithm or null if not supported.
+     */
+    public static ChecksumAlgorithm fromHeaderName(String name) {
+        for (ChecksumAlgorithm algorithm : values()) {
+            if (algorithm.headerName.equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,57 @@
+package itx.fileserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class DedupStats {
+
+    private final boolean enabled;
+    private final long blobs;
+    private final long storedBytes;
+    private final long logicalBytes;
+
+    @JsonCreator
+    public DedupStats(@JsonProperty("enabled") boolean enabled,
+                      @JsonProperty("blobs") long blobs,
+                      @JsonProperty("storedBytes") long storedBytes,
+                      @JsonProperty("logicalBytes") long logicalBytes) {
+        this.enabled = enabled;
+        this.blobs = blobs;
+        this.storedBytes = storedBytes;
+        this.logicalBytes = logicalBytes;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return number of distinct contents referenced by files.
+     */
+    public long getBlobs() {
+        return blobs;
+    }
+
+    /**
+     * @return bytes occupied on disk by distinct contents.
+     */
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * @return total size of all files referencing distinct contents.
+     */
+    public long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    public long getSavedBytes() {
+        return logicalBytes - storedBytes;
+    }
+
+    public double getDedupRatio() {
+        return (storedBytes == 0) ? 1.0 : (double) logicalBytes / storedBytes;
+    }
+
+}
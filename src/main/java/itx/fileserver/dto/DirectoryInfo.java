@@ -1,13 +1,21 @@
 package itx.fileserver.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class DirectoryInfo {
 
     private final String filePath;
     private final long lastModified;
+    private final Long size;
 
     public DirectoryInfo(String filePath, long lastModified) {
+        this(filePath, lastModified, null);
+    }
+
+    public DirectoryInfo(String filePath, long lastModified, Long size) {
         this.filePath = filePath;
         this.lastModified = lastModified;
+        this.size = size;
     }
 
     public String getFilePath() {
@@ -18,4 +26,12 @@ public class DirectoryInfo {
         return lastModified;
     }
 
+    /**
+     * @return total size of files in the directory and its subdirectories or null if it is not known.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getSize() {
+        return size;
+    }
+
 }
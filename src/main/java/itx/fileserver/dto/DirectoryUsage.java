@@ -0,0 +1,49 @@
+package itx.fileserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class DirectoryUsage {
+
+    private final String path;
+    private final long size;
+    private final long files;
+    private final long directories;
+
+    @JsonCreator
+    public DirectoryUsage(@JsonProperty("path") String path,
+                          @JsonProperty("size") long size,
+                          @JsonProperty("files") long files,
+                          @JsonProperty("directories") long directories) {
+        this.path = path;
+        this.size = size;
+        this.files = files;
+        this.directories = directories;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return total size of all files in the directory and its subdirectories.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of files in the directory and its subdirectories.
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * @return number of subdirectories at any depth.
+     */
+    public long getDirectories() {
+        return directories;
+    }
+
+}
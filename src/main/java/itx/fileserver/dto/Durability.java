@@ -0,0 +1,23 @@
+package itx.fileserver.dto;
+
+/**
+ * How uploaded files are made durable before upload is confirmed.
+ */
+public enum Durability {
+
+    /**
+     * File is renamed into place, data is left to the operating system.
+     */
+    NONE,
+
+    /**
+     * File data and its directory entry are synced to disk by each upload.
+     */
+    FDATASYNC,
+
+    /**
+     * Like {@link #FDATASYNC}, concurrent uploads are synced in batches and share directory syncs.
+     */
+    GROUP_COMMIT
+
+}
@@ -0,0 +1,47 @@
+package itx.fileserver.dto;
+
+import java.util.Objects;
+
+public class DurabilityConfig {
+
+    private String path;
+    private String durability;
+
+    public DurabilityConfig() {
+    }
+
+    public DurabilityConfig(String path, String durability) {
+        this.path = path;
+        this.durability = durability;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getDurability() {
+        return durability;
+    }
+
+    public void setDurability(String durability) {
+        this.durability = durability;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DurabilityConfig that = (DurabilityConfig) o;
+        return Objects.equals(path, that.path) &&
+                Objects.equals(durability, that.durability);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, durability);
+    }
+}
@@ -0,0 +1,26 @@
+package itx.fileserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class SearchHit {
+
+    private final String path;
+    private final boolean directory;
+
+    @JsonCreator
+    public SearchHit(@JsonProperty("path") String path,
+                     @JsonProperty("directory") boolean directory) {
+        this.path = path;
+        this.directory = directory;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+}
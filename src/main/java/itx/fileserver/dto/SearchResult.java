@@ -0,0 +1,34 @@
+package itx.fileserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class SearchResult {
+
+    private final List<SearchHit> hits;
+    private final boolean truncated;
+
+    @JsonCreator
+    public SearchResult(@JsonProperty("hits") List<SearchHit> hits,
+                        @JsonProperty("truncated") boolean truncated) {
+        this.hits = hits;
+        this.truncated = truncated;
+    }
+
+    /**
+     * @return matching paths relative to file storage home.
+     */
+    public List<SearchHit> getHits() {
+        return hits;
+    }
+
+    /**
+     * @return true if there are more matching paths than returned.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+}
@@ -0,0 +1,12 @@
+package itx.fileserver.dto;
+
+/**
+ * Types of file name search queries.
+ */
+public enum SearchType {
+
+    SUBSTRING,
+    PREFIX,
+    GLOB
+
+}
@@ -0,0 +1,67 @@
+package itx.fileserver.dto;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable options of single upload, created by {@link Builder}.
+ */
+public class UploadOptions {
+
+    public static final UploadOptions DEFAULT = newBuilder().build();
+
+    private final long contentLength;
+    private final Map<ChecksumAlgorithm, byte[]> expectedDigests;
+
+    private UploadOptions(long contentLength, Map<ChecksumAlgorithm, byte[]> expectedDigests) {
+        this.contentLength = contentLength;
+        this.expectedDigests = expectedDigests;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public Map<ChecksumAlgorithm, byte[]> getExpectedDigests() {
+        return expectedDigests;
+    }
+
+    public static class Builder {
+        private long contentLength = -1;
+        private Map<ChecksumAlgorithm, byte[]> expectedDigests = Collections.emptyMap();
+        private Builder() {
+        }
+
+        /**
+         * Set expected length of uploaded data in bytes.
+         * If set, free space is verified before any data is transferred and upload fails
+         * if different number of bytes is received. If not set or negative, length is unknown.
+         * @param contentLength
+         * @return
+         */
+        public Builder withContentLength(long contentLength) {
+            this.contentLength = contentLength;
+            return this;
+        }
+
+        /**
+         * Set digests of uploaded data declared by the client.
+         * Upload fails and no file is written if received data does not match any of them.
+         * @param expectedDigests
+         * @return
+         */
+        public Builder withExpectedDigests(Map<ChecksumAlgorithm, byte[]> expectedDigests) {
+            this.expectedDigests = Map.copyOf(expectedDigests);
+            return this;
+        }
+
+        public UploadOptions build() {
+            return new UploadOptions(contentLength, expectedDigests);
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+}
@@ -0,0 +1,55 @@
+package itx.fileserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class UploadSessionInfo {
+
+    private final String id;
+    private final String path;
+    private final long length;
+    private final long offset;
+    private final List<long[]> ranges;
+
+    @JsonCreator
+    public UploadSessionInfo(@JsonProperty("id") String id,
+                             @JsonProperty("path") String path,
+                             @JsonProperty("length") long length,
+                             @JsonProperty("offset") long offset,
+                             @JsonProperty("ranges") List<long[]> ranges) {
+        this.id = id;
+        this.path = path;
+        this.length = length;
+        this.offset = offset;
+        this.ranges = ranges;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return number of bytes received contiguously from the start of the file.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return received byte ranges as [start, end) pairs.
+     */
+    public List<long[]> getRanges() {
+        return ranges;
+    }
+
+}
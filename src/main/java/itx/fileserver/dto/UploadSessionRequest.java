@@ -0,0 +1,32 @@
+package itx.fileserver.dto;
+
+public class UploadSessionRequest {
+
+    private String path;
+    private long length;
+
+    public UploadSessionRequest() {
+    }
+
+    public UploadSessionRequest(String path, long length) {
+        this.path = path;
+        this.length = length;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+}
@@ -0,0 +1,159 @@
+package itx.fileserver.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.AccessCacheStats;
+import itx.fileserver.dto.AccessType;
+import itx.fileserver.dto.RoleId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded cache of access decisions of {@link FileAccessService}, keyed by set of roles, path and access type.
+ * Every decision is stored with version of filters it was made for, see
+ * {@link itx.fileserver.services.data.FileAccessManagerService#getVersion()}. Decision of other version is never
+ * returned, so changing filters invalidates the whole cache at once, old decisions are evicted over time.
+ */
+@Component
+public class AccessDecisionCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AccessDecisionCache.class);
+
+    private final boolean enabled;
+    private final long maxEntries;
+    private final Cache<Key, Decision> cache;
+    private final Map<Set<RoleId>, Integer> roleSets;
+    private final AtomicInteger nextRoleSet;
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+    private final LongAdder checkCount;
+    private final LongAdder checkTime;
+
+    @Autowired
+    public AccessDecisionCache(FileServerConfig fileServerConfig) {
+        this(fileServerConfig.isAccessCacheEnabled(), fileServerConfig.getAccessCacheMaxEntries());
+    }
+
+    /**
+     * @param enabled false to disable caching, access checks are only measured then.
+     * @param maxEntries max. number of cached decisions.
+     */
+    public AccessDecisionCache(boolean enabled, long maxEntries) {
+        LOG.info("AccessDecisionCache: enabled={} maxEntries={}", enabled, maxEntries);
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        this.roleSets = new ConcurrentHashMap<>();
+        this.nextRoleSet = new AtomicInteger();
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.checkCount = new LongAdder();
+        this.checkTime = new LongAdder();
+    }
+
+    /**
+     * Get cached decision or make the decision and cache it.
+     * @param roles roles of the user.
+     * @param path path as evaluated by access filters.
+     * @param accessType expected access type.
+     * @param version version of filters read before the decision is made.
+     * @param decision makes the decision from filters of given or newer version.
+     * @return true if access is granted.
+     */
+    public boolean check(Set<RoleId> roles, String path, AccessType accessType, long version,
+                         BooleanSupplier decision) {
+        long started = System.nanoTime();
+        boolean granted;
+        if (enabled) {
+            //roles are interned, so every key does not keep its own copy of the set
+            Key key = new Key(getRoleSet(roles), path, accessType);
+            Decision cached = cache.getIfPresent(key);
+            if (cached != null && cached.version == version) {
+                hitCount.increment();
+                granted = cached.granted;
+            } else {
+                missCount.increment();
+                granted = decision.getAsBoolean();
+                cache.put(key, new Decision(version, granted));
+            }
+        } else {
+            granted = decision.getAsBoolean();
+        }
+        checkCount.increment();
+        checkTime.add(System.nanoTime() - started);
+        return granted;
+    }
+
+    public AccessCacheStats getStats() {
+        cache.cleanUp();
+        return new AccessCacheStats(enabled, hitCount.sum(), missCount.sum(), cache.stats().evictionCount(),
+                cache.estimatedSize(), maxEntries, checkCount.sum(), checkTime.sum());
+    }
+
+    private int getRoleSet(Set<RoleId> roles) {
+        Integer roleSet = roleSets.get(roles);
+        if (roleSet == null) {
+            roleSet = roleSets.computeIfAbsent(Set.copyOf(roles), r -> nextRoleSet.getAndIncrement());
+        }
+        return roleSet;
+    }
+
+    private static class Key {
+
+        private final int roleSet;
+        private final String path;
+        private final AccessType accessType;
+        private final int hashCode;
+
+        private Key(int roleSet, String path, AccessType accessType) {
+            this.roleSet = roleSet;
+            this.path = path;
+            this.accessType = accessType;
+            this.hashCode = (31 * roleSet + path.hashCode()) * 31 + accessType.ordinal();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return roleSet == key.roleSet && accessType == key.accessType && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+    }
+
+    private static class Decision {
+
+        private final long version;
+        private final boolean granted;
+
+        private Decision(long version, boolean granted) {
+            this.version = version;
+            this.granted = granted;
+        }
+
+    }
+
+}
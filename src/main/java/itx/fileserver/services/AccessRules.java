@@ -0,0 +1,206 @@
+package itx.fileserver.services;
+
+import itx.fileserver.dto.AccessType;
+import itx.fileserver.dto.FileAccessFilter;
+import itx.fileserver.dto.RoleId;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access filters of a set of roles resolved once, for checking access to many paths within one operation.
+ * Filters changed after the rules have been created are not reflected.
+ * Filters of all roles are merged into shared automata, every role has its own slot of {@link #ROLE_BITS} tag bits,
+ * so a path is matched once for all roles.
+ */
+public class AccessRules {
+
+    static final int ROLE_BITS = 3;
+    static final int ROLES_PER_AUTOMATON = Integer.SIZE / ROLE_BITS;
+    private static final int ROLE_MASK = (1 << ROLE_BITS) - 1;
+
+    private final long version;
+    private final Map<RoleId, List<FileAccessFilter>> filters;
+    private final List<GlobAutomaton> automata;
+    private final int roleCount;
+
+    /**
+     * @param version version of filters the rules have been created from.
+     * @param filters filters of the roles.
+     * @param automata filters of the roles compiled by {@link FileAccessServiceImpl}, role i is tagged in
+     *                 automaton i / {@link #ROLES_PER_AUTOMATON}, see {@link #getRoleTags(int, int)}.
+     * @param roleCount number of roles in the automata.
+     */
+    AccessRules(long version, Map<RoleId, List<FileAccessFilter>> filters, List<GlobAutomaton> automata,
+                int roleCount) {
+        this.version = version;
+        this.filters = Map.copyOf(filters);
+        this.automata = List.copyOf(automata);
+        this.roleCount = roleCount;
+    }
+
+    /**
+     * @return version of filters the rules have been created from,
+     * see {@link itx.fileserver.services.data.FileAccessManagerService#getVersion()}.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean canRead(Path path) {
+        return checkAccess(path, AccessType.READ);
+    }
+
+    public boolean canReadAndWrite(Path path) {
+        return checkAccess(path, AccessType.READ_WRITE);
+    }
+
+    /**
+     * Check read access using verdict of a subtree containing the path, filters are evaluated only if the verdict
+     * is not uniform for the path.
+     * @param path path below the directory of the verdict.
+     * @param verdict verdict of the directory, see {@link #getSubtreeVerdict(Path)}.
+     */
+    public boolean canRead(Path path, SubtreeVerdict verdict) {
+        if (verdict == SubtreeVerdict.MIXED || hasLineTerminator(path)) {
+            return canRead(path);
+        }
+        return verdict != SubtreeVerdict.DENIED;
+    }
+
+    /**
+     * Check read and write access using verdict of a subtree containing the path, see
+     * {@link #canRead(Path, SubtreeVerdict)}.
+     */
+    public boolean canReadAndWrite(Path path, SubtreeVerdict verdict) {
+        if (verdict == SubtreeVerdict.MIXED || hasLineTerminator(path)) {
+            return canReadAndWrite(path);
+        }
+        return verdict == SubtreeVerdict.WRITABLE;
+    }
+
+    /**
+     * Evaluate access to all paths below the directory at once. Uniform verdict holds for paths without line
+     * terminators in names, which are not matched by '**' filters, {@link #canRead(Path, SubtreeVerdict)} checks
+     * such paths separately. Verdict is conservative, uniform subtree may still be reported as mixed.
+     * @param directory relative normalized path to directory.
+     * @return access to all paths below the directory, the directory itself is not included.
+     */
+    public SubtreeVerdict getSubtreeVerdict(Path directory) {
+        String strDirectory = directory.toString();
+        boolean allReadable = false;
+        boolean allWritable = false;
+        boolean allNotReadable = true;
+        boolean allNotWritable = true;
+        int none = FileAccessServiceImpl.getAccessTypeMask(AccessType.NONE);
+        int read = FileAccessServiceImpl.getAccessTypeMask(AccessType.READ);
+        int readWrite = FileAccessServiceImpl.getAccessTypeMask(AccessType.READ_WRITE);
+        for (int i = 0; i < automata.size(); i++) {
+            GlobAutomaton.SubtreeMatch match = automata.get(i).matchSubtree(strDirectory);
+            for (int slot = 0; slot < getRoleCount(i); slot++) {
+                int may = getAccessTypes(match.getMay(), slot);
+                int always = getAccessTypes(match.getAlways(), slot);
+                //access types of any path are at least those of always matching filters and at most those which may
+                //match
+                allReadable |= (may & none) == 0 && (always & (read | readWrite)) != 0;
+                allWritable |= (may & (none | read)) == 0 && (always & readWrite) != 0;
+                allNotReadable &= (always & none) != 0 || (may & (read | readWrite)) == 0;
+                allNotWritable &= (always & (none | read)) != 0 || (may & readWrite) == 0;
+            }
+        }
+        if (allNotReadable) {
+            return SubtreeVerdict.DENIED;
+        } else if (allReadable && allWritable) {
+            return SubtreeVerdict.WRITABLE;
+        } else if (allReadable && allNotWritable) {
+            return SubtreeVerdict.READABLE;
+        }
+        return SubtreeVerdict.MIXED;
+    }
+
+    /**
+     * Check if some path below the directory may be readable, without evaluating the paths. Filters granting
+     * access are compared by their literal prefix (up to the first wildcard), so the result is conservative,
+     * false means that nothing in the subtree is readable and the subtree can be skipped.
+     * @param directory relative path to directory.
+     * @return false if no path below the directory is readable.
+     */
+    public boolean mayReadBelow(Path directory) {
+        String strDirectory = directory.toString();
+        if (strDirectory.isEmpty()) {
+            return true;
+        }
+        String directoryPrefix = strDirectory + "/";
+        for (List<FileAccessFilter> roleFilters : filters.values()) {
+            for (FileAccessFilter filter : roleFilters) {
+                if (filter.getAccessType() != AccessType.READ && filter.getAccessType() != AccessType.READ_WRITE) {
+                    continue;
+                }
+                String literalPrefix = getLiteralPrefix(filter.getPath());
+                if (literalPrefix.startsWith(directoryPrefix) || directoryPrefix.startsWith(literalPrefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasLineTerminator(Path path) {
+        String strPath = path.toString();
+        for (int i = 0; i < strPath.length(); i++) {
+            char c = strPath.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getLiteralPrefix(String glob) {
+        for (int i = 0; i < glob.length(); i++) {
+            if ("*?[{\\".indexOf(glob.charAt(i)) >= 0) {
+                return glob.substring(0, i);
+            }
+        }
+        return glob;
+    }
+
+    private boolean checkAccess(Path path, AccessType expectedAccessType) {
+        return checkAccess(path.toString(), expectedAccessType);
+    }
+
+    boolean checkAccess(String path, AccessType expectedAccessType) {
+        for (int i = 0; i < automata.size(); i++) {
+            int tags = automata.get(i).match(path);
+            if (tags == 0) {
+                continue;
+            }
+            for (int slot = 0; slot < getRoleCount(i); slot++) {
+                if (FileAccessServiceImpl.checkAccessUseMostRestrictive(getAccessTypes(tags, slot),
+                        expectedAccessType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int getRoleCount(int automaton) {
+        return Math.min(ROLES_PER_AUTOMATON, roleCount - automaton * ROLES_PER_AUTOMATON);
+    }
+
+    /**
+     * @param slot slot of role within automaton.
+     * @param accessTypes bit mask of access types, see {@link FileAccessServiceImpl#getAccessTypeMask(AccessType)}.
+     * @return tags of the role slot.
+     */
+    static int getRoleTags(int slot, int accessTypes) {
+        return accessTypes << (slot * ROLE_BITS);
+    }
+
+    private static int getAccessTypes(int tags, int slot) {
+        return (tags >>> (slot * ROLE_BITS)) & ROLE_MASK;
+    }
+
+}
@@ -0,0 +1,73 @@
+package itx.fileserver.services;
+
+import itx.fileserver.config.FileServerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of direct {@link ByteBuffer}s used for file transfers.
+ * At most configured number of direct buffers is ever allocated, when all of them are in use,
+ * short-lived heap buffers are handed out instead.
+ */
+@Component
+public class BufferPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BufferPool.class);
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final AtomicInteger allocated;
+
+    @Autowired
+    public BufferPool(FileServerConfig fileServerConfig) {
+        this(fileServerConfig.getBufferSize(), fileServerConfig.getBufferCount());
+    }
+
+    public BufferPool(int bufferSize, int maxBuffers) {
+        LOG.info("BufferPool: bufferSize={} maxBuffers={}", bufferSize, maxBuffers);
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, maxBuffers));
+        this.allocated = new AtomicInteger(0);
+    }
+
+    /**
+     * Get cleared buffer from the pool, buffer must be returned using {@link #release(ByteBuffer)}.
+     * @return buffer of configured size.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocated.incrementAndGet() <= maxBuffers) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        allocated.decrementAndGet();
+        return ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Return buffer obtained by {@link #acquire()} back to the pool.
+     * @param buffer buffer to return.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+            buffer.clear();
+            buffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+}
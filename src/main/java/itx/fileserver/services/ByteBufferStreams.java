@@ -0,0 +1,106 @@
+package itx.fileserver.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+/**
+ * Moves data between {@link ByteBuffer}s and servlet streams. Servlet containers (Tomcat, Jetty, Undertow)
+ * implement read(ByteBuffer) and write(ByteBuffer) on their streams, which copy direct buffers straight
+ * into / out of container's socket buffers. Plain streams fall back to byte array copy.
+ */
+public final class ByteBufferStreams {
+
+    private static final ClassValue<MethodHandle> WRITE_METHODS = new ByteBufferMethods("write", void.class);
+    private static final ClassValue<MethodHandle> READ_METHODS = new ByteBufferMethods("read", int.class);
+
+    private ByteBufferStreams() {
+        throw new UnsupportedOperationException("please do not instantiate utility class");
+    }
+
+    /**
+     * Write all remaining bytes of the buffer into output stream.
+     * @param buffer data to be written.
+     * @param outputStream target stream.
+     * @throws IOException
+     */
+    public static void write(ByteBuffer buffer, OutputStream outputStream) throws IOException {
+        if (buffer.hasArray()) {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        MethodHandle write = WRITE_METHODS.get(outputStream.getClass());
+        if (write != null) {
+            try {
+                write.invoke(outputStream, buffer);
+                return;
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IOException(t);
+            }
+        }
+        Channels.newChannel(outputStream).write(buffer);
+    }
+
+    /**
+     * Read bytes from input stream into remaining space of the buffer.
+     * @param inputStream source stream.
+     * @param buffer target buffer.
+     * @return number of bytes read or -1 at the end of stream.
+     * @throws IOException
+     */
+    public static int read(InputStream inputStream, ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            int read = inputStream.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (read > 0) {
+                buffer.position(buffer.position() + read);
+            }
+            return read;
+        }
+        MethodHandle read = READ_METHODS.get(inputStream.getClass());
+        if (read != null) {
+            //containers do not agree on buffer position after read, Tomcat leaves the buffer flipped
+            int position = buffer.position();
+            int limit = buffer.limit();
+            try {
+                int n = (int) read.invoke(inputStream, buffer);
+                buffer.limit(limit).position(n > 0 ? position + n : position);
+                return n;
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IOException(t);
+            }
+        }
+        return Channels.newChannel(inputStream).read(buffer);
+    }
+
+    private static class ByteBufferMethods extends ClassValue<MethodHandle> {
+
+        private final String name;
+        private final Class<?> returnType;
+
+        private ByteBufferMethods(String name, Class<?> returnType) {
+            this.name = name;
+            this.returnType = returnType;
+        }
+
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                return MethodHandles.publicLookup().findVirtual(type, name, MethodType.methodType(returnType, ByteBuffer.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                return null;
+            }
+        }
+
+    }
+
+}
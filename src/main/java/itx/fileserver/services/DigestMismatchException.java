@@ -0,0 +1,12 @@
+package itx.fileserver.services;
+
+/**
+ * Uploaded data does not match digest declared by the client.
+ */
+public class DigestMismatchException extends Exception {
+
+    public DigestMismatchException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,56 @@
+package itx.fileserver.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+
+/**
+ * Explicit release of direct and memory mapped buffers using sun.misc.Unsafe#invokeCleaner.
+ * When Unsafe is not available, buffers are released by garbage collector.
+ * Released buffer must not be accessed anymore, caller is responsible for tracking buffer ownership.
+ */
+public final class DirectBuffers {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectBuffers.class);
+
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private DirectBuffers() {
+        throw new UnsupportedOperationException("please do not instantiate utility class");
+    }
+
+    /**
+     * Release memory or mapping held by direct buffer.
+     * @param buffer direct buffer which is not a slice or duplicate of other buffer.
+     */
+    public static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(buffer);
+        } catch (Throwable t) {
+            LOG.warn("free: unable to release direct buffer {}", t.getMessage());
+        }
+    }
+
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.info("direct buffers are released by garbage collector: {}", e.getMessage());
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package itx.fileserver.services;
+
+import itx.fileserver.dto.DirectoryInfo;
+import itx.fileserver.dto.FileInfo;
+import itx.fileserver.dto.FileList;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public final class ETags {
+
+    private ETags() {
+        throw new UnsupportedOperationException("please do not instantiate utility class");
+    }
+
+    /**
+     * Weak entity tag of directory listing, computed from listed names, sizes and modification times.
+     * Listing is filtered by user's access rights, so different users may get different tags for the same directory.
+     * @param fileList directory listing.
+     * @return weak entity tag including W/ prefix and quotes.
+     */
+    public static String weakETag(FileList fileList) {
+        MessageDigest digest = sha256();
+        update(digest, fileList.getPath());
+        for (FileInfo fileInfo : fileList.getFileInfo()) {
+            update(digest, fileInfo.getFilePath());
+            update(digest, fileInfo.getSize());
+            update(digest, fileInfo.getLastModified());
+        }
+        for (DirectoryInfo directoryInfo : fileList.getDirectoryInfo()) {
+            update(digest, directoryInfo.getFilePath());
+            update(digest, directoryInfo.getLastModified());
+            if (directoryInfo.getSize() != null) {
+                update(digest, directoryInfo.getSize());
+            }
+        }
+        return "W/\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static void update(MessageDigest digest, long value) {
+        for (int i = 0; i < 8; i++) {
+            digest.update((byte) (value >>> (i * 8)));
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -26,4 +26,20 @@ public interface FileAccessService {
      */
     boolean canReadAndWrite(Set<RoleId> roles, Path path);
 
+    /**
+     * Evaluate access to all paths below the directory at once, see {@link AccessRules#getSubtreeVerdict(Path)}.
+     * @param roles set of roles provided for this check.
+     * @param directory relative normalized path to directory.
+     * @return access to all paths below the directory.
+     */
+    SubtreeVerdict getSubtreeVerdict(Set<RoleId> roles, Path directory);
+
+    /**
+     * Resolve access filters of given roles once, for operations checking access to many paths. Bulk walks use
+     * the rules to bypass the per-path access decision cache.
+     * @param roles set of roles provided for the checks.
+     * @return access rules of these roles.
+     */
+    AccessRules getAccessRules(Set<RoleId> roles);
+
 }
@@ -10,9 +10,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
 
 @Service
 public class FileAccessServiceImpl implements FileAccessService {
@@ -20,10 +26,18 @@ public class FileAccessServiceImpl implements FileAccessService {
     private static final Logger LOG = LoggerFactory.getLogger(FileAccessServiceImpl.class);
 
     private final FileAccessManagerService fileAccessManagerService;
+    private final AccessDecisionCache accessDecisionCache;
+    private volatile CompiledFilters compiledFilters;
 
-    @Autowired
     public FileAccessServiceImpl(FileAccessManagerService fileAccessManagerService) {
+        this(fileAccessManagerService, new AccessDecisionCache(true, 10000));
+    }
+
+    @Autowired
+    public FileAccessServiceImpl(FileAccessManagerService fileAccessManagerService,
+                                 AccessDecisionCache accessDecisionCache) {
         this.fileAccessManagerService = fileAccessManagerService;
+        this.accessDecisionCache = accessDecisionCache;
     }
 
     @Override
@@ -36,50 +50,122 @@ public class FileAccessServiceImpl implements FileAccessService {
         return checkAccess(roles, path, AccessType.READ_WRITE);
     }
 
+    @Override
+    public SubtreeVerdict getSubtreeVerdict(Set<RoleId> roles, Path directory) {
+        return getAccessRules(roles).getSubtreeVerdict(directory);
+    }
+
+    /**
+     * Rules of a role set are compiled once per version of filters, all roles into merged automata.
+     */
+    @Override
+    public AccessRules getAccessRules(Set<RoleId> roles) {
+        long version = fileAccessManagerService.getVersion();
+        CompiledFilters compiled = compiledFilters;
+        if (compiled == null || compiled.version != version) {
+            compiled = new CompiledFilters(version);
+            compiledFilters = compiled;
+        }
+        AccessRules accessRules = compiled.rules.get(roles);
+        if (accessRules == null) {
+            //rules are compiled from filters read after the version, they are never older than the version
+            accessRules = compiled.rules.computeIfAbsent(Set.copyOf(roles), r -> compile(r, version));
+        }
+        return accessRules;
+    }
+
     private boolean checkAccess(Set<RoleId> roles, Path path, AccessType expectedAccessType) {
+        String strPath = path.toString();
+        //version is read before filters, decision is never cached for older filters than it was made from
+        long version = fileAccessManagerService.getVersion();
+        return accessDecisionCache.check(roles, strPath, expectedAccessType, version,
+                () -> getAccessRules(roles).checkAccess(strPath, expectedAccessType));
+    }
+
+    private AccessRules compile(Set<RoleId> roles, long version) {
+        Map<RoleId, List<FileAccessFilter>> filters = new HashMap<>();
+        List<GlobAutomaton> automata = new ArrayList<>();
+        GlobAutomaton.Builder builder = GlobAutomaton.newBuilder();
+        int roleCount = 0;
         for (RoleId role : roles) {
-            if (checkAccess(role, path, expectedAccessType)) {
-                return true;
+            Collection<FileAccessFilter> fileAccessFilters = fileAccessManagerService.getFilters(role);
+            List<FileAccessFilter> roleFilters =
+                    (fileAccessFilters == null) ? List.of() : List.copyOf(fileAccessFilters);
+            //role with invalid filter is denied access to everything, it is left out of the rules
+            if (!isValid(role, roleFilters)) {
+                continue;
             }
+            int slot = roleCount % AccessRules.ROLES_PER_AUTOMATON;
+            if (slot == 0 && roleCount > 0) {
+                automata.add(builder.build());
+                builder = GlobAutomaton.newBuilder();
+            }
+            for (FileAccessFilter filter : roleFilters) {
+                builder.withGlob(filter.getPath(),
+                        AccessRules.getRoleTags(slot, getAccessTypeMask(filter.getAccessType())));
+            }
+            filters.put(role, roleFilters);
+            roleCount++;
         }
-        return false;
-    }
-
-    private boolean checkAccess(RoleId role, Path path, AccessType expectedAccessType) {
-        Set<AccessType> result = getAccessTypes(role, path, expectedAccessType);
-        return checkAccessUseMostRestrictive(result, expectedAccessType);
+        if (roleCount > 0) {
+            automata.add(builder.build());
+        }
+        LOG.info("compile: roles={} version={} automata={} states={}",
+                roles.stream().map(RoleId::getId).collect(Collectors.toList()), version, automata.size(),
+                automata.stream().mapToInt(GlobAutomaton::size).sum());
+        return new AccessRules(version, filters, automata, roleCount);
     }
 
-    private Set<AccessType> getAccessTypes(RoleId role, Path path, AccessType expectedAccessType) {
-        Set<AccessType> result = new HashSet<>();
-        Collection<FileAccessFilter> fileAccessFilters = fileAccessManagerService.getFilters(role);
-        String strPath = path.toString();
-        if (fileAccessFilters != null) {
-            for (FileAccessFilter filter: fileAccessFilters) {
-                LOG.info("checkAccess: {} {} {} {}/{}", role.getId(), strPath, filter.getPath(), expectedAccessType, filter.getAccessType());
-                boolean match = FileUtils.wildcardMatch(strPath, filter.getPath());
-                if (match) {
-                    result.add(filter.getAccessType());
-                }
+    private static boolean isValid(RoleId role, List<FileAccessFilter> roleFilters) {
+        try {
+            for (FileAccessFilter filter : roleFilters) {
+                GlobAutomaton.newBuilder().withGlob(filter.getPath(), 1);
             }
+            return true;
+        } catch (PatternSyntaxException e) {
+            LOG.error("compile: invalid filter of role {}, access denied {}", role.getId(), e.getMessage());
+            return false;
         }
-        return result;
+    }
+
+    static int getAccessTypeMask(AccessType accessType) {
+        return 1 << accessType.ordinal();
     }
 
     public static boolean checkAccessUseMostRestrictive(Set<AccessType> accessTypes, AccessType expectedAccessType) {
-        if (accessTypes.contains(AccessType.NONE)) {
-            return false;
+        int mask = 0;
+        for (AccessType accessType : accessTypes) {
+            mask |= getAccessTypeMask(accessType);
         }
-        if (accessTypes.contains(AccessType.READ) && AccessType.READ_WRITE.equals(expectedAccessType)) {
+        return checkAccessUseMostRestrictive(mask, expectedAccessType);
+    }
+
+    /**
+     * @param accessTypes bit mask of access types, see {@link #getAccessTypeMask(AccessType)}.
+     */
+    public static boolean checkAccessUseMostRestrictive(int accessTypes, AccessType expectedAccessType) {
+        if ((accessTypes & getAccessTypeMask(AccessType.NONE)) != 0) {
             return false;
         }
-        if (accessTypes.contains(AccessType.READ) && AccessType.READ.equals(expectedAccessType)) {
-            return true;
+        if ((accessTypes & getAccessTypeMask(AccessType.READ)) != 0) {
+            return AccessType.READ.equals(expectedAccessType);
         }
-        if (accessTypes.contains(AccessType.READ_WRITE) && (AccessType.READ_WRITE.equals(expectedAccessType) || AccessType.READ.equals(expectedAccessType))) {
-            return true;
+        if ((accessTypes & getAccessTypeMask(AccessType.READ_WRITE)) != 0) {
+            return AccessType.READ_WRITE.equals(expectedAccessType) || AccessType.READ.equals(expectedAccessType);
         }
         return false;
     }
 
-}
\ No newline at end of file
+    private static class CompiledFilters {
+
+        private final long version;
+        private final Map<Set<RoleId>, AccessRules> rules;
+
+        private CompiledFilters(long version) {
+            this.version = version;
+            this.rules = new ConcurrentHashMap<>();
+        }
+
+    }
+
+}
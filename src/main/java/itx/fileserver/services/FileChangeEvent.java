@@ -0,0 +1,124 @@
+package itx.fileserver.services;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Application event published by {@link FileService} after file or directory in file storage has been changed.
+ * Directory events apply to the whole subtree of the directory.
+ */
+public class FileChangeEvent {
+
+    public enum Type {
+        CREATED,
+        MODIFIED,
+        DELETED,
+        MOVED
+    }
+
+    private final Type type;
+    private final Path path;
+    private final Path resolvedPath;
+    private final Path destinationPath;
+    private final Path resolvedDestinationPath;
+    private final boolean directory;
+    private final List<Path> writtenPaths;
+
+    /**
+     * Change of a file.
+     */
+    public FileChangeEvent(Type type, Path path, Path resolvedPath) {
+        this(type, path, resolvedPath, false);
+    }
+
+    /**
+     * @param directory true if changed path is a directory.
+     */
+    public FileChangeEvent(Type type, Path path, Path resolvedPath, boolean directory) {
+        this(type, path, resolvedPath, null, null, directory, null);
+    }
+
+    /**
+     * Change of a directory.
+     * @param writtenPaths paths written below changed directory, see {@link #getWrittenPaths()}.
+     */
+    public FileChangeEvent(Type type, Path path, Path resolvedPath, List<Path> writtenPaths) {
+        this(type, path, resolvedPath, null, null, true, writtenPaths);
+    }
+
+    /**
+     * @param directory true if moved path is a directory.
+     */
+    public FileChangeEvent(Type type, Path path, Path resolvedPath, Path destinationPath, Path resolvedDestinationPath,
+                           boolean directory) {
+        this(type, path, resolvedPath, destinationPath, resolvedDestinationPath, directory, null);
+    }
+
+    private FileChangeEvent(Type type, Path path, Path resolvedPath, Path destinationPath,
+                            Path resolvedDestinationPath, boolean directory, List<Path> writtenPaths) {
+        this.type = type;
+        this.path = path;
+        this.resolvedPath = resolvedPath;
+        this.destinationPath = destinationPath;
+        this.resolvedDestinationPath = resolvedDestinationPath;
+        this.directory = directory;
+        this.writtenPaths = (writtenPaths == null) ? null : List.copyOf(writtenPaths);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return changed path relative to file storage home, source path for {@link Type#MOVED}.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return absolute normalized changed path, source path for {@link Type#MOVED}.
+     */
+    public Path getResolvedPath() {
+        return resolvedPath;
+    }
+
+    /**
+     * @return destination path relative to file storage home for {@link Type#MOVED}, null otherwise.
+     */
+    public Path getDestinationPath() {
+        return destinationPath;
+    }
+
+    /**
+     * @return absolute normalized destination path for {@link Type#MOVED}, null otherwise.
+     */
+    public Path getResolvedDestinationPath() {
+        return resolvedDestinationPath;
+    }
+
+    /**
+     * @return true if changed path is a directory, the change applies to the whole subtree then.
+     */
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return files and directories written below changed directory, relative to file storage home, or null
+     * if they are not known. Other paths of the subtree may have been changed too.
+     */
+    public List<Path> getWrittenPaths() {
+        return writtenPaths;
+    }
+
+    /**
+     * @param resolved absolute normalized path.
+     * @return true if given path is affected by this change.
+     */
+    public boolean affects(Path resolved) {
+        return resolved.startsWith(resolvedPath)
+                || (resolvedDestinationPath != null && resolved.startsWith(resolvedDestinationPath));
+    }
+
+}
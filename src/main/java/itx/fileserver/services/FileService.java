@@ -1,14 +1,19 @@
 package itx.fileserver.services;
 
+import itx.fileserver.dto.ArchiveFormat;
+import itx.fileserver.dto.ArchiveUploadResult;
+import itx.fileserver.dto.DirectoryUsage;
 import itx.fileserver.dto.FileList;
 import itx.fileserver.dto.FileStorageInfo;
 import itx.fileserver.dto.ResourceAccessInfo;
+import itx.fileserver.dto.UploadOptions;
 import itx.fileserver.dto.UserData;
 import org.springframework.core.io.Resource;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 
 /**
@@ -51,6 +56,18 @@ public interface FileService {
      */
     FileList getFilesInfo(UserData userData, Path filePath) throws IOException, OperationNotAllowedException;
 
+    /**
+     * Get disk usage of directory and its whole subtree from the usage index, the directory tree is not walked.
+     * Usage includes files not readable by the user.
+     * @param userData users's data accessing this directory.
+     * @param filePath relative path to directory.
+     * @return usage of the directory or null if it is not known yet.
+     * @throws NoSuchFileException if directory does not exist.
+     * @throws IOException
+     * @throws OperationNotAllowedException
+     */
+    DirectoryUsage getUsage(UserData userData, Path filePath) throws IOException, OperationNotAllowedException;
+
     /**
      * Writes data in {@link InputStream} into file specified by relative path.
      * @param filePath relative path to file.
@@ -61,6 +78,49 @@ public interface FileService {
      */
     void saveFile(UserData userData, Path filePath, InputStream inputStream) throws IOException, OperationNotAllowedException;
 
+    /**
+     * Writes data in {@link InputStream} into file specified by relative path. Access and free space are verified
+     * before the first byte is read from the stream.
+     * @param userData users's data writing into target directory.
+     * @param filePath relative path to file.
+     * @param inputStream data to be written into that file.
+     * @param uploadOptions options of this upload.
+     * @throws IOException
+     * @throws OperationNotAllowedException
+     * @throws InsufficientStorageException if there is not enough free space for expected content length.
+     * @throws DigestMismatchException if received data does not match digests expected by upload options.
+     */
+    void saveFile(UserData userData, Path filePath, InputStream inputStream, UploadOptions uploadOptions)
+            throws IOException, OperationNotAllowedException, InsufficientStorageException, DigestMismatchException;
+
+    /**
+     * Extracts archive stream into directory specified by relative path, entries are written as the data arrives.
+     * Entries without write access, with unsafe names and links are skipped. Single audit record with manifest
+     * of extracted files is written for the whole archive.
+     * @param userData users's data writing into target directory.
+     * @param filePath relative path to target directory, created if it does not exist.
+     * @param inputStream archive data.
+     * @param format format of the archive.
+     * @return summary of extracted entries.
+     * @throws IOException
+     * @throws OperationNotAllowedException
+     * @throws InsufficientStorageException if an entry does not fit into storage.
+     */
+    ArchiveUploadResult extractArchive(UserData userData, Path filePath, InputStream inputStream, ArchiveFormat format)
+            throws IOException, OperationNotAllowedException, InsufficientStorageException;
+
+    /**
+     * Writes file specified by relative path with content of existing file with the same SHA-256 digest,
+     * without transferring the data. Only files readable by the user are used as a source.
+     * @param userData users's data writing into target directory.
+     * @param filePath relative path to file.
+     * @param digest SHA-256 digest of file content declared by the client.
+     * @return true if the file has been written, false if no such content is known.
+     * @throws IOException
+     * @throws OperationNotAllowedException
+     */
+    boolean saveFileByDigest(UserData userData, Path filePath, byte[] digest) throws IOException, OperationNotAllowedException;
+
     /**
      * Deletes file or directory. Directories are deleted even when not empty.
      * @param filePath relative path to file or directory.
@@ -3,23 +3,44 @@ package itx.fileserver.services;
 import itx.fileserver.config.FileServerConfig;
 import itx.fileserver.dto.*;
 import itx.fileserver.services.data.AuditService;
+import itx.fileserver.services.listing.DirectoryListingCache;
+import itx.fileserver.services.listing.DirectoryUsageIndex;
+import itx.fileserver.services.listing.ListingEntry;
+import itx.fileserver.services.upload.ArchiveEntry;
+import itx.fileserver.services.upload.ArchiveReader;
+import itx.fileserver.services.upload.BlobStore;
+import itx.fileserver.services.upload.Checksums;
+import itx.fileserver.services.upload.DigestIndex;
+import itx.fileserver.services.upload.FileCommitter;
+import itx.fileserver.services.upload.StoredDigests;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
-import org.springframework.util.FileCopyUtils;
 import org.springframework.util.FileSystemUtils;
 
 import java.io.*;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.stream.Stream;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class FileServiceImpl implements FileService {
@@ -29,14 +50,39 @@ public class FileServiceImpl implements FileService {
     private final Path fileStorageLocation;
     private final FileAccessService fileAccessService;
     private final AuditService auditService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BufferPool bufferPool;
+    private final FileCommitter fileCommitter;
+    private final BlobStore blobStore;
+    private final DigestIndex digestIndex;
+    private final DirectoryListingCache directoryListingCache;
+    private final DirectoryUsageIndex usageIndex;
+    private final EnumSet<ChecksumAlgorithm> checksumAlgorithms;
+    private final int bufferSize;
 
     @Autowired
     public FileServiceImpl(FileServerConfig fileServerConfig, FileAccessService fileAccessService,
-                           AuditService auditService) {
+                           AuditService auditService, ApplicationEventPublisher eventPublisher,
+                           BufferPool bufferPool, FileCommitter fileCommitter, BlobStore blobStore,
+                           DigestIndex digestIndex, DirectoryListingCache directoryListingCache,
+                           DirectoryUsageIndex usageIndex) {
         LOG.info("fileStorageLocation={}", fileServerConfig.getHome());
         this.fileAccessService = fileAccessService;
         this.fileStorageLocation = Paths.get(fileServerConfig.getHome()).toAbsolutePath().normalize();
         this.auditService = auditService;
+        this.eventPublisher = eventPublisher;
+        this.bufferPool = bufferPool;
+        this.fileCommitter = fileCommitter;
+        this.blobStore = blobStore;
+        this.digestIndex = digestIndex;
+        this.directoryListingCache = directoryListingCache;
+        this.usageIndex = usageIndex;
+        this.checksumAlgorithms = Checksums.parseAlgorithms(fileServerConfig.getUploadChecksums());
+        if (blobStore.isEnabled() || digestIndex.isEnabled()) {
+            checksumAlgorithms.add(ChecksumAlgorithm.SHA_256);
+        }
+        LOG.info("checksums={}", checksumAlgorithms);
+        this.bufferSize = fileServerConfig.getBufferSize();
     }
 
     @Override
@@ -83,52 +129,196 @@ public class FileServiceImpl implements FileService {
         verifyReadAccess(userData, filePath.resolve(""));
         FileList fileList = new FileList(filePath.toString());
         Path resolvedFilePath = this.fileStorageLocation.resolve(filePath).normalize();
-        try (Stream<Path> filesWalk = Files.walk(resolvedFilePath, 1)) {
-            filesWalk.forEach(fw -> {
-                Path pathToCheck = Paths.get(filePath.toString(), fw.getFileName().toString());
-                if (fileAccessService.canRead(userData.getRoles(), pathToCheck)) {
-                    if (!resolvedFilePath.endsWith(fw)) {
-                        //skip parent directory
-                        if (Files.isDirectory(fw)) {
-                            File file = fw.toFile();
-                            fileList.add(new DirectoryInfo(fw.getFileName().toString(), file.lastModified()));
-                        } else if (Files.isRegularFile(fw)) {
-                            File file = fw.toFile();
-                            fileList.add(new FileInfo(fw.getFileName().toString(), file.length(), file.lastModified()));
-                        } else {
-                            LOG.error("getFilesInfo skipped: {} is not regular file nor directory !", filePath);
-                        }
-                    }
+        List<ListingEntry> entries;
+        try {
+            entries = directoryListingCache.getListing(resolvedFilePath);
+        } catch (NotDirectoryException e) {
+            entries = List.of();
+        }
+        //cached listing is shared by all users, access is checked on every request
+        AccessRules accessRules = fileAccessService.getAccessRules(userData.getRoles());
+        SubtreeVerdict verdict = accessRules.getSubtreeVerdict(filePath);
+        for (ListingEntry entry : entries) {
+            if (accessRules.canRead(Paths.get(filePath.toString(), entry.getName()), verdict)) {
+                if (entry.isDirectory()) {
+                    DirectoryUsage usage = usageIndex.getUsage(
+                            fileStorageLocation.relativize(resolvedFilePath.resolve(entry.getName())));
+                    fileList.add(new DirectoryInfo(entry.getName(), entry.getLastModified(),
+                            (usage == null) ? null : usage.getSize()));
+                } else {
+                    fileList.add(new FileInfo(entry.getName(), entry.getSize(), entry.getLastModified()));
                 }
-            });
+            }
         }
         createListDirectoryAuditRecord(userData, filePath);
         return fileList;
     }
 
+    @Override
+    public DirectoryUsage getUsage(UserData userData, Path filePath) throws IOException, OperationNotAllowedException {
+        LOG.info("getUsage: {}", filePath);
+        verifyReadAccess(userData, filePath.resolve(""));
+        Path resolvedFilePath = this.fileStorageLocation.resolve(filePath).normalize();
+        if (!Files.isDirectory(resolvedFilePath)) {
+            throw new NoSuchFileException(filePath.toString());
+        }
+        return usageIndex.getUsage(fileStorageLocation.relativize(resolvedFilePath));
+    }
+
     @Override
     public void saveFile(UserData userData, Path filePath,
                          InputStream inputStream) throws IOException, OperationNotAllowedException {
-        LOG.info("saveFile: {}", filePath);
+        try {
+            saveFile(userData, filePath, inputStream, UploadOptions.DEFAULT);
+        } catch (InsufficientStorageException e) {
+            throw new IOException("Insufficient storage " + filePath);
+        } catch (DigestMismatchException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void saveFile(UserData userData, Path filePath, InputStream inputStream, UploadOptions uploadOptions)
+            throws IOException, OperationNotAllowedException, InsufficientStorageException, DigestMismatchException {
+        LOG.info("saveFile: {} {}", filePath, uploadOptions.getContentLength());
         verifyReadAndWriteAccess(userData, filePath);
         Path resolvedFilePath = this.fileStorageLocation.resolve(filePath).normalize();
-        File targetFile = resolvedFilePath.toFile();
-        OutputStream outStream = new FileOutputStream(targetFile);
-        FileCopyUtils.copy(inputStream, outStream);
+        long contentLength = uploadOptions.getContentLength();
+        if (contentLength > 0) {
+            verifyUsableSpace(resolvedFilePath, contentLength);
+        }
+        writeFile(filePath, resolvedFilePath, inputStream, contentLength, uploadOptions.getExpectedDigests());
+        publishChange(new FileChangeEvent(FileChangeEvent.Type.MODIFIED, filePath, resolvedFilePath));
         createUploadFileAuditRecord(userData, filePath);
     }
 
+    @Override
+    public ArchiveUploadResult extractArchive(UserData userData, Path filePath, InputStream inputStream,
+                                              ArchiveFormat format)
+            throws IOException, OperationNotAllowedException, InsufficientStorageException {
+        LOG.info("extractArchive: {} {}", filePath, format);
+        verifyReadAndWriteAccess(userData, filePath);
+        AccessRules accessRules = fileAccessService.getAccessRules(userData.getRoles());
+        SubtreeVerdict verdict = accessRules.getSubtreeVerdict(filePath);
+        Path resolvedFilePath = this.fileStorageLocation.resolve(filePath).normalize();
+        createDirectories(resolvedFilePath);
+        long files = 0;
+        long directories = 0;
+        long bytes = 0;
+        List<String> skipped = new ArrayList<>();
+        List<Path> written = new ArrayList<>();
+        StringBuilder manifest = new StringBuilder();
+        boolean completed = false;
+        try (ArchiveReader reader = ArchiveReader.open(inputStream, format, bufferSize)) {
+            ArchiveEntry entry;
+            while ((entry = reader.next()) != null) {
+                Path entryPath = getEntryPath(filePath, entry.getName());
+                if (entryPath == null || !(entry.isDirectory() || entry.isRegularFile())
+                        || !accessRules.canReadAndWrite(entryPath, verdict)) {
+                    LOG.debug("extractArchive skipped: {}", entry.getName());
+                    skipped.add(entry.getName());
+                    continue;
+                }
+                Path resolvedEntryPath = this.fileStorageLocation.resolve(entryPath).normalize();
+                if (entry.isDirectory()) {
+                    if (!Files.isDirectory(resolvedEntryPath)) {
+                        createDirectories(resolvedEntryPath);
+                        written.add(entryPath);
+                        directories++;
+                    }
+                    continue;
+                }
+                createDirectories(resolvedEntryPath.getParent());
+                if (entry.getSize() > 0) {
+                    verifyUsableSpace(resolvedEntryPath, entry.getSize());
+                }
+                long size;
+                try {
+                    size = writeFile(entryPath, resolvedEntryPath, reader.getInputStream(), entry.getSize(),
+                            Map.of());
+                } catch (DigestMismatchException e) {
+                    //no digests are expected for archive entries
+                    throw new IllegalStateException(e);
+                }
+                files++;
+                bytes += size;
+                written.add(entryPath);
+                manifest.append(size).append(' ').append(entryPath).append('\n');
+            }
+            completed = true;
+        } finally {
+            //directory events apply to the whole subtree, one event covers all extracted files
+            publishChange(new FileChangeEvent(FileChangeEvent.Type.MODIFIED, filePath, resolvedFilePath, written));
+            createUploadArchiveAuditRecord(userData, filePath, completed, manifest.toString());
+        }
+        LOG.info("extractArchive: {} files={} directories={} bytes={} skipped={}", filePath, files, directories,
+                bytes, skipped.size());
+        return new ArchiveUploadResult(files, directories, bytes, skipped);
+    }
+
+    @Override
+    public boolean saveFileByDigest(UserData userData, Path filePath, byte[] digest)
+            throws IOException, OperationNotAllowedException {
+        LOG.info("saveFileByDigest: {}", filePath);
+        verifyReadAndWriteAccess(userData, filePath);
+        Path resolvedFilePath = this.fileStorageLocation.resolve(filePath).normalize();
+        for (Path candidate : digestIndex.find(digest)) {
+            if (!fileAccessService.canRead(userData.getRoles(), candidate)) {
+                continue;
+            }
+            Path resolvedCandidate = this.fileStorageLocation.resolve(candidate).normalize();
+            if (!isIndexedContent(candidate, resolvedCandidate)) {
+                //file has been changed or removed by other means than the file server
+                digestIndex.remove(candidate);
+                continue;
+            }
+            Path tmpFile = FileCommitter.getTempFile(resolvedFilePath);
+            try {
+                if (blobStore.isEnabled()) {
+                    //candidate is a link to the blob already, new file just adds another link
+                    Files.createLink(tmpFile, resolvedCandidate);
+                } else {
+                    Files.copy(resolvedCandidate, tmpFile);
+                    StoredDigests.write(tmpFile, Map.of(ChecksumAlgorithm.SHA_256, digest));
+                }
+                if (!isIndexedContent(candidate, resolvedCandidate)) {
+                    //candidate has been replaced while copying
+                    continue;
+                }
+                commit(filePath, tmpFile, resolvedFilePath);
+            } catch (NoSuchFileException e) {
+                LOG.info("saveFileByDigest: candidate removed {}", candidate);
+                continue;
+            } finally {
+                Files.deleteIfExists(tmpFile);
+            }
+            LOG.info("saveFileByDigest: {} has content of {}", filePath, candidate);
+            indexDigest(resolvedFilePath, digest);
+            publishChange(new FileChangeEvent(FileChangeEvent.Type.MODIFIED, filePath, resolvedFilePath));
+            createUploadFileAuditRecord(userData, filePath);
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public void delete(UserData userData, Path filePath) throws IOException, OperationNotAllowedException {
         LOG.info("delete: {}", filePath);
         verifyReadAndWriteAccess(userData, filePath);
         Path resolvedFilePath = this.fileStorageLocation.resolve(filePath).normalize();
         LOG.info("deleting: {}", resolvedFilePath);
-        if (Files.isDirectory(resolvedFilePath)) {
+        Path relativeFilePath = fileStorageLocation.relativize(resolvedFilePath);
+        boolean directory = Files.isDirectory(resolvedFilePath);
+        if (directory) {
             FileSystemUtils.deleteRecursively(resolvedFilePath);
+            usageIndex.directoryDeleted(relativeFilePath);
         } else {
+            long size = getFileSize(resolvedFilePath);
             Files.delete(resolvedFilePath);
+            usageIndex.fileDeleted(relativeFilePath, Math.max(size, 0));
         }
+        digestIndex.remove(relativeFilePath);
+        publishChange(new FileChangeEvent(FileChangeEvent.Type.DELETED, filePath, resolvedFilePath, directory));
         createDeleteAuditRecord(userData, filePath);
     }
 
@@ -137,7 +327,8 @@ public class FileServiceImpl implements FileService {
         LOG.info("createDirectory: {}", filePath);
         verifyReadAndWriteAccess(userData, filePath);
         Path resolvedFilePath = this.fileStorageLocation.resolve(filePath).normalize();
-        Files.createDirectories(resolvedFilePath);
+        createDirectories(resolvedFilePath);
+        publishChange(new FileChangeEvent(FileChangeEvent.Type.CREATED, filePath, resolvedFilePath, true));
         createCreateDirectoryAuditRecord(userData, filePath);
     }
 
@@ -149,19 +340,47 @@ public class FileServiceImpl implements FileService {
         verifyReadAndWriteAccess(userData, destinationPath);
         Path resolvedSourcePath = this.fileStorageLocation.resolve(sourcePath).normalize();
         Path resolvedDestinationPath = this.fileStorageLocation.resolve(destinationPath).normalize();
+        boolean directory = false;
         if (Files.isRegularFile(resolvedSourcePath)) {
             LOG.info("moving file {}->{}", sourcePath, destinationPath);
+            long size = getFileSize(resolvedSourcePath);
             Files.move(resolvedSourcePath, resolvedDestinationPath);
+            usageIndex.fileMoved(fileStorageLocation.relativize(resolvedSourcePath),
+                    fileStorageLocation.relativize(resolvedDestinationPath), Math.max(size, 0));
         } else if (Files.isDirectory(resolvedSourcePath)) {
             LOG.info("moving directory {}->{}", sourcePath, destinationPath);
+            directory = true;
             Files.move(resolvedSourcePath, resolvedDestinationPath);
+            usageIndex.directoryMoved(fileStorageLocation.relativize(resolvedSourcePath),
+                    fileStorageLocation.relativize(resolvedDestinationPath));
         } else {
             LOG.error("source must be both file or directory");
             throw new OperationNotAllowedException();
         }
+        digestIndex.move(fileStorageLocation.relativize(resolvedSourcePath),
+                fileStorageLocation.relativize(resolvedDestinationPath));
+        publishChange(new FileChangeEvent(FileChangeEvent.Type.MOVED, sourcePath, resolvedSourcePath,
+                destinationPath, resolvedDestinationPath, directory));
         createMoveAuditRecord(userData, sourcePath, destinationPath);
     }
 
+    /**
+     * Resolve archive entry name against target directory.
+     * @return relative path of the entry or null if the name is not safe to extract.
+     */
+    private static Path getEntryPath(Path filePath, String entryName) {
+        if (entryName.isEmpty() || entryName.startsWith("/") || entryName.indexOf('\\') >= 0
+                || entryName.indexOf('\0') >= 0) {
+            return null;
+        }
+        Path entryPath = filePath.resolve(entryName).normalize();
+        if (!entryPath.startsWith(filePath) || entryPath.equals(filePath)
+                || FileCommitter.isTempFile(entryPath.getFileName().toString())) {
+            return null;
+        }
+        return entryPath;
+    }
+
     private void verifyReadAccess(UserData userData, Path filePath) throws OperationNotAllowedException {
         if (!fileAccessService.canRead(userData.getRoles(), filePath)) {
             throw new OperationNotAllowedException();
@@ -174,6 +393,151 @@ public class FileServiceImpl implements FileService {
         }
     }
 
+    /**
+     * Write data into temporary file next to the target and move it into place, readers never see
+     * partially written file. Access must be verified by the caller.
+     * @return number of bytes written.
+     */
+    private long writeFile(Path filePath, Path resolvedFilePath, InputStream inputStream, long contentLength,
+                           Map<ChecksumAlgorithm, byte[]> expectedDigests) throws IOException, DigestMismatchException {
+        Path tmpFile = FileCommitter.getTempFile(resolvedFilePath);
+        //checksums are computed in the same pass as the data is written, file is never read again
+        EnumSet<ChecksumAlgorithm> algorithms = EnumSet.copyOf(checksumAlgorithms);
+        algorithms.addAll(expectedDigests.keySet());
+        Checksums checksums = new Checksums(algorithms);
+        Map<ChecksumAlgorithm, byte[]> digests;
+        long written;
+        try {
+            try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                written = transfer(inputStream, channel, checksums);
+                if (contentLength >= 0 && written != contentLength) {
+                    throw new IOException("Upload incomplete " + filePath + " " + written + "/" + contentLength);
+                }
+            }
+            digests = checksums.finish();
+            verifyDigests(filePath, digests, expectedDigests);
+            if (blobStore.isEnabled()) {
+                blobStore.link(tmpFile, digests.get(ChecksumAlgorithm.SHA_256));
+            }
+            StoredDigests.write(tmpFile, digests);
+            commit(filePath, tmpFile, resolvedFilePath);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+        indexDigest(resolvedFilePath, digests.get(ChecksumAlgorithm.SHA_256));
+        return written;
+    }
+
+    /**
+     * Copy stream into file channel using pooled buffer.
+     * @param checksums checksums updated with copied data.
+     * @return number of bytes copied.
+     */
+    private long transfer(InputStream inputStream, FileChannel channel, Checksums checksums) throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            long written = 0;
+            while (ByteBufferStreams.read(inputStream, buffer) >= 0) {
+                if (!buffer.hasRemaining()) {
+                    written += flush(buffer, channel, checksums);
+                }
+            }
+            return written + flush(buffer, channel, checksums);
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private static long flush(ByteBuffer buffer, FileChannel channel, Checksums checksums) throws IOException {
+        buffer.flip();
+        checksums.update(buffer);
+        long written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private static void verifyDigests(Path filePath, Map<ChecksumAlgorithm, byte[]> digests,
+                                      Map<ChecksumAlgorithm, byte[]> expectedDigests) throws DigestMismatchException {
+        for (Map.Entry<ChecksumAlgorithm, byte[]> expected : expectedDigests.entrySet()) {
+            if (!MessageDigest.isEqual(expected.getValue(), digests.get(expected.getKey()))) {
+                LOG.warn("saveFile: {} digest mismatch {}", expected.getKey().getHeaderName(), filePath);
+                throw new DigestMismatchException("Digest mismatch " + expected.getKey().getHeaderName() + " "
+                        + filePath);
+            }
+        }
+    }
+
+    /**
+     * Move completely written temporary file into place and record the change of directory usage.
+     */
+    private void commit(Path filePath, Path tmpFile, Path resolvedFilePath) throws IOException {
+        long previousSize = getFileSize(resolvedFilePath);
+        long size = Files.size(tmpFile);
+        fileCommitter.commit(filePath, tmpFile, resolvedFilePath);
+        usageIndex.fileWritten(fileStorageLocation.relativize(resolvedFilePath), previousSize, size);
+    }
+
+    /**
+     * Create directory with all missing parents and record them in directory usage.
+     */
+    private void createDirectories(Path resolvedFilePath) throws IOException {
+        Files.createDirectories(resolvedFilePath);
+        usageIndex.directoryCreated(fileStorageLocation.relativize(resolvedFilePath));
+    }
+
+    /**
+     * @return size of regular file or -1 if there is no such file.
+     */
+    private static long getFileSize(Path resolvedFilePath) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resolvedFilePath, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            return attributes.isRegularFile() ? attributes.size() : -1;
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Record digest of committed file, digest is null when digests are not computed.
+     */
+    private void indexDigest(Path resolvedFilePath, byte[] digest) throws IOException {
+        if (digest == null || !digestIndex.isEnabled()) {
+            return;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(resolvedFilePath, BasicFileAttributes.class);
+        digestIndex.put(fileStorageLocation.relativize(resolvedFilePath), digest, attributes.size(),
+                attributes.lastModifiedTime().toMillis());
+    }
+
+    private boolean isIndexedContent(Path filePath, Path resolvedFilePath) throws IOException {
+        if (!Files.isRegularFile(resolvedFilePath)) {
+            return false;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(resolvedFilePath, BasicFileAttributes.class);
+        return digestIndex.isCurrent(filePath, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    private void verifyUsableSpace(Path resolvedFilePath, long contentLength) throws IOException,
+            InsufficientStorageException {
+        Path directory = resolvedFilePath.getParent();
+        //existing file is replaced only after new content has been written
+        long usableSpace = Files.getFileStore(directory).getUsableSpace();
+        if (usableSpace < contentLength) {
+            LOG.warn("saveFile: insufficient storage {} required={} usable={}", resolvedFilePath, contentLength,
+                    usableSpace);
+            throw new InsufficientStorageException();
+        }
+    }
+
+    private void publishChange(FileChangeEvent event) {
+        eventPublisher.publishEvent(event);
+    }
+
     /* AUDIT METHODS */
 
     private void createDownloadFileAuditRecord(UserData userData, Path filePath) {
@@ -197,6 +561,14 @@ public class FileServiceImpl implements FileService {
         auditService.storeAudit(auditRecord);
     }
 
+    private void createUploadArchiveAuditRecord(UserData userData, Path filePath, boolean completed,
+                                                String manifest) {
+        AuditRecord auditRecord = new AuditRecord(Instant.now().getEpochSecond(),
+                AuditConstants.CategoryFileAccess.NAME, AuditConstants.CategoryFileAccess.UPLOAD_ARCHIVE,
+                userData.getId(), filePath.toString(), completed ? "OK" : "INCOMPLETE", manifest);
+        auditService.storeAudit(auditRecord);
+    }
+
     private void createDeleteAuditRecord(UserData userData, Path filePath) {
         AuditRecord auditRecord = new AuditRecord(Instant.now().getEpochSecond(),
                 AuditConstants.CategoryFileAccess.NAME, AuditConstants.CategoryFileAccess.DELETE,
@@ -0,0 +1,477 @@
+package itx.fileserver.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Set of glob patterns compiled once into one nondeterministic automaton, which matches a path against all
+ * of them in a single pass over its characters. Glob syntax and matching are the same as for
+ * {@link FileUtils#wildcardMatch(String, String)} with normalized paths (no trailing or repeated '/'), including
+ * syntax errors, which are thrown by {@link Builder#withGlob(String, int)}. Every glob carries tag bits, matching
+ * returns union of tags of all matching globs. Matching does not allocate memory once the calling thread
+ * has matched against an automaton of the same size. Immutable and thread safe.
+ */
+public class GlobAutomaton {
+
+    private static final int EPSILON = 0;
+    private static final int CHAR = 1;
+    private static final int ANY_BUT_SEPARATOR = 2;
+    private static final int ANY_BUT_LINE_TERMINATOR = 3;
+    private static final int CLASS = 4;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final int[] kinds;
+    private final int[] arguments;
+    private final int[] targets;
+    private final int[] tags;
+    private final int[][] classes;
+    private final boolean[] negatedClasses;
+    private final int[][] closures;
+
+    private GlobAutomaton(Builder builder) {
+        int stateCount = builder.kinds.size();
+        this.kinds = toArray(builder.kinds);
+        this.arguments = toArray(builder.arguments);
+        this.targets = toArray(builder.targets);
+        this.tags = toArray(builder.tags);
+        this.classes = builder.classes.toArray(new int[0][]);
+        this.negatedClasses = new boolean[builder.negatedClasses.size()];
+        for (int i = 0; i < negatedClasses.length; i++) {
+            negatedClasses[i] = builder.negatedClasses.get(i);
+        }
+        this.closures = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            closures[state] = computeClosure(state, builder.epsilons);
+        }
+    }
+
+    /**
+     * Match path against all globs.
+     * @param path normalized relative path with '/' separators.
+     * @return union of tags of matching globs, 0 if no glob matches.
+     */
+    public int match(String path) {
+        Scratch scratch = SCRATCH.get();
+        int size = run(path, scratch);
+        int result = 0;
+        for (int j = 0; j < size; j++) {
+            result |= tags[scratch.current[j]];
+        }
+        return result;
+    }
+
+    /**
+     * Match all paths below the directory at once. Result is approximate: tags of globs which may match
+     * some path below the directory are a superset of exact tags, tags of globs which match all paths
+     * below it are a subset of exact tags. Paths with line terminators in names are not matched by '**',
+     * so globs matching all paths match only paths without line terminators.
+     * @param directory normalized relative path to directory, empty for root directory.
+     * @return tags of globs which may match some path and tags of globs which match all paths below the directory.
+     */
+    public SubtreeMatch matchSubtree(String directory) {
+        Scratch scratch = SCRATCH.get();
+        int size = run(directory.isEmpty() ? "" : directory + "/", scratch);
+        int always = 0;
+        boolean[] visited = new boolean[kinds.length];
+        int[] stack = new int[kinds.length];
+        int stackSize = 0;
+        for (int j = 0; j < size; j++) {
+            int state = scratch.current[j];
+            if (kinds[state] == ANY_BUT_LINE_TERMINATOR) {
+                //'**' loop, the state is reachable again after any character
+                int[] closure = closures[targets[state]];
+                if (contains(closure, state)) {
+                    for (int target : closure) {
+                        always |= tags[target];
+                    }
+                }
+            }
+            visited[state] = true;
+            stack[stackSize++] = state;
+        }
+        //tags reachable after at least one character
+        int may = 0;
+        while (stackSize > 0) {
+            int state = stack[--stackSize];
+            if (kinds[state] == EPSILON) {
+                continue;
+            }
+            for (int target : closures[targets[state]]) {
+                may |= tags[target];
+                if (!visited[target]) {
+                    visited[target] = true;
+                    stack[stackSize++] = target;
+                }
+            }
+        }
+        return new SubtreeMatch(may, always);
+    }
+
+    /**
+     * @return number of states of the automaton.
+     */
+    public int size() {
+        return kinds.length;
+    }
+
+    /**
+     * Run the automaton over the path, states reached are left in current scratch array.
+     * @return number of states reached.
+     */
+    private int run(String path, Scratch scratch) {
+        scratch.ensureCapacity(kinds.length);
+        int[] current = scratch.current;
+        int[] next = scratch.next;
+        long[] marks = scratch.marks;
+        int[] start = closures[0];
+        System.arraycopy(start, 0, current, 0, start.length);
+        int currentSize = start.length;
+        for (int i = 0; i < path.length() && currentSize > 0; ) {
+            int codePoint = path.codePointAt(i);
+            i += Character.charCount(codePoint);
+            int nextSize = 0;
+            for (int j = 0; j < currentSize; j++) {
+                int state = current[j];
+                if (accepts(state, codePoint)) {
+                    for (int target : closures[targets[state]]) {
+                        if ((marks[target >> 6] & (1L << target)) == 0) {
+                            marks[target >> 6] |= 1L << target;
+                            next[nextSize++] = target;
+                        }
+                    }
+                }
+            }
+            for (int j = 0; j < nextSize; j++) {
+                marks[next[j] >> 6] = 0;
+            }
+            int[] swap = current;
+            current = next;
+            next = swap;
+            currentSize = nextSize;
+        }
+        scratch.current = current;
+        scratch.next = next;
+        return currentSize;
+    }
+
+    private static boolean contains(int[] states, int state) {
+        for (int s : states) {
+            if (s == state) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean accepts(int state, int codePoint) {
+        switch (kinds[state]) {
+            case CHAR:
+                return arguments[state] == codePoint;
+            case ANY_BUT_SEPARATOR:
+                return codePoint != '/';
+            case ANY_BUT_LINE_TERMINATOR:
+                //same as regex '.' without DOTALL
+                return codePoint != '\n' && codePoint != '\r' && codePoint != '\u0085'
+                        && codePoint != '\u2028' && codePoint != '\u2029';
+            case CLASS:
+                if (codePoint == '/') {
+                    return false;
+                }
+                int[] ranges = classes[arguments[state]];
+                boolean found = false;
+                for (int i = 0; i < ranges.length && !found; i += 2) {
+                    found = codePoint >= ranges[i] && codePoint <= ranges[i + 1];
+                }
+                return found != negatedClasses[arguments[state]];
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return states reachable from the state without consuming input, only states consuming input
+     * or accepting the path are needed.
+     */
+    private int[] computeClosure(int state, List<int[]> epsilons) {
+        boolean[] visited = new boolean[kinds.length];
+        int[] stack = new int[kinds.length];
+        int size = 0;
+        stack[size++] = state;
+        visited[state] = true;
+        List<Integer> closure = new ArrayList<>();
+        while (size > 0) {
+            int current = stack[--size];
+            if (kinds[current] != EPSILON || tags[current] != 0) {
+                closure.add(current);
+            }
+            for (int target : epsilons.get(current)) {
+                if (!visited[target]) {
+                    visited[target] = true;
+                    stack[size++] = target;
+                }
+            }
+        }
+        return toArray(closure);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static class Scratch {
+
+        private int[] current = new int[0];
+        private int[] next = new int[0];
+        private long[] marks = new long[0];
+
+        private void ensureCapacity(int stateCount) {
+            if (current.length < stateCount) {
+                current = new int[stateCount];
+                next = new int[stateCount];
+                marks = new long[(stateCount + 63) / 64];
+            }
+        }
+
+    }
+
+    /**
+     * Result of {@link #matchSubtree(String)}.
+     */
+    public static class SubtreeMatch {
+
+        private final int may;
+        private final int always;
+
+        public SubtreeMatch(int may, int always) {
+            this.may = may;
+            this.always = always;
+        }
+
+        /**
+         * @return union of tags of globs which may match some path below the directory.
+         */
+        public int getMay() {
+            return may;
+        }
+
+        /**
+         * @return union of tags of globs which match every path below the directory.
+         */
+        public int getAlways() {
+            return always;
+        }
+
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private final List<Integer> kinds = new ArrayList<>();
+        private final List<Integer> arguments = new ArrayList<>();
+        private final List<Integer> targets = new ArrayList<>();
+        private final List<Integer> tags = new ArrayList<>();
+        private final List<int[]> epsilons = new ArrayList<>();
+        private final List<int[]> classes = new ArrayList<>();
+        private final List<Boolean> negatedClasses = new ArrayList<>();
+
+        private Builder() {
+            //start state
+            newState(EPSILON, 0);
+        }
+
+        /**
+         * Add glob pattern.
+         * @param glob glob pattern, see {@link FileUtils#wildcardMatch(String, String)}.
+         * @param tags tag bits returned by {@link GlobAutomaton#match(String)} when the glob matches, must not be 0.
+         * @throws PatternSyntaxException if glob is not valid.
+         */
+        public Builder withGlob(String glob, int tags) {
+            int start = newState(EPSILON, 0);
+            int current = start;
+            int groupStart = -1;
+            int groupEnd = -1;
+            int i = 0;
+            while (i < glob.length()) {
+                int c = glob.codePointAt(i);
+                i += Character.charCount(c);
+                switch (c) {
+                    case '\\' -> {
+                        if (i == glob.length()) {
+                            throw new PatternSyntaxException("No character to escape", glob, i - 1);
+                        }
+                        int escaped = glob.codePointAt(i);
+                        i += Character.charCount(escaped);
+                        current = append(current, CHAR, escaped);
+                    }
+                    case '[' -> {
+                        i = parseClass(glob, i);
+                        current = append(current, CLASS, classes.size() - 1);
+                    }
+                    case '{' -> {
+                        if (groupStart >= 0) {
+                            throw new PatternSyntaxException("Cannot nest groups", glob, i - 1);
+                        }
+                        groupStart = current;
+                        groupEnd = newState(EPSILON, 0);
+                        current = newState(EPSILON, 0);
+                        addEpsilon(groupStart, current);
+                    }
+                    case ',' -> {
+                        if (groupStart >= 0) {
+                            addEpsilon(current, groupEnd);
+                            current = newState(EPSILON, 0);
+                            addEpsilon(groupStart, current);
+                        } else {
+                            current = append(current, CHAR, c);
+                        }
+                    }
+                    case '}' -> {
+                        if (groupStart >= 0) {
+                            addEpsilon(current, groupEnd);
+                            current = groupEnd;
+                            groupStart = -1;
+                        } else {
+                            current = append(current, CHAR, c);
+                        }
+                    }
+                    case '*' -> {
+                        boolean doubleStar = i < glob.length() && glob.charAt(i) == '*';
+                        if (doubleStar) {
+                            i++;
+                        }
+                        //zero or more characters, the loop state is both entry and exit
+                        int loop = newState(EPSILON, 0);
+                        addEpsilon(current, loop);
+                        int any = newState(doubleStar ? ANY_BUT_LINE_TERMINATOR : ANY_BUT_SEPARATOR, 0);
+                        addEpsilon(loop, any);
+                        targets.set(any, loop);
+                        current = loop;
+                    }
+                    case '?' -> current = append(current, ANY_BUT_SEPARATOR, 0);
+                    default -> current = append(current, CHAR, c);
+                }
+            }
+            if (groupStart >= 0) {
+                throw new PatternSyntaxException("Missing '}'", glob, i - 1);
+            }
+            //glob is linked to the start state only when it is valid
+            addEpsilon(0, start);
+            int end = newState(EPSILON, 0);
+            addEpsilon(current, end);
+            this.tags.set(end, tags);
+            return this;
+        }
+
+        public GlobAutomaton build() {
+            return new GlobAutomaton(this);
+        }
+
+        /**
+         * Parse character class the same way as glob to regex conversion of the default file system does.
+         * @param i index after opening '['.
+         * @return index after closing ']'.
+         */
+        private int parseClass(String glob, int i) {
+            List<Integer> ranges = new ArrayList<>();
+            boolean negated = false;
+            if (next(glob, i) == '^') {
+                ranges.add((int) '^');
+                ranges.add((int) '^');
+                i++;
+            } else {
+                if (next(glob, i) == '!') {
+                    negated = true;
+                    i++;
+                }
+                if (next(glob, i) == '-') {
+                    ranges.add((int) '-');
+                    ranges.add((int) '-');
+                    i++;
+                }
+            }
+            boolean hasRangeStart = false;
+            char last = 0;
+            char c = 0;
+            while (i < glob.length()) {
+                c = glob.charAt(i++);
+                if (c == ']') {
+                    break;
+                }
+                if (c == '/') {
+                    throw new PatternSyntaxException("Explicit 'name separator' in class", glob, i - 1);
+                }
+                if (c == '-') {
+                    if (!hasRangeStart) {
+                        throw new PatternSyntaxException("Invalid range", glob, i - 1);
+                    }
+                    c = next(glob, i++);
+                    if (c == 0 || c == ']') {
+                        //trailing '-' is literal
+                        ranges.add((int) '-');
+                        ranges.add((int) '-');
+                        break;
+                    }
+                    if (c < last) {
+                        throw new PatternSyntaxException("Invalid range", glob, i - 3);
+                    }
+                    ranges.set(ranges.size() - 1, (int) c);
+                    hasRangeStart = false;
+                } else {
+                    ranges.add((int) c);
+                    ranges.add((int) c);
+                    hasRangeStart = true;
+                    last = c;
+                }
+            }
+            if (c != ']') {
+                throw new PatternSyntaxException("Missing ']", glob, i - 1);
+            }
+            if (ranges.isEmpty()) {
+                throw new PatternSyntaxException("Unclosed character class", glob, i - 1);
+            }
+            classes.add(ranges.stream().mapToInt(Integer::intValue).toArray());
+            negatedClasses.add(negated);
+            return i;
+        }
+
+        private static char next(String glob, int i) {
+            return (i < glob.length()) ? glob.charAt(i) : 0;
+        }
+
+        /**
+         * Append state consuming one character after current state.
+         * @return state following the consuming state.
+         */
+        private int append(int current, int kind, int argument) {
+            int state = newState(kind, argument);
+            addEpsilon(current, state);
+            int next = newState(EPSILON, 0);
+            targets.set(state, next);
+            return next;
+        }
+
+        private int newState(int kind, int argument) {
+            kinds.add(kind);
+            arguments.add(argument);
+            targets.add(-1);
+            tags.add(0);
+            epsilons.add(new int[0]);
+            return kinds.size() - 1;
+        }
+
+        private void addEpsilon(int from, int to) {
+            int[] edges = epsilons.get(from);
+            int[] extended = Arrays.copyOf(edges, edges.length + 1);
+            extended[edges.length] = to;
+            epsilons.set(from, extended);
+        }
+
+    }
+
+}
@@ -0,0 +1,4 @@
+package itx.fileserver.services;
+
+public class InsufficientStorageException extends Exception {
+}
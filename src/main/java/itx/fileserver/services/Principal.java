@@ -0,0 +1,53 @@
+package itx.fileserver.services;
+
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UserData;
+
+import java.util.Set;
+
+/**
+ * User of a session with roles resolved at login. Principal is immutable, {@link SecurityService} replaces it
+ * when users change. Access is checked by {@link FileAccessService} for the roles, which are shared with the rules
+ * compiled for them.
+ */
+public class Principal {
+
+    private final UserData userData;
+    private final boolean admin;
+    private final boolean anonymous;
+    private final long userVersion;
+
+    /**
+     * @param userData user of the session, with immutable set of roles shared with the access rules.
+     * @param admin true if the user has admin role.
+     * @param anonymous true if anonymous role is the only role of the user.
+     * @param userVersion version of users the principal has been created from.
+     */
+    public Principal(UserData userData, boolean admin, boolean anonymous, long userVersion) {
+        this.userData = userData;
+        this.admin = admin;
+        this.anonymous = anonymous;
+        this.userVersion = userVersion;
+    }
+
+    public UserData getUserData() {
+        return userData;
+    }
+
+    public Set<RoleId> getRoles() {
+        return userData.getRoles();
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    public boolean isAnonymous() {
+        return anonymous;
+    }
+
+    public long getUserVersion() {
+        return userVersion;
+    }
+
+}
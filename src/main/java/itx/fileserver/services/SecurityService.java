@@ -26,6 +26,14 @@ public interface SecurityService {
      */
     Optional<UserData> isAuthorized(String sessionId);
 
+    /**
+     * Get principal of authorized session, principal is refreshed if users have changed since it has been created.
+     * Session of removed user is terminated.
+     * @param sessionId unique session id.
+     * @return {@link Principal} if session is authorized, empty if not.
+     */
+    Optional<Principal> getPrincipal(String sessionId);
+
     /**
      * Verify is session is anonymous.
      * @param sessionId unique session id.
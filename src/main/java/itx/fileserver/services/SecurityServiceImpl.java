@@ -17,8 +17,10 @@ public class SecurityServiceImpl implements SecurityService {
 
     private static final Logger LOG = LoggerFactory.getLogger(SecurityServiceImpl.class);
 
+    private static final String ANONYMOUS_USER_ID = "ANONYMOUS";
+
     private final UserManagerService userService;
-    private final Map<String, UserData> authorizedSessions;
+    private final Map<String, Principal> authorizedSessions;
     private final AuditService auditService;
 
     @Autowired
@@ -31,46 +33,53 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public UserData createAnonymousSession(String sessionId) {
         LOG.debug("createAnonymousSession {}", sessionId);
-        UserData userData = new UserData("ANONYMOUS", userService.getAnonymousRole(), "");
-        UserData previousData = authorizedSessions.put(sessionId, userData);
-        createAnonymousSessionRecord(previousData, sessionId);
-        return userData;
+        Principal principal = createPrincipal(new UserData(ANONYMOUS_USER_ID, userService.getAnonymousRole(), ""),
+                userService.getVersion());
+        Principal previousPrincipal = authorizedSessions.put(sessionId, principal);
+        createAnonymousSessionRecord(previousPrincipal, sessionId);
+        return principal.getUserData();
     }
 
     @Override
     public Optional<UserData> isAuthorized(String sessionId) {
         LOG.debug("isAuthorized {}", sessionId);
-        return Optional.ofNullable(authorizedSessions.get(sessionId));
+        return getPrincipal(sessionId).map(Principal::getUserData);
+    }
+
+    @Override
+    public Optional<Principal> getPrincipal(String sessionId) {
+        Principal principal = authorizedSessions.get(sessionId);
+        if (principal == null) {
+            return Optional.empty();
+        }
+        if (principal.getUserVersion() != userService.getVersion()) {
+            return refreshPrincipal(sessionId, principal);
+        }
+        return Optional.of(principal);
     }
 
     @Override
     public boolean isAnonymous(String sessionId) {
         LOG.debug("isAnonymous {}", sessionId);
-        UserData userData = authorizedSessions.get(sessionId);
-        if (userData != null && userData.getRoles().size() == 1) {
-            return userData.getRoles().contains(userService.getAnonymousRole());
-        }
-        return false;
+        return getPrincipal(sessionId).map(Principal::isAnonymous).orElse(false);
     }
 
     @Override
     public boolean isAuthorizedAdmin(String sessionId) {
         LOG.debug("isAuthorizedAdmin {}", sessionId);
-        UserData userData = authorizedSessions.get(sessionId);
-        if (userData != null) {
-            return userData.getRoles().contains(userService.getAdminRole());
-        }
-        return false;
+        return getPrincipal(sessionId).map(Principal::isAdmin).orElse(false);
     }
 
     @Override
     public Optional<UserData> authorize(String sessionId, String username, String password) {
         LOG.debug("authorize {} {}", username, sessionId);
+        long userVersion = userService.getVersion();
         Optional<UserData> userData = userService.getUser(username);
         if (userData.isPresent() && userData.get().verifyPassword(password)) {
-            authorizedSessions.put(sessionId, userData.get());
+            Principal principal = createPrincipal(userData.get(), userVersion);
+            authorizedSessions.put(sessionId, principal);
             createLoginRecordOK(username, sessionId);
-            return userData;
+            return Optional.of(principal.getUserData());
         }
         createLoginRecordFailed(username, sessionId);
         return Optional.empty();
@@ -79,18 +88,14 @@ public class SecurityServiceImpl implements SecurityService {
     @Override
     public void terminateSession(String sessionId) {
         LOG.debug("terminateSession {}", sessionId);
-        UserData userDataAuthorized = authorizedSessions.remove(sessionId);
-        createLogoutRecord(userDataAuthorized, sessionId);
+        Principal principal = authorizedSessions.remove(sessionId);
+        createLogoutRecord(principal, sessionId);
     }
 
     @Override
     public Optional<Set<RoleId>> getRoles(String sessionId) {
         LOG.debug("getRoles {}", sessionId);
-        UserData userData = authorizedSessions.get(sessionId);
-        if (userData != null) {
-            return Optional.of(userData.getRoles());
-        }
-        return Optional.empty();
+        return getPrincipal(sessionId).map(Principal::getRoles);
     }
 
     @Override
@@ -99,22 +104,58 @@ public class SecurityServiceImpl implements SecurityService {
         List<SessionInfo> anonymous = new ArrayList<>();
         List<SessionInfo> users = new ArrayList<>();
         List<SessionInfo> admins = new ArrayList<>();
-        authorizedSessions.forEach((id, user) -> {
-            if (user.getRoles().contains(userService.getAdminRole())) {
-                admins.add(new SessionInfo(id, user.getId(), user.getRoles()));
-            } else if (user.getRoles().contains(userService.getAnonymousRole())) {
-                anonymous.add(new SessionInfo(id, user.getId(), user.getRoles()));
+        authorizedSessions.keySet().forEach(id -> getPrincipal(id).ifPresent(principal -> {
+            SessionInfo sessionInfo = new SessionInfo(id, principal.getUserData().getId(), principal.getRoles());
+            if (principal.isAdmin()) {
+                admins.add(sessionInfo);
+            } else if (principal.getRoles().contains(userService.getAnonymousRole())) {
+                anonymous.add(sessionInfo);
             } else {
-                users.add(new SessionInfo(id, user.getId(), user.getRoles()));
+                users.add(sessionInfo);
             }
-        });
+        }));
         return new Sessions(anonymous, users, admins);
     }
 
+    /**
+     * Resolve roles of the user once, all requests of the session share them.
+     * @param userVersion version of users read before the user data, so the principal is never older than
+     *                    its version and it is refreshed if the user changes meanwhile.
+     */
+    private Principal createPrincipal(UserData userData, long userVersion) {
+        Set<RoleId> roles = Set.copyOf(userData.getRoles());
+        RoleId anonymousRole = userService.getAnonymousRole();
+        boolean anonymous = roles.size() == 1 && roles.contains(anonymousRole);
+        boolean admin = roles.contains(userService.getAdminRole());
+        return new Principal(new UserData(userData.getId(), roles, userData.password()), admin, anonymous,
+                userVersion);
+    }
+
+    private Optional<Principal> refreshPrincipal(String sessionId, Principal principal) {
+        UserData userData = principal.getUserData();
+        long userVersion = userService.getVersion();
+        if (!(principal.isAnonymous() && ANONYMOUS_USER_ID.equals(userData.getId()))) {
+            Optional<UserData> currentUserData = userService.getUser(userData.getId());
+            if (currentUserData.isEmpty()) {
+                LOG.info("refreshPrincipal: user {} removed, session terminated", userData.getId());
+                if (authorizedSessions.remove(sessionId, principal)) {
+                    createLogoutRecord(principal, sessionId);
+                }
+                return Optional.empty();
+            }
+            userData = currentUserData.get();
+        }
+        Principal refreshed = createPrincipal(userData, userVersion);
+        LOG.debug("refreshPrincipal {} users={}", sessionId, refreshed.getUserVersion());
+        //session changed concurrently keeps its new principal
+        authorizedSessions.replace(sessionId, principal, refreshed);
+        return Optional.of(refreshed);
+    }
+
     /* AUDITING METHODS */
 
-    private void createAnonymousSessionRecord(UserData previousData, String sessionId) {
-        if (previousData == null) {
+    private void createAnonymousSessionRecord(Principal previousPrincipal, String sessionId) {
+        if (previousPrincipal == null) {
             AuditRecord auditRecord = new AuditRecord(Instant.now().getEpochSecond(),
                     AuditConstants.CategoryUserAccess.NAME, AuditConstants.CategoryUserAccess.LOGIN, "ANONYMOUS", "",
                     "OK", sessionId);
@@ -136,11 +177,11 @@ public class SecurityServiceImpl implements SecurityService {
         auditService.storeAudit(auditRecord);
     }
 
-    private void createLogoutRecord(UserData userDataAuthorized, String sessionId) {
-        if (userDataAuthorized != null) {
+    private void createLogoutRecord(Principal principal, String sessionId) {
+        if (principal != null) {
             AuditRecord auditRecord = new AuditRecord(Instant.now().getEpochSecond(),
                     AuditConstants.CategoryUserAccess.NAME, AuditConstants.CategoryUserAccess.LOGOUT,
-                    userDataAuthorized.getId(), "", "OK", sessionId);
+                    principal.getUserData().getId(), "", "OK", sessionId);
             auditService.storeAudit(auditRecord);
         }
     }
@@ -0,0 +1,28 @@
+package itx.fileserver.services;
+
+/**
+ * Access to all paths below a directory, see {@link AccessRules#getSubtreeVerdict(java.nio.file.Path)}.
+ */
+public enum SubtreeVerdict {
+
+    /**
+     * All paths are readable and writable.
+     */
+    WRITABLE,
+
+    /**
+     * All paths are readable, none is writable.
+     */
+    READABLE,
+
+    /**
+     * No path is readable.
+     */
+    DENIED,
+
+    /**
+     * Access differs between paths or can't be determined for the whole subtree, every path must be checked.
+     */
+    MIXED
+
+}
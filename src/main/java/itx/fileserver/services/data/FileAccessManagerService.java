@@ -16,4 +16,9 @@ public interface FileAccessManagerService {
 
     Collection<FileAccessFilter> getFilters(RoleId roleId);
 
+    /**
+     * @return version of filters, which is changed after every change of filters.
+     */
+    long getVersion();
+
 }
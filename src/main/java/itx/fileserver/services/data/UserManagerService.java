@@ -20,4 +20,9 @@ public interface UserManagerService {
 
     RoleId getAdminRole();
 
+    /**
+     * @return version of users, incremented on every change of users.
+     */
+    long getVersion();
+
 }
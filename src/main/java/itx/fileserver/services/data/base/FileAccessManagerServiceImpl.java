@@ -10,54 +10,57 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Filters are kept in immutable snapshot published by single volatile reference. Readers take no locks and get
+ * collections of the snapshot without copying, changes build new snapshot and replace the current one.
+ */
 public abstract class FileAccessManagerServiceImpl implements FileAccessManagerService {
 
     private static final Logger LOG = LoggerFactory.getLogger(FileAccessManagerServiceImpl.class);
 
-    protected Map<RoleId, List<FileAccessFilter>> filters;
-    protected Set<FilterConfig> filterConfigs;
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), List.of(), 0);
 
     @Override
-    public void addFilter(FilterConfig filterConfig) {
-        this.filterConfigs.add(filterConfig);
+    public synchronized void addFilter(FilterConfig filterConfig) {
+        Snapshot current = snapshot;
+        Set<FilterConfig> filterConfigs = new LinkedHashSet<>(current.filterConfigs);
+        filterConfigs.add(filterConfig);
+        Map<RoleId, List<FileAccessFilter>> filters = new HashMap<>(current.filters);
         FileAccessFilter fileAccessFilter = new FileAccessFilter(filterConfig.getPath(), AccessType.valueOf(filterConfig.getAccess()));
         filterConfig.getRoles().forEach(r -> {
             RoleId roleId = new RoleId(r);
-            List<FileAccessFilter> fileAccessFilters = filters.get(roleId);
-            if (fileAccessFilters == null) {
-                fileAccessFilters = new ArrayList<>();
-                filters.put(roleId, fileAccessFilters);
-            }
+            List<FileAccessFilter> fileAccessFilters = new ArrayList<>(filters.getOrDefault(roleId, List.of()));
             LOG.info("Filter: role={} path={} {}", roleId.getId(), fileAccessFilter.getPath(), fileAccessFilter.getAccessType());
             fileAccessFilters.add(fileAccessFilter);
+            filters.put(roleId, fileAccessFilters);
         });
+        snapshot = new Snapshot(filters, filterConfigs, current.version + 1);
         persist();
     }
 
     @Override
     public Collection<FilterConfig> getFilters() {
-        return Collections.unmodifiableList(new ArrayList<>(filterConfigs));
+        return snapshot.filterConfigs;
     }
 
     @Override
     public Collection<FileAccessFilter> getFilters(RoleId roleId) {
-        List<FileAccessFilter> fileAccessFilters = filters.get(roleId);
-        if (fileAccessFilters != null) {
-            return Collections.unmodifiableList(filters.get(roleId));
-        } else {
-            return Collections.emptyList();
-        }
+        return snapshot.filters.getOrDefault(roleId, List.of());
     }
 
     @Override
-    public void removeFilter(FilterConfig filterConfig) {
+    public synchronized void removeFilter(FilterConfig filterConfig) {
+        Snapshot current = snapshot;
+        Set<FilterConfig> filterConfigs = new LinkedHashSet<>(current.filterConfigs);
         filterConfigs.remove(filterConfig);
+        Map<RoleId, List<FileAccessFilter>> filters = new HashMap<>(current.filters);
         filterConfig.getRoles().forEach(r->{
             RoleId roleId = new RoleId(r);
             List<FileAccessFilter> fileAccessFilters = filters.get(roleId);
@@ -71,9 +74,32 @@ public abstract class FileAccessManagerServiceImpl implements FileAccessManagerS
                 }
             }
         });
+        snapshot = new Snapshot(filters, filterConfigs, current.version + 1);
         persist();
     }
 
+    @Override
+    public long getVersion() {
+        return snapshot.version;
+    }
+
     public abstract void persist();
 
+    private static class Snapshot {
+
+        private final Map<RoleId, List<FileAccessFilter>> filters;
+        private final List<FilterConfig> filterConfigs;
+        private final long version;
+
+        private Snapshot(Map<RoleId, List<FileAccessFilter>> filters, Collection<FilterConfig> filterConfigs,
+                         long version) {
+            Map<RoleId, List<FileAccessFilter>> copy = new HashMap<>();
+            filters.forEach((roleId, roleFilters) -> copy.put(roleId, List.copyOf(roleFilters)));
+            this.filters = Map.copyOf(copy);
+            this.filterConfigs = List.copyOf(filterConfigs);
+            this.version = version;
+        }
+
+    }
+
 }
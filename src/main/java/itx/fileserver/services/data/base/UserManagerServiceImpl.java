@@ -10,6 +10,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class UserManagerServiceImpl implements UserManagerService {
 
@@ -18,6 +19,7 @@ public abstract class UserManagerServiceImpl implements UserManagerService {
     protected Map<String, UserData> users;
     protected RoleId anonymousRole;
     protected RoleId adminRole;
+    private final AtomicLong version = new AtomicLong();
 
     @Override
     public Optional<UserData> getUser(String id) {
@@ -36,6 +38,7 @@ public abstract class UserManagerServiceImpl implements UserManagerService {
             throw new UnsupportedOperationException();
         }
         users.put(userData.getId(), userData);
+        version.incrementAndGet();
         persist();
     }
 
@@ -43,6 +46,7 @@ public abstract class UserManagerServiceImpl implements UserManagerService {
     public void removeUser(String id) {
         LOG.debug("removeUser {}", id);
         users.remove(id);
+        version.incrementAndGet();
         persist();
     }
 
@@ -56,6 +60,11 @@ public abstract class UserManagerServiceImpl implements UserManagerService {
         return adminRole;
     }
 
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
     public abstract void persist();
 
 }
@@ -7,8 +7,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.HashSet;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class FileAccessManagerServiceFilesystem extends FileAccessManagerServiceImpl {
 
@@ -20,8 +18,6 @@ public class FileAccessManagerServiceFilesystem extends FileAccessManagerService
     public FileAccessManagerServiceFilesystem(Path dataPath, PersistenceService persistenceService) throws IOException {
         this.dataPath = dataPath;
         this.persistenceService = persistenceService;
-        this.filters = new ConcurrentHashMap<>();
-        this.filterConfigs = new HashSet<>();
 
         LOG.info("dataPath={}", dataPath);
         FilterAccessManagerData filterAccessManagerData = persistenceService.restore(dataPath, FilterAccessManagerData.class);
@@ -32,7 +28,7 @@ public class FileAccessManagerServiceFilesystem extends FileAccessManagerService
     public void persist() {
         LOG.debug("persist: filesystem");
         try {
-            FilterAccessManagerData filterAccessManagerData = new FilterAccessManagerData(filterConfigs);
+            FilterAccessManagerData filterAccessManagerData = new FilterAccessManagerData(getFilters());
             persistenceService.persist(dataPath, filterAccessManagerData);
         } catch (IOException e) {
             LOG.error("Persist ERROR: ", e);
@@ -0,0 +1,29 @@
+package itx.fileserver.services.download;
+
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.OperationNotAllowedException;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Service streaming content of directories as archives.
+ */
+public interface ArchiveService {
+
+    /**
+     * Write ZIP archive of directory tree into http response. Archive is streamed, no temporary file is created.
+     * Files and directories which user can't read are skipped, already compressed files are stored without compression.
+     * @param userData users's data accessing this directory.
+     * @param filePath relative path to directory.
+     * @param response http response.
+     * @throws FileNotFoundException if directory does not exist.
+     * @throws OperationNotAllowedException
+     * @throws IOException
+     */
+    void downloadArchive(UserData userData, Path filePath,
+                         HttpServletResponse response) throws IOException, OperationNotAllowedException;
+
+}
@@ -0,0 +1,200 @@
+package itx.fileserver.services.download;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.AuditConstants;
+import itx.fileserver.dto.AuditRecord;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.AccessRules;
+import itx.fileserver.services.FileAccessService;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.SubtreeVerdict;
+import itx.fileserver.services.data.AuditService;
+import itx.fileserver.services.upload.FileCommitter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@Service
+public class ArchiveServiceImpl implements ArchiveService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ArchiveServiceImpl.class);
+
+    /* deflating these files costs CPU and saves nothing */
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "tgz", "bz2", "xz", "zst", "lz4", "7z", "rar", "jar", "war",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub",
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "avif",
+            "mp3", "aac", "ogg", "opus", "flac", "mp4", "m4a", "m4v", "mkv", "mov", "avi", "webm");
+
+    private final Path fileStorageLocation;
+    private final FileAccessService fileAccessService;
+    private final AuditService auditService;
+    private final int bufferSize;
+
+    @Autowired
+    public ArchiveServiceImpl(FileServerConfig fileServerConfig, FileAccessService fileAccessService,
+                              AuditService auditService) {
+        this.fileStorageLocation = Paths.get(fileServerConfig.getHome()).toAbsolutePath().normalize();
+        this.fileAccessService = fileAccessService;
+        this.auditService = auditService;
+        this.bufferSize = fileServerConfig.getBufferSize();
+    }
+
+    @Override
+    public void downloadArchive(UserData userData, Path filePath,
+                                HttpServletResponse response) throws IOException, OperationNotAllowedException {
+        LOG.info("downloadArchive: {}", filePath);
+        if (!fileAccessService.canRead(userData.getRoles(), filePath.resolve(""))) {
+            throw new OperationNotAllowedException();
+        }
+        Path resolvedFilePath = this.fileStorageLocation.resolve(filePath).normalize();
+        if (!Files.isDirectory(resolvedFilePath)) {
+            throw new FileNotFoundException("Directory not found " + filePath);
+        }
+        Path fileName = resolvedFilePath.getFileName();
+        String archiveName = (fileName == null || filePath.toString().isEmpty()) ? "files" : fileName.toString();
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + archiveName + ".zip\"");
+        createDownloadArchiveAuditRecord(userData, filePath);
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(
+                new BufferedOutputStream(response.getOutputStream(), bufferSize))) {
+            AccessRules accessRules = fileAccessService.getAccessRules(userData.getRoles());
+            Files.walkFileTree(resolvedFilePath, new ArchiveFileVisitor(accessRules, filePath, resolvedFilePath,
+                    zipOutputStream, new byte[bufferSize]));
+        }
+    }
+
+    private static boolean isCompressed(Path file) {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private void createDownloadArchiveAuditRecord(UserData userData, Path filePath) {
+        AuditRecord auditRecord = new AuditRecord(Instant.now().getEpochSecond(),
+                AuditConstants.CategoryFileAccess.NAME, AuditConstants.CategoryFileAccess.DOWNLOAD_ARCHIVE,
+                userData.getId(), filePath.toString(), "OK", "");
+        auditService.storeAudit(auditRecord);
+    }
+
+    /**
+     * Writes readable files of walked directory tree as zip entries. Entry names are relative to archived directory.
+     * Access of walked directories is evaluated for their whole subtrees, files in uniform subtrees are not checked
+     * one by one.
+     */
+    private static class ArchiveFileVisitor extends SimpleFileVisitor<Path> {
+
+        private final AccessRules accessRules;
+        private final Path filePath;
+        private final Path resolvedFilePath;
+        private final ZipOutputStream zipOutputStream;
+        private final byte[] buffer;
+        private final Deque<SubtreeVerdict> verdicts;
+
+        private ArchiveFileVisitor(AccessRules accessRules, Path filePath, Path resolvedFilePath,
+                                   ZipOutputStream zipOutputStream, byte[] buffer) {
+            this.accessRules = accessRules;
+            this.filePath = filePath;
+            this.resolvedFilePath = resolvedFilePath;
+            this.zipOutputStream = zipOutputStream;
+            this.buffer = buffer;
+            this.verdicts = new ArrayDeque<>();
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            Path relative = resolvedFilePath.relativize(dir);
+            SubtreeVerdict parentVerdict = verdicts.isEmpty() ? SubtreeVerdict.MIXED : verdicts.peek();
+            if (!relative.toString().isEmpty()) {
+                if (canRead(relative, parentVerdict)) {
+                    ZipEntry entry = new ZipEntry(toEntryName(relative) + "/");
+                    entry.setLastModifiedTime(attrs.lastModifiedTime());
+                    zipOutputStream.putNextEntry(entry);
+                    zipOutputStream.closeEntry();
+                } else if (!accessRules.mayReadBelow(filePath.resolve(relative))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+            }
+            //readable files may be nested in unreadable directories, uniform verdict holds for subdirectories too
+            verdicts.push((parentVerdict == SubtreeVerdict.MIXED)
+                    ? accessRules.getSubtreeVerdict(filePath.resolve(relative)) : parentVerdict);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+            verdicts.pop();
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            Path relative = resolvedFilePath.relativize(file);
+            //temp files of running uploads are not complete yet
+            if (!attrs.isRegularFile() || FileCommitter.isTempFile(file.getFileName().toString())
+                    || !canRead(relative, verdicts.peek())) {
+                return FileVisitResult.CONTINUE;
+            }
+            InputStream inputStream;
+            try {
+                inputStream = Files.newInputStream(file);
+            } catch (IOException e) {
+                LOG.warn("downloadArchive skipped: {} {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+            try (inputStream) {
+                ZipEntry entry = new ZipEntry(toEntryName(relative));
+                entry.setLastModifiedTime(attrs.lastModifiedTime());
+                zipOutputStream.setLevel(isCompressed(file) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                zipOutputStream.putNextEntry(entry);
+                int read;
+                while ((read = inputStream.read(buffer)) >= 0) {
+                    zipOutputStream.write(buffer, 0, read);
+                }
+                zipOutputStream.closeEntry();
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+            LOG.warn("downloadArchive skipped: {} {}", file, e.getMessage());
+            return FileVisitResult.CONTINUE;
+        }
+
+        private boolean canRead(Path relative, SubtreeVerdict verdict) {
+            return accessRules.canRead(filePath.resolve(relative), verdict);
+        }
+
+        private String toEntryName(Path relative) {
+            return relative.toString().replace(relative.getFileSystem().getSeparator(), "/");
+        }
+
+    }
+
+}
@@ -0,0 +1,117 @@
+package itx.fileserver.services.download;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Parser of HTTP Range request header (RFC 9110, section 14).
+ */
+public final class ByteRanges {
+
+    /**
+     * Max. number of ranges served in one multipart/byteranges response, requests with more ranges
+     * (after merging overlapping ones) are served as full content.
+     */
+    public static final int MAX_RANGES = 64;
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    private ByteRanges() {
+        throw new UnsupportedOperationException("please do not instantiate utility class");
+    }
+
+    /**
+     * Parse value of Range header for the file of given length.
+     * Overlapping and adjacent ranges are merged, returned ranges are sorted by start position.
+     * @param rangeHeader value of Range header.
+     * @param length total length of the file.
+     * @return list of satisfiable ranges, empty list if the header is missing, malformed or shall be ignored.
+     * @throws RangeNotSatisfiableException if none of the requested ranges can be satisfied.
+     */
+    public static List<ByteRange> parse(String rangeHeader, long length) throws RangeNotSatisfiableException {
+        if (rangeHeader == null || !rangeHeader.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return Collections.emptyList();
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        boolean rangeSpecified = false;
+        for (String spec : rangeHeader.substring(BYTES_UNIT.length()).split(",")) {
+            String trimmed = spec.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int dash = trimmed.indexOf('-');
+            if (dash < 0) {
+                return Collections.emptyList();
+            }
+            long first = parsePosition(trimmed.substring(0, dash).trim());
+            long last = parsePosition(trimmed.substring(dash + 1).trim());
+            rangeSpecified = true;
+            if (first == -2 || last == -2 || (first == -1 && last == -1) || (first >= 0 && last >= 0 && first > last)) {
+                //malformed range spec, whole header is ignored
+                return Collections.emptyList();
+            }
+            if (first == -1) {
+                //suffix range: last N bytes
+                if (last > 0 && length > 0) {
+                    ranges.add(new ByteRange(Math.max(0, length - last), length - 1));
+                }
+            } else if (first < length) {
+                long end = (last == -1 || last >= length) ? length - 1 : last;
+                ranges.add(new ByteRange(first, end));
+            }
+        }
+        if (!rangeSpecified) {
+            return Collections.emptyList();
+        }
+        if (ranges.isEmpty()) {
+            throw new RangeNotSatisfiableException();
+        }
+        List<ByteRange> merged = merge(ranges);
+        if (merged.size() > MAX_RANGES) {
+            return Collections.emptyList();
+        }
+        return merged;
+    }
+
+    private static List<ByteRange> merge(List<ByteRange> ranges) {
+        if (ranges.size() == 1) {
+            return ranges;
+        }
+        ranges.sort(Comparator.comparingLong(ByteRange::getStart));
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            ByteRange next = ranges.get(i);
+            if (next.getStart() <= current.getEnd() + 1) {
+                current = new ByteRange(current.getStart(), Math.max(current.getEnd(), next.getEnd()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * @return parsed position, -1 for empty value, -2 for invalid value.
+     */
+    private static long parsePosition(String value) {
+        if (value.isEmpty()) {
+            return -1;
+        }
+        if (value.length() > 18) {
+            return -2;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -2;
+            }
+        }
+        return Long.parseLong(value);
+    }
+
+}
@@ -0,0 +1,367 @@
+package itx.fileserver.services.download;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.services.FileChangeEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of gzip compressed variants (sidecars) of downloaded files. Sidecars are generated in background
+ * on first request and stored in cache directory outside of file storage, following downloads of the same file
+ * version are served from the sidecar without spending CPU on compression.
+ * Sidecar name is derived from file path and its ETag, so changed files never match outdated sidecars.
+ * Total size of sidecars is bounded, least recently used sidecars are deleted first.
+ */
+@Component
+public class CompressedVariants {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompressedVariants.class);
+
+    private static final String SUFFIX = ".gz";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int QUEUE_SIZE = 1024;
+    private static final int MAX_ENTRIES = 65536;
+
+    private final FileMetadataCache fileMetadataCache;
+    private final boolean enabled;
+    private final Path cacheDir;
+    private final long maxSize;
+    private final long minFileSize;
+    private final List<MimeType> mimeTypes;
+    private final Map<String, Sidecar> sidecars;
+    private final NavigableMap<Path, Set<String>> sources;
+    private final Set<String> pending;
+    private final ThreadPoolExecutor executor;
+    private long size;
+
+    @Autowired
+    public CompressedVariants(FileServerConfig fileServerConfig, FileMetadataCache fileMetadataCache) throws IOException {
+        this(fileMetadataCache, fileServerConfig.isDownloadCompressionEnabled(), getCacheDir(fileServerConfig),
+                fileServerConfig.getDownloadCompressionMaxSize(), fileServerConfig.getDownloadCompressionMinFileSize(),
+                fileServerConfig.getDownloadCompressionMimeTypes());
+    }
+
+    public CompressedVariants(FileMetadataCache fileMetadataCache, boolean enabled, Path cacheDir, long maxSize,
+                              long minFileSize, List<String> mimeTypes) throws IOException {
+        LOG.info("CompressedVariants: enabled={} cacheDir={} maxSize={}", enabled, cacheDir, maxSize);
+        this.fileMetadataCache = fileMetadataCache;
+        this.enabled = enabled;
+        this.cacheDir = cacheDir;
+        this.maxSize = maxSize;
+        this.minFileSize = minFileSize;
+        this.mimeTypes = mimeTypes.stream().map(MimeTypeUtils::parseMimeType).toList();
+        this.sidecars = new LinkedHashMap<>(16, 0.75f, true);
+        this.sources = new TreeMap<>();
+        this.pending = new HashSet<>();
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "compressed-variants");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        if (enabled) {
+            loadSidecars();
+        }
+    }
+
+    /**
+     * @return true if files of given content type and size are served compressed.
+     */
+    public boolean isCompressible(String contentType, long fileSize) {
+        if (!enabled || fileSize < minFileSize) {
+            return false;
+        }
+        MimeType mimeType = MimeTypeUtils.parseMimeType(contentType);
+        return mimeTypes.stream().anyMatch(m -> m.includes(mimeType));
+    }
+
+    /**
+     * Get gzip compressed variant of the file, compression is scheduled in background if variant does not exist yet.
+     * @param file absolute path to regular file.
+     * @param metadata current metadata of the file.
+     * @return path to compressed variant or null if the variant is not available.
+     */
+    public Path get(Path file, FileMetadata metadata) {
+        String name = getName(file, metadata);
+        synchronized (sidecars) {
+            Sidecar sidecar = sidecars.get(name);
+            if (sidecar != null) {
+                if (sidecar.getSource() == null) {
+                    //sidecar loaded from previous run, its source is known now
+                    sidecars.put(name, new Sidecar(file, sidecar.getSize(), sidecar.isUseful()));
+                    addSource(file, name);
+                }
+                return sidecar.isUseful() ? cacheDir.resolve(name) : null;
+            }
+            if (pending.add(name)) {
+                try {
+                    executor.execute(() -> compress(file, metadata, name));
+                } catch (RejectedExecutionException e) {
+                    //queue is full, compression is scheduled again by next download
+                    pending.remove(name);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if Accept-Encoding header value accepts gzip content coding.
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.trim().split(";");
+            String name = parameters[0].trim();
+            if ("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name) || "*".equals(name)) {
+                for (int i = 1; i < parameters.length; i++) {
+                    String parameter = parameters[i].trim();
+                    if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return strong entity tag of gzip variant derived from entity tag of the file.
+     */
+    public static String toGzipETag(String eTag) {
+        return eTag.substring(0, eTag.length() - 1) + "-gzip\"";
+    }
+
+    public long getSize() {
+        synchronized (sidecars) {
+            return size;
+        }
+    }
+
+    @EventListener
+    public void onFileChange(FileChangeEvent event) {
+        synchronized (sidecars) {
+            invalidate(event.getResolvedPath());
+            if (event.getResolvedDestinationPath() != null) {
+                invalidate(event.getResolvedDestinationPath());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void compress(Path file, FileMetadata metadata, String name) {
+        Path tmpFile = cacheDir.resolve(name + TMP_SUFFIX);
+        try {
+            try (InputStream inputStream = Files.newInputStream(file);
+                 OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(tmpFile), 64 * 1024)) {
+                inputStream.transferTo(outputStream);
+            }
+            if (!fileMetadataCache.get(file).getETag().equals(metadata.getETag())) {
+                LOG.info("compress: file changed while compressing {}", file);
+                Files.deleteIfExists(tmpFile);
+                return;
+            }
+            long compressedSize = Files.size(tmpFile);
+            //variants saving less than 10% are not worth Content-Encoding, only the decision is remembered
+            boolean useful = compressedSize < metadata.getSize() - metadata.getSize() / 10;
+            if (useful) {
+                Files.move(tmpFile, cacheDir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.delete(tmpFile);
+            }
+            synchronized (sidecars) {
+                Sidecar sidecar = new Sidecar(file, useful ? compressedSize : 0, useful);
+                sidecars.put(name, sidecar);
+                addSource(file, name);
+                size += sidecar.getSize();
+                evict();
+            }
+        } catch (IOException e) {
+            LOG.warn("compress: failed {} {}", file, e.getMessage());
+            try {
+                Files.deleteIfExists(tmpFile);
+            } catch (IOException ex) {
+                LOG.warn("compress: unable to delete {}", tmpFile);
+            }
+        } finally {
+            synchronized (sidecars) {
+                pending.remove(name);
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Sidecar>> iterator = sidecars.entrySet().iterator();
+        while ((size > maxSize || sidecars.size() > MAX_ENTRIES) && iterator.hasNext()) {
+            Map.Entry<String, Sidecar> eldest = iterator.next();
+            iterator.remove();
+            removeSource(eldest.getValue().getSource(), eldest.getKey());
+            delete(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    /**
+     * Delete sidecars of the file or of all files below the directory.
+     * @param path absolute normalized path.
+     */
+    private void invalidate(Path path) {
+        //paths below the directory are ordered between the directory and the directory followed by '0',
+        //the character after '/', other paths in the range are filtered out
+        Iterator<Map.Entry<Path, Set<String>>> iterator = sources.subMap(path, true, Paths.get(path + "0"), false)
+                .entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Set<String>> entry = iterator.next();
+            if (!entry.getKey().startsWith(path)) {
+                continue;
+            }
+            iterator.remove();
+            for (String name : entry.getValue()) {
+                Sidecar sidecar = sidecars.remove(name);
+                if (sidecar != null) {
+                    delete(name, sidecar);
+                }
+            }
+        }
+    }
+
+    private void addSource(Path source, String name) {
+        sources.computeIfAbsent(source, s -> new HashSet<>()).add(name);
+    }
+
+    private void removeSource(Path source, String name) {
+        if (source == null) {
+            return;
+        }
+        Set<String> names = sources.get(source);
+        if (names != null && names.remove(name) && names.isEmpty()) {
+            sources.remove(source);
+        }
+    }
+
+    private void delete(String name, Sidecar sidecar) {
+        size -= sidecar.getSize();
+        if (sidecar.isUseful()) {
+            try {
+                Files.deleteIfExists(cacheDir.resolve(name));
+            } catch (IOException e) {
+                LOG.warn("unable to delete sidecar {}", name);
+            }
+        }
+    }
+
+    /**
+     * Sidecars from previous runs are reused, their source files are unknown until requested again. Changes of
+     * files which have not been requested since the start do not delete their sidecars, the sidecars never match
+     * changed files and they are evicted eventually.
+     */
+    private void loadSidecars() throws IOException {
+        Files.createDirectories(cacheDir);
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(cacheDir)) {
+            list.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(f -> f.toFile().lastModified()));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(SUFFIX)) {
+                Sidecar sidecar = new Sidecar(null, Files.size(file), true);
+                sidecars.put(name, sidecar);
+                size += sidecar.getSize();
+            } else if (name.endsWith(TMP_SUFFIX)) {
+                Files.delete(file);
+            }
+        }
+        evict();
+        LOG.info("CompressedVariants: loaded {} sidecars, {} bytes", sidecars.size(), size);
+    }
+
+    private static String getName(Path file, FileMetadata metadata) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(file.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(metadata.getETag().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(), 0, 20) + SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path getCacheDir(FileServerConfig fileServerConfig) {
+        String cacheDir = fileServerConfig.getDownloadCompressionCacheDir();
+        Path path = (cacheDir == null) ? Paths.get(System.getProperty("java.io.tmpdir"), "file-server-compressed")
+                : Paths.get(cacheDir).toAbsolutePath().normalize();
+        if (path.startsWith(Paths.get(fileServerConfig.getHome()).toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("Compression cache directory must be outside of file storage " + path);
+        }
+        return path;
+    }
+
+    private static class Sidecar {
+
+        private final Path source;
+        private final long size;
+        private final boolean useful;
+
+        private Sidecar(Path source, long size, boolean useful) {
+            this.source = source;
+            this.size = size;
+            this.useful = useful;
+        }
+
+        public Path getSource() {
+            return source;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isUseful() {
+            return useful;
+        }
+
+    }
+
+}
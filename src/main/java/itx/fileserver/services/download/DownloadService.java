@@ -0,0 +1,27 @@
+package itx.fileserver.services.download;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+
+/**
+ * Writes file content into http response.
+ */
+public interface DownloadService {
+
+    /**
+     * Write file represented by resource into http response. Single and multiple byte ranges are supported,
+     * partial content is served with status 206, unsatisfiable ranges with status 416.
+     * Range header is evaluated only for GET requests and only if If-Range precondition (when present) holds.
+     * Response carries strong ETag and Last-Modified validators, conditional requests (If-None-Match,
+     * If-Modified-Since, If-Unmodified-Since) are answered with status 304 or 412 without body.
+     * @param resource resource obtained by {@link itx.fileserver.services.FileService#loadFileAsResource}.
+     * @param request http request.
+     * @param response http response.
+     * @throws IOException
+     */
+    void download(Resource resource, HttpServletRequest request, HttpServletResponse response) throws IOException;
+
+}
@@ -0,0 +1,308 @@
+package itx.fileserver.services.download;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.services.BufferPool;
+import itx.fileserver.services.ByteBufferStreams;
+import itx.fileserver.services.upload.ContentDigests;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+@Service
+public class DownloadServiceImpl implements DownloadService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DownloadServiceImpl.class);
+
+    /* request attributes used by Tomcat to serve response body using sendfile */
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_FILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private final BufferPool bufferPool;
+    private final FileMetadataCache fileMetadataCache;
+    private final FileContentCache fileContentCache;
+    private final MappedFileRegions mappedFileRegions;
+    private final CompressedVariants compressedVariants;
+    private final boolean zeroCopy;
+    private final long sendfileMinSize;
+
+    @Autowired
+    public DownloadServiceImpl(FileServerConfig fileServerConfig, BufferPool bufferPool,
+                               FileMetadataCache fileMetadataCache, FileContentCache fileContentCache,
+                               MappedFileRegions mappedFileRegions, CompressedVariants compressedVariants) {
+        LOG.info("DownloadService: zeroCopy={} sendfileMinSize={}", fileServerConfig.isDownloadZeroCopy(),
+                fileServerConfig.getDownloadSendfileMinSize());
+        this.bufferPool = bufferPool;
+        this.fileMetadataCache = fileMetadataCache;
+        this.fileContentCache = fileContentCache;
+        this.mappedFileRegions = mappedFileRegions;
+        this.compressedVariants = compressedVariants;
+        this.zeroCopy = fileServerConfig.isDownloadZeroCopy();
+        this.sendfileMinSize = fileServerConfig.getDownloadSendfileMinSize();
+    }
+
+    @Override
+    public void download(Resource resource, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = resource.getFile().toPath();
+        FileMetadata metadata = fileMetadataCache.get(file);
+        long length = metadata.getSize();
+        String contentType = metadata.getContentType();
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (compressedVariants.isCompressible(contentType, length)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (request.getHeader(HttpHeaders.RANGE) == null
+                    && CompressedVariants.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))
+                    && downloadCompressed(file, metadata, resource, request, response)) {
+                return;
+            }
+        }
+        if (new ServletWebRequest(request, response).checkNotModified(metadata.getETag(), metadata.getLastModified())) {
+            //304 Not Modified or 412 Precondition Failed, status and validators are set
+            return;
+        }
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"");
+        if (metadata.getReprDigest() != null) {
+            //digests of the whole file, valid also for partial responses
+            response.setHeader(ContentDigests.REPR_DIGEST, metadata.getReprDigest());
+        }
+
+        List<ByteRange> ranges;
+        try {
+            ranges = resolveRanges(request, metadata);
+        } catch (RangeNotSatisfiableException e) {
+            LOG.info("download: range not satisfiable {} {}", request.getHeader(HttpHeaders.RANGE), length);
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        ByteBuffer content = fileContentCache.get(file, metadata);
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            writeRange(file, metadata, content, new ByteRange(0, length - 1), request, response);
+        } else if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(length));
+            response.setContentLengthLong(range.getLength());
+            writeRange(file, metadata, content, range, request, response);
+        } else {
+            String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+            byte[][] partHeaders = new byte[ranges.size()][];
+            long contentLength = 0;
+            for (int i = 0; i < ranges.size(); i++) {
+                ByteRange range = ranges.get(i);
+                partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                        + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                        + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(length) + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII);
+                contentLength += partHeaders[i].length + range.getLength();
+            }
+            byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+            contentLength += closeDelimiter.length;
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setContentType("multipart/byteranges; boundary=" + boundary);
+            response.setContentLengthLong(contentLength);
+            if (content != null) {
+                writeMultipart(content, ranges, partHeaders, closeDelimiter, response.getOutputStream());
+            } else {
+                writeMultipart(file, metadata, ranges, partHeaders, closeDelimiter, response.getOutputStream());
+            }
+        }
+    }
+
+    /**
+     * Serve gzip compressed variant of the file, ranges are served from uncompressed file only.
+     * @return false if compressed variant is not available.
+     */
+    private boolean downloadCompressed(Path file, FileMetadata metadata, Resource resource,
+                                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path sidecar = compressedVariants.get(file, metadata);
+        if (sidecar == null) {
+            return false;
+        }
+        FileChannel channel;
+        try {
+            //sidecar may be evicted meanwhile, open channel keeps it readable
+            channel = FileChannel.open(sidecar, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        try (channel) {
+            String eTag = CompressedVariants.toGzipETag(metadata.getETag());
+            if (new ServletWebRequest(request, response).checkNotModified(eTag, metadata.getLastModified())) {
+                return true;
+            }
+            long length = channel.size();
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"");
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(metadata.getContentType());
+            response.setContentLengthLong(length);
+            copyRange(channel, new ByteRange(0, length - 1), response.getOutputStream());
+        }
+        return true;
+    }
+
+    /**
+     * Resolve byte ranges requested by the client.
+     * @return requested ranges or empty list if full content shall be served.
+     */
+    private List<ByteRange> resolveRanges(HttpServletRequest request,
+                                          FileMetadata metadata) throws RangeNotSatisfiableException {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !HttpMethod.GET.matches(request.getMethod())) {
+            return Collections.emptyList();
+        }
+        if (!isIfRangeSatisfied(request, metadata)) {
+            return Collections.emptyList();
+        }
+        return ByteRanges.parse(rangeHeader, metadata.getSize());
+    }
+
+    /**
+     * If-Range holds only if it contains current strong entity tag of the file
+     * or date equal to last modification time of the file.
+     */
+    private boolean isIfRangeSatisfied(HttpServletRequest request, FileMetadata metadata) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(metadata.getETag());
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date / 1000 == metadata.getLastModified() / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write single range of the file into response body. Cached body is written from memory, otherwise
+     * when container supports it, body is sent by the container directly from the file using sendfile,
+     * no data is copied through the JVM. Large files are served from memory mapping when sendfile is not available.
+     */
+    private void writeRange(Path file, FileMetadata metadata, ByteBuffer content, ByteRange range,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (content != null) {
+            ByteBufferStreams.write(slice(content, range), response.getOutputStream());
+            return;
+        }
+        if (isSendfileSupported(request, range)) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_FILE_START_ATTR, range.getStart());
+            request.setAttribute(SENDFILE_FILE_END_ATTR, range.getEnd() + 1);
+            return;
+        }
+        MappedRegion region = mappedFileRegions.acquire(file, metadata);
+        if (region != null) {
+            try {
+                region.write(range, response.getOutputStream());
+            } finally {
+                region.release();
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            copyRange(channel, range, response.getOutputStream());
+        }
+    }
+
+    private boolean isSendfileSupported(HttpServletRequest request, ByteRange range) {
+        return zeroCopy && range.getLength() >= sendfileMinSize
+                && HttpMethod.GET.matches(request.getMethod())
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR));
+    }
+
+    private void writeMultipart(Path file, FileMetadata metadata, List<ByteRange> ranges, byte[][] partHeaders,
+                                byte[] closeDelimiter, OutputStream outputStream) throws IOException {
+        MappedRegion region = mappedFileRegions.acquire(file, metadata);
+        if (region != null) {
+            try {
+                for (int i = 0; i < ranges.size(); i++) {
+                    outputStream.write(partHeaders[i]);
+                    region.write(ranges.get(i), outputStream);
+                }
+                outputStream.write(closeDelimiter);
+            } finally {
+                region.release();
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                outputStream.write(partHeaders[i]);
+                copyRange(channel, ranges.get(i), outputStream);
+            }
+            outputStream.write(closeDelimiter);
+        }
+    }
+
+    private void writeMultipart(ByteBuffer content, List<ByteRange> ranges, byte[][] partHeaders,
+                                byte[] closeDelimiter, OutputStream outputStream) throws IOException {
+        for (int i = 0; i < ranges.size(); i++) {
+            outputStream.write(partHeaders[i]);
+            ByteBufferStreams.write(slice(content, ranges.get(i)), outputStream);
+        }
+        outputStream.write(closeDelimiter);
+    }
+
+    private static ByteBuffer slice(ByteBuffer content, ByteRange range) {
+        return content.duplicate().limit((int) range.getEnd() + 1).position((int) range.getStart());
+    }
+
+    /**
+     * Copy range of the file using pooled direct buffer, positional reads fill direct buffer without
+     * intermediate heap copy and container streams consume direct buffer via write(ByteBuffer).
+     */
+    private void copyRange(FileChannel channel, ByteRange range, OutputStream outputStream) throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            long position = range.getStart();
+            long remaining = range.getLength();
+            while (remaining > 0) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file at position " + position);
+                }
+                buffer.flip();
+                ByteBufferStreams.write(buffer, outputStream);
+                position += read;
+                remaining -= read;
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package itx.fileserver.services.download;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.CacheStats;
+import itx.fileserver.services.FileChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory cache of small file bodies. Eviction is frequency-aware (Caffeine W-TinyLFU), cache is bounded by
+ * total number of cached bytes and bodies are held in direct buffers outside of java heap.
+ * Cached body is served only if ETag of cached entry is equal to ETag of current {@link FileMetadata},
+ * entries are also dropped when file is changed by file server itself, see {@link FileChangeEvent}.
+ */
+@Component
+public class FileContentCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileContentCache.class);
+
+    private final FileMetadataCache fileMetadataCache;
+    private final boolean enabled;
+    private final long maxSize;
+    private final long maxFileSize;
+    private final Cache<Path, CachedContent> cache;
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+
+    @Autowired
+    public FileContentCache(FileServerConfig fileServerConfig, FileMetadataCache fileMetadataCache) {
+        this(fileMetadataCache, fileServerConfig.isDownloadCacheEnabled(), fileServerConfig.getDownloadCacheMaxSize(),
+                fileServerConfig.getDownloadCacheMaxFileSize());
+    }
+
+    public FileContentCache(FileMetadataCache fileMetadataCache, boolean enabled, long maxSize, long maxFileSize) {
+        LOG.info("FileContentCache: enabled={} maxSize={} maxFileSize={}", enabled, maxSize, maxFileSize);
+        this.fileMetadataCache = fileMetadataCache;
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.maxFileSize = Math.min(maxFileSize, Integer.MAX_VALUE);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((Path file, CachedContent content) -> content.getContent().capacity())
+                .recordStats()
+                .build();
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+    }
+
+    /**
+     * Get cached body of the file, body is loaded into the cache on miss.
+     * @param file absolute path to regular file.
+     * @param metadata current metadata of the file.
+     * @return read-only buffer with whole body of the file or null if the file is not cacheable.
+     * @throws IOException
+     */
+    public ByteBuffer get(Path file, FileMetadata metadata) throws IOException {
+        if (!enabled || metadata.getSize() > maxFileSize) {
+            return null;
+        }
+        CachedContent cached = cache.getIfPresent(file);
+        if (isCurrent(cached, metadata)) {
+            hitCount.increment();
+            return cached.getContent().duplicate();
+        }
+        //concurrent misses wait for one load, so there is one buffer per file version
+        try {
+            cached = cache.asMap().compute(file, (key, current) -> {
+                if (isCurrent(current, metadata)) {
+                    hitCount.increment();
+                    return current;
+                }
+                missCount.increment();
+                try {
+                    ByteBuffer content = load(file, metadata);
+                    return (content == null) ? null : new CachedContent(metadata, content);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return (cached == null) ? null : cached.getContent().duplicate();
+    }
+
+    public CacheStats getStats() {
+        cache.cleanUp();
+        return new CacheStats(hitCount.sum(), missCount.sum(), cache.stats().evictionCount(),
+                cache.estimatedSize(), cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L),
+                maxSize);
+    }
+
+    @EventListener
+    public void onFileChange(FileChangeEvent event) {
+        cache.asMap().keySet().removeIf(event::affects);
+    }
+
+    private static boolean isCurrent(CachedContent cached, FileMetadata metadata) {
+        return cached != null && cached.getMetadata().getETag().equals(metadata.getETag());
+    }
+
+    /**
+     * Read whole file into direct buffer. File is read only if it was not changed since metadata was taken.
+     * @return read-only buffer or null if file has been changed meanwhile.
+     */
+    private ByteBuffer load(Path file, FileMetadata metadata) throws IOException {
+        ByteBuffer content = ByteBuffer.allocateDirect((int) metadata.getSize());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (content.hasRemaining()) {
+                if (channel.read(content, content.position()) < 0) {
+                    return null;
+                }
+            }
+        }
+        if (!fileMetadataCache.get(file).getETag().equals(metadata.getETag())) {
+            LOG.info("file changed while loading into cache {}", file);
+            return null;
+        }
+        return content.flip().asReadOnlyBuffer();
+    }
+
+    private static class CachedContent {
+
+        private final FileMetadata metadata;
+        private final ByteBuffer content;
+
+        private CachedContent(FileMetadata metadata, ByteBuffer content) {
+            this.metadata = metadata;
+            this.content = content;
+        }
+
+        public FileMetadata getMetadata() {
+            return metadata;
+        }
+
+        public ByteBuffer getContent() {
+            return content;
+        }
+
+    }
+
+}
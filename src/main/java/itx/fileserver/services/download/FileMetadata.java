@@ -0,0 +1,59 @@
+package itx.fileserver.services.download;
+
+/**
+ * Metadata and validators of a file served by downloads.
+ */
+public class FileMetadata {
+
+    private final Object fileKey;
+    private final long size;
+    private final long lastModifiedNanos;
+    private final String eTag;
+    private final String contentType;
+    private final String reprDigest;
+
+    public FileMetadata(Object fileKey, long size, long lastModifiedNanos, String eTag, String contentType,
+                        String reprDigest) {
+        this.fileKey = fileKey;
+        this.size = size;
+        this.lastModifiedNanos = lastModifiedNanos;
+        this.eTag = eTag;
+        this.contentType = contentType;
+        this.reprDigest = reprDigest;
+    }
+
+    public Object getFileKey() {
+        return fileKey;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModifiedNanos() {
+        return lastModifiedNanos;
+    }
+
+    public long getLastModified() {
+        return lastModifiedNanos / 1_000_000;
+    }
+
+    /**
+     * @return strong entity tag including quotes.
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return digests of file content stored at upload as Repr-Digest header value, null if not known.
+     */
+    public String getReprDigest() {
+        return reprDigest;
+    }
+
+}
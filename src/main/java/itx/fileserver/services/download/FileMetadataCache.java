@@ -0,0 +1,86 @@
+package itx.fileserver.services.download;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.ChecksumAlgorithm;
+import itx.fileserver.services.upload.ContentDigests;
+import itx.fileserver.services.upload.StoredDigests;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU cache of {@link FileMetadata}. Every lookup reads file attributes once and cached entry is reused
+ * only if file identity, size and modification time did not change, so validators are never stale.
+ * Strong ETag is derived from SHA-256 digest of file content stored at upload, or from file identity, size
+ * and modification time with nanosecond precision. File content is never hashed here.
+ */
+@Component
+public class FileMetadataCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileMetadataCache.class);
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private final Map<Path, FileMetadata> cache;
+
+    @Autowired
+    public FileMetadataCache(FileServerConfig fileServerConfig) {
+        this(fileServerConfig.getDownloadMetadataCacheSize());
+    }
+
+    public FileMetadataCache(int maxEntries) {
+        LOG.info("FileMetadataCache: maxEntries={}", maxEntries);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, FileMetadata> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Get metadata of the file.
+     * @param file absolute path to regular file.
+     * @return current metadata of the file.
+     * @throws IOException
+     */
+    public FileMetadata get(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        Instant lastModified = attributes.lastModifiedTime().toInstant();
+        long lastModifiedNanos = lastModified.getEpochSecond() * 1_000_000_000L + lastModified.getNano();
+        FileMetadata metadata = cache.get(file);
+        if (metadata != null && metadata.getSize() == attributes.size()
+                && metadata.getLastModifiedNanos() == lastModifiedNanos
+                && Objects.equals(metadata.getFileKey(), attributes.fileKey())) {
+            return metadata;
+        }
+        Map<ChecksumAlgorithm, byte[]> digests = StoredDigests.read(file, attributes);
+        byte[] sha256 = digests.get(ChecksumAlgorithm.SHA_256);
+        String eTag;
+        if (sha256 != null) {
+            eTag = "\"" + HexFormat.of().formatHex(sha256, 0, 16) + "\"";
+        } else {
+            eTag = "\"" + Long.toHexString(lastModifiedNanos) + "-" + Long.toHexString(attributes.size())
+                    + "-" + Integer.toHexString(Objects.hashCode(attributes.fileKey())) + "\"";
+        }
+        String contentType = StringUtils.defaultString(Files.probeContentType(file), DEFAULT_CONTENT_TYPE);
+        metadata = new FileMetadata(attributes.fileKey(), attributes.size(), lastModifiedNanos, eTag, contentType,
+                digests.isEmpty() ? null : ContentDigests.format(digests));
+        cache.put(file, metadata);
+        return metadata;
+    }
+
+}
@@ -0,0 +1,130 @@
+package itx.fileserver.services.download;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.services.FileChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Memory mappings of large files. Mapped regions are kept in LRU order and reused by subsequent downloads,
+ * so range requests become slices of existing mapping without read system calls.
+ * Number of live mappings is capped, region which is outdated, evicted or affected by {@link FileChangeEvent}
+ * is retired and unmapped once the last download using it finishes.
+ */
+@Component
+public class MappedFileRegions {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedFileRegions.class);
+
+    /* single MappedByteBuffer is limited to 2GB, large files are mapped in chunks */
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    private final boolean enabled;
+    private final long minSize;
+    private final int maxRegions;
+    private final long chunkSize;
+    private final Map<Path, MappedRegion> regions;
+    private final AtomicInteger liveRegions;
+
+    @Autowired
+    public MappedFileRegions(FileServerConfig fileServerConfig) {
+        this(fileServerConfig.isDownloadMmapEnabled(), fileServerConfig.getDownloadMmapMinSize(),
+                fileServerConfig.getDownloadMmapMaxRegions(), CHUNK_SIZE);
+    }
+
+    public MappedFileRegions(boolean enabled, long minSize, int maxRegions, long chunkSize) {
+        LOG.info("MappedFileRegions: enabled={} minSize={} maxRegions={}", enabled, minSize, maxRegions);
+        this.enabled = enabled;
+        this.minSize = minSize;
+        this.maxRegions = maxRegions;
+        this.chunkSize = chunkSize;
+        this.regions = new LinkedHashMap<>(16, 0.75f, true);
+        this.liveRegions = new AtomicInteger();
+    }
+
+    /**
+     * Acquire mapped region of the file, caller must release returned region.
+     * @param file absolute path to regular file.
+     * @param metadata current metadata of the file.
+     * @return mapped region or null if the file shall not be mapped or cap of mapped regions has been reached.
+     */
+    MappedRegion acquire(Path file, FileMetadata metadata) {
+        if (!enabled || metadata.getSize() < minSize || metadata.getSize() == 0) {
+            return null;
+        }
+        synchronized (regions) {
+            MappedRegion region = regions.get(file);
+            if (region != null) {
+                if (region.getETag().equals(metadata.getETag()) && region.retain()) {
+                    return region;
+                }
+                regions.remove(file);
+                region.release();
+            }
+            Iterator<MappedRegion> eldest = regions.values().iterator();
+            while (liveRegions.get() >= maxRegions && eldest.hasNext()) {
+                MappedRegion evicted = eldest.next();
+                eldest.remove();
+                evicted.release();
+            }
+            if (liveRegions.get() >= maxRegions) {
+                LOG.info("acquire: all {} mapped regions are in use", maxRegions);
+                return null;
+            }
+            try {
+                region = map(file, metadata);
+            } catch (IOException e) {
+                LOG.warn("acquire: unable to map {} {}", file, e.getMessage());
+                return null;
+            }
+            region.retain();
+            regions.put(file, region);
+            return region;
+        }
+    }
+
+    public int getLiveRegions() {
+        return liveRegions.get();
+    }
+
+    @EventListener
+    public void onFileChange(FileChangeEvent event) {
+        synchronized (regions) {
+            Iterator<Map.Entry<Path, MappedRegion>> iterator = regions.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, MappedRegion> entry = iterator.next();
+                if (event.affects(entry.getKey())) {
+                    iterator.remove();
+                    entry.getValue().release();
+                }
+            }
+        }
+    }
+
+    private MappedRegion map(Path file, FileMetadata metadata) throws IOException {
+        long size = metadata.getSize();
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + chunkSize - 1) / chunkSize)];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < chunks.length; i++) {
+                long position = i * chunkSize;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position));
+            }
+        }
+        liveRegions.incrementAndGet();
+        return new MappedRegion(metadata.getETag(), chunkSize, chunks, liveRegions::decrementAndGet);
+    }
+
+}
@@ -0,0 +1,80 @@
+package itx.fileserver.services.download;
+
+import itx.fileserver.services.ByteBufferStreams;
+import itx.fileserver.services.DirectBuffers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Whole file mapped into memory as sequence of read-only chunks. Region is reference counted,
+ * mapping is released only after last reference has been released, so readers never access unmapped memory.
+ */
+class MappedRegion {
+
+    private final String eTag;
+    private final long chunkSize;
+    private final MappedByteBuffer[] chunks;
+    private final AtomicInteger references;
+    private final Runnable onUnmap;
+
+    MappedRegion(String eTag, long chunkSize, MappedByteBuffer[] chunks, Runnable onUnmap) {
+        this.eTag = eTag;
+        this.chunkSize = chunkSize;
+        this.chunks = chunks;
+        this.references = new AtomicInteger(1);
+        this.onUnmap = onUnmap;
+    }
+
+    String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Acquire reference to this region.
+     * @return false if region has already been unmapped.
+     */
+    boolean retain() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Release reference to this region, mapping is released together with last reference.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            for (MappedByteBuffer chunk : chunks) {
+                DirectBuffers.free(chunk);
+            }
+            onUnmap.run();
+        }
+    }
+
+    /**
+     * Write range of mapped file into output stream. Caller must hold reference to this region.
+     */
+    void write(ByteRange range, OutputStream outputStream) throws IOException {
+        long position = range.getStart();
+        long end = range.getEnd() + 1;
+        while (position < end) {
+            int chunkIndex = (int) (position / chunkSize);
+            long chunkStart = chunkIndex * chunkSize;
+            ByteBuffer slice = chunks[chunkIndex].duplicate();
+            slice.limit((int) (Math.min(end, chunkStart + slice.capacity()) - chunkStart));
+            slice.position((int) (position - chunkStart));
+            position += slice.remaining();
+            ByteBufferStreams.write(slice, outputStream);
+        }
+    }
+
+}
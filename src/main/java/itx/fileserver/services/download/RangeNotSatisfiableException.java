@@ -0,0 +1,4 @@
+package itx.fileserver.services.download;
+
+public class RangeNotSatisfiableException extends Exception {
+}
@@ -0,0 +1,438 @@
+package itx.fileserver.services.journal;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.services.FileChangeEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journal of changes made in file storage by the file server, see {@link FileChangeEvent}. Every change gets
+ * next sequence number, clients remember the sequence of the last change they have seen as opaque token and
+ * read changes after it. Changes are appended to a journal file and kept in memory. Changes older than retention
+ * or beyond max. number of entries are dropped, clients with token older than the oldest kept change must resync.
+ * Journal file is compacted on start and periodically. Appends are not synced, journal file is synced and marked
+ * as closed on shutdown. Journal loaded without the mark gets new epoch and all tokens become invalid, sequences
+ * of lost changes would be issued again otherwise. Without journal file the journal is kept in memory only,
+ * all tokens become invalid on restart then.
+ */
+@Component
+public class ChangeJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeJournal.class);
+
+    private static final String JOURNAL_FILE = "change-journal.log";
+
+    private final boolean enabled;
+    private final Path journal;
+    private final long retention;
+    private final int maxEntries;
+    private final ObjectMapper objectMapper;
+    private final ArrayDeque<Change> changes;
+    private List<CompletableFuture<Void>> waiters;
+    private String epoch;
+    private long firstSequence;
+    private long lastSequence;
+    private FileChannel journalChannel;
+    private BufferedWriter journalWriter;
+
+    @Autowired
+    public ChangeJournal(FileServerConfig fileServerConfig) throws IOException {
+        this(fileServerConfig.isJournalEnabled(), (fileServerConfig.getDataBasedir() == null) ? null
+                : Paths.get(fileServerConfig.getDataBasedir(), JOURNAL_FILE).toAbsolutePath().normalize(),
+                fileServerConfig.getJournalRetention(), fileServerConfig.getJournalMaxEntries());
+    }
+
+    /**
+     * @param enabled false to disable the journal, no changes are recorded then.
+     * @param journal journal file or null to keep the journal in memory only.
+     * @param retention seconds for which changes are kept.
+     * @param maxEntries max. number of changes kept.
+     */
+    public ChangeJournal(boolean enabled, Path journal, long retention, int maxEntries) throws IOException {
+        LOG.info("ChangeJournal: enabled={} journal={} retention={} maxEntries={}", enabled, journal, retention,
+                maxEntries);
+        this.enabled = enabled;
+        this.journal = journal;
+        this.retention = retention * 1000;
+        this.maxEntries = maxEntries;
+        this.objectMapper = new ObjectMapper();
+        this.changes = new ArrayDeque<>();
+        this.waiters = new ArrayList<>();
+        this.epoch = UUID.randomUUID().toString();
+        this.firstSequence = 1;
+        this.lastSequence = 0;
+        if (enabled && journal != null) {
+            load();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener
+    public void onFileChange(FileChangeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        List<CompletableFuture<Void>> completed;
+        synchronized (this) {
+            Change change = new Change(lastSequence + 1, System.currentTimeMillis(), event.getType().name(),
+                    event.getPath().toString(),
+                    (event.getDestinationPath() == null) ? null : event.getDestinationPath().toString(),
+                    event.isDirectory());
+            lastSequence = change.getSequence();
+            changes.addLast(change);
+            if (changes.size() > maxEntries) {
+                drop();
+            }
+            append(change);
+            completed = waiters;
+            waiters = new ArrayList<>();
+        }
+        completed.forEach(waiter -> waiter.complete(null));
+    }
+
+    /**
+     * @return token of the last recorded change.
+     */
+    public synchronized String getToken() {
+        return createToken(lastSequence);
+    }
+
+    /**
+     * @return token of the change.
+     */
+    public synchronized String createToken(long sequence) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((epoch + ":" + sequence).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return sequence of the change or -1 if the token was issued by previous journal, which has been lost.
+     * @throws IllegalArgumentException if token is malformed.
+     */
+    public synchronized long parseToken(String token) {
+        String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int index = value.indexOf(':');
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid token");
+        }
+        long sequence = Long.parseLong(value.substring(index + 1));
+        if (sequence < 0) {
+            throw new IllegalArgumentException("Invalid token sequence " + sequence);
+        }
+        return epoch.equals(value.substring(0, index)) ? sequence : -1;
+    }
+
+    /**
+     * Read changes recorded after given change. Only changes newer than the sequence are visited, so reading
+     * is cheap for clients which are up to date.
+     * @param sequence sequence of the last change seen by the client.
+     * @return changes ordered by sequence, null if some of them have been dropped or the sequence is unknown.
+     */
+    public synchronized List<Change> read(long sequence) {
+        if (sequence < firstSequence - 1 || sequence > lastSequence) {
+            return null;
+        }
+        List<Change> result = new ArrayList<>((int) (lastSequence - sequence));
+        Iterator<Change> iterator = changes.descendingIterator();
+        while (iterator.hasNext()) {
+            Change change = iterator.next();
+            if (change.getSequence() <= sequence) {
+                break;
+            }
+            result.add(change);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * @return future completed when a change after given sequence is recorded, waiting is stopped by cancelling it.
+     */
+    public synchronized CompletableFuture<Void> awaitAfter(long sequence) {
+        if (lastSequence > sequence) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        waiter.whenComplete((result, e) -> removeWaiter(waiter));
+        return waiter;
+    }
+
+    public synchronized int size() {
+        return changes.size();
+    }
+
+    /**
+     * Drop changes older than retention and rewrite journal file with the kept changes only.
+     */
+    @Scheduled(fixedDelayString = "${fileserver.journal.compact-interval:600}", timeUnit = TimeUnit.SECONDS)
+    public synchronized void compact() {
+        if (!enabled) {
+            return;
+        }
+        long oldest = System.currentTimeMillis() - retention;
+        while (!changes.isEmpty() && (changes.size() > maxEntries || changes.peekFirst().getTimestamp() < oldest)) {
+            drop();
+        }
+        if (journal == null) {
+            return;
+        }
+        closeWriter();
+        try {
+            Path tmpFile = journal.resolveSibling(JOURNAL_FILE + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+                writer.write(objectMapper.writeValueAsString(new Header(epoch, firstSequence)));
+                writer.newLine();
+                for (Change change : changes) {
+                    writer.write(objectMapper.writeValueAsString(change));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmpFile, journal, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            journalChannel = FileChannel.open(journal, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            journalWriter = new BufferedWriter(Channels.newWriter(journalChannel, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOG.error("compact: journal write failed, journal is kept in memory only {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Sync the journal file and mark it as closed, so the epoch is kept on next start. Journal file is not marked
+     * if some append has failed.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (journalWriter != null) {
+            try {
+                journalWriter.flush();
+                journalChannel.force(false);
+                journalWriter.write(objectMapper.writeValueAsString(new Closed(lastSequence)));
+                journalWriter.newLine();
+                journalWriter.flush();
+                journalChannel.force(false);
+            } catch (IOException e) {
+                LOG.warn("close: {}", e.getMessage());
+            }
+        }
+        closeWriter();
+    }
+
+    private void closeWriter() {
+        if (journalWriter != null) {
+            try {
+                journalWriter.close();
+            } catch (IOException e) {
+                LOG.warn("close: {}", e.getMessage());
+            }
+            journalWriter = null;
+            journalChannel = null;
+        }
+    }
+
+    private synchronized void removeWaiter(CompletableFuture<Void> waiter) {
+        waiters.remove(waiter);
+    }
+
+    private void drop() {
+        firstSequence = changes.removeFirst().getSequence() + 1;
+    }
+
+    private void append(Change change) {
+        if (journalWriter == null) {
+            return;
+        }
+        try {
+            journalWriter.write(objectMapper.writeValueAsString(change));
+            journalWriter.newLine();
+            journalWriter.flush();
+        } catch (IOException e) {
+            LOG.error("append: journal write failed, journal is kept in memory only {}", e.getMessage());
+            closeWriter();
+        }
+    }
+
+    /**
+     * Replay the journal and compact it. Epoch is kept only if the journal has been closed, changes may have been
+     * lost otherwise.
+     */
+    private void load() throws IOException {
+        Files.createDirectories(journal.getParent());
+        boolean closed = true;
+        if (Files.isRegularFile(journal)) {
+            closed = false;
+            try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                if (line != null) {
+                    Header header = objectMapper.readValue(line, Header.class);
+                    epoch = header.getEpoch();
+                    firstSequence = header.getFirstSequence();
+                    lastSequence = firstSequence - 1;
+                }
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        JsonNode node = objectMapper.readTree(line);
+                        if (node.has("closed")) {
+                            closed = objectMapper.treeToValue(node, Closed.class).getClosed() == lastSequence;
+                            continue;
+                        }
+                        Change change = objectMapper.treeToValue(node, Change.class);
+                        changes.addLast(change);
+                        lastSequence = change.getSequence();
+                        closed = false;
+                    } catch (IOException e) {
+                        //last line may be incomplete after crash
+                        LOG.warn("load: skipping invalid record {}", e.getMessage());
+                        closed = false;
+                    }
+                }
+            }
+        }
+        if (!closed) {
+            LOG.warn("load: journal has not been closed, tokens of previous epoch {} are not valid", epoch);
+            epoch = UUID.randomUUID().toString();
+        }
+        compact();
+        LOG.info("ChangeJournal: loaded {} changes, last sequence {}", changes.size(), lastSequence);
+    }
+
+    /**
+     * Change recorded in the journal, paths are relative to file storage home.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Change {
+
+        private final long sequence;
+        private final long timestamp;
+        private final String type;
+        private final String path;
+        private final String destination;
+        private final boolean directory;
+
+        @JsonCreator
+        public Change(@JsonProperty("sequence") long sequence,
+                      @JsonProperty("timestamp") long timestamp,
+                      @JsonProperty("type") String type,
+                      @JsonProperty("path") String path,
+                      @JsonProperty("destination") String destination,
+                      @JsonProperty("directory") boolean directory) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.type = type;
+            this.path = path;
+            this.destination = destination;
+            this.directory = directory;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return time of the change in milliseconds.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return name of {@link FileChangeEvent.Type}.
+         */
+        public String getType() {
+            return type;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return destination path of moved file or directory, null for other changes.
+         */
+        public String getDestination() {
+            return destination;
+        }
+
+        /**
+         * @return true if changed path is a directory.
+         */
+        public boolean isDirectory() {
+            return directory;
+        }
+
+    }
+
+    /**
+     * Mark of closed journal file, all changes up to the sequence have been synced.
+     */
+    private static class Closed {
+
+        private final long closed;
+
+        @JsonCreator
+        private Closed(@JsonProperty("closed") long closed) {
+            this.closed = closed;
+        }
+
+        public long getClosed() {
+            return closed;
+        }
+
+    }
+
+    private static class Header {
+
+        private final String epoch;
+        private final long firstSequence;
+
+        @JsonCreator
+        private Header(@JsonProperty("epoch") String epoch,
+                       @JsonProperty("firstSequence") long firstSequence) {
+            this.epoch = epoch;
+            this.firstSequence = firstSequence;
+        }
+
+        public String getEpoch() {
+            return epoch;
+        }
+
+        public long getFirstSequence() {
+            return firstSequence;
+        }
+
+    }
+
+}
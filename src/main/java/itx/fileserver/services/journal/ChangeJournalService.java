@@ -0,0 +1,39 @@
+package itx.fileserver.services.journal;
+
+import itx.fileserver.dto.ChangeList;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.OperationNotAllowedException;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service reading changes made in directory tree since a token, see {@link ChangeJournal}.
+ */
+public interface ChangeJournalService {
+
+    /**
+     * Get changes of paths below the directory made since the token. Changes of paths which are not readable
+     * by the user are not returned, directories are returned when some path below them may be readable. Moves
+     * with only one side readable or in the directory are returned as delete of the source or creation
+     * of the destination. Changes of parent directories, which affect the whole directory, are returned too.
+     * @param userData users's data reading the changes.
+     * @param filePath relative path to directory, empty path for the whole file storage.
+     * @param token token returned with previous changes or null to get current token without any changes.
+     * @param limit max. number of returned changes, values out of range are replaced by configured max. results.
+     * @return changes since the token, null if the journal is disabled.
+     * @throws OperationNotAllowedException if no path below the directory is readable by the user.
+     * @throws IllegalArgumentException if token is malformed.
+     */
+    ChangeList getChanges(UserData userData, Path filePath, String token, int limit)
+            throws OperationNotAllowedException;
+
+    /**
+     * Same as {@link #getChanges(UserData, Path, String, int)}, but when there are no changes since the token,
+     * returned future is completed when the first change is made or when wait time elapses, with no changes then.
+     * @param wait seconds to wait for changes, values out of range are replaced by configured max. wait.
+     */
+    CompletableFuture<ChangeList> waitForChanges(UserData userData, Path filePath, String token, int limit, int wait)
+            throws OperationNotAllowedException;
+
+}
@@ -0,0 +1,200 @@
+package itx.fileserver.services.journal;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.AuditConstants;
+import itx.fileserver.dto.AuditRecord;
+import itx.fileserver.dto.ChangeEntry;
+import itx.fileserver.dto.ChangeList;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.AccessRules;
+import itx.fileserver.services.FileAccessService;
+import itx.fileserver.services.FileChangeEvent;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.SubtreeVerdict;
+import itx.fileserver.services.data.AuditService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+public class ChangeJournalServiceImpl implements ChangeJournalService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeJournalServiceImpl.class);
+
+    private final FileAccessService fileAccessService;
+    private final AuditService auditService;
+    private final ChangeJournal changeJournal;
+    private final int maxResults;
+    private final int maxWait;
+
+    @Autowired
+    public ChangeJournalServiceImpl(FileServerConfig fileServerConfig, FileAccessService fileAccessService,
+                                    AuditService auditService, ChangeJournal changeJournal) {
+        this.fileAccessService = fileAccessService;
+        this.auditService = auditService;
+        this.changeJournal = changeJournal;
+        this.maxResults = fileServerConfig.getJournalMaxResults();
+        this.maxWait = fileServerConfig.getJournalMaxWait();
+    }
+
+    @Override
+    public ChangeList getChanges(UserData userData, Path filePath, String token, int limit)
+            throws OperationNotAllowedException {
+        LOG.info("getChanges: {} {}", filePath, limit);
+        filePath = checkAccess(userData, filePath);
+        if (!changeJournal.isEnabled()) {
+            return null;
+        }
+        ChangeList changes = readChanges(userData, filePath, token, limit);
+        createGetChangesAuditRecord(userData, filePath);
+        return changes;
+    }
+
+    @Override
+    public CompletableFuture<ChangeList> waitForChanges(UserData userData, Path filePath, String token, int limit,
+                                                        int wait) throws OperationNotAllowedException {
+        LOG.info("waitForChanges: {} {} {}", filePath, limit, wait);
+        Path checkedPath = checkAccess(userData, filePath);
+        if (!changeJournal.isEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ChangeList changes = readChanges(userData, checkedPath, token, limit);
+        createGetChangesAuditRecord(userData, checkedPath);
+        if (!isEmpty(changes)) {
+            return CompletableFuture.completedFuture(changes);
+        }
+        //latest token is returned on timeout, so changes not visible to the user are not read again
+        AtomicReference<ChangeList> latest = new AtomicReference<>(changes);
+        CompletableFuture<ChangeList> result = new CompletableFuture<>();
+        awaitChanges(userData, checkedPath, limit, latest, result);
+        int timeout = (wait <= 0 || wait > maxWait) ? maxWait : wait;
+        return result.completeOnTimeout(null, timeout, TimeUnit.SECONDS)
+                .thenApply(found -> (found != null) ? found : latest.get());
+    }
+
+    /**
+     * Wait for next change after the latest token and read changes again, until some are visible to the user.
+     */
+    private void awaitChanges(UserData userData, Path filePath, int limit, AtomicReference<ChangeList> latest,
+                              CompletableFuture<ChangeList> result) {
+        CompletableFuture<Void> appended = changeJournal.awaitAfter(changeJournal.parseToken(latest.get().getToken()));
+        result.whenComplete((found, e) -> appended.cancel(false));
+        appended.thenRunAsync(() -> {
+            try {
+                ChangeList changes = readChanges(userData, checkAccess(userData, filePath), latest.get().getToken(),
+                        limit);
+                latest.set(changes);
+                if (isEmpty(changes)) {
+                    awaitChanges(userData, filePath, limit, latest, result);
+                } else {
+                    result.complete(changes);
+                }
+            } catch (OperationNotAllowedException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private ChangeList readChanges(UserData userData, Path filePath, String token, int limit) {
+        if (token == null || token.isEmpty()) {
+            return new ChangeList(List.of(), changeJournal.getToken(), false, false);
+        }
+        long sequence = changeJournal.parseToken(token);
+        List<ChangeJournal.Change> recorded = (sequence < 0) ? null : changeJournal.read(sequence);
+        if (recorded == null) {
+            return new ChangeList(List.of(), changeJournal.getToken(), false, true);
+        }
+        int resultLimit = (limit <= 0 || limit > maxResults) ? maxResults : limit;
+        AccessRules accessRules = fileAccessService.getAccessRules(userData.getRoles());
+        String scope = filePath.toString();
+        List<ChangeEntry> changes = new ArrayList<>();
+        boolean more = false;
+        for (ChangeJournal.Change change : recorded) {
+            if (changes.size() == resultLimit) {
+                more = true;
+                break;
+            }
+            sequence = change.getSequence();
+            ChangeEntry entry = getVisibleChange(change, scope, accessRules);
+            if (entry != null) {
+                changes.add(entry);
+            }
+        }
+        return new ChangeList(changes, changeJournal.createToken(sequence), more, false);
+    }
+
+    private static ChangeEntry getVisibleChange(ChangeJournal.Change change, String scope, AccessRules accessRules) {
+        boolean source = isVisible(change.getPath(), change.isDirectory(), scope, accessRules);
+        if (!FileChangeEvent.Type.MOVED.name().equals(change.getType())) {
+            return source ? new ChangeEntry(change.getType(), change.getPath(), null, change.getTimestamp()) : null;
+        }
+        boolean destination = isVisible(change.getDestination(), change.isDirectory(), scope, accessRules);
+        if (source && destination) {
+            return new ChangeEntry(change.getType(), change.getPath(), change.getDestination(), change.getTimestamp());
+        } else if (source) {
+            return new ChangeEntry(FileChangeEvent.Type.DELETED.name(), change.getPath(), null, change.getTimestamp());
+        } else if (destination) {
+            return new ChangeEntry(FileChangeEvent.Type.CREATED.name(), change.getDestination(), null,
+                    change.getTimestamp());
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the path is in the scope directory or above it and the path is readable, or it is directory
+     * and some path below it is readable.
+     */
+    private static boolean isVisible(String path, boolean directory, String scope, AccessRules accessRules) {
+        boolean inScope = scope.isEmpty() || path.equals(scope) || path.startsWith(scope + "/")
+                || scope.startsWith(path + "/");
+        if (!inScope) {
+            return false;
+        }
+        Path changedPath = Paths.get(path);
+        return accessRules.canRead(changedPath) || (directory && isReadableBelow(changedPath, accessRules));
+    }
+
+    /**
+     * @return false if no path below the directory is readable.
+     */
+    private static boolean isReadableBelow(Path directory, AccessRules accessRules) {
+        return accessRules.getSubtreeVerdict(directory) != SubtreeVerdict.DENIED;
+    }
+
+    private static boolean isEmpty(ChangeList changes) {
+        return changes.getChanges().isEmpty() && !changes.isMore() && !changes.isResyncRequired();
+    }
+
+    /**
+     * @return normalized path to directory.
+     */
+    private Path checkAccess(UserData userData, Path filePath) throws OperationNotAllowedException {
+        Path normalized = filePath.normalize();
+        if (normalized.startsWith("..")) {
+            throw new OperationNotAllowedException();
+        }
+        AccessRules accessRules = fileAccessService.getAccessRules(userData.getRoles());
+        if (!accessRules.canRead(normalized) && !isReadableBelow(normalized, accessRules)) {
+            throw new OperationNotAllowedException();
+        }
+        return normalized;
+    }
+
+    private void createGetChangesAuditRecord(UserData userData, Path filePath) {
+        AuditRecord auditRecord = new AuditRecord(Instant.now().getEpochSecond(),
+                AuditConstants.CategoryFileAccess.NAME, AuditConstants.CategoryFileAccess.GET_CHANGES,
+                userData.getId(), filePath.toString(), "OK", "");
+        auditService.storeAudit(auditRecord);
+    }
+
+}
@@ -0,0 +1,221 @@
+package itx.fileserver.services.listing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.services.FileChangeEvent;
+import itx.fileserver.services.upload.FileCommitter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bounded cache of raw directory listings, entries are read by single attributes call each. Access filters are
+ * not applied here, cached listings are shared by all users. Cached directories are watched by {@link WatchService}
+ * and dropped when anything in them changes, they are also dropped when changed by file server itself,
+ * see {@link FileChangeEvent}. Listings expire after configured time, for file systems where changes made
+ * by other processes are not reported.
+ */
+@Component
+public class DirectoryListingCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryListingCache.class);
+
+    private final boolean enabled;
+    private final Cache<Path, CachedListing> cache;
+    private final WatchService watchService;
+
+    @Autowired
+    public DirectoryListingCache(FileServerConfig fileServerConfig) throws IOException {
+        this(fileServerConfig.isListingCacheEnabled(), fileServerConfig.getListingCacheMaxEntries(),
+                fileServerConfig.getListingCacheTtl());
+    }
+
+    public DirectoryListingCache(boolean enabled, long maxEntries, long ttlSeconds) throws IOException {
+        LOG.info("DirectoryListingCache: enabled={} maxEntries={} ttl={}", enabled, maxEntries, ttlSeconds);
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxEntries)
+                .weigher((Path directory, CachedListing listing) -> listing.getEntries().size() + 1)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .removalListener(this::onRemoval)
+                .build();
+        if (enabled) {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            Thread watcher = new Thread(this::watch, "listing-cache-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } else {
+            this.watchService = null;
+        }
+    }
+
+    /**
+     * Get entries of the directory, temporary files of running uploads are not listed.
+     * @param directory absolute normalized path to directory.
+     * @return unmodifiable list of directory entries.
+     * @throws IOException
+     */
+    public List<ListingEntry> getListing(Path directory) throws IOException {
+        if (!enabled) {
+            return readListing(directory);
+        }
+        try {
+            return cache.get(directory, this::load).getEntries();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    @EventListener
+    public void onFileChange(FileChangeEvent event) {
+        invalidate(event.getResolvedPath().getParent());
+        if (event.getResolvedDestinationPath() != null) {
+            invalidate(event.getResolvedDestinationPath().getParent());
+        }
+        cache.asMap().keySet().removeIf(event::affects);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void invalidate(Path directory) {
+        if (directory != null) {
+            cache.invalidate(directory);
+        }
+    }
+
+    /**
+     * Directory is registered before it is read, so changes made while it is read are reported too.
+     */
+    private CachedListing load(Path directory) {
+        WatchKey watchKey = null;
+        try {
+            watchKey = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            //listing is still cached, it expires after ttl
+            LOG.warn("DirectoryListingCache: can't watch {} {}", directory, e.getMessage());
+        }
+        try {
+            return new CachedListing(readListing(directory), watchKey);
+        } catch (IOException e) {
+            if (watchKey != null) {
+                watchKey.cancel();
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<ListingEntry> readListing(Path directory) throws IOException {
+        List<ListingEntry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+            for (Path entry : directoryStream) {
+                String name = entry.getFileName().toString();
+                if (FileCommitter.isTempFile(name)) {
+                    continue;
+                }
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    //deleted while listed
+                    continue;
+                }
+                if (attributes.isDirectory() || attributes.isRegularFile()) {
+                    entries.add(new ListingEntry(name, attributes.isDirectory(),
+                            attributes.isRegularFile() ? attributes.size() : 0,
+                            attributes.lastModifiedTime().toMillis()));
+                } else {
+                    LOG.debug("getListing skipped: {} is not regular file nor directory", entry);
+                }
+            }
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Any change in watched directory drops its listing, listing is registered again when it is loaded.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey watchKey = watchService.take();
+                watchKey.pollEvents();
+                //key is returned again if the directory is registered before it is cancelled
+                watchKey.reset();
+                invalidate((Path) watchKey.watchable());
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOG.debug("DirectoryListingCache: watch service closed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Directory is not watched when its listing is not cached. Same key is returned when directory is registered
+     * again, it is cancelled only if the listing has not been loaded again meanwhile.
+     */
+    private void onRemoval(Path directory, CachedListing listing, RemovalCause cause) {
+        if (cause == RemovalCause.REPLACED || listing == null || listing.getWatchKey() == null) {
+            return;
+        }
+        cache.asMap().compute(directory, (key, current) -> {
+            if (current == null) {
+                listing.getWatchKey().cancel();
+            }
+            return current;
+        });
+    }
+
+    private static class CachedListing {
+
+        private final List<ListingEntry> entries;
+        private final WatchKey watchKey;
+
+        private CachedListing(List<ListingEntry> entries, WatchKey watchKey) {
+            this.entries = entries;
+            this.watchKey = watchKey;
+        }
+
+        public List<ListingEntry> getEntries() {
+            return entries;
+        }
+
+        public WatchKey getWatchKey() {
+            return watchKey;
+        }
+
+    }
+
+}
@@ -0,0 +1,613 @@
+package itx.fileserver.services.listing;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.DirectoryUsage;
+import itx.fileserver.services.upload.FileCommitter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index of disk usage of directories. Each directory has usage of files and subdirectories directly in it
+ * and usage of its whole subtree, which is updated on the path to the root on every change, so usage of any
+ * directory is known without walking its tree. Index is updated by the file server as files are written, deleted
+ * and moved. Changes made by other processes are picked up by background reconciler, which walks the tree
+ * at limited rate. Index is saved into snapshot file after every reconciliation and on shutdown, the snapshot
+ * is used on start instead of walking the tree again. Without snapshot file the index is built on start.
+ */
+@Component
+public class DirectoryUsageIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryUsageIndex.class);
+
+    private static final String SNAPSHOT_FILE = "usage-index.jsonl";
+    private static final String ROOT = "";
+
+    private final boolean enabled;
+    private final Path home;
+    private final Path snapshot;
+    private final long reconcileInterval;
+    private final int reconcileRate;
+    private final ObjectMapper objectMapper;
+    private final TreeMap<String, Usage> entries;
+    private final Thread reconciler;
+    private long modCount;
+    private volatile long nextReconcile;
+
+    @Autowired
+    public DirectoryUsageIndex(FileServerConfig fileServerConfig) throws IOException {
+        this(fileServerConfig.isUsageEnabled(), Paths.get(fileServerConfig.getHome()).toAbsolutePath().normalize(),
+                (fileServerConfig.getDataBasedir() == null) ? null
+                        : Paths.get(fileServerConfig.getDataBasedir(), SNAPSHOT_FILE).toAbsolutePath().normalize(),
+                fileServerConfig.getUsageReconcileInterval(), fileServerConfig.getUsageReconcileRate());
+    }
+
+    /**
+     * @param enabled false to disable the index, no usage is known then.
+     * @param home absolute normalized path to file storage.
+     * @param snapshot snapshot file or null to keep the index in memory only.
+     * @param reconcileInterval seconds between reconciliations, 0 disables background reconciler.
+     * @param reconcileRate max. number of directories read per second by reconciler, 0 for unlimited.
+     */
+    public DirectoryUsageIndex(boolean enabled, Path home, Path snapshot, long reconcileInterval,
+                               int reconcileRate) throws IOException {
+        LOG.info("DirectoryUsageIndex: enabled={} snapshot={} reconcileInterval={} reconcileRate={}", enabled,
+                snapshot, reconcileInterval, reconcileRate);
+        this.enabled = enabled;
+        this.home = home;
+        this.snapshot = snapshot;
+        this.reconcileInterval = reconcileInterval * 1000;
+        this.reconcileRate = reconcileRate;
+        this.objectMapper = new ObjectMapper();
+        this.entries = new TreeMap<>();
+        this.entries.put(ROOT, new Usage());
+        if (enabled && snapshot != null) {
+            load();
+        }
+        if (enabled && reconcileInterval > 0) {
+            this.reconciler = new Thread(this::runReconciler, "usage-index-reconciler");
+            this.reconciler.setDaemon(true);
+            this.reconciler.start();
+        } else {
+            this.reconciler = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get usage of directory and its whole subtree.
+     * @param directoryPath relative normalized path to directory.
+     * @return usage of the directory or null if the directory is not indexed.
+     */
+    public synchronized DirectoryUsage getUsage(Path directoryPath) {
+        if (!enabled) {
+            return null;
+        }
+        String key = directoryPath.toString();
+        Usage usage = entries.get(key);
+        if (usage == null) {
+            return null;
+        }
+        return new DirectoryUsage(key, usage.totalSize, usage.totalFiles, usage.totalDirectories);
+    }
+
+    /**
+     * Record file written into its place, missing parent directories are added to the index.
+     * @param filePath relative normalized path to file.
+     * @param previousSize size of replaced file or -1 if the file is new.
+     * @param size size of the file.
+     */
+    public synchronized void fileWritten(Path filePath, long previousSize, long size) {
+        if (!enabled) {
+            return;
+        }
+        String key = getParentKey(filePath.toString());
+        Usage usage = ensure(key, true);
+        if (previousSize < 0) {
+            update(usage, key, size, 1, 0);
+        } else {
+            update(usage, key, size - previousSize, 0, 0);
+        }
+    }
+
+    /**
+     * @param filePath relative normalized path to deleted file.
+     * @param size size of deleted file.
+     */
+    public synchronized void fileDeleted(Path filePath, long size) {
+        if (!enabled) {
+            return;
+        }
+        String key = getParentKey(filePath.toString());
+        Usage usage = entries.get(key);
+        if (usage != null) {
+            update(usage, key, -size, -1, 0);
+        }
+    }
+
+    /**
+     * @param sourcePath relative normalized path to source file.
+     * @param destinationPath relative normalized path to destination file, it did not exist before.
+     * @param size size of moved file.
+     */
+    public synchronized void fileMoved(Path sourcePath, Path destinationPath, long size) {
+        fileDeleted(sourcePath, size);
+        fileWritten(destinationPath, -1, size);
+    }
+
+    /**
+     * Record directory created with all missing parent directories.
+     * @param directoryPath relative normalized path to directory.
+     */
+    public synchronized void directoryCreated(Path directoryPath) {
+        if (!enabled) {
+            return;
+        }
+        ensure(directoryPath.toString(), true);
+    }
+
+    /**
+     * @param directoryPath relative normalized path to deleted directory, its whole subtree is removed.
+     */
+    public synchronized void directoryDeleted(Path directoryPath) {
+        if (!enabled) {
+            return;
+        }
+        String key = directoryPath.toString();
+        if (key.equals(ROOT)) {
+            entries.clear();
+            entries.put(ROOT, new Usage());
+            return;
+        }
+        Usage usage = removeSubtree(key).get(key);
+        if (usage != null) {
+            addToAncestors(key, -usage.totalSize, -usage.totalFiles, -usage.totalDirectories);
+        }
+        String parentKey = getParentKey(key);
+        Usage parent = entries.get(parentKey);
+        if (parent != null) {
+            update(parent, parentKey, 0, 0, -1);
+        }
+    }
+
+    /**
+     * Move directory with its whole subtree, usage is moved from ancestors of the source to ancestors
+     * of the destination.
+     * @param sourcePath relative normalized path to source directory.
+     * @param destinationPath relative normalized path to destination directory, it did not exist before.
+     */
+    public synchronized void directoryMoved(Path sourcePath, Path destinationPath) {
+        if (!enabled) {
+            return;
+        }
+        String sourceKey = sourcePath.toString();
+        String destinationKey = destinationPath.toString();
+        Map<String, Usage> moved = removeSubtree(sourceKey);
+        Usage usage = moved.get(sourceKey);
+        if (usage == null) {
+            //not indexed yet, content is picked up by reconciler
+            directoryDeleted(sourcePath);
+            directoryCreated(destinationPath);
+            return;
+        }
+        addToAncestors(sourceKey, -usage.totalSize, -usage.totalFiles, -usage.totalDirectories);
+        String sourceParentKey = getParentKey(sourceKey);
+        Usage sourceParent = entries.get(sourceParentKey);
+        if (sourceParent != null) {
+            update(sourceParent, sourceParentKey, 0, 0, -1);
+        }
+        String parentKey = getParentKey(destinationKey);
+        Usage parent = ensure(parentKey, true);
+        moved.forEach((key, u) -> {
+            u.version = ++modCount;
+            entries.put(destinationKey + key.substring(sourceKey.length()), u);
+        });
+        update(parent, parentKey, 0, 0, 1);
+        addToAncestors(destinationKey, usage.totalSize, usage.totalFiles, usage.totalDirectories);
+    }
+
+    /**
+     * @return number of indexed directories.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Walk the whole tree and correct usage of directories changed by other processes. Directories are read
+     * one by one without blocking the index, usage of directory changed by the file server while it is read
+     * is left for next reconciliation. Index is saved into snapshot file when done.
+     * @return false if the index is disabled.
+     * @throws InterruptedException if interrupted, the index is partially reconciled then.
+     */
+    public boolean reconcile() throws InterruptedException {
+        if (!enabled) {
+            return false;
+        }
+        long started = System.currentTimeMillis();
+        long startVersion;
+        synchronized (this) {
+            startVersion = modCount;
+        }
+        Set<String> visited = new HashSet<>();
+        Deque<Path> directories = new ArrayDeque<>();
+        directories.push(home);
+        long scanned = 0;
+        while (!directories.isEmpty()) {
+            Path directory = directories.pop();
+            String key = home.relativize(directory).toString();
+            long version = getVersion(key);
+            long[] directUsage;
+            try {
+                directUsage = readDirectUsage(directory, directories);
+            } catch (IOException e) {
+                LOG.warn("reconcile: can't read {} {}", directory, e.getMessage());
+                keepSubtree(key, visited);
+                continue;
+            }
+            visited.add(key);
+            update(key, version, directUsage);
+            scanned++;
+            throttle(started, scanned);
+        }
+        removeStale(visited, startVersion);
+        LOG.info("reconcile: {} directories in {}ms", scanned, System.currentTimeMillis() - started);
+        save();
+        return true;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (reconciler != null) {
+            reconciler.interrupt();
+            try {
+                reconciler.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (enabled) {
+            save();
+        }
+    }
+
+    /**
+     * Get entry of the directory, entries of missing directories on the path are added.
+     * @param created true if missing directories are new and are counted in their parents.
+     */
+    private Usage ensure(String key, boolean created) {
+        Usage usage = entries.get(key);
+        if (usage == null) {
+            usage = new Usage();
+            String parentKey = getParentKey(key);
+            Usage parent = (parentKey == null) ? null : ensure(parentKey, created);
+            usage.version = ++modCount;
+            entries.put(key, usage);
+            if (created && parent != null) {
+                update(parent, parentKey, 0, 0, 1);
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * Change direct usage of directory, the change is added to usage of its subtree and subtrees of all ancestors.
+     */
+    private void update(Usage usage, String key, long size, long files, long directories) {
+        if (size == 0 && files == 0 && directories == 0) {
+            return;
+        }
+        usage.size += size;
+        usage.files += files;
+        usage.directories += directories;
+        usage.totalSize += size;
+        usage.totalFiles += files;
+        usage.totalDirectories += directories;
+        usage.version = ++modCount;
+        addToAncestors(key, size, files, directories);
+    }
+
+    /**
+     * Ancestors are marked as modified too, so they are not removed by reconciliation running meanwhile.
+     */
+    private void addToAncestors(String key, long size, long files, long directories) {
+        for (String parentKey = getParentKey(key); parentKey != null; parentKey = getParentKey(parentKey)) {
+            Usage parent = entries.get(parentKey);
+            if (parent != null) {
+                parent.totalSize += size;
+                parent.totalFiles += files;
+                parent.totalDirectories += directories;
+                parent.version = modCount;
+            }
+        }
+    }
+
+    /**
+     * Remove entry of the directory and entries of all directories below it.
+     * @return removed entries.
+     */
+    private Map<String, Usage> removeSubtree(String key) {
+        Map<String, Usage> removed = new TreeMap<>();
+        Usage usage = entries.remove(key);
+        if (usage != null) {
+            removed.put(key, usage);
+        }
+        //children sort between "key/" and "key0", '0' is the character after '/'
+        NavigableMap<String, Usage> children = entries.subMap(key + "/", true, key + "0", false);
+        removed.putAll(children);
+        children.clear();
+        return removed;
+    }
+
+    private synchronized long getVersion(String key) {
+        Usage usage = entries.get(key);
+        return (usage == null) ? -1 : usage.version;
+    }
+
+    private synchronized void update(String key, long version, long[] directUsage) {
+        Usage usage = entries.get(key);
+        if (((usage == null) ? -1 : usage.version) != version) {
+            LOG.debug("reconcile: {} changed while read", key);
+            return;
+        }
+        if (usage == null) {
+            usage = ensure(key, false);
+        }
+        update(usage, key, directUsage[0] - usage.size, directUsage[1] - usage.files,
+                directUsage[2] - usage.directories);
+    }
+
+    /**
+     * Keep indexed subtree of directory which can't be read.
+     */
+    private synchronized void keepSubtree(String key, Set<String> visited) {
+        visited.add(key);
+        visited.addAll(entries.subMap(key + "/", true, key + "0", false).keySet());
+    }
+
+    /**
+     * Remove entries of directories which were not found and were not changed by the file server
+     * since reconciliation started. Subdirectories are removed before their parents.
+     */
+    private synchronized void removeStale(Set<String> visited, long startVersion) {
+        List<String> stale = new ArrayList<>();
+        entries.descendingMap().forEach((key, usage) -> {
+            if (usage.version <= startVersion && !visited.contains(key)) {
+                stale.add(key);
+            }
+        });
+        for (String key : stale) {
+            Usage usage = entries.remove(key);
+            addToAncestors(key, -usage.size, -usage.files, -usage.directories);
+        }
+        if (!stale.isEmpty()) {
+            LOG.info("reconcile: removed {} directories", stale.size());
+        }
+    }
+
+    /**
+     * Read direct usage of directory, symbolic links are not followed and temporary files of running uploads
+     * are not counted.
+     * @param subdirectories subdirectories found are added here.
+     * @return size, number of files and number of subdirectories.
+     */
+    private static long[] readDirectUsage(Path directory, Deque<Path> subdirectories) throws IOException {
+        long[] directUsage = new long[3];
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+            for (Path entry : directoryStream) {
+                if (FileCommitter.isTempFile(entry.getFileName().toString())) {
+                    continue;
+                }
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    directUsage[2]++;
+                    subdirectories.push(entry);
+                } else if (attributes.isRegularFile()) {
+                    directUsage[0] += attributes.size();
+                    directUsage[1]++;
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+        return directUsage;
+    }
+
+    private void throttle(long started, long scanned) throws InterruptedException {
+        if (reconcileRate > 0) {
+            long ahead = scanned * 1000 / reconcileRate - (System.currentTimeMillis() - started);
+            if (ahead > 0) {
+                Thread.sleep(ahead);
+            }
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private void runReconciler() {
+        try {
+            while (true) {
+                long delay = nextReconcile - System.currentTimeMillis();
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                    continue;
+                }
+                reconcile();
+                nextReconcile = System.currentTimeMillis() + reconcileInterval;
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("DirectoryUsageIndex: reconciler stopped");
+        } catch (RuntimeException e) {
+            LOG.error("DirectoryUsageIndex: reconciler failed", e);
+        }
+    }
+
+    /**
+     * Only direct usage is saved, usage of subtrees is computed when loaded.
+     */
+    private void save() {
+        if (snapshot == null) {
+            return;
+        }
+        List<Record> records = new ArrayList<>();
+        synchronized (this) {
+            entries.forEach((key, usage) -> records.add(new Record(key, usage.size, usage.files,
+                    usage.directories)));
+        }
+        Path tmpFile = snapshot.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+                for (Record record : records) {
+                    writer.write(objectMapper.writeValueAsString(record));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmpFile, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOG.error("save: snapshot write failed {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Load snapshot, next reconciliation is due one interval after the snapshot was saved.
+     */
+    private synchronized void load() throws IOException {
+        Files.createDirectories(snapshot.getParent());
+        if (!Files.isRegularFile(snapshot)) {
+            LOG.info("DirectoryUsageIndex: no snapshot, index is built by reconciler");
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(snapshot, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Record record;
+                try {
+                    record = objectMapper.readValue(line, Record.class);
+                } catch (IOException e) {
+                    //subtree is corrected by reconciler
+                    LOG.warn("load: skipping invalid record {}", e.getMessage());
+                    continue;
+                }
+                Usage usage = ensure(record.getPath(), false);
+                usage.size = record.getSize();
+                usage.files = record.getFiles();
+                usage.directories = record.getDirectories();
+            }
+        }
+        //subdirectories are ordered after their parents
+        for (Map.Entry<String, Usage> entry : entries.descendingMap().entrySet()) {
+            Usage usage = entry.getValue();
+            usage.totalSize += usage.size;
+            usage.totalFiles += usage.files;
+            usage.totalDirectories += usage.directories;
+            String parentKey = getParentKey(entry.getKey());
+            if (parentKey != null) {
+                Usage parent = entries.get(parentKey);
+                parent.totalSize += usage.totalSize;
+                parent.totalFiles += usage.totalFiles;
+                parent.totalDirectories += usage.totalDirectories;
+            }
+        }
+        modCount = 0;
+        entries.values().forEach(usage -> usage.version = 0);
+        nextReconcile = Files.getLastModifiedTime(snapshot).toMillis() + reconcileInterval;
+        LOG.info("DirectoryUsageIndex: loaded {} directories", entries.size());
+    }
+
+    /**
+     * @return key of parent directory or null for the root.
+     */
+    private static String getParentKey(String key) {
+        if (key.equals(ROOT)) {
+            return null;
+        }
+        int index = key.lastIndexOf('/');
+        return (index < 0) ? ROOT : key.substring(0, index);
+    }
+
+    private static class Usage {
+
+        private long size;
+        private long files;
+        private long directories;
+        private long totalSize;
+        private long totalFiles;
+        private long totalDirectories;
+        private long version;
+
+    }
+
+    private static class Record {
+
+        private final String path;
+        private final long size;
+        private final long files;
+        private final long directories;
+
+        @JsonCreator
+        private Record(@JsonProperty("path") String path,
+                       @JsonProperty("size") long size,
+                       @JsonProperty("files") long files,
+                       @JsonProperty("directories") long directories) {
+            this.path = path;
+            this.size = size;
+            this.files = files;
+            this.directories = directories;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getFiles() {
+            return files;
+        }
+
+        public long getDirectories() {
+            return directories;
+        }
+
+    }
+
+}
@@ -0,0 +1,36 @@
+package itx.fileserver.services.listing;
+
+/**
+ * Attributes of one directory entry, read by single attributes call.
+ */
+public class ListingEntry {
+
+    private final String name;
+    private final boolean directory;
+    private final long size;
+    private final long lastModified;
+
+    public ListingEntry(String name, boolean directory, long size, long lastModified) {
+        this.name = name;
+        this.directory = directory;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+}
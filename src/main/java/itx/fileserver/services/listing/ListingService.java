@@ -0,0 +1,53 @@
+package itx.fileserver.services.listing;
+
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.OperationNotAllowedException;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Service streaming pages of large directory listings.
+ */
+public interface ListingService {
+
+    /**
+     * Write one page of directory content into http response as JSON. Directory is read lazily and entries are
+     * written as they are read, memory used does not depend on the number of entries in the directory.
+     * Response contains "nextCursor" when there may be more entries, which is passed to get the next page.
+     * Size of directory entries is total size of their subtree from {@link DirectoryUsageIndex}, when known.
+     * @param userData users's data accessing this directory.
+     * @param filePath relative path to directory.
+     * @param cursor cursor returned with previous page or null for the first page.
+     * @param limit max. number of entries in the page, values out of range are replaced by configured max. page size.
+     * @param sorted true to list entries ordered by name, entries created or deleted between pages do not shift
+     *               the pages. Otherwise entries are listed in directory order, which is cheaper but pages may
+     *               repeat or miss entries when the directory changes.
+     * @param response http response.
+     * @throws FileNotFoundException if directory does not exist.
+     * @throws OperationNotAllowedException
+     * @throws IllegalArgumentException if cursor is not valid for requested order.
+     * @throws IOException
+     */
+    void list(UserData userData, Path filePath, String cursor, int limit, boolean sorted,
+              HttpServletResponse response) throws IOException, OperationNotAllowedException;
+
+    /**
+     * Write recursive listing of directory tree into http response as JSON lines, one entry per line with path
+     * relative to the directory. Subdirectories are read concurrently and entries are written as they are read,
+     * so entries of different directories are interleaved. Subtrees with no readable path are not read at all,
+     * symbolic links are not followed.
+     * @param userData users's data accessing this directory.
+     * @param filePath relative path to directory.
+     * @param depth max. depth of listed entries, 1 lists the directory only, 0 or less lists the whole tree.
+     * @param response http response.
+     * @throws FileNotFoundException if directory does not exist.
+     * @throws OperationNotAllowedException
+     * @throws IOException
+     */
+    void tree(UserData userData, Path filePath, int depth,
+              HttpServletResponse response) throws IOException, OperationNotAllowedException;
+
+}
@@ -0,0 +1,412 @@
+package itx.fileserver.services.listing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.AuditConstants;
+import itx.fileserver.dto.AuditRecord;
+import itx.fileserver.dto.DirectoryUsage;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.AccessRules;
+import itx.fileserver.services.FileAccessService;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.SubtreeVerdict;
+import itx.fileserver.services.data.AuditService;
+import itx.fileserver.services.upload.FileCommitter;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@Service
+public class ListingServiceImpl implements ListingService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ListingServiceImpl.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final char POSITION_CURSOR = 'p';
+    private static final char NAME_CURSOR = 'n';
+
+    private final Path fileStorageLocation;
+    private final FileAccessService fileAccessService;
+    private final AuditService auditService;
+    private final DirectoryUsageIndex usageIndex;
+    private final int maxPageSize;
+    private final int treeParallelism;
+    private final ExecutorService treeExecutor;
+
+    @Autowired
+    public ListingServiceImpl(FileServerConfig fileServerConfig, FileAccessService fileAccessService,
+                              AuditService auditService, DirectoryUsageIndex usageIndex) {
+        this.fileStorageLocation = Paths.get(fileServerConfig.getHome()).toAbsolutePath().normalize();
+        this.fileAccessService = fileAccessService;
+        this.auditService = auditService;
+        this.usageIndex = usageIndex;
+        this.maxPageSize = fileServerConfig.getListingMaxPageSize();
+        this.treeParallelism = fileServerConfig.getListingTreeParallelism();
+        this.treeExecutor = Executors.newFixedThreadPool(treeParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "listing-tree");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void list(UserData userData, Path filePath, String cursor, int limit, boolean sorted,
+                     HttpServletResponse response) throws IOException, OperationNotAllowedException {
+        LOG.info("list: {} {} {}", filePath, limit, sorted);
+        if (!fileAccessService.canRead(userData.getRoles(), filePath.resolve(""))) {
+            throw new OperationNotAllowedException();
+        }
+        Path resolvedFilePath = this.fileStorageLocation.resolve(filePath).normalize();
+        if (!Files.isDirectory(resolvedFilePath)) {
+            throw new FileNotFoundException("Directory not found " + filePath);
+        }
+        String cursorValue = decodeCursor(cursor, sorted ? NAME_CURSOR : POSITION_CURSOR);
+        long position = (cursorValue == null || sorted) ? 0 : parsePosition(cursorValue);
+        int pageSize = (limit <= 0 || limit > maxPageSize) ? maxPageSize : limit;
+        AccessRules accessRules = fileAccessService.getAccessRules(userData.getRoles());
+        //uniform access to the whole directory needs no per-entry checks
+        SubtreeVerdict verdict = accessRules.getSubtreeVerdict(filePath);
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(resolvedFilePath)) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            createListDirectoryAuditRecord(userData, filePath);
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(response.getOutputStream())) {
+                generator.writeStartObject();
+                generator.writeStringField("path", filePath.toString());
+                generator.writeArrayFieldStart("entries");
+                String nextCursor = sorted
+                        ? writeSortedPage(generator, directoryStream, accessRules, verdict, filePath, cursorValue,
+                                pageSize)
+                        : writePage(generator, directoryStream, accessRules, verdict, filePath, position, pageSize);
+                generator.writeEndArray();
+                if (nextCursor != null) {
+                    generator.writeStringField("nextCursor", nextCursor);
+                }
+                generator.writeEndObject();
+            }
+        }
+    }
+
+    @Override
+    public void tree(UserData userData, Path filePath, int depth,
+                     HttpServletResponse response) throws IOException, OperationNotAllowedException {
+        LOG.info("tree: {} {}", filePath, depth);
+        if (!fileAccessService.canRead(userData.getRoles(), filePath.resolve(""))) {
+            throw new OperationNotAllowedException();
+        }
+        Path resolvedFilePath = this.fileStorageLocation.resolve(filePath).normalize();
+        if (!Files.isDirectory(resolvedFilePath)) {
+            throw new FileNotFoundException("Directory not found " + filePath);
+        }
+        AccessRules accessRules = fileAccessService.getAccessRules(userData.getRoles());
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        createListTreeAuditRecord(userData, filePath);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            writeTree(generator, accessRules, filePath, new TreeDirectory(resolvedFilePath, Paths.get(""),
+                    SubtreeVerdict.MIXED, (depth <= 0) ? Integer.MAX_VALUE : depth));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        treeExecutor.shutdownNow();
+    }
+
+    /**
+     * Directories are read in parallel by shared executor, at most {@link #treeParallelism} directories of one
+     * request at a time. Only the request thread writes to the response, so a slow client blocks its own request
+     * and never the threads reading directories for other requests.
+     */
+    private void writeTree(JsonGenerator generator, AccessRules accessRules, Path filePath, TreeDirectory root)
+            throws IOException {
+        Deque<TreeDirectory> directories = new ArrayDeque<>();
+        Deque<Future<TreeDirectoryContent>> reads = new ArrayDeque<>();
+        directories.add(root);
+        try {
+            while (!directories.isEmpty() || !reads.isEmpty()) {
+                while (!directories.isEmpty() && reads.size() < treeParallelism) {
+                    TreeDirectory directory = directories.poll();
+                    reads.add(treeExecutor.submit(() -> readTreeDirectory(accessRules, filePath, directory)));
+                }
+                TreeDirectoryContent content = getContent(reads.poll());
+                writeTreeEntries(generator, content.entries);
+                directories.addAll(content.subdirectories);
+            }
+        } finally {
+            reads.forEach(read -> read.cancel(true));
+        }
+    }
+
+    private static TreeDirectoryContent getContent(Future<TreeDirectoryContent> read) throws IOException {
+        try {
+            return read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading tree");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Reads one directory of the tree, readable entries and subdirectories which may contain readable entries
+     * are collected for the request thread.
+     */
+    private static TreeDirectoryContent readTreeDirectory(AccessRules accessRules, Path filePath,
+                                                          TreeDirectory treeDirectory) {
+        TreeDirectoryContent content = new TreeDirectoryContent();
+        Path relative = treeDirectory.relative;
+        //uniform verdict of a directory holds for its subdirectories too
+        SubtreeVerdict directoryVerdict = (treeDirectory.verdict == SubtreeVerdict.MIXED)
+                ? accessRules.getSubtreeVerdict(filePath.resolve(relative)) : treeDirectory.verdict;
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(treeDirectory.directory)) {
+            for (Path entry : directoryStream) {
+                String name = entry.getFileName().toString();
+                if (FileCommitter.isTempFile(name)) {
+                    continue;
+                }
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (!attributes.isDirectory() && !attributes.isRegularFile()) {
+                    continue;
+                }
+                Path entryRelative = relative.resolve(name);
+                Path entryPath = filePath.resolve(entryRelative);
+                boolean readable = accessRules.canRead(entryPath, directoryVerdict);
+                if (readable) {
+                    content.entries.add(new ListingEntry(toEntryName(entryRelative), attributes.isDirectory(),
+                            attributes.size(), attributes.lastModifiedTime().toMillis()));
+                }
+                //nothing below denied directory is listed, names with line terminators included
+                if (attributes.isDirectory() && treeDirectory.depth > 1 && directoryVerdict != SubtreeVerdict.DENIED
+                        && (readable || accessRules.mayReadBelow(entryPath))) {
+                    content.subdirectories.add(new TreeDirectory(entry, entryRelative, directoryVerdict,
+                            treeDirectory.depth - 1));
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            LOG.warn("tree skipped: {} {}", treeDirectory.directory, e.getMessage());
+        }
+        return content;
+    }
+
+    private static void writeTreeEntries(JsonGenerator generator, List<ListingEntry> entries) throws IOException {
+        for (ListingEntry entry : entries) {
+            generator.writeStartObject();
+            generator.writeStringField("path", entry.getName());
+            generator.writeBooleanField("directory", entry.isDirectory());
+            if (!entry.isDirectory()) {
+                generator.writeNumberField("size", entry.getSize());
+            }
+            generator.writeNumberField("lastModified", entry.getLastModified());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+
+    private static String toEntryName(Path entryRelative) {
+        return entryRelative.toString().replace(entryRelative.getFileSystem().getSeparator(), "/");
+    }
+
+    /**
+     * Entries in directory order, cursor is the position of the first entry of next page in the directory stream.
+     */
+    private String writePage(JsonGenerator generator, DirectoryStream<Path> directoryStream, AccessRules accessRules,
+                             SubtreeVerdict verdict, Path filePath, long start, int pageSize) throws IOException {
+        long position = 0;
+        int count = 0;
+        Iterator<Path> iterator = directoryStream.iterator();
+        while (iterator.hasNext()) {
+            Path entry = iterator.next();
+            if (position++ < start) {
+                continue;
+            }
+            String name = entry.getFileName().toString();
+            if (!isListed(accessRules, verdict, filePath, name)) {
+                continue;
+            }
+            if (count == pageSize) {
+                return encodeCursor(POSITION_CURSOR, Long.toString(position - 1));
+            }
+            if (writeEntry(generator, entry, name)) {
+                count++;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Entries ordered by name, cursor is the name of the last entry of the page. Only the names of one page
+     * are kept in memory while the directory is read.
+     */
+    private String writeSortedPage(JsonGenerator generator, DirectoryStream<Path> directoryStream,
+                                   AccessRules accessRules, SubtreeVerdict verdict, Path filePath, String after,
+                                   int pageSize) throws IOException {
+        PriorityQueue<String> page = new PriorityQueue<>(pageSize + 1, Comparator.reverseOrder());
+        boolean more = false;
+        for (Path entry : directoryStream) {
+            String name = entry.getFileName().toString();
+            if (after != null && name.compareTo(after) <= 0) {
+                continue;
+            }
+            if (page.size() == pageSize && name.compareTo(page.peek()) > 0) {
+                //cheaper than access check, entry would not be in this page anyway
+                more = more || isListed(accessRules, verdict, filePath, name);
+                continue;
+            }
+            if (!isListed(accessRules, verdict, filePath, name)) {
+                continue;
+            }
+            page.add(name);
+            if (page.size() > pageSize) {
+                page.poll();
+                more = true;
+            }
+        }
+        String[] names = page.toArray(new String[0]);
+        Arrays.sort(names);
+        Path directory = this.fileStorageLocation.resolve(filePath).normalize();
+        for (String name : names) {
+            writeEntry(generator, directory.resolve(name), name);
+        }
+        return (more && names.length > 0) ? encodeCursor(NAME_CURSOR, names[names.length - 1]) : null;
+    }
+
+    private boolean isListed(AccessRules accessRules, SubtreeVerdict verdict, Path filePath, String name) {
+        //skip files of running uploads
+        return !FileCommitter.isTempFile(name) && accessRules.canRead(Paths.get(filePath.toString(), name), verdict);
+    }
+
+    private boolean writeEntry(JsonGenerator generator, Path entry, String name) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            //deleted while listed
+            return false;
+        }
+        if (!attributes.isDirectory() && !attributes.isRegularFile()) {
+            LOG.debug("list skipped: {} is not regular file nor directory", entry);
+            return false;
+        }
+        generator.writeStartObject();
+        generator.writeStringField("name", name);
+        generator.writeBooleanField("directory", attributes.isDirectory());
+        if (attributes.isRegularFile()) {
+            generator.writeNumberField("size", attributes.size());
+        } else {
+            //total size of the subtree, when known
+            DirectoryUsage usage = usageIndex.getUsage(fileStorageLocation.relativize(entry));
+            if (usage != null) {
+                generator.writeNumberField("size", usage.getSize());
+            }
+        }
+        generator.writeNumberField("lastModified", attributes.lastModifiedTime().toMillis());
+        generator.writeEndObject();
+        return true;
+    }
+
+    private static String encodeCursor(char type, String value) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((type + value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor, char expectedType) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (value.isEmpty() || value.charAt(0) != expectedType) {
+            throw new IllegalArgumentException("Cursor does not match listing order");
+        }
+        return value.substring(1);
+    }
+
+    private static long parsePosition(String value) {
+        long position = Long.parseLong(value);
+        if (position < 0) {
+            throw new IllegalArgumentException("Invalid cursor position " + position);
+        }
+        return position;
+    }
+
+    private void createListTreeAuditRecord(UserData userData, Path filePath) {
+        AuditRecord auditRecord = new AuditRecord(Instant.now().getEpochSecond(),
+                AuditConstants.CategoryFileAccess.NAME, AuditConstants.CategoryFileAccess.LIST_TREE,
+                userData.getId(), filePath.toString(), "OK", "");
+        auditService.storeAudit(auditRecord);
+    }
+
+    private void createListDirectoryAuditRecord(UserData userData, Path filePath) {
+        AuditRecord auditRecord = new AuditRecord(Instant.now().getEpochSecond(),
+                AuditConstants.CategoryFileAccess.NAME, AuditConstants.CategoryFileAccess.LIST_DIR,
+                userData.getId(), filePath.toString(), "OK", "");
+        auditService.storeAudit(auditRecord);
+    }
+
+    private static class TreeDirectory {
+
+        private final Path directory;
+        private final Path relative;
+        private final SubtreeVerdict verdict;
+        private final int depth;
+
+        /**
+         * @param verdict verdict of parent directory, MIXED if the verdict of this directory must be evaluated.
+         */
+        private TreeDirectory(Path directory, Path relative, SubtreeVerdict verdict, int depth) {
+            this.directory = directory;
+            this.relative = relative;
+            this.verdict = verdict;
+            this.depth = depth;
+        }
+
+    }
+
+    private static class TreeDirectoryContent {
+
+        private final List<ListingEntry> entries = new ArrayList<>();
+        private final List<TreeDirectory> subdirectories = new ArrayList<>();
+
+    }
+
+}
@@ -0,0 +1,340 @@
+package itx.fileserver.services.search;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.SearchType;
+import itx.fileserver.services.FileChangeEvent;
+import itx.fileserver.services.upload.FileCommitter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Index of all file and directory names in file storage, see {@link PathIndex}. Changes made by the file server
+ * are applied as they happen, see {@link FileChangeEvent}. Changes made by other processes are picked up when
+ * the index is rebuilt from the file system by background thread, which reads at limited rate. Whole file storage
+ * is not watched by {@link java.nio.file.WatchService}, it would need one watch per directory. Searches are
+ * not blocked by each other, they only wait for changes being applied.
+ */
+@Component
+public class FileNameIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileNameIndex.class);
+
+    private final boolean enabled;
+    private final Path home;
+    private final long rebuildInterval;
+    private final int rebuildRate;
+    private final ReadWriteLock lock;
+    private final Object rebuildLock;
+    private final Thread builder;
+    private PathIndex index;
+    private List<Consumer<PathIndex>> pending;
+
+    @Autowired
+    public FileNameIndex(FileServerConfig fileServerConfig) {
+        this(fileServerConfig.isSearchEnabled(), Paths.get(fileServerConfig.getHome()).toAbsolutePath().normalize(),
+                fileServerConfig.getSearchRebuildInterval(), fileServerConfig.getSearchRebuildRate());
+    }
+
+    /**
+     * @param enabled false to disable the index, nothing is found then.
+     * @param home absolute normalized path to file storage.
+     * @param rebuildInterval seconds between rebuilds, index is built on start. 0 disables background builds,
+     *                        only changes made by the file server are indexed then.
+     * @param rebuildRate max. number of directories read per second by rebuild, 0 for unlimited.
+     */
+    public FileNameIndex(boolean enabled, Path home, long rebuildInterval, int rebuildRate) {
+        LOG.info("FileNameIndex: enabled={} rebuildInterval={} rebuildRate={}", enabled, rebuildInterval,
+                rebuildRate);
+        this.enabled = enabled;
+        this.home = home;
+        this.rebuildInterval = rebuildInterval * 1000;
+        this.rebuildRate = rebuildRate;
+        this.lock = new ReentrantReadWriteLock();
+        this.rebuildLock = new Object();
+        this.index = new PathIndex();
+        if (enabled && rebuildInterval > 0) {
+            this.builder = new Thread(this::runBuilder, "file-name-index-builder");
+            this.builder.setDaemon(true);
+            this.builder.start();
+        } else {
+            this.builder = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Search the index, see {@link PathIndex#search(String, SearchType, String, PathIndex.SearchVisitor)}.
+     * @param scope relative normalized path to directory searched.
+     */
+    public void search(Path scope, SearchType type, String query, PathIndex.SearchVisitor visitor) {
+        if (!enabled) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            index.search(scope.toString(), type, query, visitor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of indexed paths.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return approximate number of bytes used by the index.
+     */
+    public long getMemoryUsage() {
+        lock.readLock().lock();
+        try {
+            return index.getMemoryUsage();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onFileChange(FileChangeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        String path = getKey(event.getResolvedPath());
+        if (path == null) {
+            return;
+        }
+        switch (event.getType()) {
+            case DELETED -> apply(index -> index.remove(path));
+            case MOVED -> {
+                String destination = getKey(event.getResolvedDestinationPath());
+                boolean directory = Files.isDirectory(event.getResolvedDestinationPath(), LinkOption.NOFOLLOW_LINKS);
+                apply(index -> index.move(path, destination, directory));
+            }
+            default -> {
+                //subtree of changed directory is not read, only paths written by the file server are indexed
+                List<IndexedPath> paths = new ArrayList<>();
+                readPath(event.getResolvedPath(), paths);
+                if (paths.isEmpty()) {
+                    apply(index -> index.remove(path));
+                    return;
+                }
+                if (paths.get(0).directory && event.getWrittenPaths() != null) {
+                    event.getWrittenPaths().forEach(writtenPath -> readPath(home.resolve(writtenPath), paths));
+                }
+                apply(index -> paths.forEach(p -> index.add(p.path, p.directory)));
+            }
+        }
+    }
+
+    /**
+     * Build new index from the file system and replace current index with it. Changes made by the file server
+     * meanwhile are applied to both indexes.
+     * @return false if the index is disabled.
+     * @throws InterruptedException if interrupted, current index is kept then.
+     */
+    public boolean rebuild() throws InterruptedException {
+        if (!enabled) {
+            return false;
+        }
+        synchronized (rebuildLock) {
+            long started = System.currentTimeMillis();
+            setPending(new ArrayList<>());
+            try {
+                PathIndex built = build();
+                lock.writeLock().lock();
+                try {
+                    pending.forEach(change -> change.accept(built));
+                    built.trim();
+                    index = built;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                LOG.info("rebuild: {} paths in {}ms, memory={}", built.size(), System.currentTimeMillis() - started,
+                        built.getMemoryUsage());
+            } finally {
+                setPending(null);
+            }
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (builder != null) {
+            builder.interrupt();
+            try {
+                builder.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void apply(Consumer<PathIndex> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(index);
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void setPending(List<Consumer<PathIndex>> pending) {
+        lock.writeLock().lock();
+        try {
+            this.pending = pending;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private PathIndex build() throws InterruptedException {
+        PathIndex built = new PathIndex();
+        Deque<Path> directories = new ArrayDeque<>();
+        Deque<Integer> nodes = new ArrayDeque<>();
+        directories.push(home);
+        nodes.push(PathIndex.ROOT);
+        long started = System.currentTimeMillis();
+        long scanned = 0;
+        while (!directories.isEmpty()) {
+            Path directory = directories.pop();
+            int node = nodes.pop();
+            try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+                for (Path entry : directoryStream) {
+                    String name = entry.getFileName().toString();
+                    BasicFileAttributes attributes = readAttributes(entry);
+                    if (attributes == null) {
+                        continue;
+                    }
+                    int child = built.addChild(node, name, attributes.isDirectory());
+                    if (attributes.isDirectory()) {
+                        directories.push(entry);
+                        nodes.push(child);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                LOG.warn("rebuild: can't read {} {}", directory, e.getMessage());
+            }
+            scanned++;
+            throttle(started, scanned);
+        }
+        return built;
+    }
+
+    /**
+     * Read file or directory without its content, nothing is added if the path does not exist.
+     */
+    private void readPath(Path resolvedPath, List<IndexedPath> paths) {
+        String path = getKey(resolvedPath);
+        if (path == null) {
+            return;
+        }
+        try {
+            BasicFileAttributes attributes = readAttributes(resolvedPath);
+            if (attributes != null) {
+                paths.add(new IndexedPath(path, attributes.isDirectory()));
+            }
+        } catch (IOException e) {
+            LOG.warn("onFileChange: can't read {} {}", resolvedPath, e.getMessage());
+        }
+    }
+
+    /**
+     * @return attributes of indexed file or directory, null for other entries and temporary files of running uploads.
+     */
+    private static BasicFileAttributes readAttributes(Path entry) throws IOException {
+        if (FileCommitter.isTempFile(entry.getFileName().toString())) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            return (attributes.isDirectory() || attributes.isRegularFile()) ? attributes : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void throttle(long started, long scanned) throws InterruptedException {
+        if (rebuildRate > 0) {
+            long ahead = scanned * 1000 / rebuildRate - (System.currentTimeMillis() - started);
+            if (ahead > 0) {
+                Thread.sleep(ahead);
+            }
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private void runBuilder() {
+        try {
+            while (true) {
+                rebuild();
+                Thread.sleep(rebuildInterval);
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("FileNameIndex: builder stopped");
+        } catch (RuntimeException e) {
+            LOG.error("FileNameIndex: builder failed", e);
+        }
+    }
+
+    /**
+     * @return path relative to home with '/' separators or null if the path is outside of home.
+     */
+    private String getKey(Path resolvedPath) {
+        if (!resolvedPath.startsWith(home)) {
+            return null;
+        }
+        return home.relativize(resolvedPath).toString();
+    }
+
+    private static class IndexedPath {
+
+        private final String path;
+        private final boolean directory;
+
+        private IndexedPath(String path, boolean directory) {
+            this.path = path;
+            this.directory = directory;
+        }
+
+    }
+
+}
@@ -0,0 +1,589 @@
+package itx.fileserver.services.search;
+
+import itx.fileserver.dto.SearchType;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact in-memory tree of relative paths. Path segments are interned as UTF-8 names in one byte pool and every
+ * distinct name is indexed by its byte trigrams, each trigram has delta-encoded list of names containing it.
+ * Nodes of the tree are kept in parallel arrays (parent, name, flags), so memory used per path does not depend
+ * on the depth of the tree. Deleted nodes are only marked as deleted, their subtrees become unreachable and space
+ * is reclaimed when the index is rebuilt. Not thread safe.
+ */
+public class PathIndex {
+
+    public static final int ROOT = 0;
+
+    private static final byte DIRECTORY = 1;
+    private static final byte DELETED = 2;
+    private static final int EMPTY = -1;
+    private static final int REMOVED = -2;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    //names
+    private byte[] namePool;
+    private int namePoolSize;
+    private int[] nameOffsets;
+    private int nameCount;
+    private int[] nameSlots;
+    private final Map<Integer, Posting> trigrams;
+
+    //nodes
+    private int[] parents;
+    private int[] nameIds;
+    private byte[] flags;
+    private int nodeCount;
+    private int deletedCount;
+    private int[] childSlots;
+    private int childSlotsUsed;
+
+    public PathIndex() {
+        this.namePool = new byte[INITIAL_CAPACITY * 8];
+        this.nameOffsets = new int[INITIAL_CAPACITY];
+        this.nameSlots = newSlots(INITIAL_CAPACITY * 2);
+        this.trigrams = new HashMap<>();
+        this.parents = new int[INITIAL_CAPACITY];
+        this.nameIds = new int[INITIAL_CAPACITY];
+        this.flags = new byte[INITIAL_CAPACITY];
+        this.childSlots = newSlots(INITIAL_CAPACITY * 2);
+        //root has empty name and no parent
+        int rootName = internName(new byte[0]);
+        parents[ROOT] = -1;
+        nameIds[ROOT] = rootName;
+        flags[ROOT] = DIRECTORY;
+        nodeCount = 1;
+    }
+
+    /**
+     * Add path, missing parent directories are added too.
+     * @param path relative path with '/' separators, empty path is the root.
+     * @param directory true if path is a directory.
+     * @return node of the path.
+     */
+    public int add(String path, boolean directory) {
+        int node = ROOT;
+        if (path.isEmpty()) {
+            return node;
+        }
+        int start = 0;
+        while (true) {
+            int end = path.indexOf('/', start);
+            boolean last = end < 0;
+            String segment = last ? path.substring(start) : path.substring(start, end);
+            node = addChild(node, segment, !last || directory);
+            if (last) {
+                return node;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Add entry into directory, existing entry is returned if already indexed.
+     * @return node of the entry.
+     */
+    public int addChild(int parent, String name, boolean directory) {
+        int nameId = internName(name.getBytes(StandardCharsets.UTF_8));
+        int node = findChild(parent, nameId);
+        if (node < 0) {
+            node = newNode(parent, nameId);
+            insertChild(node);
+        }
+        if (directory) {
+            flags[node] |= DIRECTORY;
+        } else {
+            flags[node] &= ~DIRECTORY;
+        }
+        return node;
+    }
+
+    /**
+     * Remove path with its whole subtree.
+     * @return true if path was indexed.
+     */
+    public boolean remove(String path) {
+        int node = lookup(path);
+        if (node <= ROOT) {
+            return false;
+        }
+        removeChild(node);
+        flags[node] |= DELETED;
+        deletedCount++;
+        return true;
+    }
+
+    /**
+     * Move path with its whole subtree, destination replaces indexed entry on the same path.
+     * @param directory true if moved path is a directory, used only when source is not indexed.
+     */
+    public void move(String source, String destination, boolean directory) {
+        if (source.equals(destination)) {
+            return;
+        }
+        int node = lookup(source);
+        if (node <= ROOT) {
+            add(destination, directory);
+            return;
+        }
+        remove(destination);
+        int index = destination.lastIndexOf('/');
+        int parent = (index < 0) ? ROOT : add(destination.substring(0, index), true);
+        removeChild(node);
+        parents[node] = parent;
+        nameIds[node] = internName(destination.substring(index + 1).getBytes(StandardCharsets.UTF_8));
+        insertChild(node);
+    }
+
+    /**
+     * @return node of the path or -1 if path is not indexed.
+     */
+    public int lookup(String path) {
+        int node = ROOT;
+        if (path.isEmpty()) {
+            return node;
+        }
+        for (String segment : path.split("/")) {
+            int nameId = findName(segment.getBytes(StandardCharsets.UTF_8));
+            if (nameId < 0) {
+                return -1;
+            }
+            node = findChild(node, nameId);
+            if (node < 0) {
+                return -1;
+            }
+        }
+        return node;
+    }
+
+    public boolean isDirectory(int node) {
+        return (flags[node] & DIRECTORY) != 0;
+    }
+
+    /**
+     * @return number of indexed paths without the root, paths below removed directories are counted until rebuild.
+     */
+    public int size() {
+        return nodeCount - deletedCount - 1;
+    }
+
+    /**
+     * @return number of removed paths, their nodes are reclaimed by rebuild.
+     */
+    public int getDeletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * @return approximate number of bytes used by the index.
+     */
+    public long getMemoryUsage() {
+        long bytes = namePool.length + 4L * nameOffsets.length + 4L * nameSlots.length
+                + 4L * parents.length + 4L * nameIds.length + flags.length + 4L * childSlots.length;
+        for (Posting posting : trigrams.values()) {
+            //map entry, boxed key and posting object
+            bytes += 80 + posting.data.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Release unused capacity, called when the index is built.
+     */
+    public void trim() {
+        namePool = Arrays.copyOf(namePool, namePoolSize);
+        nameOffsets = Arrays.copyOf(nameOffsets, nameCount + 1);
+        parents = Arrays.copyOf(parents, nodeCount);
+        nameIds = Arrays.copyOf(nameIds, nodeCount);
+        flags = Arrays.copyOf(flags, nodeCount);
+        trigrams.values().forEach(Posting::trim);
+    }
+
+    /**
+     * Find paths below the scope directory, paths are visited in the order they were indexed.
+     * <ul>
+     *     <li>{@link SearchType#SUBSTRING} matches entries with name containing the query.</li>
+     *     <li>{@link SearchType#PREFIX} matches entries with path relative to the scope starting with the query.</li>
+     *     <li>{@link SearchType#GLOB} matches entries with path relative to the scope matching the query,
+     *     syntax is the same as for {@link itx.fileserver.services.FileUtils#wildcardMatch(String, String)}.</li>
+     * </ul>
+     * @param scope relative path to directory searched.
+     * @param visitor receives relative paths of matching entries.
+     */
+    public void search(String scope, SearchType type, String query, SearchVisitor visitor) {
+        int scopeNode = lookup(scope);
+        if (scopeNode < 0 || !isDirectory(scopeNode)) {
+            return;
+        }
+        String prefix = scope.isEmpty() ? "" : scope + "/";
+        switch (type) {
+            case SUBSTRING -> {
+                if (query.indexOf('/') >= 0) {
+                    return;
+                }
+                BitSet names = findNames(query.getBytes(StandardCharsets.UTF_8), false);
+                scan(scopeNode, visitor, prefix, node -> names.get(nameIds[node]), null);
+            }
+            case PREFIX -> {
+                int index = query.lastIndexOf('/');
+                int base = (index < 0) ? scopeNode
+                        : lookup(prefix + query.substring(0, index));
+                if (base < 0 || !isDirectory(base)) {
+                    return;
+                }
+                BitSet names = findNames(query.substring(index + 1).getBytes(StandardCharsets.UTF_8), true);
+                //entry directly below base directory must start with the last segment of the query
+                scan(base, visitor, prefix + ((index < 0) ? "" : query.substring(0, index + 1)), null,
+                        first -> names.get(nameIds[first]));
+            }
+            case GLOB -> {
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + query);
+                byte[] literal = getNameLiteral(query);
+                BitSet names = (literal.length < 3) ? null : findNames(literal, false);
+                SearchVisitor globVisitor = (path, directory) ->
+                        !matcher.matches(Path.of(path.substring(prefix.length()))) || visitor.visit(path, directory);
+                scan(scopeNode, globVisitor, prefix, (names == null) ? null : node -> names.get(nameIds[node]), null);
+            }
+        }
+    }
+
+    /**
+     * Visit nodes below scope node, which are reachable and accepted by filters.
+     * @param nodeFilter cheap filter of the node itself, null accepts all.
+     * @param firstFilter filter of the ancestor directly below scope node (or the node itself), null accepts all.
+     */
+    private void scan(int scopeNode, SearchVisitor visitor, String prefix, NodeFilter nodeFilter,
+                      NodeFilter firstFilter) {
+        int[] chain = new int[64];
+        StringBuilder path = new StringBuilder();
+        for (int node = 1; node < nodeCount; node++) {
+            if ((flags[node] & DELETED) != 0 || (nodeFilter != null && !nodeFilter.accept(node))) {
+                continue;
+            }
+            //collect path up to the scope, nodes below deleted nodes are unreachable
+            int length = 0;
+            int current = node;
+            while (current > ROOT && current != scopeNode && (flags[current] & DELETED) == 0) {
+                if (length == chain.length) {
+                    chain = Arrays.copyOf(chain, length * 2);
+                }
+                chain[length++] = current;
+                current = parents[current];
+            }
+            if (current != scopeNode || length == 0 || (firstFilter != null && !firstFilter.accept(chain[length - 1]))) {
+                continue;
+            }
+            path.setLength(0);
+            path.append(prefix);
+            for (int i = length - 1; i >= 0; i--) {
+                appendName(path, nameIds[chain[i]]);
+                if (i > 0) {
+                    path.append('/');
+                }
+            }
+            if (!visitor.visit(path.toString(), isDirectory(node))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Find names containing or starting with given bytes, trigram lists narrow the candidates
+     * which are verified then.
+     */
+    private BitSet findNames(byte[] value, boolean prefix) {
+        BitSet names = new BitSet(nameCount);
+        if (value.length < 3) {
+            names.set(0, nameCount);
+        } else {
+            for (int i = 0; i + 3 <= value.length; i++) {
+                Posting posting = trigrams.get(trigram(value, i));
+                if (posting == null) {
+                    return new BitSet();
+                }
+                BitSet found = posting.decode();
+                if (i == 0) {
+                    names = found;
+                } else {
+                    names.and(found);
+                }
+            }
+        }
+        for (int nameId = names.nextSetBit(0); nameId >= 0; nameId = names.nextSetBit(nameId + 1)) {
+            if (!(prefix ? nameStartsWith(nameId, value) : nameContains(nameId, value))) {
+                names.clear(nameId);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return longest literal part of the last path segment of glob pattern, which must be contained in the name
+     * of every matching entry, empty if there is no such part.
+     */
+    static byte[] getNameLiteral(String glob) {
+        if (glob.indexOf('[') >= 0 || glob.indexOf('{') >= 0 || glob.indexOf('\\') >= 0) {
+            return new byte[0];
+        }
+        int doubleStar = glob.lastIndexOf("**");
+        int start = Math.max(glob.lastIndexOf('/') + 1, (doubleStar < 0) ? 0 : doubleStar + 2);
+        String longest = "";
+        for (String literal : glob.substring(start).split("[*?]")) {
+            if (literal.length() > longest.length()) {
+                longest = literal;
+            }
+        }
+        return longest.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean nameContains(int nameId, byte[] value) {
+        int offset = nameOffsets[nameId];
+        int length = nameOffsets[nameId + 1] - offset;
+        outer:
+        for (int i = 0; i + value.length <= length; i++) {
+            for (int j = 0; j < value.length; j++) {
+                if (namePool[offset + i + j] != value[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean nameStartsWith(int nameId, byte[] value) {
+        int offset = nameOffsets[nameId];
+        if (nameOffsets[nameId + 1] - offset < value.length) {
+            return false;
+        }
+        return Arrays.equals(namePool, offset, offset + value.length, value, 0, value.length);
+    }
+
+    private void appendName(StringBuilder builder, int nameId) {
+        int offset = nameOffsets[nameId];
+        builder.append(new String(namePool, offset, nameOffsets[nameId + 1] - offset, StandardCharsets.UTF_8));
+    }
+
+    private int internName(byte[] name) {
+        int slot = findNameSlot(name);
+        if (nameSlots[slot] != EMPTY) {
+            return nameSlots[slot];
+        }
+        int nameId = nameCount++;
+        if (namePoolSize + name.length > namePool.length) {
+            namePool = Arrays.copyOf(namePool, Math.max(namePool.length * 2, namePoolSize + name.length));
+        }
+        System.arraycopy(name, 0, namePool, namePoolSize, name.length);
+        namePoolSize += name.length;
+        if (nameCount + 1 > nameOffsets.length) {
+            nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+        }
+        nameOffsets[nameCount] = namePoolSize;
+        nameSlots[slot] = nameId;
+        for (int i = 0; i + 3 <= name.length; i++) {
+            trigrams.computeIfAbsent(trigram(name, i), t -> new Posting()).add(nameId);
+        }
+        if (nameCount * 10L > nameSlots.length * 7L) {
+            rehashNames();
+        }
+        return nameId;
+    }
+
+    private int findName(byte[] name) {
+        return nameSlots[findNameSlot(name)];
+    }
+
+    private int findNameSlot(byte[] name) {
+        int mask = nameSlots.length - 1;
+        int slot = Arrays.hashCode(name) * 0x9E3779B9 & mask;
+        while (nameSlots[slot] != EMPTY) {
+            int nameId = nameSlots[slot];
+            int offset = nameOffsets[nameId];
+            if (Arrays.equals(namePool, offset, nameOffsets[nameId + 1], name, 0, name.length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehashNames() {
+        nameSlots = newSlots(nameSlots.length * 2);
+        int mask = nameSlots.length - 1;
+        for (int nameId = 0; nameId < nameCount; nameId++) {
+            int offset = nameOffsets[nameId];
+            int slot = hashName(offset, nameOffsets[nameId + 1]) * 0x9E3779B9 & mask;
+            while (nameSlots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            nameSlots[slot] = nameId;
+        }
+    }
+
+    private int hashName(int from, int to) {
+        //same as Arrays.hashCode(byte[])
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + namePool[i];
+        }
+        return hash;
+    }
+
+    private int newNode(int parent, int nameId) {
+        if (nodeCount == parents.length) {
+            int capacity = parents.length * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            nameIds = Arrays.copyOf(nameIds, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        int node = nodeCount++;
+        parents[node] = parent;
+        nameIds[node] = nameId;
+        flags[node] = 0;
+        return node;
+    }
+
+    private int findChild(int parent, int nameId) {
+        int mask = childSlots.length - 1;
+        int slot = hashChild(parent, nameId) & mask;
+        while (childSlots[slot] != EMPTY) {
+            int node = childSlots[slot];
+            if (node != REMOVED && parents[node] == parent && nameIds[node] == nameId) {
+                return node;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertChild(int node) {
+        int mask = childSlots.length - 1;
+        int slot = hashChild(parents[node], nameIds[node]) & mask;
+        while (childSlots[slot] != EMPTY && childSlots[slot] != REMOVED) {
+            slot = (slot + 1) & mask;
+        }
+        if (childSlots[slot] == EMPTY) {
+            childSlotsUsed++;
+        }
+        childSlots[slot] = node;
+        if (childSlotsUsed * 10L > childSlots.length * 7L) {
+            rehashChildren();
+        }
+    }
+
+    private void removeChild(int node) {
+        int mask = childSlots.length - 1;
+        int slot = hashChild(parents[node], nameIds[node]) & mask;
+        while (childSlots[slot] != EMPTY) {
+            if (childSlots[slot] == node) {
+                childSlots[slot] = REMOVED;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Removed slots are dropped, table grows only when it is filled by live nodes.
+     */
+    private void rehashChildren() {
+        int live = 0;
+        for (int node : childSlots) {
+            if (node >= 0) {
+                live++;
+            }
+        }
+        int[] slots = childSlots;
+        childSlots = newSlots((live * 10L > slots.length * 5L) ? slots.length * 2 : slots.length);
+        childSlotsUsed = 0;
+        for (int node : slots) {
+            if (node >= 0) {
+                insertChild(node);
+            }
+        }
+    }
+
+    private static int hashChild(int parent, int nameId) {
+        return (parent * 0x9E3779B9 + nameId) * 0x85EBCA6B;
+    }
+
+    private static int trigram(byte[] value, int index) {
+        return (value[index] & 0xFF) << 16 | (value[index + 1] & 0xFF) << 8 | (value[index + 2] & 0xFF);
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    /**
+     * Receives matching paths, returns false to stop the search.
+     */
+    public interface SearchVisitor {
+
+        boolean visit(String path, boolean directory);
+
+    }
+
+    private interface NodeFilter {
+
+        boolean accept(int node);
+
+    }
+
+    /**
+     * Ascending name ids encoded as variable length deltas.
+     */
+    private static class Posting {
+
+        private byte[] data = new byte[4];
+        private int length;
+        private int last;
+
+        private void add(int nameId) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            int delta = nameId - last;
+            last = nameId;
+            while ((delta & ~0x7F) != 0) {
+                data[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+        }
+
+        private BitSet decode() {
+            BitSet names = new BitSet();
+            int value = 0;
+            int shift = 0;
+            int nameId = 0;
+            for (int i = 0; i < length; i++) {
+                value |= (data[i] & 0x7F) << shift;
+                if ((data[i] & 0x80) != 0) {
+                    shift += 7;
+                } else {
+                    nameId += value;
+                    names.set(nameId);
+                    value = 0;
+                    shift = 0;
+                }
+            }
+            return names;
+        }
+
+        private void trim() {
+            data = Arrays.copyOf(data, length);
+        }
+
+    }
+
+}
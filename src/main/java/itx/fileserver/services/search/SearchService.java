@@ -0,0 +1,30 @@
+package itx.fileserver.services.search;
+
+import itx.fileserver.dto.SearchResult;
+import itx.fileserver.dto.SearchType;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.OperationNotAllowedException;
+
+import java.nio.file.Path;
+
+/**
+ * Service searching file and directory names in file storage, see {@link FileNameIndex}.
+ */
+public interface SearchService {
+
+    /**
+     * Search paths below the directory. Only paths readable by the user are returned.
+     * @param userData users's data searching.
+     * @param filePath relative path to directory searched, empty path searches whole file storage.
+     * @param type type of the query.
+     * @param query substring of file name, prefix of path relative to the directory or glob matching
+     *              path relative to the directory, see {@link SearchType}.
+     * @param limit max. number of returned paths, values out of range are replaced by configured max. results.
+     * @return matching paths, empty result if the directory does not exist, null if search is disabled.
+     * @throws OperationNotAllowedException if no path below the directory is readable by the user.
+     * @throws IllegalArgumentException if glob is not valid.
+     */
+    SearchResult search(UserData userData, Path filePath, SearchType type, String query, int limit)
+            throws OperationNotAllowedException;
+
+}
@@ -0,0 +1,84 @@
+package itx.fileserver.services.search;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.AuditConstants;
+import itx.fileserver.dto.AuditRecord;
+import itx.fileserver.dto.SearchHit;
+import itx.fileserver.dto.SearchResult;
+import itx.fileserver.dto.SearchType;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.AccessRules;
+import itx.fileserver.services.FileAccessService;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.data.AuditService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class SearchServiceImpl implements SearchService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SearchServiceImpl.class);
+
+    private final FileAccessService fileAccessService;
+    private final AuditService auditService;
+    private final FileNameIndex fileNameIndex;
+    private final int maxResults;
+
+    @Autowired
+    public SearchServiceImpl(FileServerConfig fileServerConfig, FileAccessService fileAccessService,
+                             AuditService auditService, FileNameIndex fileNameIndex) {
+        this.fileAccessService = fileAccessService;
+        this.auditService = auditService;
+        this.fileNameIndex = fileNameIndex;
+        this.maxResults = fileServerConfig.getSearchMaxResults();
+    }
+
+    @Override
+    public SearchResult search(UserData userData, Path filePath, SearchType type, String query, int limit)
+            throws OperationNotAllowedException {
+        LOG.info("search: {} {} {} {}", filePath, type, query, limit);
+        filePath = filePath.normalize();
+        if (filePath.startsWith("..")) {
+            throw new OperationNotAllowedException();
+        }
+        AccessRules accessRules = fileAccessService.getAccessRules(userData.getRoles());
+        if (!accessRules.canRead(filePath) && !accessRules.mayReadBelow(filePath)) {
+            throw new OperationNotAllowedException();
+        }
+        if (!fileNameIndex.isEnabled()) {
+            return null;
+        }
+        int resultLimit = (limit <= 0 || limit > maxResults) ? maxResults : limit;
+        List<SearchHit> hits = new ArrayList<>();
+        boolean[] truncated = new boolean[1];
+        fileNameIndex.search(filePath, type, query, (path, directory) -> {
+            if (!accessRules.canRead(Paths.get(path))) {
+                return true;
+            }
+            if (hits.size() == resultLimit) {
+                truncated[0] = true;
+                return false;
+            }
+            hits.add(new SearchHit(path, directory));
+            return true;
+        });
+        createSearchAuditRecord(userData, filePath, type, query);
+        return new SearchResult(hits, truncated[0]);
+    }
+
+    private void createSearchAuditRecord(UserData userData, Path filePath, SearchType type, String query) {
+        AuditRecord auditRecord = new AuditRecord(Instant.now().getEpochSecond(),
+                AuditConstants.CategoryFileAccess.NAME, AuditConstants.CategoryFileAccess.SEARCH,
+                userData.getId(), filePath.toString(), "OK", type + " " + query);
+        auditService.storeAudit(auditRecord);
+    }
+
+}
@@ -0,0 +1,54 @@
+package itx.fileserver.services.upload;
+
+/**
+ * Entry of an archive being read by {@link ArchiveReader}.
+ */
+public class ArchiveEntry {
+
+    private final String name;
+    private final boolean directory;
+    private final boolean regularFile;
+    private final long size;
+    private final long lastModified;
+
+    public ArchiveEntry(String name, boolean directory, boolean regularFile, long size, long lastModified) {
+        this.name = name;
+        this.directory = directory;
+        this.regularFile = regularFile;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return entry name as stored in the archive, with / separators.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return false for links, devices and other entries which are not extracted.
+     */
+    public boolean isRegularFile() {
+        return regularFile;
+    }
+
+    /**
+     * @return size of entry data or -1 if not known in advance.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return modification time in milliseconds or -1 if not known.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+}
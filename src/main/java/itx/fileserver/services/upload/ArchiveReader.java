@@ -0,0 +1,45 @@
+package itx.fileserver.services.upload;
+
+import itx.fileserver.dto.ArchiveFormat;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Sequential reader of archive entries from a stream, entries are read as the bytes arrive.
+ */
+public interface ArchiveReader extends Closeable {
+
+    /**
+     * Advance to the next entry, unread data of the current entry is skipped.
+     * @return next entry or null at the end of archive.
+     * @throws IOException
+     */
+    ArchiveEntry next() throws IOException;
+
+    /**
+     * @return data of the current entry, ends at the end of the entry. Stream must not be closed.
+     */
+    InputStream getInputStream();
+
+    /**
+     * Open reader of archive in given format.
+     * @param inputStream archive data.
+     * @param format format of the archive.
+     * @param bufferSize size of read buffer.
+     * @return archive reader.
+     * @throws IOException
+     */
+    static ArchiveReader open(InputStream inputStream, ArchiveFormat format, int bufferSize) throws IOException {
+        return switch (format) {
+            case TAR -> new TarArchiveReader(new BufferedInputStream(inputStream, bufferSize));
+            case TAR_GZIP -> new TarArchiveReader(new BufferedInputStream(
+                    new GZIPInputStream(inputStream, bufferSize), bufferSize));
+            case ZIP -> new ZipArchiveReader(new BufferedInputStream(inputStream, bufferSize));
+        };
+    }
+
+}
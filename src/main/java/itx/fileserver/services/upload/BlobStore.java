@@ -0,0 +1,188 @@
+package itx.fileserver.services.upload;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.DedupStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+/**
+ * Content addressed store of uploaded file contents. Each distinct content is stored once as a blob named
+ * by its SHA-256 digest, uploaded files are hard links to blobs. Reference count of a blob is the link count
+ * of its inode, so delete, move and overwrite of files keep it correct without any bookkeeping.
+ * Blobs referenced only by the store itself are garbage collected periodically.
+ * Linked files share content and attributes, so files must never be modified in place.
+ */
+@Component
+public class BlobStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlobStore.class);
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String LINK_COUNT = "unix:nlink";
+
+    private final boolean enabled;
+    private final Path blobDir;
+
+    @Autowired
+    public BlobStore(FileServerConfig fileServerConfig) throws IOException {
+        this(fileServerConfig.isUploadDedupEnabled(), getBlobDir(fileServerConfig),
+                Paths.get(fileServerConfig.getHome()).toAbsolutePath().normalize());
+    }
+
+    public BlobStore(boolean enabled, Path blobDir, Path fileStorageLocation) throws IOException {
+        this.enabled = enabled && isSupported(blobDir, fileStorageLocation);
+        this.blobDir = blobDir;
+        LOG.info("BlobStore: enabled={} blobDir={}", this.enabled, blobDir);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return new digest of algorithm used for blob names.
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deduplicate completely written temporary file. If the content is already stored, temporary file is
+     * replaced by a link to existing blob, otherwise the temporary file becomes new blob.
+     * @param tmpFile temporary file on the same file system as the store.
+     * @param digest SHA-256 digest of file content.
+     * @throws IOException
+     */
+    public void link(Path tmpFile, byte[] digest) throws IOException {
+        Path blob = getBlob(digest);
+        Files.createDirectories(blob.getParent());
+        try {
+            Files.createLink(blob, tmpFile);
+            return;
+        } catch (FileAlreadyExistsException e) {
+            //content is already stored
+        }
+        if (Files.size(blob) != Files.size(tmpFile)) {
+            LOG.error("link: blob size mismatch {}", blob);
+            return;
+        }
+        Path link = FileCommitter.getTempFile(tmpFile);
+        try {
+            Files.createLink(link, blob);
+            Files.move(link, tmpFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            //blob has been collected meanwhile, content stays in the temporary file
+            LOG.info("link: blob collected {}", blob);
+        } finally {
+            Files.deleteIfExists(link);
+        }
+    }
+
+    public DedupStats getStats() throws IOException {
+        if (!enabled) {
+            return new DedupStats(false, 0, 0, 0);
+        }
+        long blobs = 0;
+        long storedBytes = 0;
+        long logicalBytes = 0;
+        try (Stream<Path> files = Files.walk(blobDir, 2)) {
+            for (Path blob : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                int links = getLinkCount(blob);
+                if (links > 1) {
+                    long size = Files.size(blob);
+                    blobs++;
+                    storedBytes += size;
+                    logicalBytes += size * (links - 1);
+                }
+            }
+        }
+        return new DedupStats(true, blobs, storedBytes, logicalBytes);
+    }
+
+    /**
+     * Delete blobs which are not referenced by any file.
+     */
+    @Scheduled(fixedDelayString = "${fileserver.upload.dedup.gc-interval:600000}")
+    public void collectGarbage() {
+        if (!enabled) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(blobDir, 2)) {
+            files.filter(Files::isRegularFile).forEach(blob -> {
+                try {
+                    if (getLinkCount(blob) == 1) {
+                        LOG.debug("collectGarbage: {}", blob);
+                        Files.delete(blob);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            LOG.warn("collectGarbage: failed {}", e.getMessage());
+        }
+    }
+
+    private Path getBlob(byte[] digest) {
+        String name = HexFormat.of().formatHex(digest);
+        return blobDir.resolve(name.substring(0, 2)).resolve(name);
+    }
+
+    private static int getLinkCount(Path file) throws IOException {
+        return (Integer) Files.getAttribute(file, LINK_COUNT);
+    }
+
+    /**
+     * Hard links require blob directory on the same file system as file storage and link count attribute.
+     */
+    private static boolean isSupported(Path blobDir, Path fileStorageLocation) throws IOException {
+        if (blobDir == null) {
+            LOG.warn("BlobStore: deduplication requires fileserver.upload.dedup.blob-dir or fileserver.data.basedir");
+            return false;
+        }
+        if (blobDir.startsWith(fileStorageLocation)) {
+            throw new IllegalArgumentException("Blob directory must be outside of file storage " + blobDir);
+        }
+        Files.createDirectories(blobDir);
+        if (!Files.getFileStore(blobDir).equals(Files.getFileStore(fileStorageLocation))) {
+            LOG.warn("BlobStore: blob directory {} is not on the same file system as {}", blobDir,
+                    fileStorageLocation);
+            return false;
+        }
+        if (!Files.getFileStore(blobDir).supportsFileAttributeView("unix")) {
+            LOG.warn("BlobStore: file system does not support link counts");
+            return false;
+        }
+        return true;
+    }
+
+    private static Path getBlobDir(FileServerConfig fileServerConfig) {
+        if (fileServerConfig.getUploadDedupBlobDir() != null) {
+            return Paths.get(fileServerConfig.getUploadDedupBlobDir()).toAbsolutePath().normalize();
+        } else if (fileServerConfig.getDataBasedir() != null) {
+            return Paths.get(fileServerConfig.getDataBasedir(), "blobs").toAbsolutePath().normalize();
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,99 @@
+package itx.fileserver.services.upload;
+
+import itx.fileserver.dto.ChecksumAlgorithm;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Computes several checksums of data in one pass. Values are returned as bytes in the form used
+ * by HTTP digest fields, 32 and 64 bit checksums in big endian order.
+ */
+public class Checksums {
+
+    private final Map<ChecksumAlgorithm, MessageDigest> digests;
+    private final Map<ChecksumAlgorithm, Checksum> checksums;
+
+    public Checksums(Collection<ChecksumAlgorithm> algorithms) {
+        this.digests = new EnumMap<>(ChecksumAlgorithm.class);
+        this.checksums = new EnumMap<>(ChecksumAlgorithm.class);
+        for (ChecksumAlgorithm algorithm : algorithms) {
+            switch (algorithm) {
+                case CRC32C -> checksums.put(algorithm, new CRC32C());
+                case XXH64 -> checksums.put(algorithm, new Xxh64());
+                case MD5 -> digests.put(algorithm, newMessageDigest("MD5"));
+                case SHA_256 -> digests.put(algorithm, newMessageDigest("SHA-256"));
+                case SHA_512 -> digests.put(algorithm, newMessageDigest("SHA-512"));
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return digests.isEmpty() && checksums.isEmpty();
+    }
+
+    /**
+     * Update all checksums with remaining bytes of the buffer, buffer position is not changed.
+     */
+    public void update(ByteBuffer buffer) {
+        digests.values().forEach(d -> d.update(buffer.duplicate()));
+        checksums.values().forEach(c -> c.update(buffer.duplicate()));
+    }
+
+    /**
+     * @return values of all checksums, computation can't continue after this call.
+     */
+    public Map<ChecksumAlgorithm, byte[]> finish() {
+        Map<ChecksumAlgorithm, byte[]> values = new EnumMap<>(ChecksumAlgorithm.class);
+        digests.forEach((algorithm, digest) -> values.put(algorithm, digest.digest()));
+        checksums.forEach((algorithm, checksum) -> {
+            int size = (algorithm == ChecksumAlgorithm.CRC32C) ? Integer.BYTES : Long.BYTES;
+            ByteBuffer value = ByteBuffer.allocate(size);
+            if (size == Integer.BYTES) {
+                value.putInt((int) checksum.getValue());
+            } else {
+                value.putLong(checksum.getValue());
+            }
+            values.put(algorithm, value.array());
+        });
+        return values;
+    }
+
+    /**
+     * Parse comma separated list of algorithm names, like "sha-256, crc32c".
+     * @throws IllegalArgumentException if some algorithm is not supported.
+     */
+    public static EnumSet<ChecksumAlgorithm> parseAlgorithms(String names) {
+        EnumSet<ChecksumAlgorithm> algorithms = EnumSet.noneOf(ChecksumAlgorithm.class);
+        if (names == null) {
+            return algorithms;
+        }
+        for (String name : names.split(",")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            ChecksumAlgorithm algorithm = ChecksumAlgorithm.fromHeaderName(name.trim());
+            if (algorithm == null) {
+                throw new IllegalArgumentException("Unsupported checksum algorithm " + name);
+            }
+            algorithms.add(algorithm);
+        }
+        return algorithms;
+    }
+
+    private static MessageDigest newMessageDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package itx.fileserver.services.upload;
+
+import itx.fileserver.dto.ChecksumAlgorithm;
+
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Parsing and formatting of content digests in Digest (RFC 3230), Repr-Digest and Content-Digest (RFC 9530) headers.
+ */
+public final class ContentDigests {
+
+    public static final String DIGEST = "Digest";
+    public static final String REPR_DIGEST = "Repr-Digest";
+    public static final String CONTENT_DIGEST = "Content-Digest";
+    public static final String CONTENT_MD5 = "Content-MD5";
+    public static final String SHA_256 = "sha-256";
+
+    private ContentDigests() {
+        throw new UnsupportedOperationException("please do not instantiate utility class");
+    }
+
+    /**
+     * Get digest of given algorithm from header value like "sha-256=X48E9q...=, md5=..." or "sha-256=:X48E9q...=:".
+     * @param headerValue value of Digest or Repr-Digest header, may be null.
+     * @param algorithm name of digest algorithm.
+     * @return digest bytes or null if the header does not contain valid digest of given algorithm.
+     */
+    public static byte[] parse(String headerValue, String algorithm) {
+        if (headerValue == null) {
+            return null;
+        }
+        for (String item : headerValue.split(",")) {
+            int separator = item.indexOf('=');
+            if (separator > 0 && algorithm.equalsIgnoreCase(item.substring(0, separator).trim())) {
+                String value = item.substring(separator + 1).trim();
+                if (value.length() > 1 && value.startsWith(":") && value.endsWith(":")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                try {
+                    return Base64.getDecoder().decode(value);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get digests of all supported algorithms from header value, unsupported algorithms are ignored.
+     * @param headerValue value of Digest, Repr-Digest or Content-Digest header, may be null.
+     * @return digests by algorithm.
+     * @throws IllegalArgumentException if digest of supported algorithm is malformed.
+     */
+    public static Map<ChecksumAlgorithm, byte[]> parseAll(String headerValue) {
+        Map<ChecksumAlgorithm, byte[]> digests = new EnumMap<>(ChecksumAlgorithm.class);
+        if (headerValue == null) {
+            return digests;
+        }
+        for (String item : headerValue.split(",")) {
+            int separator = item.indexOf('=');
+            ChecksumAlgorithm algorithm = (separator > 0)
+                    ? ChecksumAlgorithm.fromHeaderName(item.substring(0, separator).trim()) : null;
+            if (algorithm != null) {
+                byte[] digest = parse(item, algorithm.getHeaderName());
+                if (digest == null) {
+                    throw new IllegalArgumentException("Malformed " + algorithm.getHeaderName() + " digest");
+                }
+                digests.put(algorithm, digest);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Format digests as Repr-Digest header value, like "sha-256=:X48E9q...=:, crc32c=:AAAAAA==:".
+     */
+    public static String format(Map<ChecksumAlgorithm, byte[]> digests) {
+        return digests.entrySet().stream()
+                .map(e -> e.getKey().getHeaderName() + "=:" + Base64.getEncoder().encodeToString(e.getValue()) + ":")
+                .collect(Collectors.joining(", "));
+    }
+
+}
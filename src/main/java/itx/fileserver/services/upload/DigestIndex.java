@@ -0,0 +1,325 @@
+package itx.fileserver.services.upload;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import itx.fileserver.config.FileServerConfig;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index of SHA-256 digests of uploaded files, used to find local files with content declared by clients.
+ * Entries remember size and modification time of the file, entries of files changed by other means than
+ * the file server are detected as stale when used. Changes are appended to a journal file,
+ * which is compacted on start. Without journal file the index is kept in memory only.
+ */
+@Component
+public class DigestIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DigestIndex.class);
+
+    private static final String JOURNAL_FILE = "digest-index.log";
+    private static final String PUT = "PUT";
+    private static final String REMOVE = "REMOVE";
+    private static final String MOVE = "MOVE";
+
+    private final boolean enabled;
+    private final Path journal;
+    private final ObjectMapper objectMapper;
+    private final TreeMap<String, Entry> entries;
+    private final Map<String, Set<String>> paths;
+    private BufferedWriter journalWriter;
+
+    @Autowired
+    public DigestIndex(FileServerConfig fileServerConfig) throws IOException {
+        this(fileServerConfig.isUploadDigestIndexEnabled(), (fileServerConfig.getDataBasedir() == null) ? null
+                : Paths.get(fileServerConfig.getDataBasedir(), JOURNAL_FILE).toAbsolutePath().normalize());
+    }
+
+    public DigestIndex(boolean enabled, Path journal) throws IOException {
+        LOG.info("DigestIndex: enabled={} journal={}", enabled, journal);
+        this.enabled = enabled;
+        this.journal = journal;
+        this.objectMapper = new ObjectMapper();
+        this.entries = new TreeMap<>();
+        this.paths = new HashMap<>();
+        if (enabled && journal != null) {
+            load();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record digest of file content.
+     * @param filePath relative path to file.
+     * @param digest SHA-256 digest of file content.
+     * @param size size of the file.
+     * @param lastModified modification time of the file in milliseconds.
+     */
+    public synchronized void put(Path filePath, byte[] digest, long size, long lastModified) {
+        if (!enabled) {
+            return;
+        }
+        Record record = new Record(PUT, filePath.toString(), null, HexFormat.of().formatHex(digest), size,
+                lastModified);
+        apply(record);
+        append(record);
+    }
+
+    /**
+     * Remove file or directory with all its content from the index.
+     * @param filePath relative path to file or directory.
+     */
+    public synchronized void remove(Path filePath) {
+        if (!enabled) {
+            return;
+        }
+        Record record = new Record(REMOVE, filePath.toString(), null, null, 0, 0);
+        if (apply(record)) {
+            append(record);
+        }
+    }
+
+    /**
+     * Move file or directory with all its content in the index.
+     * @param sourcePath relative path to source file or directory.
+     * @param destinationPath relative path to destination file or directory.
+     */
+    public synchronized void move(Path sourcePath, Path destinationPath) {
+        if (!enabled) {
+            return;
+        }
+        Record record = new Record(MOVE, sourcePath.toString(), destinationPath.toString(), null, 0, 0);
+        apply(record);
+        append(record);
+    }
+
+    /**
+     * Find files with given content.
+     * @param digest SHA-256 digest of file content.
+     * @return candidate files, caller must verify they didn't change using {@link #isCurrent(Path, long, long)}.
+     */
+    public synchronized List<Path> find(byte[] digest) {
+        Set<String> found = paths.get(HexFormat.of().formatHex(digest));
+        List<Path> result = new ArrayList<>();
+        if (found != null) {
+            found.forEach(p -> result.add(Paths.get(p)));
+        }
+        return result;
+    }
+
+    /**
+     * @return true if indexed digest of the file is still valid for file of given size and modification time.
+     */
+    public synchronized boolean isCurrent(Path filePath, long size, long lastModified) {
+        Entry entry = entries.get(filePath.toString());
+        return entry != null && entry.size == size && entry.lastModified == lastModified;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (journalWriter != null) {
+            try {
+                journalWriter.close();
+            } catch (IOException e) {
+                LOG.warn("close: {}", e.getMessage());
+            }
+            journalWriter = null;
+        }
+    }
+
+    private boolean apply(Record record) {
+        switch (record.getOp()) {
+            case PUT -> {
+                removeEntries(record.getPath());
+                entries.put(record.getPath(), new Entry(record.getDigest(), record.getSize(),
+                        record.getLastModified()));
+                paths.computeIfAbsent(record.getDigest(), d -> new LinkedHashSet<>()).add(record.getPath());
+                return true;
+            }
+            case REMOVE -> {
+                return !removeEntries(record.getPath()).isEmpty();
+            }
+            case MOVE -> {
+                removeEntries(record.getDestination());
+                Map<String, Entry> moved = removeEntries(record.getPath());
+                moved.forEach((path, entry) -> {
+                    String destination = record.getDestination() + path.substring(record.getPath().length());
+                    entries.put(destination, entry);
+                    paths.computeIfAbsent(entry.digest, d -> new LinkedHashSet<>()).add(destination);
+                });
+                return !moved.isEmpty();
+            }
+            default -> {
+                LOG.warn("apply: unknown operation {}", record.getOp());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Remove entry of the path and entries of all paths below it.
+     * @return removed entries.
+     */
+    private Map<String, Entry> removeEntries(String path) {
+        Map<String, Entry> removed = new HashMap<>();
+        Entry entry = entries.remove(path);
+        if (entry != null) {
+            removed.put(path, entry);
+        }
+        //children sort between "path/" and "path0", '0' is the character after '/'
+        NavigableMap<String, Entry> children = entries.subMap(path + "/", true, path + "0", false);
+        removed.putAll(children);
+        children.clear();
+        removed.forEach((p, e) -> {
+            Set<String> digestPaths = paths.get(e.digest);
+            digestPaths.remove(p);
+            if (digestPaths.isEmpty()) {
+                paths.remove(e.digest);
+            }
+        });
+        return removed;
+    }
+
+    private void append(Record record) {
+        if (journalWriter == null) {
+            return;
+        }
+        try {
+            journalWriter.write(objectMapper.writeValueAsString(record));
+            journalWriter.newLine();
+            journalWriter.flush();
+        } catch (IOException e) {
+            LOG.error("append: journal write failed, index is kept in memory only {}", e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Replay the journal and rewrite it with current entries only.
+     */
+    private void load() throws IOException {
+        Files.createDirectories(journal.getParent());
+        if (Files.isRegularFile(journal)) {
+            try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        apply(objectMapper.readValue(line, Record.class));
+                    } catch (IOException e) {
+                        //last line may be incomplete after crash
+                        LOG.warn("load: skipping invalid record {}", e.getMessage());
+                    }
+                }
+            }
+        }
+        Path tmpFile = journal.resolveSibling(JOURNAL_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry e = entry.getValue();
+                writer.write(objectMapper.writeValueAsString(new Record(PUT, entry.getKey(), null, e.digest, e.size,
+                        e.lastModified)));
+                writer.newLine();
+            }
+        }
+        Files.move(tmpFile, journal, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        journalWriter = Files.newBufferedWriter(journal, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        LOG.info("DigestIndex: loaded {} entries", entries.size());
+    }
+
+    private static class Entry {
+
+        private final String digest;
+        private final long size;
+        private final long lastModified;
+
+        private Entry(String digest, long size, long lastModified) {
+            this.digest = digest;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private static class Record {
+
+        private final String op;
+        private final String path;
+        private final String destination;
+        private final String digest;
+        private final long size;
+        private final long lastModified;
+
+        @JsonCreator
+        private Record(@JsonProperty("op") String op,
+                       @JsonProperty("path") String path,
+                       @JsonProperty("destination") String destination,
+                       @JsonProperty("digest") String digest,
+                       @JsonProperty("size") long size,
+                       @JsonProperty("lastModified") long lastModified) {
+            this.op = op;
+            this.path = path;
+            this.destination = destination;
+            this.digest = digest;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getOp() {
+            return op;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+    }
+
+}
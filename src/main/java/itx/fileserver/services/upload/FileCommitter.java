@@ -0,0 +1,209 @@
+package itx.fileserver.services.upload;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.Durability;
+import itx.fileserver.dto.DurabilityConfig;
+import itx.fileserver.services.GlobAutomaton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Moves completely written temporary files into place, so readers never see partially written files.
+ * Durability of the move is selected by path rules, first matching rule wins, default durability applies otherwise.
+ * Group commit uses leader / follower batching: every upload syncs its own file in parallel with the others,
+ * then the first upload to arrive renames files of all uploads waiting at that moment and syncs each of their
+ * directories once, the others just wait for the result.
+ */
+@Component
+public class FileCommitter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileCommitter.class);
+
+    private static final String TMP_PREFIX = ".";
+    private static final String TMP_SUFFIX = ".upload";
+
+    private final Durability defaultDurability;
+    private final List<GlobAutomaton> rulePaths;
+    private final List<Durability> ruleDurabilities;
+    private final Object groupLock;
+    private List<PendingCommit> pending;
+    private boolean committing;
+
+    @Autowired
+    public FileCommitter(FileServerConfig fileServerConfig) {
+        this((fileServerConfig.getUploadDurability() == null) ? Durability.FDATASYNC
+                : Durability.valueOf(fileServerConfig.getUploadDurability()),
+                (fileServerConfig.getDurabilityRules() == null) ? List.of() : fileServerConfig.getDurabilityRules());
+    }
+
+    public FileCommitter(Durability defaultDurability, List<DurabilityConfig> rules) {
+        LOG.info("FileCommitter: durability={} rules={}", defaultDurability, rules.size());
+        this.defaultDurability = defaultDurability;
+        //rules are compiled once, invalid rule fails on start
+        this.rulePaths = rules.stream().map(r -> GlobAutomaton.newBuilder().withGlob(r.getPath(), 1).build()).toList();
+        this.ruleDurabilities = rules.stream().map(r -> Durability.valueOf(r.getDurability())).toList();
+        this.groupLock = new Object();
+        this.pending = new ArrayList<>();
+    }
+
+    /**
+     * @param filePath relative path to file.
+     * @return durability of uploads into given path.
+     */
+    public Durability getDurability(Path filePath) {
+        String strPath = filePath.toString();
+        for (int i = 0; i < rulePaths.size(); i++) {
+            if (rulePaths.get(i).match(strPath) != 0) {
+                return ruleDurabilities.get(i);
+            }
+        }
+        return defaultDurability;
+    }
+
+    /**
+     * @param resolvedFilePath absolute path to file.
+     * @return path of new temporary file next to the file, on the same file system.
+     */
+    public static Path getTempFile(Path resolvedFilePath) {
+        return resolvedFilePath.resolveSibling(TMP_PREFIX + resolvedFilePath.getFileName() + "."
+                + UUID.randomUUID().toString().substring(0, 8) + TMP_SUFFIX);
+    }
+
+    /**
+     * @return true if file name belongs to temporary file of running upload.
+     */
+    public static boolean isTempFile(String fileName) {
+        return fileName.startsWith(TMP_PREFIX) && fileName.endsWith(TMP_SUFFIX);
+    }
+
+    /**
+     * Atomically replace the file with completely written temporary file. When this method returns,
+     * the file is durable according to durability of its path.
+     * @param filePath relative path to file, used to select durability.
+     * @param tmpFile closed temporary file on the same file system.
+     * @param resolvedFilePath absolute path to file.
+     * @throws IOException
+     */
+    public void commit(Path filePath, Path tmpFile, Path resolvedFilePath) throws IOException {
+        switch (getDurability(filePath)) {
+            case NONE -> Files.move(tmpFile, resolvedFilePath, StandardCopyOption.ATOMIC_MOVE);
+            case FDATASYNC -> {
+                syncFile(tmpFile);
+                Files.move(tmpFile, resolvedFilePath, StandardCopyOption.ATOMIC_MOVE);
+                syncDirectory(resolvedFilePath.getParent());
+            }
+            case GROUP_COMMIT -> {
+                //file data is synced by each upload, only renames and directory syncs are batched
+                syncFile(tmpFile);
+                groupCommit(new PendingCommit(tmpFile, resolvedFilePath));
+            }
+        }
+    }
+
+    private void groupCommit(PendingCommit commit) throws IOException {
+        List<PendingCommit> batch;
+        synchronized (groupLock) {
+            pending.add(commit);
+            try {
+                while (committing && !commit.done) {
+                    groupLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.remove(commit);
+                throw new InterruptedIOException("Interrupted while waiting for group commit");
+            }
+            if (commit.done) {
+                commit.rethrow();
+                return;
+            }
+            committing = true;
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        try {
+            commitBatch(batch);
+        } finally {
+            synchronized (groupLock) {
+                batch.forEach(c -> c.done = true);
+                committing = false;
+                groupLock.notifyAll();
+            }
+        }
+        commit.rethrow();
+    }
+
+    private static void commitBatch(List<PendingCommit> batch) {
+        Map<Path, List<PendingCommit>> directories = new LinkedHashMap<>();
+        for (PendingCommit commit : batch) {
+            try {
+                Files.move(commit.tmpFile, commit.resolvedFilePath, StandardCopyOption.ATOMIC_MOVE);
+                directories.computeIfAbsent(commit.resolvedFilePath.getParent(), d -> new ArrayList<>()).add(commit);
+            } catch (IOException e) {
+                commit.error = e;
+            }
+        }
+        directories.forEach((directory, commits) -> {
+            try {
+                syncDirectory(directory);
+            } catch (IOException e) {
+                commits.forEach(c -> c.error = e);
+            }
+        });
+    }
+
+    private static void syncFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Sync directory entries, so rename survives crash. Not supported on all platforms (Windows).
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            if (!System.getProperty("os.name").startsWith("Windows")) {
+                throw e;
+            }
+        }
+    }
+
+    private static class PendingCommit {
+
+        private final Path tmpFile;
+        private final Path resolvedFilePath;
+        private boolean done;
+        private IOException error;
+
+        private PendingCommit(Path tmpFile, Path resolvedFilePath) {
+            this.tmpFile = tmpFile;
+            this.resolvedFilePath = resolvedFilePath;
+        }
+
+        private void rethrow() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+package itx.fileserver.services.upload;
+
+import itx.fileserver.dto.ChecksumAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Digests of file content stored in user defined extended attribute of the file. Value has the form
+ * "size lastModifiedNanos sha-256=:...:, crc32c=:...:", digests are used only while size and modification time
+ * of the file are unchanged, so files modified in place by other processes never report stale digests.
+ */
+public final class StoredDigests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StoredDigests.class);
+
+    private static final String ATTRIBUTE = "fileserver.digests";
+
+    private StoredDigests() {
+        throw new UnsupportedOperationException("please do not instantiate utility class");
+    }
+
+    /**
+     * Store digests of completely written file. Files on file systems without extended attributes are skipped.
+     * @param file absolute path to the file.
+     * @param digests digests of file content.
+     */
+    public static void write(Path file, Map<ChecksumAlgorithm, byte[]> digests) throws IOException {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+        if (view == null || digests.isEmpty()) {
+            return;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        String value = attributes.size() + " " + toNanos(attributes) + " " + ContentDigests.format(digests);
+        try {
+            view.write(ATTRIBUTE, ByteBuffer.wrap(value.getBytes(StandardCharsets.US_ASCII)));
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.debug("write: extended attributes not supported {} {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Read digests of the file.
+     * @param file absolute path to the file.
+     * @param attributes current attributes of the file.
+     * @return stored digests or empty map if there are none or they are not valid for current file content.
+     */
+    public static Map<ChecksumAlgorithm, byte[]> read(Path file, BasicFileAttributes attributes) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return Collections.emptyMap();
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(view.size(ATTRIBUTE));
+            view.read(ATTRIBUTE, buffer);
+            String[] value = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII)
+                    .split(" ", 3);
+            if (value.length == 3 && Long.parseLong(value[0]) == attributes.size()
+                    && Long.parseLong(value[1]) == toNanos(attributes)) {
+                return ContentDigests.parseAll(value[2]);
+            }
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            //attribute is not present
+        }
+        return Collections.emptyMap();
+    }
+
+    private static long toNanos(BasicFileAttributes attributes) {
+        Instant lastModified = attributes.lastModifiedTime().toInstant();
+        return lastModified.getEpochSecond() * 1_000_000_000L + lastModified.getNano();
+    }
+
+}
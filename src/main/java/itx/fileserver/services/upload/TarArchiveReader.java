@@ -0,0 +1,269 @@
+package itx.fileserver.services.upload;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads ustar, GNU and pax tar archives from a stream. Long names of GNU (L) and pax (x) extended headers
+ * are supported, global pax headers and long link names are ignored.
+ */
+class TarArchiveReader implements ArchiveReader {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private final InputStream inputStream;
+    private final byte[] header;
+    private final EntryInputStream entryInputStream;
+
+    TarArchiveReader(InputStream inputStream) {
+        this.inputStream = inputStream;
+        this.header = new byte[BLOCK_SIZE];
+        this.entryInputStream = new EntryInputStream();
+    }
+
+    @Override
+    public ArchiveEntry next() throws IOException {
+        entryInputStream.skipRemaining();
+        String longName = null;
+        long paxSize = -1;
+        long paxLastModified = -1;
+        while (true) {
+            if (!readHeader()) {
+                return null;
+            }
+            char type = (char) header[156];
+            long size = parseNumber(124, 12);
+            long lastModified = parseNumber(136, 12) * 1000;
+            if (type == 'L' || type == 'x') {
+                byte[] data = readData(size);
+                if (type == 'L') {
+                    longName = parseString(data, 0, data.length);
+                } else {
+                    try {
+                        for (String[] record : parsePaxRecords(data)) {
+                            switch (record[0]) {
+                                case "path" -> longName = record[1];
+                                case "size" -> paxSize = Long.parseLong(record[1]);
+                                case "mtime" -> paxLastModified = (long) (Double.parseDouble(record[1]) * 1000);
+                                default -> { }
+                            }
+                        }
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid pax header");
+                    }
+                }
+                continue;
+            }
+            if (type == 'g' || type == 'K') {
+                readData(size);
+                continue;
+            }
+            String name = longName;
+            if (name == null) {
+                name = parseString(header, 0, 100);
+                String prefix = parseString(header, 345, 155);
+                if (isUstar() && !prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+            }
+            if (paxSize >= 0) {
+                size = paxSize;
+            }
+            if (paxLastModified >= 0) {
+                lastModified = paxLastModified;
+            }
+            boolean directory = type == '5' || ((type == '0' || type == '\0') && name.endsWith("/"));
+            boolean regularFile = !directory && (type == '0' || type == '\0' || type == '7');
+            //links, devices, directories and fifos have no data, other entry types are skipped by their size
+            boolean hasData = !directory && "123456".indexOf(type) < 0;
+            entryInputStream.reset(hasData ? size : 0);
+            return new ArchiveEntry(name, directory, regularFile, regularFile ? size : 0, lastModified);
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return entryInputStream;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * Read next header block.
+     * @return false at the end of archive marked by zero block or end of stream.
+     */
+    private boolean readHeader() throws IOException {
+        int read = inputStream.readNBytes(header, 0, BLOCK_SIZE);
+        if (read == 0) {
+            return false;
+        }
+        if (read < BLOCK_SIZE) {
+            throw new EOFException("Truncated tar header");
+        }
+        long checksum = 0;
+        boolean zero = true;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            int b = header[i] & 0xFF;
+            zero &= b == 0;
+            checksum += (i >= 148 && i < 156) ? ' ' : b;
+        }
+        if (zero) {
+            return false;
+        }
+        if (checksum != parseNumber(148, 8)) {
+            throw new IOException("Invalid tar header checksum");
+        }
+        return true;
+    }
+
+    private byte[] readData(long size) throws IOException {
+        if (size < 0 || size > Integer.MAX_VALUE - BLOCK_SIZE) {
+            throw new IOException("Invalid tar extended header size " + size);
+        }
+        byte[] data = inputStream.readNBytes((int) size);
+        if (data.length < size) {
+            throw new EOFException("Truncated tar extended header");
+        }
+        skipFully(padding(size));
+        return data;
+    }
+
+    private boolean isUstar() {
+        return header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a'
+                && header[261] == 'r';
+    }
+
+    /**
+     * Parse octal number, or big endian binary number marked by the highest bit of the first byte (GNU).
+     */
+    private long parseNumber(int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7F;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (header[offset + i] & 0xFF);
+            }
+            return value;
+        }
+        long value = 0;
+        boolean digits = false;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || (b == ' ' && digits)) {
+                break;
+            }
+            if (b == ' ') {
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Invalid tar header number");
+            }
+            value = (value << 3) | (b - '0');
+            digits = true;
+        }
+        return value;
+    }
+
+    private static String parseString(byte[] data, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && data[end] != 0) {
+            end++;
+        }
+        return new String(data, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse pax records "length key=value\n".
+     */
+    private static List<String[]> parsePaxRecords(byte[] data) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        int position = 0;
+        while (position < data.length) {
+            int space = position;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            int length = Integer.parseInt(new String(data, position, space - position, StandardCharsets.US_ASCII));
+            if (space >= data.length || position + length > data.length || space + 1 >= position + length) {
+                throw new IOException("Invalid pax header");
+            }
+            String record = new String(data, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            int separator = record.indexOf('=');
+            if (separator > 0) {
+                records.add(new String[] { record.substring(0, separator), record.substring(separator + 1) });
+            }
+            position += length;
+        }
+        return records;
+    }
+
+    private static long padding(long size) {
+        return (BLOCK_SIZE - (size % BLOCK_SIZE)) % BLOCK_SIZE;
+    }
+
+    private void skipFully(long n) throws IOException {
+        inputStream.skipNBytes(n);
+    }
+
+    /**
+     * Data of the current entry, followed by padding to the block size which is skipped by the reader.
+     */
+    private class EntryInputStream extends InputStream {
+
+        private long remaining;
+        private long padding;
+
+        private void reset(long size) {
+            this.remaining = size;
+            this.padding = padding(size);
+        }
+
+        private void skipRemaining() throws IOException {
+            skipFully(remaining + padding);
+            remaining = 0;
+            padding = 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = inputStream.read();
+            if (b < 0) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = inputStream.read(b, off, (int) Math.min(len, remaining));
+            if (read < 0) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(inputStream.available(), remaining);
+        }
+
+    }
+
+}
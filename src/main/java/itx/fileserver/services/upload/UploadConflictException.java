@@ -0,0 +1,12 @@
+package itx.fileserver.services.upload;
+
+/**
+ * Chunk does not fit into upload session or session is not ready to be finished.
+ */
+public class UploadConflictException extends Exception {
+
+    public UploadConflictException(String message) {
+        super(message);
+    }
+
+}
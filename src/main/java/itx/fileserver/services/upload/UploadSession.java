@@ -0,0 +1,146 @@
+package itx.fileserver.services.upload;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * State of resumable upload session. Received byte ranges are kept merged, so the state stays small
+ * regardless of number of chunks. Ranges being written right now are reserved, so parallel chunks never overlap.
+ * Persisted state contains only received ranges, reservations are lost with the process.
+ */
+class UploadSession {
+
+    private final String id;
+    private final String owner;
+    private final String path;
+    private final long length;
+    private final long created;
+    private long lastModified;
+    private final TreeMap<Long, Long> received;
+    private final TreeMap<Long, Long> reserved;
+
+    @JsonCreator
+    UploadSession(@JsonProperty("id") String id,
+                  @JsonProperty("owner") String owner,
+                  @JsonProperty("path") String path,
+                  @JsonProperty("length") long length,
+                  @JsonProperty("created") long created,
+                  @JsonProperty("lastModified") long lastModified,
+                  @JsonProperty("ranges") List<long[]> ranges) {
+        this.id = id;
+        this.owner = owner;
+        this.path = path;
+        this.length = length;
+        this.created = created;
+        this.lastModified = lastModified;
+        this.received = new TreeMap<>();
+        this.reserved = new TreeMap<>();
+        if (ranges != null) {
+            ranges.forEach(r -> add(r[0], r[1]));
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public synchronized long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return received byte ranges as [start, end) pairs ordered by start.
+     */
+    public synchronized List<long[]> getRanges() {
+        List<long[]> ranges = new ArrayList<>(received.size());
+        received.forEach((start, end) -> ranges.add(new long[] { start, end }));
+        return ranges;
+    }
+
+    /**
+     * @return number of bytes received contiguously from the start of the file.
+     */
+    @JsonIgnore
+    public synchronized long getOffset() {
+        Long end = received.get(0L);
+        return (end == null) ? 0 : end;
+    }
+
+    @JsonIgnore
+    public synchronized boolean isComplete() {
+        return getOffset() == length;
+    }
+
+    @JsonIgnore
+    public synchronized boolean isIdle() {
+        return reserved.isEmpty();
+    }
+
+    /**
+     * Reserve range [start, end) for a chunk being written.
+     * @throws UploadConflictException if range is out of bounds or overlaps received or reserved range.
+     */
+    synchronized void reserve(long start, long end) throws UploadConflictException {
+        if (start < 0 || start > end || end > length) {
+            throw new UploadConflictException("Chunk " + start + "-" + end + " out of bounds " + length);
+        }
+        if (overlaps(received, start, end) || overlaps(reserved, start, end)) {
+            throw new UploadConflictException("Chunk " + start + "-" + end + " overlaps received data");
+        }
+        reserved.put(start, end);
+    }
+
+    /**
+     * Release reservation made by {@link #reserve(long, long)} and mark written bytes as received.
+     */
+    synchronized void release(long start, long written, long timestamp) {
+        reserved.remove(start);
+        if (written > 0) {
+            add(start, start + written);
+        }
+        lastModified = timestamp;
+    }
+
+    private void add(long start, long end) {
+        Map.Entry<Long, Long> previous = received.floorEntry(start);
+        if (previous != null && previous.getValue() >= start) {
+            start = previous.getKey();
+            end = Math.max(end, previous.getValue());
+        }
+        Map.Entry<Long, Long> next = received.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            received.remove(next.getKey());
+            next = received.ceilingEntry(start);
+        }
+        received.put(start, end);
+    }
+
+    private static boolean overlaps(TreeMap<Long, Long> ranges, long start, long end) {
+        Map.Entry<Long, Long> previous = ranges.lowerEntry(end);
+        return previous != null && previous.getValue() > start;
+    }
+
+}
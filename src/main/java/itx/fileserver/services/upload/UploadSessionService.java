@@ -0,0 +1,80 @@
+package itx.fileserver.services.upload;
+
+import itx.fileserver.dto.UploadSessionInfo;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.InsufficientStorageException;
+import itx.fileserver.services.OperationNotAllowedException;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Resumable uploads of large files. File data is uploaded in chunks at arbitrary offsets, chunks may be
+ * sent in parallel and repeated after failures. File appears on its path only when the session is finished.
+ * Sessions survive server restarts, sessions without activity are removed after timeout.
+ */
+public interface UploadSessionService {
+
+    /**
+     * Create new upload session.
+     * @param userData users's data writing the file.
+     * @param filePath relative path to file, parent directory must exist.
+     * @param length size of uploaded file in bytes.
+     * @return info about created session.
+     * @throws IOException
+     * @throws OperationNotAllowedException
+     * @throws InsufficientStorageException if there is not enough free space for the file.
+     */
+    UploadSessionInfo createSession(UserData userData, Path filePath, long length)
+            throws IOException, OperationNotAllowedException, InsufficientStorageException;
+
+    /**
+     * Get info about upload session, offset and received ranges tell the client where to resume.
+     * @param userData owner of the session.
+     * @param sessionId id of upload session.
+     * @return info about the session.
+     * @throws FileNotFoundException if session does not exist.
+     * @throws OperationNotAllowedException
+     */
+    UploadSessionInfo getSession(UserData userData, String sessionId)
+            throws FileNotFoundException, OperationNotAllowedException;
+
+    /**
+     * Write chunk of file data at given offset. When the stream ends prematurely, received part of the chunk is kept.
+     * @param userData owner of the session.
+     * @param sessionId id of upload session.
+     * @param offset position of the chunk in the file.
+     * @param chunkLength length of the chunk or -1 if unknown, chunk then ends at the end of stream.
+     * @param inputStream chunk data.
+     * @return info about the session after the chunk has been written.
+     * @throws IOException
+     * @throws OperationNotAllowedException
+     * @throws UploadConflictException if chunk overlaps received data or chunk being written, or exceeds file length.
+     */
+    UploadSessionInfo writeChunk(UserData userData, String sessionId, long offset, long chunkLength,
+                                 InputStream inputStream)
+            throws IOException, OperationNotAllowedException, UploadConflictException;
+
+    /**
+     * Move completely uploaded file to its path and remove the session.
+     * @param userData owner of the session.
+     * @param sessionId id of upload session.
+     * @throws IOException
+     * @throws OperationNotAllowedException
+     * @throws UploadConflictException if some data is still missing or being written.
+     */
+    void finishSession(UserData userData, String sessionId)
+            throws IOException, OperationNotAllowedException, UploadConflictException;
+
+    /**
+     * Remove upload session and its data.
+     * @param userData owner of the session.
+     * @param sessionId id of upload session.
+     * @throws IOException
+     * @throws OperationNotAllowedException
+     */
+    void cancelSession(UserData userData, String sessionId) throws IOException, OperationNotAllowedException;
+
+}
@@ -0,0 +1,379 @@
+package itx.fileserver.services.upload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.AuditConstants;
+import itx.fileserver.dto.AuditRecord;
+import itx.fileserver.dto.UploadSessionInfo;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.BufferPool;
+import itx.fileserver.services.ByteBufferStreams;
+import itx.fileserver.services.FileAccessService;
+import itx.fileserver.services.FileChangeEvent;
+import itx.fileserver.services.InsufficientStorageException;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.data.AuditService;
+import itx.fileserver.services.listing.DirectoryUsageIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Upload sessions are stored in sessions directory outside of file storage, each session has its state file
+ * (id.json) and staging file (id.part) of full file length. Chunks are written by positional writes,
+ * so parallel chunks of one session don't block each other. Finished file is renamed into place atomically
+ * by {@link FileCommitter}.
+ */
+@Service
+public class UploadSessionServiceImpl implements UploadSessionService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UploadSessionServiceImpl.class);
+
+    private static final String STATE_SUFFIX = ".json";
+    private static final String DATA_SUFFIX = ".part";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path fileStorageLocation;
+    private final Path sessionsDir;
+    private final long sessionTimeout;
+    private final FileAccessService fileAccessService;
+    private final AuditService auditService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BufferPool bufferPool;
+    private final FileCommitter fileCommitter;
+    private final DirectoryUsageIndex usageIndex;
+    private final ObjectMapper objectMapper;
+    private final Map<String, UploadSession> sessions;
+
+    @Autowired
+    public UploadSessionServiceImpl(FileServerConfig fileServerConfig, FileAccessService fileAccessService,
+                                    AuditService auditService, ApplicationEventPublisher eventPublisher,
+                                    BufferPool bufferPool, FileCommitter fileCommitter,
+                                    DirectoryUsageIndex usageIndex) throws IOException {
+        this.fileStorageLocation = Paths.get(fileServerConfig.getHome()).toAbsolutePath().normalize();
+        this.sessionsDir = getSessionsDir(fileServerConfig, fileStorageLocation);
+        this.sessionTimeout = fileServerConfig.getUploadSessionTimeout() * 1000;
+        this.fileAccessService = fileAccessService;
+        this.auditService = auditService;
+        this.eventPublisher = eventPublisher;
+        this.bufferPool = bufferPool;
+        this.fileCommitter = fileCommitter;
+        this.usageIndex = usageIndex;
+        this.objectMapper = new ObjectMapper();
+        this.sessions = new ConcurrentHashMap<>();
+        LOG.info("UploadSessionService: sessionsDir={} sessionTimeout={}s", sessionsDir,
+                fileServerConfig.getUploadSessionTimeout());
+        loadSessions();
+    }
+
+    @Override
+    public UploadSessionInfo createSession(UserData userData, Path filePath, long length)
+            throws IOException, OperationNotAllowedException, InsufficientStorageException {
+        LOG.info("createSession: {} {}", filePath, length);
+        filePath = filePath.normalize();
+        Path resolvedFilePath = resolveFilePath(filePath);
+        verifyReadAndWriteAccess(userData, filePath);
+        if (!Files.isDirectory(resolvedFilePath.getParent())) {
+            throw new NoSuchFileException(filePath.toString());
+        }
+        verifyUsableSpace(resolvedFilePath.getParent(), length);
+        verifyUsableSpace(sessionsDir, length);
+        long now = System.currentTimeMillis();
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), userData.getId(),
+                filePath.toString(), length, now, now, null);
+        try (RandomAccessFile file = new RandomAccessFile(getDataFile(session.getId()).toFile(), "rw")) {
+            file.setLength(length);
+        }
+        sessions.put(session.getId(), session);
+        try {
+            persist(session);
+        } catch (IOException e) {
+            sessions.remove(session.getId());
+            Files.deleteIfExists(getDataFile(session.getId()));
+            throw e;
+        }
+        return toInfo(session);
+    }
+
+    @Override
+    public UploadSessionInfo getSession(UserData userData, String sessionId)
+            throws FileNotFoundException, OperationNotAllowedException {
+        return toInfo(getOwnedSession(userData, sessionId));
+    }
+
+    @Override
+    public UploadSessionInfo writeChunk(UserData userData, String sessionId, long offset, long chunkLength,
+                                        InputStream inputStream)
+            throws IOException, OperationNotAllowedException, UploadConflictException {
+        UploadSession session = getOwnedSession(userData, sessionId);
+        long maxLength = ((chunkLength < 0) ? session.getLength() : offset + chunkLength) - offset;
+        session.reserve(offset, offset + maxLength);
+        long written = 0;
+        ByteBuffer buffer = bufferPool.acquire();
+        try (FileChannel channel = FileChannel.open(getDataFile(sessionId), StandardOpenOption.WRITE)) {
+            try {
+                boolean endOfStream = false;
+                while (!endOfStream && written < maxLength) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), maxLength - written));
+                    while (buffer.hasRemaining() && !endOfStream) {
+                        endOfStream = ByteBufferStreams.read(inputStream, buffer) < 0;
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        written += channel.write(buffer, offset + written);
+                    }
+                }
+                if (!endOfStream && inputStream.read() >= 0) {
+                    throw new UploadConflictException("Chunk at " + offset + " exceeds file length");
+                }
+            } finally {
+                if (written > 0) {
+                    //received ranges are persisted only after their data is on disk
+                    channel.force(false);
+                }
+            }
+        } finally {
+            bufferPool.release(buffer);
+            session.release(offset, written, System.currentTimeMillis());
+            persist(session);
+        }
+        if (chunkLength >= 0 && written != chunkLength) {
+            throw new IOException("Chunk incomplete " + sessionId + " " + offset + " " + written + "/" + chunkLength);
+        }
+        return toInfo(session);
+    }
+
+    @Override
+    public void finishSession(UserData userData, String sessionId)
+            throws IOException, OperationNotAllowedException, UploadConflictException {
+        UploadSession session = getOwnedSession(userData, sessionId);
+        Path filePath = Paths.get(session.getPath());
+        LOG.info("finishSession: {} {}", sessionId, filePath);
+        Path resolvedFilePath = resolveFilePath(filePath);
+        verifyReadAndWriteAccess(userData, filePath);
+        synchronized (session) {
+            if (!session.isComplete() || !session.isIdle()) {
+                throw new UploadConflictException("Upload incomplete " + sessionId + " " + session.getOffset()
+                        + "/" + session.getLength());
+            }
+            moveIntoPlace(filePath, getDataFile(sessionId), resolvedFilePath);
+            remove(session);
+        }
+        eventPublisher.publishEvent(new FileChangeEvent(FileChangeEvent.Type.MODIFIED, filePath, resolvedFilePath));
+        createUploadFileAuditRecord(userData, filePath);
+    }
+
+    @Override
+    public void cancelSession(UserData userData, String sessionId) throws IOException, OperationNotAllowedException {
+        UploadSession session = getOwnedSession(userData, sessionId);
+        LOG.info("cancelSession: {}", sessionId);
+        synchronized (session) {
+            remove(session);
+            Files.deleteIfExists(getDataFile(sessionId));
+        }
+    }
+
+    /**
+     * Remove sessions without any activity for longer than session timeout.
+     */
+    @Scheduled(fixedDelayString = "${fileserver.upload.gc-interval:3600000}",
+            initialDelayString = "${fileserver.upload.gc-interval:3600000}")
+    public void collectStaleSessions() {
+        long now = System.currentTimeMillis();
+        for (UploadSession session : sessions.values()) {
+            synchronized (session) {
+                if (session.isIdle() && now - session.getLastModified() > sessionTimeout) {
+                    LOG.info("collectStaleSessions: removing {} {}", session.getId(), session.getPath());
+                    try {
+                        remove(session);
+                        Files.deleteIfExists(getDataFile(session.getId()));
+                    } catch (IOException e) {
+                        LOG.warn("collectStaleSessions: unable to remove {} {}", session.getId(), e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private UploadSession getOwnedSession(UserData userData, String sessionId)
+            throws FileNotFoundException, OperationNotAllowedException {
+        UploadSession session = sessions.get(sessionId);
+        if (session == null) {
+            throw new FileNotFoundException("Upload session not found " + sessionId);
+        }
+        if (!session.getOwner().equals(userData.getId())) {
+            throw new OperationNotAllowedException();
+        }
+        return session;
+    }
+
+    private void moveIntoPlace(Path filePath, Path dataFile, Path resolvedFilePath) throws IOException {
+        long previousSize = getFileSize(resolvedFilePath);
+        long size = Files.size(dataFile);
+        try {
+            fileCommitter.commit(filePath, dataFile, resolvedFilePath);
+        } catch (AtomicMoveNotSupportedException e) {
+            //sessions directory is on another file system, copy next to the target first
+            Path tmpFile = FileCommitter.getTempFile(resolvedFilePath);
+            try {
+                Files.copy(dataFile, tmpFile);
+                fileCommitter.commit(filePath, tmpFile, resolvedFilePath);
+            } finally {
+                Files.deleteIfExists(tmpFile);
+            }
+            Files.delete(dataFile);
+        }
+        usageIndex.fileWritten(fileStorageLocation.relativize(resolvedFilePath), previousSize, size);
+    }
+
+    /**
+     * @return size of regular file or -1 if there is no such file.
+     */
+    private static long getFileSize(Path resolvedFilePath) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resolvedFilePath, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            return attributes.isRegularFile() ? attributes.size() : -1;
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    private void persist(UploadSession session) throws IOException {
+        synchronized (session) {
+            //removed sessions are not persisted again by chunks finishing late
+            if (sessions.get(session.getId()) == session) {
+                Path tmpFile = sessionsDir.resolve(session.getId() + STATE_SUFFIX + TMP_SUFFIX);
+                Files.write(tmpFile, objectMapper.writeValueAsBytes(session));
+                Files.move(tmpFile, getStateFile(session.getId()), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    private void remove(UploadSession session) throws IOException {
+        sessions.remove(session.getId());
+        Files.deleteIfExists(getStateFile(session.getId()));
+    }
+
+    /**
+     * Sessions from previous runs are restored, files without their counterpart are leftovers and are deleted.
+     */
+    private void loadSessions() throws IOException {
+        Files.createDirectories(sessionsDir);
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(sessionsDir)) {
+            list.forEach(files::add);
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(STATE_SUFFIX)) {
+                String sessionId = name.substring(0, name.length() - STATE_SUFFIX.length());
+                if (Files.isRegularFile(getDataFile(sessionId))) {
+                    sessions.put(sessionId, objectMapper.readValue(file.toFile(), UploadSession.class));
+                } else {
+                    Files.delete(file);
+                }
+            } else if (name.endsWith(DATA_SUFFIX)) {
+                String sessionId = name.substring(0, name.length() - DATA_SUFFIX.length());
+                if (!Files.isRegularFile(getStateFile(sessionId))) {
+                    Files.delete(file);
+                }
+            } else if (name.endsWith(TMP_SUFFIX)) {
+                Files.delete(file);
+            }
+        }
+        LOG.info("UploadSessionService: restored {} sessions", sessions.size());
+    }
+
+    private Path getStateFile(String sessionId) {
+        return sessionsDir.resolve(sessionId + STATE_SUFFIX);
+    }
+
+    private Path getDataFile(String sessionId) {
+        return sessionsDir.resolve(sessionId + DATA_SUFFIX);
+    }
+
+    /**
+     * @param filePath normalized path relative to file storage.
+     * @return absolute path of the file, which must be inside of file storage.
+     */
+    private Path resolveFilePath(Path filePath) throws OperationNotAllowedException {
+        Path resolvedFilePath = fileStorageLocation.resolve(filePath).normalize();
+        if (filePath.isAbsolute() || filePath.startsWith("..") || !resolvedFilePath.startsWith(fileStorageLocation)
+                || resolvedFilePath.equals(fileStorageLocation)) {
+            LOG.warn("upload session path outside of file storage: {}", filePath);
+            throw new OperationNotAllowedException();
+        }
+        return resolvedFilePath;
+    }
+
+    private void verifyReadAndWriteAccess(UserData userData, Path filePath) throws OperationNotAllowedException {
+        if (!fileAccessService.canReadAndWrite(userData.getRoles(), filePath)) {
+            throw new OperationNotAllowedException();
+        }
+    }
+
+    private static void verifyUsableSpace(Path directory, long length) throws IOException,
+            InsufficientStorageException {
+        long usableSpace = Files.getFileStore(directory).getUsableSpace();
+        if (usableSpace < length) {
+            LOG.warn("createSession: insufficient storage {} required={} usable={}", directory, length, usableSpace);
+            throw new InsufficientStorageException();
+        }
+    }
+
+    private static UploadSessionInfo toInfo(UploadSession session) {
+        return new UploadSessionInfo(session.getId(), session.getPath(), session.getLength(), session.getOffset(),
+                session.getRanges());
+    }
+
+    private static Path getSessionsDir(FileServerConfig fileServerConfig, Path fileStorageLocation) {
+        Path path;
+        if (fileServerConfig.getUploadSessionsDir() != null) {
+            path = Paths.get(fileServerConfig.getUploadSessionsDir());
+        } else if (fileServerConfig.getDataBasedir() != null) {
+            path = Paths.get(fileServerConfig.getDataBasedir(), "upload-sessions");
+        } else {
+            path = Paths.get(System.getProperty("java.io.tmpdir"), "file-server-upload-sessions");
+        }
+        path = path.toAbsolutePath().normalize();
+        if (path.startsWith(fileStorageLocation)) {
+            throw new IllegalArgumentException("Upload sessions directory must be outside of file storage " + path);
+        }
+        return path;
+    }
+
+    private void createUploadFileAuditRecord(UserData userData, Path filePath) {
+        AuditRecord auditRecord = new AuditRecord(Instant.now().getEpochSecond(),
+                AuditConstants.CategoryFileAccess.NAME, AuditConstants.CategoryFileAccess.UPLOAD,
+                userData.getId(), filePath.toString(), "OK", "");
+        auditService.storeAudit(auditRecord);
+    }
+
+}
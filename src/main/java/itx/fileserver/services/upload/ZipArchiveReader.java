@@ -0,0 +1,40 @@
+package itx.fileserver.services.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads zip archive from a stream using local file headers, central directory at the end is not needed.
+ */
+class ZipArchiveReader implements ArchiveReader {
+
+    private final ZipInputStream zipInputStream;
+
+    ZipArchiveReader(InputStream inputStream) {
+        this.zipInputStream = new ZipInputStream(inputStream);
+    }
+
+    @Override
+    public ArchiveEntry next() throws IOException {
+        ZipEntry entry = zipInputStream.getNextEntry();
+        if (entry == null) {
+            return null;
+        }
+        long lastModified = (entry.getLastModifiedTime() == null) ? -1 : entry.getLastModifiedTime().toMillis();
+        return new ArchiveEntry(entry.getName(), entry.isDirectory(), !entry.isDirectory(), entry.getSize(),
+                lastModified);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return zipInputStream;
+    }
+
+    @Override
+    public void close() throws IOException {
+        zipInputStream.close();
+    }
+
+}
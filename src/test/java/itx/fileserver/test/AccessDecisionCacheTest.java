@@ -0,0 +1,88 @@
+package itx.fileserver.test;
+
+import itx.fileserver.dto.AccessCacheStats;
+import itx.fileserver.dto.FilterConfig;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.services.AccessDecisionCache;
+import itx.fileserver.services.FileAccessService;
+import itx.fileserver.services.FileAccessServiceImpl;
+import itx.fileserver.services.data.inmemory.FileAccessManagerServiceInmemory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccessDecisionCacheTest {
+
+    private static final Set<RoleId> PUBLIC = Set.of(new RoleId("public"));
+
+    private FileAccessManagerServiceInmemory fileAccessManagerService;
+
+    @BeforeEach
+    public void init() {
+        fileAccessManagerService =
+                new FileAccessManagerServiceInmemory(TestUtils.createFileServerConfigForFileAccessService());
+    }
+
+    @Test
+    void testDecisionsAreCached() {
+        AccessDecisionCache accessDecisionCache = new AccessDecisionCache(true, 1000);
+        FileAccessService fileAccessService = new FileAccessServiceImpl(fileAccessManagerService, accessDecisionCache);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(fileAccessService.canRead(PUBLIC, Paths.get("public/" + i + ".txt")));
+            assertFalse(fileAccessService.canRead(PUBLIC, Paths.get("jane/" + i + ".txt")));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(fileAccessService.canRead(PUBLIC, Paths.get("public/" + i + ".txt")));
+            //equal role sets share cached decisions
+            assertFalse(fileAccessService.canRead(new HashSet<>(PUBLIC), Paths.get("jane/" + i + ".txt")));
+        }
+        //access type is part of the key
+        assertFalse(fileAccessService.canReadAndWrite(PUBLIC, Paths.get("public/readonly/0.txt")));
+        assertTrue(fileAccessService.canRead(PUBLIC, Paths.get("public/readonly/0.txt")));
+
+        AccessCacheStats stats = accessDecisionCache.getStats();
+        assertEquals(20, stats.getHitCount());
+        assertEquals(22, stats.getMissCount());
+        assertEquals(42, stats.getCheckCount());
+        assertEquals(22, stats.getEntries());
+        assertTrue(stats.getAverageCheckNanos() > 0);
+    }
+
+    @Test
+    void testFilterChangeInvalidatesDecisions() {
+        AccessDecisionCache accessDecisionCache = new AccessDecisionCache(true, 1000);
+        FileAccessService fileAccessService = new FileAccessServiceImpl(fileAccessManagerService, accessDecisionCache);
+        Path path = Paths.get("jane/a.txt");
+        assertFalse(fileAccessService.canRead(PUBLIC, path));
+        FilterConfig filterConfig = new FilterConfig("jane/*.txt", "READ", "public");
+        fileAccessManagerService.addFilter(filterConfig);
+        assertTrue(fileAccessService.canRead(PUBLIC, path));
+        assertTrue(fileAccessService.canRead(PUBLIC, path));
+        fileAccessManagerService.removeFilter(filterConfig);
+        assertFalse(fileAccessService.canRead(PUBLIC, path));
+        assertEquals(1, accessDecisionCache.getStats().getHitCount());
+        assertEquals(3, accessDecisionCache.getStats().getMissCount());
+    }
+
+    @Test
+    void testDisabled() {
+        AccessDecisionCache accessDecisionCache = new AccessDecisionCache(false, 1000);
+        FileAccessService fileAccessService = new FileAccessServiceImpl(fileAccessManagerService, accessDecisionCache);
+        assertTrue(fileAccessService.canRead(PUBLIC, Paths.get("public/a.txt")));
+        assertTrue(fileAccessService.canRead(PUBLIC, Paths.get("public/a.txt")));
+        AccessCacheStats stats = accessDecisionCache.getStats();
+        assertFalse(stats.isEnabled());
+        assertEquals(0, stats.getHitCount() + stats.getMissCount());
+        assertEquals(2, stats.getCheckCount());
+        assertEquals(0, stats.getEntries());
+    }
+
+}
@@ -0,0 +1,124 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.FilterConfig;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.FileAccessServiceImpl;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.data.inmemory.AuditServiceInmemory;
+import itx.fileserver.services.data.inmemory.FileAccessManagerServiceInmemory;
+import itx.fileserver.services.download.ArchiveService;
+import itx.fileserver.services.download.ArchiveServiceImpl;
+import itx.fileserver.services.upload.FileCommitter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveServiceTest {
+
+    private static final String TEXT = "text ".repeat(1000);
+
+    @TempDir
+    static Path home;
+
+    private static ArchiveService archiveService;
+
+    @BeforeAll
+    public static void init() throws IOException {
+        Files.createDirectories(home.resolve("public/nested/empty"));
+        Files.createDirectories(home.resolve("public/secret"));
+        Files.writeString(home.resolve("public/data.txt"), TEXT);
+        Files.writeString(home.resolve("public/nested/image.jpg"), TEXT);
+        Files.writeString(home.resolve("public/secret/secret.txt"), TEXT);
+        //upload in progress
+        Files.writeString(FileCommitter.getTempFile(home.resolve("public/nested/upload.txt")), "partial");
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.getFilters().add(new FilterConfig("public", "READ", "public"));
+        fileServerConfig.getFilters().add(new FilterConfig("public/secret/**", "NONE", "public"));
+        fileServerConfig.setHome(home.toString());
+        fileServerConfig.setBufferSize(16 * 1024);
+        archiveService = new ArchiveServiceImpl(fileServerConfig,
+                new FileAccessServiceImpl(new FileAccessManagerServiceInmemory(fileServerConfig)),
+                new AuditServiceInmemory(1024));
+    }
+
+    @Test
+    void testArchive() throws IOException, OperationNotAllowedException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        archiveService.downloadArchive(createUser("public"), Paths.get("public"), response);
+        assertEquals(200, response.getStatus());
+        assertEquals("application/zip", response.getContentType());
+        assertEquals("attachment; filename=\"public.zip\"", response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        Map<String, ZipEntry> entries = readEntries(response.getContentAsByteArray());
+        //directory itself matches public/**, its content matches public/secret/**
+        assertEquals(Set.of("data.txt", "nested/", "nested/empty/", "nested/image.jpg", "secret/"), entries.keySet());
+        //text is deflated, already compressed files are not
+        assertTrue(entries.get("data.txt").getCompressedSize() < TEXT.length() / 10);
+        assertTrue(entries.get("nested/image.jpg").getCompressedSize() >= TEXT.length());
+    }
+
+    @Test
+    void testArchiveAllFilesReadable() throws IOException, OperationNotAllowedException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        archiveService.downloadArchive(createUser("master"), Paths.get("public"), response);
+        Map<String, ZipEntry> entries = readEntries(response.getContentAsByteArray());
+        assertTrue(entries.containsKey("secret/"));
+        assertTrue(entries.containsKey("secret/secret.txt"));
+    }
+
+    @Test
+    void testArchiveNotAllowed() {
+        assertThrows(OperationNotAllowedException.class, () ->
+            archiveService.downloadArchive(createUser("jane"), Paths.get("public"), new MockHttpServletResponse()));
+    }
+
+    @Test
+    void testArchiveNotFound() {
+        assertThrows(FileNotFoundException.class, () ->
+            archiveService.downloadArchive(createUser("public"), Paths.get("public/missing"),
+                    new MockHttpServletResponse()));
+        assertThrows(FileNotFoundException.class, () ->
+            archiveService.downloadArchive(createUser("public"), Paths.get("public/data.txt"),
+                    new MockHttpServletResponse()));
+    }
+
+    private static UserData createUser(String role) {
+        return new UserData(role, Set.of(new RoleId(role)), "secret");
+    }
+
+    private static Map<String, ZipEntry> readEntries(byte[] archive) throws IOException {
+        Map<String, ZipEntry> entries = new HashMap<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                byte[] data = zipInputStream.readAllBytes();
+                if (!entry.isDirectory()) {
+                    assertEquals(TEXT, new String(data, StandardCharsets.UTF_8));
+                }
+                entries.put(entry.getName(), entry);
+            }
+        }
+        return entries;
+    }
+
+}
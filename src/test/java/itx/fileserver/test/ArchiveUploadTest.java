@@ -0,0 +1,225 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.ArchiveFormat;
+import itx.fileserver.dto.ArchiveUploadResult;
+import itx.fileserver.dto.AuditConstants;
+import itx.fileserver.dto.AuditQuery;
+import itx.fileserver.dto.AuditRecord;
+import itx.fileserver.dto.FilterConfig;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.FileService;
+import itx.fileserver.services.data.inmemory.AuditServiceInmemory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveUploadTest {
+
+    @TempDir
+    Path home;
+
+    private AuditServiceInmemory auditService;
+    private FileService fileService;
+
+    @BeforeEach
+    public void init() throws Exception {
+        Files.createDirectories(home.resolve("public"));
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.setHome(home.toString());
+        List<FilterConfig> filters = new ArrayList<>(fileServerConfig.getFilters());
+        filters.add(new FilterConfig("public/bulk/readonly/**", "READ", "public"));
+        fileServerConfig.setFilters(filters);
+        fileServerConfig.setBufferSize(16 * 1024);
+        fileServerConfig.setBufferCount(4);
+        auditService = new AuditServiceInmemory(1024);
+        fileService = TestUtils.newFileServiceBuilder(fileServerConfig).withAuditService(auditService).build();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ArchiveFormat.class)
+    void testExtractArchive(ArchiveFormat format) throws Exception {
+        List<String[]> entries = List.of(
+                new String[] { "docs/", null },
+                new String[] { "docs/a.txt", "content of a" },
+                new String[] { "docs/nested/b.txt", "content of b" },
+                new String[] { "empty.txt", "" },
+                new String[] { "../escape.txt", "escaped" },
+                new String[] { "readonly/denied.txt", "denied" });
+        byte[] archive = createArchive(format, entries);
+
+        ArchiveUploadResult result = fileService.extractArchive(createUser(), Paths.get("public/bulk"),
+                new ByteArrayInputStream(archive), format);
+
+        assertEquals(3, result.getFiles());
+        assertEquals(1, result.getDirectories());
+        assertEquals(24, result.getBytes());
+        assertEquals(List.of("../escape.txt", "readonly/denied.txt"), result.getSkipped());
+        assertEquals("content of a", Files.readString(home.resolve("public/bulk/docs/a.txt")));
+        assertEquals("content of b", Files.readString(home.resolve("public/bulk/docs/nested/b.txt")));
+        assertEquals(0, Files.size(home.resolve("public/bulk/empty.txt")));
+        assertFalse(Files.exists(home.resolve("public/escape.txt")));
+        assertFalse(Files.exists(home.resolve("public/bulk/readonly/denied.txt")));
+
+        Collection<AuditRecord> audits = auditService.getAudits(AuditQuery.MATCH_ALL);
+        assertEquals(1, audits.size());
+        AuditRecord audit = audits.iterator().next();
+        assertEquals(AuditConstants.CategoryFileAccess.UPLOAD_ARCHIVE, audit.getAction());
+        assertEquals("OK", audit.getMessage());
+        assertEquals(List.of("12 public/bulk/docs/a.txt", "12 public/bulk/docs/nested/b.txt",
+                        "0 public/bulk/empty.txt"),
+                Arrays.asList(audit.getData().split("\n")));
+    }
+
+    @Test
+    void testTarExtensions() throws Exception {
+        String longName = "deep/" + "x".repeat(120) + "/" + "y".repeat(80) + ".txt";
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        byte[] pax = paxRecord("path", longName);
+        writeTarHeader(tar, "PaxHeaders/long", pax.length, 'x', "");
+        writeTarData(tar, pax);
+        writeTarHeader(tar, "ignored-short-name", 4, '0', "");
+        writeTarData(tar, "long".getBytes(StandardCharsets.UTF_8));
+        writeTarHeader(tar, "././@LongLink", longName.length() + 1, 'L', "");
+        writeTarData(tar, (longName.replace("deep/", "gnu/") + "\0").getBytes(StandardCharsets.UTF_8));
+        writeTarHeader(tar, "ignored-gnu-name", 3, '0', "");
+        writeTarData(tar, "gnu".getBytes(StandardCharsets.UTF_8));
+        writeTarHeader(tar, "link", 0, '2', "docs/a.txt");
+        writeTarHeader(tar, "after-link.txt", 5, '0', "");
+        writeTarData(tar, "after".getBytes(StandardCharsets.UTF_8));
+        tar.write(new byte[1024]);
+
+        ArchiveUploadResult result = fileService.extractArchive(createUser(), Paths.get("public/extensions"),
+                new ByteArrayInputStream(tar.toByteArray()), ArchiveFormat.TAR);
+
+        assertEquals(3, result.getFiles());
+        assertEquals(List.of("link"), result.getSkipped());
+        assertEquals("long", Files.readString(home.resolve("public/extensions").resolve(longName)));
+        assertEquals("gnu", Files.readString(home.resolve("public/extensions")
+                .resolve(longName.replace("deep/", "gnu/"))));
+        assertEquals("after", Files.readString(home.resolve("public/extensions/after-link.txt")));
+        assertFalse(Files.exists(home.resolve("public/extensions/link")));
+    }
+
+    @Test
+    void testCorruptedArchive() throws Exception {
+        byte[] archive = createArchive(ArchiveFormat.TAR, List.<String[]>of(
+                new String[] { "first.txt", "first" }, new String[] { "second.txt", "second" }));
+        //corrupt header of the second entry
+        archive[1024 + 10] = 'z';
+        assertThrows(IOException.class, () -> fileService.extractArchive(createUser(), Paths.get("public/corrupted"),
+                new ByteArrayInputStream(archive), ArchiveFormat.TAR));
+        assertEquals("first", Files.readString(home.resolve("public/corrupted/first.txt")));
+        AuditRecord audit = auditService.getAudits(AuditQuery.MATCH_ALL).iterator().next();
+        assertEquals("INCOMPLETE", audit.getMessage());
+        assertEquals("5 public/corrupted/first.txt\n", audit.getData());
+    }
+
+    @Test
+    void testTargetAccess() {
+        assertThrows(Exception.class, () -> fileService.extractArchive(createUser(), Paths.get("jane/target"),
+                new ByteArrayInputStream(new byte[1024]), ArchiveFormat.TAR));
+        assertFalse(Files.exists(home.resolve("jane")));
+        assertTrue(auditService.getAudits(AuditQuery.MATCH_ALL).isEmpty());
+    }
+
+    private static byte[] createArchive(ArchiveFormat format, List<String[]> entries) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        if (format == ArchiveFormat.ZIP) {
+            try (ZipOutputStream zip = new ZipOutputStream(data)) {
+                for (String[] entry : entries) {
+                    zip.putNextEntry(new ZipEntry(entry[0]));
+                    if (entry[1] != null) {
+                        zip.write(entry[1].getBytes(StandardCharsets.UTF_8));
+                    }
+                    zip.closeEntry();
+                }
+            }
+            return data.toByteArray();
+        }
+        try (OutputStream out = (format == ArchiveFormat.TAR_GZIP) ? new GZIPOutputStream(data) : data) {
+            for (String[] entry : entries) {
+                if (entry[1] == null) {
+                    writeTarHeader(out, entry[0], 0, '5', "");
+                } else {
+                    byte[] content = entry[1].getBytes(StandardCharsets.UTF_8);
+                    writeTarHeader(out, entry[0], content.length, '0', "");
+                    writeTarData(out, content);
+                }
+            }
+            out.write(new byte[1024]);
+        }
+        return data.toByteArray();
+    }
+
+    private static void writeTarHeader(OutputStream out, String name, long size, char type,
+                                       String linkName) throws IOException {
+        byte[] header = new byte[512];
+        put(header, 0, name, 100);
+        put(header, 100, "0000644", 8);
+        put(header, 108, "0001750", 8);
+        put(header, 116, "0001750", 8);
+        put(header, 124, String.format("%011o", size), 12);
+        put(header, 136, String.format("%011o", 1_700_000_000L), 12);
+        header[156] = (byte) type;
+        put(header, 157, linkName, 100);
+        put(header, 257, "ustar", 6);
+        put(header, 263, "00", 2);
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        put(header, 148, String.format("%06o", checksum), 7);
+        out.write(header);
+    }
+
+    private static void writeTarData(OutputStream out, byte[] data) throws IOException {
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    private static byte[] paxRecord(String key, String value) {
+        String record = " " + key + "=" + value + "\n";
+        int length = record.length();
+        while (String.valueOf(length).length() + record.length() != length) {
+            length = String.valueOf(length).length() + record.length();
+        }
+        return (length + record).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void put(byte[] header, int offset, String value, int length) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+
+    private static UserData createUser() {
+        return new UserData("public", Set.of(new RoleId("public")), "secret");
+    }
+
+}
@@ -0,0 +1,104 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.DedupStats;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.FileService;
+import itx.fileserver.services.upload.BlobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlobStoreTest {
+
+    private static final String CONTENT = "build artifact ".repeat(1000);
+    private static final UserData USER = new UserData("master", Set.of(new RoleId("master")), "secret");
+
+    @TempDir
+    Path root;
+
+    private Path home;
+    private BlobStore blobStore;
+    private FileService fileService;
+
+    @BeforeEach
+    public void init() throws IOException {
+        home = Files.createDirectories(root.resolve("home"));
+        Files.createDirectories(home.resolve("a"));
+        Files.createDirectories(home.resolve("b"));
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.setHome(home.toString());
+        fileServerConfig.setBufferSize(16 * 1024);
+        fileServerConfig.setBufferCount(4);
+        fileServerConfig.setUploadDedupEnabled(true);
+        fileServerConfig.setUploadDedupBlobDir(root.resolve("blobs").toString());
+        blobStore = new BlobStore(fileServerConfig);
+        fileService = TestUtils.newFileServiceBuilder(fileServerConfig).withBlobStore(blobStore).build();
+    }
+
+    @Test
+    void testDeduplication() throws Exception {
+        assertTrue(blobStore.isEnabled());
+        upload("a/data.bin", CONTENT);
+        upload("b/data.bin", CONTENT);
+        upload("b/copy.bin", CONTENT);
+        upload("a/other.bin", "other content");
+        assertEquals(CONTENT, Files.readString(home.resolve("b/copy.bin")));
+        assertEquals(4, getLinkCount("a/data.bin"));
+        assertEquals(2, getLinkCount("a/other.bin"));
+
+        DedupStats stats = blobStore.getStats();
+        assertEquals(2, stats.getBlobs());
+        assertEquals(CONTENT.length() + 13, stats.getStoredBytes());
+        assertEquals(3L * CONTENT.length() + 13, stats.getLogicalBytes());
+        assertEquals(2L * CONTENT.length(), stats.getSavedBytes());
+    }
+
+    @Test
+    void testReferenceCounts() throws Exception {
+        upload("a/data.bin", CONTENT);
+        upload("b/data.bin", CONTENT);
+        fileService.move(USER, Paths.get("b/data.bin"), Paths.get("b/moved.bin"));
+        assertEquals(3, getLinkCount("a/data.bin"));
+        fileService.delete(USER, Paths.get("b"));
+        assertEquals(2, getLinkCount("a/data.bin"));
+
+        //overwrite releases reference to previous content
+        upload("a/data.bin", "new content");
+        blobStore.collectGarbage();
+        DedupStats stats = blobStore.getStats();
+        assertEquals(1, stats.getBlobs());
+        assertEquals(11, stats.getStoredBytes());
+        try (var blobs = Files.walk(root.resolve("blobs"))) {
+            assertEquals(1, blobs.filter(Files::isRegularFile).count());
+        }
+
+        fileService.delete(USER, Paths.get("a/data.bin"));
+        blobStore.collectGarbage();
+        assertEquals(0, blobStore.getStats().getBlobs());
+        assertFalse(Files.exists(home.resolve("a/data.bin")));
+    }
+
+    private void upload(String path, String content) throws Exception {
+        fileService.saveFile(USER, Paths.get(path),
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private int getLinkCount(String path) throws IOException {
+        return (Integer) Files.getAttribute(home.resolve(path), "unix:nlink");
+    }
+
+}
@@ -0,0 +1,82 @@
+package itx.fileserver.test;
+
+import itx.fileserver.services.download.ByteRange;
+import itx.fileserver.services.download.ByteRanges;
+import itx.fileserver.services.download.RangeNotSatisfiableException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ByteRangesTest {
+
+    public static Stream<Arguments> satisfiableData() {
+        return Stream.of(
+                Arguments.of( null, 100L, List.of() ),
+                Arguments.of( "bytes=0-0", 100L, List.of(new ByteRange(0, 0)) ),
+                Arguments.of( "bytes=0-99", 100L, List.of(new ByteRange(0, 99)) ),
+                Arguments.of( "bytes=0-", 100L, List.of(new ByteRange(0, 99)) ),
+                Arguments.of( "bytes=99-", 100L, List.of(new ByteRange(99, 99)) ),
+                Arguments.of( "bytes=10-1000", 100L, List.of(new ByteRange(10, 99)) ),
+                Arguments.of( "bytes=-1", 100L, List.of(new ByteRange(99, 99)) ),
+                Arguments.of( "bytes=-100", 100L, List.of(new ByteRange(0, 99)) ),
+                Arguments.of( "bytes=-500", 100L, List.of(new ByteRange(0, 99)) ),
+                Arguments.of( "BYTES=1-2", 100L, List.of(new ByteRange(1, 2)) ),
+                Arguments.of( "bytes= 1 - 2 ", 100L, List.of(new ByteRange(1, 2)) ),
+                Arguments.of( "bytes=0-9,20-29", 100L, List.of(new ByteRange(0, 9), new ByteRange(20, 29)) ),
+                Arguments.of( "bytes=20-29,0-9", 100L, List.of(new ByteRange(0, 9), new ByteRange(20, 29)) ),
+                Arguments.of( "bytes=0-9,10-19", 100L, List.of(new ByteRange(0, 19)) ),
+                Arguments.of( "bytes=0-50,10-19", 100L, List.of(new ByteRange(0, 50)) ),
+                Arguments.of( "bytes=0-9,-10", 100L, List.of(new ByteRange(0, 9), new ByteRange(90, 99)) ),
+                Arguments.of( "bytes=200-300,0-9", 100L, List.of(new ByteRange(0, 9)) ),
+                Arguments.of( "bytes=0-9,,20-29", 100L, List.of(new ByteRange(0, 9), new ByteRange(20, 29)) ),
+                Arguments.of( "items=0-9", 100L, List.of() ),
+                Arguments.of( "bytes=", 100L, List.of() ),
+                Arguments.of( "bytes=abc", 100L, List.of() ),
+                Arguments.of( "bytes=9-1", 100L, List.of() ),
+                Arguments.of( "bytes=-", 100L, List.of() ),
+                Arguments.of( "bytes=0-9,x-1", 100L, List.of() ),
+                Arguments.of( "bytes=+1-2", 100L, List.of() )
+        );
+    }
+
+    public static Stream<Arguments> unsatisfiableData() {
+        return Stream.of(
+                Arguments.of( "bytes=100-", 100L ),
+                Arguments.of( "bytes=100-200", 100L ),
+                Arguments.of( "bytes=-0", 100L ),
+                Arguments.of( "bytes=0-", 0L ),
+                Arguments.of( "bytes=-10", 0L ),
+                Arguments.of( "bytes=100-110,200-", 100L )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("satisfiableData")
+    void testSatisfiableRanges(String rangeHeader, long length, List<ByteRange> expectedRanges) throws RangeNotSatisfiableException {
+        List<ByteRange> ranges = ByteRanges.parse(rangeHeader, length);
+        assertEquals(expectedRanges, ranges);
+    }
+
+    @ParameterizedTest
+    @MethodSource("unsatisfiableData")
+    void testUnsatisfiableRanges(String rangeHeader, long length) {
+        assertThrows(RangeNotSatisfiableException.class, () -> ByteRanges.parse(rangeHeader, length));
+    }
+
+    @Test
+    void testTooManyRangesAreIgnored() throws RangeNotSatisfiableException {
+        StringBuilder sb = new StringBuilder("bytes=");
+        for (int i = 0; i <= ByteRanges.MAX_RANGES; i++) {
+            sb.append(i * 2).append('-').append(i * 2).append(',');
+        }
+        assertEquals(List.of(), ByteRanges.parse(sb.toString(), 1000));
+    }
+
+}
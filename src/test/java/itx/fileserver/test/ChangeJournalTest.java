@@ -0,0 +1,256 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.ChangeEntry;
+import itx.fileserver.dto.ChangeList;
+import itx.fileserver.dto.FilterConfig;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.FileAccessService;
+import itx.fileserver.services.FileAccessServiceImpl;
+import itx.fileserver.services.FileChangeEvent;
+import itx.fileserver.services.FileService;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.data.inmemory.AuditServiceInmemory;
+import itx.fileserver.services.data.inmemory.FileAccessManagerServiceInmemory;
+import itx.fileserver.services.journal.ChangeJournal;
+import itx.fileserver.services.journal.ChangeJournalService;
+import itx.fileserver.services.journal.ChangeJournalServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangeJournalTest {
+
+    private static final UserData MASTER = new UserData("master", Set.of(new RoleId("master")), "secret");
+    private static final UserData PUBLIC = new UserData("public", Set.of(new RoleId("public")), "secret");
+
+    @TempDir
+    Path root;
+
+    private Path journalFile;
+    private FileServerConfig fileServerConfig;
+    private FileAccessService fileAccessService;
+    private ChangeJournal changeJournal;
+    private ChangeJournalService changeJournalService;
+    private FileService fileService;
+
+    @BeforeEach
+    public void init() throws Exception {
+        Path home = Files.createDirectories(root.resolve("home"));
+        Files.createDirectories(home.resolve("public/a"));
+        Files.createDirectories(home.resolve("jane"));
+        journalFile = root.resolve("data/change-journal.log");
+        fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.setHome(home.toString());
+        fileServerConfig.setDataBasedir(root.resolve("data").toString());
+        fileServerConfig.setBufferSize(16 * 1024);
+        fileServerConfig.setBufferCount(4);
+        fileServerConfig.setJournalMaxResults(100);
+        fileServerConfig.setJournalMaxWait(10);
+        fileAccessService = new FileAccessServiceImpl(new FileAccessManagerServiceInmemory(fileServerConfig));
+        openJournal(1000);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        changeJournal.close();
+    }
+
+    @Test
+    void testChangesSinceToken() throws Exception {
+        String token = getChanges(MASTER, "", null, 0).getToken();
+        fileService.createDirectory(MASTER, Paths.get("public/b"));
+        fileService.saveFile(MASTER, Paths.get("public/b/one.txt"), stream("one"));
+        fileService.move(MASTER, Paths.get("public/b/one.txt"), Paths.get("public/a/two.txt"));
+        fileService.delete(MASTER, Paths.get("public/b"));
+
+        ChangeList changes = getChanges(MASTER, "", token, 0);
+        assertChanges(List.of("CREATED public/b", "MODIFIED public/b/one.txt", "MOVED public/b/one.txt public/a/two.txt",
+                "DELETED public/b"), changes);
+        assertFalse(changes.isMore());
+        assertFalse(changes.isResyncRequired());
+        assertChanges(List.of(), getChanges(MASTER, "", changes.getToken(), 0));
+
+        //changes are returned in pages
+        changes = getChanges(MASTER, "", token, 3);
+        assertEquals(3, changes.getChanges().size());
+        assertTrue(changes.isMore());
+        assertChanges(List.of("DELETED public/b"), getChanges(MASTER, "", changes.getToken(), 3));
+
+        //only changes in the directory and its parents are returned
+        //move into the directory is creation there
+        assertChanges(List.of("CREATED public/a/two.txt"), getChanges(MASTER, "public/a", token, 0));
+        fileService.delete(MASTER, Paths.get("public/a"));
+        assertChanges(List.of("DELETED public/a"), getChanges(MASTER, "public/a/c", changes.getToken(), 0));
+
+        assertThrows(IllegalArgumentException.class, () -> getChanges(MASTER, "", "invalid", 0));
+    }
+
+    @Test
+    void testAccessFiltering() throws Exception {
+        String token = getChanges(PUBLIC, "", null, 0).getToken();
+        fileService.saveFile(MASTER, Paths.get("jane/secret.txt"), stream("secret"));
+        fileService.saveFile(MASTER, Paths.get("public/a/one.txt"), stream("one"));
+        fileService.move(MASTER, Paths.get("public/a/one.txt"), Paths.get("jane/one.txt"));
+        fileService.move(MASTER, Paths.get("jane/secret.txt"), Paths.get("public/secret.txt"));
+        fileService.createDirectory(MASTER, Paths.get("public/b"));
+
+        //public directory itself is not readable, but files below it are
+        assertChanges(List.of("MODIFIED public/a/one.txt", "DELETED public/a/one.txt", "CREATED public/secret.txt",
+                "CREATED public/b"), getChanges(PUBLIC, "", token, 0));
+        assertThrows(OperationNotAllowedException.class, () -> getChanges(PUBLIC, "jane", token, 0));
+        assertThrows(OperationNotAllowedException.class, () -> getChanges(PUBLIC, "public/../jane", token, 0));
+    }
+
+    @Test
+    void testAccessFilteringNoneOverride() throws Exception {
+        List<FilterConfig> filters = new ArrayList<>(fileServerConfig.getFilters());
+        filters.add(new FilterConfig("**", "READ", "reader"));
+        filters.add(new FilterConfig("public/private/**", "NONE", "reader"));
+        fileServerConfig.setFilters(filters);
+        fileAccessService = new FileAccessServiceImpl(new FileAccessManagerServiceInmemory(fileServerConfig));
+        changeJournal.close();
+        openJournal(1000);
+        UserData reader = new UserData("reader", Set.of(new RoleId("reader")), "secret");
+        String token = getChanges(reader, "", null, 0).getToken();
+        fileService.createDirectory(MASTER, Paths.get("public/private/hidden"));
+        fileService.saveFile(MASTER, Paths.get("public/private/secret.txt"), stream("secret"));
+        fileService.move(MASTER, Paths.get("public/private/secret.txt"), Paths.get("public/a/secret.txt"));
+        fileService.delete(MASTER, Paths.get("public/private/hidden"));
+        fileService.saveFile(MASTER, Paths.get("public/a/one.txt"), stream("one"));
+
+        //names below the directory with NONE access are not visible although everything else is readable
+        assertChanges(List.of("CREATED public/a/secret.txt", "MODIFIED public/a/one.txt"),
+                getChanges(reader, "", token, 0));
+        assertChanges(List.of(), getChanges(reader, "public/private", token, 0));
+    }
+
+    @Test
+    void testResyncRequired() throws Exception {
+        changeJournal.close();
+        openJournal(3);
+        String token = getChanges(MASTER, "", null, 0).getToken();
+        fileService.createDirectory(MASTER, Paths.get("public/b"));
+        String recentToken = getChanges(MASTER, "", null, 0).getToken();
+        for (int i = 0; i < 3; i++) {
+            fileService.saveFile(MASTER, Paths.get("public/b/" + i + ".txt"), stream("data"));
+        }
+        ChangeList changes = getChanges(MASTER, "", token, 0);
+        assertTrue(changes.isResyncRequired());
+        assertChanges(List.of(), changes);
+        assertEquals(3, getChanges(MASTER, "", recentToken, 0).getChanges().size());
+
+        //journal survives restart
+        changeJournal.close();
+        openJournal(3);
+        assertTrue(Files.isRegularFile(journalFile));
+        assertEquals(3, getChanges(MASTER, "", recentToken, 0).getChanges().size());
+        assertTrue(getChanges(MASTER, "", token, 0).isResyncRequired());
+
+        //tokens of lost journal are not valid
+        changeJournal.close();
+        Files.delete(journalFile);
+        openJournal(3);
+        assertTrue(getChanges(MASTER, "", recentToken, 0).isResyncRequired());
+    }
+
+    @Test
+    void testUncleanShutdown() throws Exception {
+        fileService.createDirectory(MASTER, Paths.get("public/b"));
+        fileService.saveFile(MASTER, Paths.get("public/b/one.txt"), stream("one"));
+        String token = getChanges(MASTER, "", null, 0).getToken();
+        changeJournal.close();
+
+        //last change is lost on crash, its sequence must not be valid for the next change
+        List<String> lines = Files.readAllLines(journalFile);
+        Files.write(journalFile, lines.stream().filter(line -> !line.contains("one.txt")).toList());
+        openJournal(1000);
+        fileService.saveFile(MASTER, Paths.get("public/b/two.txt"), stream("two"));
+        assertTrue(getChanges(MASTER, "", token, 0).isResyncRequired());
+
+        //journal closed after restart keeps the new epoch
+        String uncleanToken = getChanges(MASTER, "", null, 0).getToken();
+        fileService.saveFile(MASTER, Paths.get("public/b/three.txt"), stream("three"));
+        changeJournal.close();
+        openJournal(1000);
+        assertChanges(List.of("MODIFIED public/b/three.txt"), getChanges(MASTER, "", uncleanToken, 0));
+    }
+
+    @Test
+    void testLongPoll() throws Exception {
+        String token = getChanges(PUBLIC, "public", null, 0).getToken();
+        CompletableFuture<ChangeList> waiting = changeJournalService.waitForChanges(PUBLIC, Paths.get("public"), token,
+                0, 10);
+        fileService.saveFile(MASTER, Paths.get("jane/secret.txt"), stream("secret"));
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+        fileService.saveFile(MASTER, Paths.get("public/a/one.txt"), stream("one"));
+        assertChanges(List.of("MODIFIED public/a/one.txt"), waiting.get(5, TimeUnit.SECONDS));
+
+        //token is moved past changes the user can't see when wait time elapses
+        token = waiting.get().getToken();
+        waiting = changeJournalService.waitForChanges(PUBLIC, Paths.get("public"), token, 0, 1);
+        fileService.delete(MASTER, Paths.get("jane/secret.txt"));
+        ChangeList changes = waiting.get(5, TimeUnit.SECONDS);
+        assertChanges(List.of(), changes);
+        assertNotEquals(token, changes.getToken());
+        assertEquals(0, getChanges(PUBLIC, "public", changes.getToken(), 0).getChanges().size());
+    }
+
+    @Test
+    void testDisabled() throws Exception {
+        changeJournal.close();
+        changeJournal = new ChangeJournal(false, journalFile, 3600, 1000);
+        changeJournalService = new ChangeJournalServiceImpl(fileServerConfig, fileAccessService,
+                new AuditServiceInmemory(16), changeJournal);
+        assertNull(changeJournalService.getChanges(MASTER, Paths.get(""), null, 0));
+    }
+
+    private void openJournal(int maxEntries) throws Exception {
+        changeJournal = new ChangeJournal(true, journalFile, 3600, maxEntries);
+        changeJournalService = new ChangeJournalServiceImpl(fileServerConfig, fileAccessService,
+                new AuditServiceInmemory(16), changeJournal);
+        fileService = TestUtils.newFileServiceBuilder(fileServerConfig)
+                .withFileAccessService(fileAccessService)
+                .withEventPublisher(event -> changeJournal.onFileChange((FileChangeEvent) event))
+                .build();
+    }
+
+    private ChangeList getChanges(UserData userData, String path, String token, int limit) throws Exception {
+        return changeJournalService.getChanges(userData, Paths.get(path), token, limit);
+    }
+
+    private static void assertChanges(List<String> expected, ChangeList changes) {
+        assertEquals(expected, changes.getChanges().stream().map(ChangeJournalTest::format).toList());
+    }
+
+    private static String format(ChangeEntry entry) {
+        return entry.getType() + " " + entry.getPath() + ((entry.getDestination() == null) ? "" : " "
+                + entry.getDestination());
+    }
+
+    private static ByteArrayInputStream stream(String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
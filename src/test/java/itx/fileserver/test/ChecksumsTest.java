@@ -0,0 +1,182 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.ChecksumAlgorithm;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UploadOptions;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.BufferPool;
+import itx.fileserver.services.DigestMismatchException;
+import itx.fileserver.services.FileService;
+import itx.fileserver.services.download.DownloadServiceImpl;
+import itx.fileserver.services.download.FileContentCache;
+import itx.fileserver.services.download.FileMetadataCache;
+import itx.fileserver.services.download.MappedFileRegions;
+import itx.fileserver.services.upload.Checksums;
+import itx.fileserver.services.upload.ContentDigests;
+import itx.fileserver.services.upload.StoredDigests;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+class ChecksumsTest {
+
+    private static final String CONTENT = "Nobody inspects the spammish repetition";
+
+    @TempDir
+    Path home;
+
+    private FileServerConfig fileServerConfig;
+
+    @BeforeEach
+    public void init() throws Exception {
+        Files.createDirectories(home.resolve("public"));
+        fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.setHome(home.toString());
+        fileServerConfig.setUploadChecksums("sha-256, crc32c, xxh64");
+        fileServerConfig.setBufferSize(16 * 1024);
+        fileServerConfig.setBufferCount(4);
+    }
+
+    private static Stream<Arguments> provideKnownValues() {
+        return Stream.of(
+                Arguments.of(ChecksumAlgorithm.XXH64, "", "ef46db3751d8e999"),
+                Arguments.of(ChecksumAlgorithm.XXH64, "abc", "44bc2cf5ad770999"),
+                Arguments.of(ChecksumAlgorithm.XXH64, CONTENT, "fbcea83c8a378bf1"),
+                Arguments.of(ChecksumAlgorithm.CRC32C, "123456789", "e3069283"),
+                Arguments.of(ChecksumAlgorithm.MD5, "abc", "900150983cd24fb0d6963f7d28e17f72"),
+                Arguments.of(ChecksumAlgorithm.SHA_256, "abc",
+                        "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideKnownValues")
+    void testKnownValues(ChecksumAlgorithm algorithm, String data, String expected) {
+        Checksums checksums = new Checksums(List.of(algorithm));
+        checksums.update(ByteBuffer.wrap(data.getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(expected, HexFormat.of().formatHex(checksums.finish().get(algorithm)));
+    }
+
+    @Test
+    void testChunkedUpdates() {
+        byte[] data = new byte[10_000];
+        new Random(42).nextBytes(data);
+        Checksums whole = new Checksums(EnumSet.allOf(ChecksumAlgorithm.class));
+        whole.update(ByteBuffer.wrap(data));
+        Checksums chunked = new Checksums(EnumSet.allOf(ChecksumAlgorithm.class));
+        Random random = new Random(7);
+        int offset = 0;
+        while (offset < data.length) {
+            int length = Math.min(random.nextInt(70), data.length - offset);
+            ByteBuffer chunk = ByteBuffer.wrap(data, offset, length);
+            chunked.update(chunk);
+            assertEquals(offset, chunk.position());
+            offset += length;
+        }
+        Map<ChecksumAlgorithm, byte[]> expected = whole.finish();
+        Map<ChecksumAlgorithm, byte[]> actual = chunked.finish();
+        for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+            assertArrayEquals(expected.get(algorithm), actual.get(algorithm), algorithm.name());
+        }
+    }
+
+    @Test
+    void testUploadVerification() throws Exception {
+        FileService fileService = createFileService();
+        byte[] data = CONTENT.getBytes(StandardCharsets.US_ASCII);
+        Map<ChecksumAlgorithm, byte[]> wrong = ContentDigests.parseAll("md5=:AAAAAAAAAAAAAAAAAAAAAA==:");
+        assertThrows(DigestMismatchException.class, () -> fileService.saveFile(createUser(),
+                Paths.get("public/data.txt"), new ByteArrayInputStream(data),
+                UploadOptions.newBuilder().withExpectedDigests(wrong).build()));
+        assertFalse(Files.exists(home.resolve("public/data.txt")));
+        try (var files = Files.list(home.resolve("public"))) {
+            assertEquals(0, files.count());
+        }
+
+        Map<ChecksumAlgorithm, byte[]> expected = ContentDigests.parseAll("md5=:" + base64(ChecksumAlgorithm.MD5, data)
+                + ":, sha-256=:" + base64(ChecksumAlgorithm.SHA_256, data) + ":");
+        fileService.saveFile(createUser(), Paths.get("public/data.txt"), new ByteArrayInputStream(data),
+                UploadOptions.newBuilder().withExpectedDigests(expected).build());
+        assertEquals(CONTENT, Files.readString(home.resolve("public/data.txt")));
+    }
+
+    @Test
+    void testStoredDigestsServedByDownload() throws Exception {
+        FileService fileService = createFileService();
+        byte[] data = CONTENT.getBytes(StandardCharsets.US_ASCII);
+        fileService.saveFile(createUser(), Paths.get("public/data.txt"), new ByteArrayInputStream(data));
+        Path file = home.resolve("public/data.txt");
+        Map<ChecksumAlgorithm, byte[]> stored = StoredDigests.read(file,
+                Files.readAttributes(file, BasicFileAttributes.class));
+        assumeFalse(stored.isEmpty(), "file system without extended attributes");
+        assertEquals(Set.of(ChecksumAlgorithm.SHA_256, ChecksumAlgorithm.CRC32C, ChecksumAlgorithm.XXH64),
+                stored.keySet());
+        assertEquals("fbcea83c8a378bf1", HexFormat.of().formatHex(stored.get(ChecksumAlgorithm.XXH64)));
+
+        FileMetadataCache fileMetadataCache = new FileMetadataCache(16);
+        FileServerConfig downloadConfig = TestUtils.createFileServerConfigForDownloadService();
+        DownloadServiceImpl downloadService = new DownloadServiceImpl(downloadConfig, new BufferPool(downloadConfig),
+                fileMetadataCache, new FileContentCache(downloadConfig, fileMetadataCache),
+                new MappedFileRegions(downloadConfig), TestUtils.createDisabledCompressedVariants(fileMetadataCache));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        downloadService.download(new FileSystemResource(file), new MockHttpServletRequest("GET", "/"), response);
+        assertEquals(200, response.getStatus());
+        assertEquals(ContentDigests.format(stored), response.getHeader(ContentDigests.REPR_DIGEST));
+        assertEquals("\"" + HexFormat.of().formatHex(stored.get(ChecksumAlgorithm.SHA_256), 0, 16) + "\"",
+                response.getHeader(HttpHeaders.ETAG));
+
+        //digests of file modified in place are not used
+        Files.writeString(file, "modified in place");
+        assertTrue(StoredDigests.read(file, Files.readAttributes(file, BasicFileAttributes.class)).isEmpty());
+        response = new MockHttpServletResponse();
+        downloadService.download(new FileSystemResource(file), new MockHttpServletRequest("GET", "/"), response);
+        assertNull(response.getHeader(ContentDigests.REPR_DIGEST));
+    }
+
+    private FileService createFileService() throws Exception {
+        return TestUtils.createFileService(fileServerConfig, event -> { });
+    }
+
+    private static String base64(ChecksumAlgorithm algorithm, byte[] data) {
+        Checksums checksums = new Checksums(List.of(algorithm));
+        checksums.update(ByteBuffer.wrap(data));
+        return Base64.getEncoder().encodeToString(checksums.finish().get(algorithm));
+    }
+
+    private static UserData createUser() {
+        return new UserData("public", Set.of(new RoleId("public")), "secret");
+    }
+
+}
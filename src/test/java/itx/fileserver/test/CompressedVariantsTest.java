@@ -0,0 +1,190 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.services.BufferPool;
+import itx.fileserver.services.FileChangeEvent;
+import itx.fileserver.services.download.CompressedVariants;
+import itx.fileserver.services.download.DownloadService;
+import itx.fileserver.services.download.DownloadServiceImpl;
+import itx.fileserver.services.download.FileContentCache;
+import itx.fileserver.services.download.FileMetadataCache;
+import itx.fileserver.services.download.MappedFileRegions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressedVariantsTest {
+
+    private static final String CONTENT = "id,name,value\n" + "1,name,value\n".repeat(1000);
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private Path cacheDir;
+    private FileMetadataCache fileMetadataCache;
+    private CompressedVariants compressedVariants;
+    private DownloadService downloadService;
+
+    @BeforeEach
+    public void init() throws IOException {
+        file = tempDir.resolve("data.csv");
+        Files.writeString(file, CONTENT);
+        cacheDir = tempDir.resolve("cache");
+        fileMetadataCache = new FileMetadataCache(16);
+        compressedVariants = new CompressedVariants(fileMetadataCache, true, cacheDir, 1024 * 1024, 1024,
+                List.of("text/*"));
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForDownloadService();
+        downloadService = new DownloadServiceImpl(fileServerConfig, new BufferPool(fileServerConfig),
+                fileMetadataCache, new FileContentCache(fileServerConfig, fileMetadataCache),
+                new MappedFileRegions(fileServerConfig), compressedVariants);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        compressedVariants.shutdown();
+    }
+
+    public static Stream<Arguments> acceptEncodings() {
+        return Stream.of(
+                Arguments.of(null, false),
+                Arguments.of("", false),
+                Arguments.of("identity", false),
+                Arguments.of("gzip", true),
+                Arguments.of("GZIP", true),
+                Arguments.of("deflate, gzip;q=1.0, *;q=0.5", true),
+                Arguments.of("br, zstd", false),
+                Arguments.of("gzip;q=0", false),
+                Arguments.of("gzip; q=0.000", false),
+                Arguments.of("gzip;q=0.001", true),
+                Arguments.of("*", true)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("acceptEncodings")
+    void testAcceptsGzip(String acceptEncoding, boolean expected) {
+        assertEquals(expected, CompressedVariants.acceptsGzip(acceptEncoding));
+    }
+
+    @Test
+    void testCompressible() {
+        assertTrue(compressedVariants.isCompressible("text/csv", 1024));
+        assertTrue(compressedVariants.isCompressible("text/plain;charset=UTF-8", 1024));
+        assertEquals(false, compressedVariants.isCompressible("text/csv", 1023));
+        assertEquals(false, compressedVariants.isCompressible("image/jpeg", 1024));
+    }
+
+    @Test
+    void testCompressedDownload() throws IOException, InterruptedException {
+        //first download schedules compression and is served uncompressed
+        MockHttpServletResponse response = download("gzip");
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        String identityETag = response.getHeader(HttpHeaders.ETAG);
+        awaitSidecar(file);
+
+        response = download("gzip");
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        assertTrue(response.getContentLength() < CONTENT.length() / 10);
+        assertTrue(!identityETag.equals(response.getHeader(HttpHeaders.ETAG)));
+        try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertEquals(CONTENT, new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        response = download(null);
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+
+    @Test
+    void testInvalidatedOnFileChange() throws InterruptedException {
+        awaitSidecar(file);
+        assertTrue(compressedVariants.getSize() > 0);
+        compressedVariants.onFileChange(new FileChangeEvent(FileChangeEvent.Type.DELETED, Paths.get("data.csv"), file));
+        assertEquals(0, compressedVariants.getSize());
+    }
+
+    @Test
+    void testSidecarsReused() throws IOException, InterruptedException {
+        awaitSidecar(file);
+        compressedVariants.shutdown();
+        compressedVariants = new CompressedVariants(fileMetadataCache, true, cacheDir, 1024 * 1024, 1024,
+                List.of("text/*"));
+        assertNotNull(compressedVariants.get(file, fileMetadataCache.get(file)));
+
+        //reused sidecar is invalidated once its source is known
+        compressedVariants.onFileChange(new FileChangeEvent(FileChangeEvent.Type.MODIFIED, Paths.get(""), tempDir,
+                List.of()));
+        assertEquals(0, compressedVariants.getSize());
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testIncompressibleFile() throws IOException, InterruptedException {
+        Path random = tempDir.resolve("random.txt");
+        byte[] data = new byte[4096];
+        new Random(1).nextBytes(data);
+        Files.write(random, data);
+        compressedVariants.get(random, fileMetadataCache.get(random));
+        for (int i = 0; i < 100 && compressedVariants.getSize() == 0; i++) {
+            Thread.sleep(20);
+        }
+        assertNull(compressedVariants.get(random, fileMetadataCache.get(random)));
+        assertEquals(0, compressedVariants.getSize());
+    }
+
+    private void awaitSidecar(Path path) throws InterruptedException {
+        try {
+            for (int i = 0; i < 100; i++) {
+                if (compressedVariants.get(path, fileMetadataCache.get(path)) != null) {
+                    return;
+                }
+                Thread.sleep(20);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        throw new AssertionError("sidecar not created " + path);
+    }
+
+    private MockHttpServletResponse download(String acceptEncoding) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        downloadService.download(new FileSystemResource(file), request, response);
+        return response;
+    }
+
+}
@@ -0,0 +1,149 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.FileService;
+import itx.fileserver.services.upload.BlobStore;
+import itx.fileserver.services.upload.ContentDigests;
+import itx.fileserver.services.upload.DigestIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DigestIndexTest {
+
+    private static final String CONTENT = "content declared by digest";
+
+    @TempDir
+    Path root;
+
+    private Path home;
+    private FileServerConfig fileServerConfig;
+
+    @BeforeEach
+    public void init() throws Exception {
+        home = Files.createDirectories(root.resolve("home"));
+        Files.createDirectories(home.resolve("public"));
+        Files.createDirectories(home.resolve("jane"));
+        fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.setHome(home.toString());
+        fileServerConfig.setDataBasedir(root.resolve("data").toString());
+        fileServerConfig.setUploadDigestIndexEnabled(true);
+        fileServerConfig.setBufferSize(16 * 1024);
+        fileServerConfig.setBufferCount(4);
+    }
+
+    @Test
+    void testIndexOperations() throws Exception {
+        DigestIndex digestIndex = new DigestIndex(fileServerConfig);
+        byte[] digest = digest(CONTENT);
+        digestIndex.put(Paths.get("a/b/one.txt"), digest, 10, 100);
+        digestIndex.put(Paths.get("a/two.txt"), digest, 10, 100);
+        digestIndex.put(Paths.get("ab/three.txt"), digest, 10, 100);
+        assertEquals(3, digestIndex.find(digest).size());
+
+        digestIndex.move(Paths.get("a"), Paths.get("c"));
+        assertEquals(Set.of(Paths.get("c/b/one.txt"), Paths.get("c/two.txt"), Paths.get("ab/three.txt")),
+                Set.copyOf(digestIndex.find(digest)));
+        assertTrue(digestIndex.isCurrent(Paths.get("c/two.txt"), 10, 100));
+        assertFalse(digestIndex.isCurrent(Paths.get("c/two.txt"), 10, 101));
+
+        digestIndex.remove(Paths.get("c"));
+        assertEquals(List.of(Paths.get("ab/three.txt")), digestIndex.find(digest));
+        digestIndex.put(Paths.get("ab/three.txt"), digest("other"), 5, 100);
+        assertTrue(digestIndex.find(digest).isEmpty());
+        assertEquals(1, digestIndex.size());
+    }
+
+    @Test
+    void testJournalReplay() throws Exception {
+        DigestIndex digestIndex = new DigestIndex(fileServerConfig);
+        byte[] digest = digest(CONTENT);
+        digestIndex.put(Paths.get("public/one.txt"), digest, 10, 100);
+        digestIndex.put(Paths.get("public/two.txt"), digest, 10, 100);
+        digestIndex.move(Paths.get("public/one.txt"), Paths.get("public/moved.txt"));
+        digestIndex.remove(Paths.get("public/two.txt"));
+        digestIndex.close();
+        //incomplete record written during crash
+        Files.writeString(root.resolve("data/digest-index.log"), "{\"op\":\"PU", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        DigestIndex restarted = new DigestIndex(fileServerConfig);
+        assertEquals(List.of(Paths.get("public/moved.txt")), restarted.find(digest));
+        assertTrue(restarted.isCurrent(Paths.get("public/moved.txt"), 10, 100));
+        assertEquals(1, Files.readAllLines(root.resolve("data/digest-index.log")).size());
+        restarted.close();
+    }
+
+    @Test
+    void testSaveFileByDigest() throws Exception {
+        DigestIndex digestIndex = new DigestIndex(fileServerConfig);
+        FileService fileService = createFileService(digestIndex);
+        byte[] digest = digest(CONTENT);
+        assertFalse(fileService.saveFileByDigest(createUser("public"), Paths.get("public/copy.txt"), digest));
+
+        fileService.saveFile(createUser("public"), Paths.get("public/original.txt"),
+                new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)));
+        assertTrue(fileService.saveFileByDigest(createUser("public"), Paths.get("public/copy.txt"), digest));
+        assertEquals(CONTENT, Files.readString(home.resolve("public/copy.txt")));
+        assertEquals(2, digestIndex.find(digest).size());
+
+        //content readable only by other users is not used
+        assertFalse(fileService.saveFileByDigest(createUser("jane"), Paths.get("jane/copy.txt"), digest));
+        assertFalse(Files.exists(home.resolve("jane/copy.txt")));
+
+        //files changed behind the file server are not used
+        Files.writeString(home.resolve("public/original.txt"), "changed");
+        Files.writeString(home.resolve("public/copy.txt"), "changed too");
+        assertFalse(fileService.saveFileByDigest(createUser("public"), Paths.get("public/third.txt"), digest));
+        assertTrue(digestIndex.find(digest).isEmpty());
+
+        fileService.saveFile(createUser("public"), Paths.get("public/original.txt"),
+                new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)));
+        fileService.move(createUser("public"), Paths.get("public/original.txt"), Paths.get("public/moved.txt"));
+        assertEquals(List.of(Paths.get("public/moved.txt")), digestIndex.find(digest));
+        fileService.delete(createUser("public"), Paths.get("public/moved.txt"));
+        assertTrue(digestIndex.find(digest).isEmpty());
+    }
+
+    @Test
+    void testParseContentDigest() throws Exception {
+        byte[] digest = digest(CONTENT);
+        String encoded = Base64.getEncoder().encodeToString(digest);
+        assertArrayEquals(digest, ContentDigests.parse("sha-256=:" + encoded + ":", ContentDigests.SHA_256));
+        assertArrayEquals(digest, ContentDigests.parse("md5=abc=, SHA-256=" + encoded, ContentDigests.SHA_256));
+        assertNull(ContentDigests.parse("md5=abc=", ContentDigests.SHA_256));
+        assertNull(ContentDigests.parse("sha-256=:not base64!:", ContentDigests.SHA_256));
+        assertNull(ContentDigests.parse(null, ContentDigests.SHA_256));
+    }
+
+    private FileService createFileService(DigestIndex digestIndex) throws Exception {
+        return TestUtils.newFileServiceBuilder(fileServerConfig).withDigestIndex(digestIndex).build();
+    }
+
+    private static byte[] digest(String content) {
+        return BlobStore.newDigest().digest(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static UserData createUser(String role) {
+        return new UserData(role, Set.of(new RoleId(role)), "secret");
+    }
+
+}
@@ -0,0 +1,143 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.FileInfo;
+import itx.fileserver.dto.FileList;
+import itx.fileserver.dto.FilterConfig;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.FileChangeEvent;
+import itx.fileserver.services.FileService;
+import itx.fileserver.services.listing.DirectoryListingCache;
+import itx.fileserver.services.listing.ListingEntry;
+import itx.fileserver.services.upload.FileCommitter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectoryListingCacheTest {
+
+    @TempDir
+    Path home;
+
+    private Path directory;
+    private DirectoryListingCache directoryListingCache;
+
+    @BeforeEach
+    public void init() throws Exception {
+        directory = Files.createDirectories(home.resolve("public/cached"));
+        Files.createDirectory(directory.resolve("nested"));
+        Files.writeString(directory.resolve("data.txt"), "data");
+        Files.writeString(FileCommitter.getTempFile(directory.resolve("uploading.bin")), "partial");
+        directoryListingCache = new DirectoryListingCache(true, 1000, 3600);
+    }
+
+    @AfterEach
+    public void shutdown() throws Exception {
+        directoryListingCache.close();
+    }
+
+    @Test
+    void testListing() throws Exception {
+        List<ListingEntry> listing = directoryListingCache.getListing(directory);
+        assertEquals(Set.of("nested", "data.txt"), names(listing));
+        for (ListingEntry entry : listing) {
+            assertEquals(entry.getName().equals("nested"), entry.isDirectory());
+            assertEquals(entry.getName().equals("nested") ? 0 : 4, entry.getSize());
+            assertEquals(Files.getLastModifiedTime(directory.resolve(entry.getName())).toMillis(),
+                    entry.getLastModified());
+        }
+        assertSame(listing, directoryListingCache.getListing(directory));
+        assertEquals(1, directoryListingCache.getSize());
+    }
+
+    @Test
+    void testInvalidatedByFileChangeEvents() throws Exception {
+        List<ListingEntry> listing = directoryListingCache.getListing(directory);
+        List<ListingEntry> nested = directoryListingCache.getListing(directory.resolve("nested"));
+        //file in cached directory
+        directoryListingCache.onFileChange(new FileChangeEvent(FileChangeEvent.Type.MODIFIED,
+                Paths.get("public/cached/data.txt"), directory.resolve("data.txt")));
+        assertNotSame(listing, directoryListingCache.getListing(directory));
+        assertSame(nested, directoryListingCache.getListing(directory.resolve("nested")));
+        //directory events apply to the whole subtree
+        listing = directoryListingCache.getListing(directory);
+        directoryListingCache.onFileChange(new FileChangeEvent(FileChangeEvent.Type.MODIFIED,
+                Paths.get("public"), home.resolve("public")));
+        assertNotSame(listing, directoryListingCache.getListing(directory));
+        assertNotSame(nested, directoryListingCache.getListing(directory.resolve("nested")));
+    }
+
+    @Test
+    void testInvalidatedByWatchService() throws Exception {
+        List<ListingEntry> listing = directoryListingCache.getListing(directory);
+        //change made by other process
+        Files.writeString(directory.resolve("external.txt"), "external");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (directoryListingCache.getListing(directory) == listing && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(Set.of("nested", "data.txt", "external.txt"), names(directoryListingCache.getListing(directory)));
+    }
+
+    @Test
+    void testDisabledAndExpired() throws Exception {
+        DirectoryListingCache disabled = new DirectoryListingCache(false, 1000, 3600);
+        assertNotSame(disabled.getListing(directory), disabled.getListing(directory));
+        assertEquals(Set.of("nested", "data.txt"), names(disabled.getListing(directory)));
+        DirectoryListingCache expiring = new DirectoryListingCache(true, 1000, 0);
+        try {
+            assertNotSame(expiring.getListing(directory), expiring.getListing(directory));
+        } finally {
+            expiring.close();
+        }
+    }
+
+    @Test
+    void testFileServiceListing() throws Exception {
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.getFilters().add(new FilterConfig("public/cached/nested", "NONE", "public"));
+        fileServerConfig.setHome(home.toString());
+        fileServerConfig.setBufferSize(16 * 1024);
+        fileServerConfig.setBufferCount(4);
+        FileService fileService = TestUtils.newFileServiceBuilder(fileServerConfig)
+                .withEventPublisher(event -> directoryListingCache.onFileChange((FileChangeEvent) event))
+                .withDirectoryListingCache(directoryListingCache)
+                .build();
+        UserData publicUser = new UserData("public", Set.of(new RoleId("public")), "secret");
+        UserData master = new UserData("master", Set.of(new RoleId("master")), "secret");
+
+        //cached listing is shared, access is checked per user
+        FileList fileList = fileService.getFilesInfo(publicUser, Paths.get("public/cached"));
+        assertEquals(0, fileList.getDirectoryInfo().size());
+        assertEquals(List.of("data.txt"), fileList.getFileInfo().stream().map(FileInfo::getFilePath).toList());
+        assertEquals(1, fileService.getFilesInfo(master, Paths.get("public/cached")).getDirectoryInfo().size());
+
+        //own changes are listed immediately
+        fileService.saveFile(publicUser, Paths.get("public/cached/uploaded.txt"),
+                new ByteArrayInputStream("uploaded".getBytes(StandardCharsets.UTF_8)));
+        fileList = fileService.getFilesInfo(publicUser, Paths.get("public/cached"));
+        assertTrue(fileList.getFileInfo().stream().anyMatch(f -> f.getFilePath().equals("uploaded.txt")
+                && f.getSize() == 8));
+    }
+
+    private static Set<String> names(List<ListingEntry> listing) {
+        return listing.stream().map(ListingEntry::getName).collect(Collectors.toSet());
+    }
+
+}
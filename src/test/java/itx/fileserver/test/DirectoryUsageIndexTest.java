@@ -0,0 +1,175 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.DirectoryInfo;
+import itx.fileserver.dto.DirectoryUsage;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.FileService;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.listing.DirectoryUsageIndex;
+import itx.fileserver.services.upload.FileCommitter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectoryUsageIndexTest {
+
+    @TempDir
+    Path root;
+
+    private Path home;
+    private FileServerConfig fileServerConfig;
+    private DirectoryUsageIndex usageIndex;
+    private FileService fileService;
+    private UserData publicUser;
+
+    @BeforeEach
+    public void init() throws Exception {
+        home = Files.createDirectories(root.resolve("home"));
+        Files.createDirectories(home.resolve("public/a/b"));
+        Files.createDirectories(home.resolve("jane"));
+        Files.writeString(home.resolve("public/a/one.txt"), "one");
+        Files.writeString(home.resolve("public/a/b/two.txt"), "two-two");
+        Files.writeString(home.resolve("jane/secret.txt"), "secret");
+        Files.writeString(FileCommitter.getTempFile(home.resolve("public/a/uploading.bin")), "partial");
+        fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.setHome(home.toString());
+        fileServerConfig.setDataBasedir(root.resolve("data").toString());
+        fileServerConfig.setUsageEnabled(true);
+        fileServerConfig.setBufferSize(16 * 1024);
+        fileServerConfig.setBufferCount(4);
+        usageIndex = new DirectoryUsageIndex(fileServerConfig);
+        fileService = TestUtils.newFileServiceBuilder(fileServerConfig).withUsageIndex(usageIndex).build();
+        publicUser = new UserData("public", Set.of(new RoleId("public")), "secret");
+    }
+
+    @AfterEach
+    public void shutdown() {
+        usageIndex.close();
+    }
+
+    @Test
+    void testReconcile() throws Exception {
+        assertTrue(usageIndex.reconcile());
+        assertUsage(new DirectoryUsage("public/a", 10, 2, 1), usageIndex.getUsage(Paths.get("public/a")));
+        assertUsage(new DirectoryUsage("", 16, 3, 4), usageIndex.getUsage(Paths.get("")));
+        assertIndexMatchesTree();
+
+        //changes made by other processes
+        Files.writeString(home.resolve("public/a/b/two.txt"), "2");
+        Files.createDirectories(home.resolve("public/c/d"));
+        Files.writeString(home.resolve("public/c/d/three.txt"), "three");
+        Files.delete(home.resolve("jane/secret.txt"));
+        Files.delete(home.resolve("jane"));
+        assertTrue(usageIndex.reconcile());
+        assertNull(usageIndex.getUsage(Paths.get("jane")));
+        assertIndexMatchesTree();
+    }
+
+    @Test
+    void testIncrementalUpdates() throws Exception {
+        usageIndex.reconcile();
+        fileService.saveFile(publicUser, Paths.get("public/a/b/new.txt"), stream("new file"));
+        fileService.saveFile(publicUser, Paths.get("public/a/one.txt"), stream("replaced"));
+        assertUsage(new DirectoryUsage("public/a", 23, 3, 1), usageIndex.getUsage(Paths.get("public/a")));
+        assertIndexMatchesTree();
+
+        fileService.createDirectory(publicUser, Paths.get("public/x/y"));
+        fileService.saveFile(publicUser, Paths.get("public/x/y/z.txt"), stream("z"));
+        fileService.move(publicUser, Paths.get("public/a/b"), Paths.get("public/x/y/b"));
+        fileService.move(publicUser, Paths.get("public/a/one.txt"), Paths.get("public/one.txt"));
+        assertUsage(new DirectoryUsage("public/x", 16, 3, 2), usageIndex.getUsage(Paths.get("public/x")));
+        assertUsage(new DirectoryUsage("public/a", 0, 0, 0), usageIndex.getUsage(Paths.get("public/a")));
+        assertIndexMatchesTree();
+
+        fileService.delete(publicUser, Paths.get("public/x/y"));
+        fileService.delete(publicUser, Paths.get("public/one.txt"));
+        assertNull(usageIndex.getUsage(Paths.get("public/x/y/b")));
+        assertIndexMatchesTree();
+    }
+
+    @Test
+    void testSnapshot() throws Exception {
+        usageIndex.reconcile();
+        fileService.saveFile(publicUser, Paths.get("public/a/new.txt"), stream("new file"));
+        usageIndex.close();
+        assertTrue(Files.isRegularFile(root.resolve("data/usage-index.jsonl")));
+
+        //index is loaded from snapshot, the tree is not read
+        Files.writeString(home.resolve("public/a/external.txt"), "external");
+        usageIndex = new DirectoryUsageIndex(fileServerConfig);
+        assertUsage(new DirectoryUsage("public/a", 18, 3, 1), usageIndex.getUsage(Paths.get("public/a")));
+        assertUsage(new DirectoryUsage("", 24, 4, 4), usageIndex.getUsage(Paths.get("")));
+        usageIndex.reconcile();
+        assertIndexMatchesTree();
+    }
+
+    @Test
+    void testListingAndUsage() throws Exception {
+        //not indexed before the first reconciliation
+        assertNull(fileService.getUsage(publicUser, Paths.get("public/a")));
+        usageIndex.reconcile();
+        assertUsage(new DirectoryUsage("public/a", 10, 2, 1), fileService.getUsage(publicUser, Paths.get("public/a")));
+        List<DirectoryInfo> directories = fileService.getFilesInfo(publicUser, Paths.get("public/a")).getDirectoryInfo();
+        assertEquals(1, directories.size());
+        assertEquals(7L, directories.get(0).getSize());
+        assertThrows(NoSuchFileException.class, () -> fileService.getUsage(publicUser, Paths.get("public/missing")));
+        assertThrows(OperationNotAllowedException.class, () -> fileService.getUsage(publicUser, Paths.get("jane")));
+    }
+
+    private void assertIndexMatchesTree() throws Exception {
+        try (Stream<Path> paths = Files.walk(home)) {
+            for (Path directory : paths.filter(p -> Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)).toList()) {
+                Path relative = home.relativize(directory);
+                assertUsage(walk(relative), usageIndex.getUsage(relative));
+            }
+        }
+    }
+
+    private DirectoryUsage walk(Path directory) throws Exception {
+        long size = 0;
+        long files = 0;
+        long directories = 0;
+        try (Stream<Path> paths = Files.walk(home.resolve(directory))) {
+            for (Path path : paths.skip(1).toList()) {
+                if (Files.isDirectory(path)) {
+                    directories++;
+                } else if (!FileCommitter.isTempFile(path.getFileName().toString())) {
+                    size += Files.size(path);
+                    files++;
+                }
+            }
+        }
+        return new DirectoryUsage(directory.toString(), size, files, directories);
+    }
+
+    private static void assertUsage(DirectoryUsage expected, DirectoryUsage usage) {
+        assertEquals(expected.getPath(), usage.getPath());
+        assertEquals(expected.getSize(), usage.getSize(), expected.getPath());
+        assertEquals(expected.getFiles(), usage.getFiles(), expected.getPath());
+        assertEquals(expected.getDirectories(), usage.getDirectories(), expected.getPath());
+    }
+
+    private static ByteArrayInputStream stream(String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
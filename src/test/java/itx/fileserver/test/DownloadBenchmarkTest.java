@@ -0,0 +1,172 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.services.BufferPool;
+import itx.fileserver.services.download.DownloadService;
+import itx.fileserver.services.download.DownloadServiceImpl;
+import itx.fileserver.services.download.FileContentCache;
+import itx.fileserver.services.download.FileMetadataCache;
+import itx.fileserver.services.download.MappedFileRegions;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput of download data paths, run with -Dbenchmark=true.
+ * "before" is the copy done by Spring's resource message converter (UrlResource input stream),
+ * "after" is {@link DownloadServiceImpl} writing through pooled direct buffers into container stream,
+ * "mmap" is {@link DownloadServiceImpl} writing slices of memory mapped file into container stream.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class DownloadBenchmarkTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DownloadBenchmarkTest.class);
+
+    private static final long FILE_SIZE = 256L * 1024 * 1024;
+    private static final int ROUNDS = 8;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void downloadThroughput() throws IOException {
+        Path file = tempDir.resolve("benchmark.bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer chunk = ByteBuffer.allocate(1024 * 1024);
+            for (long written = 0; written < FILE_SIZE; written += chunk.capacity()) {
+                chunk.clear();
+                channel.write(chunk);
+            }
+        }
+        Resource resource = new UrlResource(file.toUri());
+        FileServerConfig fileServerConfig = new FileServerConfig();
+        fileServerConfig.setBufferSize(64 * 1024);
+        fileServerConfig.setBufferCount(4);
+        FileMetadataCache fileMetadataCache = new FileMetadataCache(16);
+        DownloadService downloadService = new DownloadServiceImpl(fileServerConfig, new BufferPool(fileServerConfig),
+                fileMetadataCache, new FileContentCache(fileServerConfig, fileMetadataCache),
+                new MappedFileRegions(fileServerConfig),
+                TestUtils.createDisabledCompressedVariants(fileMetadataCache));
+        fileServerConfig.setDownloadMmapEnabled(true);
+        fileServerConfig.setDownloadMmapMaxRegions(4);
+        DownloadService mmapDownloadService = new DownloadServiceImpl(fileServerConfig,
+                new BufferPool(fileServerConfig), fileMetadataCache,
+                new FileContentCache(fileServerConfig, fileMetadataCache), new MappedFileRegions(fileServerConfig),
+                TestUtils.createDisabledCompressedVariants(fileMetadataCache));
+
+        for (int i = 0; i < 2; i++) {
+            runBefore(resource);
+            runAfter(downloadService, resource);
+            runAfter(mmapDownloadService, resource);
+        }
+        measure("before (UrlResource stream copy)", () -> runBefore(resource));
+        measure("after (pooled direct buffers)", () -> runAfter(downloadService, resource));
+        measure("mmap (mapped file slices)", () -> runAfter(mmapDownloadService, resource));
+    }
+
+    private static long runBefore(Resource resource) throws IOException {
+        NullServletOutputStream outputStream = new NullServletOutputStream();
+        try (InputStream inputStream = resource.getInputStream()) {
+            StreamUtils.copy(inputStream, outputStream);
+        }
+        return outputStream.count;
+    }
+
+    private static long runAfter(DownloadService downloadService, Resource resource) throws IOException {
+        NullServletResponse response = new NullServletResponse();
+        downloadService.download(resource, new MockHttpServletRequest("GET", "/"), response);
+        return response.outputStream.count;
+    }
+
+    private static void measure(String name, Transfer transfer) throws IOException {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            assertEquals(FILE_SIZE, transfer.run());
+        }
+        long duration = System.nanoTime() - start;
+        long cpu = threadMXBean.getCurrentThreadCpuTime() - cpuStart;
+        double gigabytes = (double) (FILE_SIZE * ROUNDS) / (1024 * 1024 * 1024);
+        LOG.info("BENCHMARK {}: {} MB/s, cpu {} ms/GB", name,
+                String.format("%.0f", gigabytes * 1024 / (duration / 1e9)),
+                String.format("%.1f", cpu / 1e6 / gigabytes));
+    }
+
+    private interface Transfer {
+        long run() throws IOException;
+    }
+
+    private static class NullServletResponse extends MockHttpServletResponse {
+
+        private final NullServletOutputStream outputStream = new NullServletOutputStream();
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+
+    }
+
+    /**
+     * Discards written data, accepts ByteBuffers like servlet container streams do.
+     * ByteBuffers are copied into socket buffer, so data is really read from the source buffer.
+     */
+    public static class NullServletOutputStream extends ServletOutputStream {
+
+        private final ByteBuffer socketBuffer = ByteBuffer.allocateDirect(64 * 1024);
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        public void write(ByteBuffer buffer) {
+            count += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                socketBuffer.clear();
+                ByteBuffer chunk = buffer.duplicate();
+                chunk.limit(chunk.position() + Math.min(chunk.remaining(), socketBuffer.remaining()));
+                socketBuffer.put(chunk);
+                buffer.position(chunk.position());
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+    }
+
+}
@@ -0,0 +1,222 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.services.BufferPool;
+import itx.fileserver.services.download.DownloadService;
+import itx.fileserver.services.download.DownloadServiceImpl;
+import itx.fileserver.services.download.FileContentCache;
+import itx.fileserver.services.download.FileMetadataCache;
+import itx.fileserver.services.download.MappedFileRegions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadServiceTest {
+
+    private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    @TempDir
+    static Path tempDir;
+
+    private static Resource resource;
+    private static DownloadService downloadService;
+
+    @BeforeAll
+    public static void init() throws IOException {
+        Path file = tempDir.resolve("data.bin");
+        Files.writeString(file, CONTENT);
+        resource = new FileSystemResource(file);
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForDownloadService();
+        FileMetadataCache fileMetadataCache = new FileMetadataCache(fileServerConfig);
+        downloadService = new DownloadServiceImpl(fileServerConfig, new BufferPool(fileServerConfig),
+                fileMetadataCache, new FileContentCache(fileServerConfig, fileMetadataCache),
+                new MappedFileRegions(fileServerConfig),
+                TestUtils.createDisabledCompressedVariants(fileMetadataCache));
+    }
+
+    @Test
+    void testFullContent() throws IOException {
+        MockHttpServletResponse response = download(new MockHttpServletRequest("GET", "/"));
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(CONTENT.length(), response.getContentLength());
+        assertArrayEquals(CONTENT.getBytes(StandardCharsets.US_ASCII), response.getContentAsByteArray());
+    }
+
+    @Test
+    void testSingleRange() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-15");
+        MockHttpServletResponse response = download(request);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 10-15/36", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(6, response.getContentLength());
+        assertEquals("abcdef", response.getContentAsString());
+    }
+
+    @Test
+    void testSuffixRange() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=-3");
+        MockHttpServletResponse response = download(request);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 33-35/36", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("xyz", response.getContentAsString());
+    }
+
+    @Test
+    void testMultipleRanges() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-1,-2");
+        MockHttpServletResponse response = download(request);
+        assertEquals(206, response.getStatus());
+        String contentType = response.getContentType();
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        String body = response.getContentAsString();
+        assertEquals(response.getContentLength(), response.getContentAsByteArray().length);
+        assertTrue(body.contains("Content-Range: bytes 0-1/36\r\n\r\n01\r\n--" + boundary));
+        assertTrue(body.contains("Content-Range: bytes 34-35/36\r\n\r\nyz\r\n--" + boundary + "--"));
+    }
+
+    @Test
+    void testUnsatisfiableRange() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=36-");
+        MockHttpServletResponse response = download(request);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */36", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testIfRangeDateMatches() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-0");
+        request.addHeader(HttpHeaders.IF_RANGE, resource.lastModified());
+        MockHttpServletResponse response = download(request);
+        assertEquals(206, response.getStatus());
+        assertEquals("0", response.getContentAsString());
+    }
+
+    @Test
+    void testIfRangeDateDoesNotMatch() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-0");
+        request.addHeader(HttpHeaders.IF_RANGE, resource.lastModified() - 60_000);
+        MockHttpServletResponse response = download(request);
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+
+    @Test
+    void testIfRangeETagMatches() throws IOException {
+        String eTag = download(new MockHttpServletRequest("GET", "/")).getHeader(HttpHeaders.ETAG);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=1-1");
+        request.addHeader(HttpHeaders.IF_RANGE, eTag);
+        MockHttpServletResponse response = download(request);
+        assertEquals(206, response.getStatus());
+        assertEquals("1", response.getContentAsString());
+    }
+
+    @Test
+    void testIfRangeETagDoesNotMatch() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=1-1");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"outdated\"");
+        MockHttpServletResponse response = download(request);
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+
+    @Test
+    void testValidators() throws IOException {
+        MockHttpServletResponse first = download(new MockHttpServletRequest("GET", "/"));
+        MockHttpServletResponse second = download(new MockHttpServletRequest("GET", "/"));
+        String eTag = first.getHeader(HttpHeaders.ETAG);
+        assertTrue(eTag.startsWith("\""));
+        assertEquals(eTag, second.getHeader(HttpHeaders.ETAG));
+        assertEquals(resource.lastModified() / 1000, first.getDateHeader(HttpHeaders.LAST_MODIFIED) / 1000);
+    }
+
+    @Test
+    void testIfNoneMatch() throws IOException {
+        String eTag = download(new MockHttpServletRequest("GET", "/")).getHeader(HttpHeaders.ETAG);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        MockHttpServletResponse response = download(request);
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testIfNoneMatchDoesNotMatch() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"outdated\"");
+        MockHttpServletResponse response = download(request);
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+
+    @Test
+    void testIfModifiedSince() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, resource.lastModified());
+        MockHttpServletResponse response = download(request);
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testRangeIgnoredForHead() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-0");
+        MockHttpServletResponse response = download(request);
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT.length(), response.getContentLength());
+    }
+
+    @Test
+    void testSendfile() throws IOException {
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForDownloadService();
+        fileServerConfig.setDownloadSendfileMinSize(0);
+        FileMetadataCache fileMetadataCache = new FileMetadataCache(fileServerConfig);
+        DownloadService sendfileDownloadService = new DownloadServiceImpl(fileServerConfig, new BufferPool(fileServerConfig),
+                fileMetadataCache, new FileContentCache(fileServerConfig, fileMetadataCache),
+                new MappedFileRegions(fileServerConfig),
+                TestUtils.createDisabledCompressedVariants(fileMetadataCache));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-15");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sendfileDownloadService.download(resource, request, response);
+        assertEquals(206, response.getStatus());
+        assertEquals(6, response.getContentLength());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(resource.getFile().getAbsolutePath(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(16L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    private static MockHttpServletResponse download(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        downloadService.download(resource, request, response);
+        return response;
+    }
+
+}
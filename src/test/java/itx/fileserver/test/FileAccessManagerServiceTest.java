@@ -1,6 +1,9 @@
 package itx.fileserver.test;
 
 import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.FileAccessFilter;
+import itx.fileserver.services.FileAccessService;
+import itx.fileserver.services.FileAccessServiceImpl;
 import itx.fileserver.services.data.FileAccessManagerService;
 import itx.fileserver.services.data.filesystem.FileAccessManagerServiceFilesystem;
 import itx.fileserver.dto.FilterAccessManagerData;
@@ -8,6 +11,7 @@ import itx.fileserver.services.data.inmemory.FileAccessManagerServiceInmemory;
 import itx.fileserver.dto.FilterConfig;
 import itx.fileserver.dto.RoleId;
 import itx.fileserver.test.mocks.PersistenceServiceImpl;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -15,9 +19,19 @@ import org.junit.jupiter.params.provider.MethodSource;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 class FileAccessManagerServiceTest {
@@ -58,6 +72,64 @@ class FileAccessManagerServiceTest {
         assertEquals(1, fileAccessManagerService.getFilters(publicRoleId).size());
     }
 
+    @Test
+    void concurrentChangesTest() throws Exception {
+        FileAccessManagerService fileAccessManagerService = createInmemoryFileAccessManagerService();
+        FileAccessService fileAccessService = new FileAccessServiceImpl(fileAccessManagerService);
+        RoleId stressRoleId = new RoleId("stress");
+        long initialVersion = fileAccessManagerService.getVersion();
+        int writers = 2;
+        int changes = 500;
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executorService = Executors.newFixedThreadPool(writers + 4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                readers.add(executorService.submit(() -> {
+                    long version = 0;
+                    while (running.get()) {
+                        long current = fileAccessManagerService.getVersion();
+                        assertTrue(current >= version);
+                        version = current;
+                        for (FilterConfig filterConfig : fileAccessManagerService.getFilters()) {
+                            assertNotNull(filterConfig.getPath());
+                        }
+                        for (FileAccessFilter filter : fileAccessManagerService.getFilters(stressRoleId)) {
+                            assertTrue(filter.getPath().startsWith("stress/"));
+                        }
+                        fileAccessService.canRead(Set.of(stressRoleId), Paths.get("stress/0/file.txt"));
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> writing = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                int writer = i;
+                writing.add(executorService.submit(() -> {
+                    for (int j = 0; j < changes; j++) {
+                        FilterConfig filterConfig = new FilterConfig("stress/" + writer + "/" + j + "/**", "READ", "stress");
+                        fileAccessManagerService.addFilter(filterConfig);
+                        fileAccessManagerService.removeFilter(filterConfig);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : writing) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            for (Future<?> future : readers) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            executorService.shutdownNow();
+        }
+        assertEquals(8, fileAccessManagerService.getFilters().size());
+        assertEquals(0, fileAccessManagerService.getFilters(stressRoleId).size());
+        assertEquals(initialVersion + 2L * writers * changes, fileAccessManagerService.getVersion());
+    }
+
     private static FileAccessManagerService createInmemoryFileAccessManagerService() {
         FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
         return new FileAccessManagerServiceInmemory(fileServerConfig);
@@ -1,6 +1,7 @@
 package itx.fileserver.test;
 
 import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.services.AccessRules;
 import itx.fileserver.services.FileAccessService;
 import itx.fileserver.services.FileAccessServiceImpl;
 import itx.fileserver.services.SecurityService;
@@ -109,4 +110,36 @@ class FileAccessServiceTest {
         assertEquals(canReadAndWrite, expectedCanReadAndWrite);
     }
 
+    @ParameterizedTest
+    @MethodSource("data")
+    void testAccessRules(String sessionId, String path, boolean expectedCanRead, boolean expectedCanReadAndWrite) {
+        Optional<Set<RoleId>> roles = securityService.getRoles(sessionId);
+        assertTrue(roles.isPresent());
+        AccessRules accessRules = fileAccessService.getAccessRules(roles.get());
+        assertEquals(expectedCanRead, accessRules.canRead(Paths.get(path)));
+        assertEquals(expectedCanReadAndWrite, accessRules.canReadAndWrite(Paths.get(path)));
+    }
+
+    public static Stream<Arguments> subtrees() {
+        return Stream.of(
+                Arguments.of( authorizedSessionPublic, "", true ),
+                Arguments.of( authorizedSessionPublic, "public", true ),
+                Arguments.of( authorizedSessionPublic, "public/nested", true ),
+                Arguments.of( authorizedSessionPublic, "joe", true ),
+                Arguments.of( authorizedSessionPublic, "joe/private", false ),
+                Arguments.of( authorizedSessionPublic, "jane", false ),
+                Arguments.of( authorizedSessionJane, "joe", true ),
+                Arguments.of( authorizedSessionJane, "joe/for-jane/nested", true ),
+                Arguments.of( authorizedSessionJoe, "jane/nested", false )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("subtrees")
+    void testMayReadBelow(String sessionId, String path, boolean expectedMayRead) {
+        Optional<Set<RoleId>> roles = securityService.getRoles(sessionId);
+        assertTrue(roles.isPresent());
+        assertEquals(expectedMayRead, fileAccessService.getAccessRules(roles.get()).mayReadBelow(Paths.get(path)));
+    }
+
 }
@@ -0,0 +1,104 @@
+package itx.fileserver.test;
+
+import itx.fileserver.dto.Durability;
+import itx.fileserver.dto.DurabilityConfig;
+import itx.fileserver.services.upload.FileCommitter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileCommitterTest {
+
+    @TempDir
+    Path home;
+
+    private static Stream<Arguments> provideDurabilityRules() {
+        return Stream.of(
+                Arguments.of("logs/app.log", Durability.NONE),
+                Arguments.of("logs/nested/app.log", Durability.NONE),
+                Arguments.of("db/data.bin", Durability.GROUP_COMMIT),
+                Arguments.of("db/important/data.bin", Durability.FDATASYNC),
+                Arguments.of("public/data.txt", Durability.FDATASYNC),
+                Arguments.of("data.txt", Durability.FDATASYNC)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideDurabilityRules")
+    void testDurabilityRules(String path, Durability expectedDurability) {
+        FileCommitter fileCommitter = new FileCommitter(Durability.FDATASYNC, List.of(
+                new DurabilityConfig("logs/**", "NONE"),
+                new DurabilityConfig("db/important/**", "FDATASYNC"),
+                new DurabilityConfig("db/**", "GROUP_COMMIT")));
+        assertEquals(expectedDurability, fileCommitter.getDurability(Paths.get(path)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Durability.class)
+    void testCommit(Durability durability) throws IOException {
+        FileCommitter fileCommitter = new FileCommitter(durability, List.of());
+        Path file = home.resolve("data.txt");
+        Files.writeString(file, "old content");
+        Path tmpFile = FileCommitter.getTempFile(file);
+        assertTrue(FileCommitter.isTempFile(tmpFile.getFileName().toString()));
+        Files.writeString(tmpFile, "new content");
+        fileCommitter.commit(Paths.get("data.txt"), tmpFile, file);
+        assertEquals("new content", Files.readString(file));
+        assertFalse(Files.exists(tmpFile));
+    }
+
+    @Test
+    void testParallelGroupCommit() throws Exception {
+        FileCommitter fileCommitter = new FileCommitter(Durability.GROUP_COMMIT, List.of());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Path>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                Path file = home.resolve("dir-" + (i % 4)).resolve("file-" + i + ".txt");
+                futures.add(executor.submit(() -> {
+                    Files.createDirectories(file.getParent());
+                    Path tmpFile = FileCommitter.getTempFile(file);
+                    Files.writeString(tmpFile, file.getFileName().toString());
+                    fileCommitter.commit(home.relativize(file), tmpFile, file);
+                    return file;
+                }));
+            }
+            for (Future<Path> future : futures) {
+                Path file = future.get();
+                assertEquals(file.getFileName().toString(), Files.readString(file));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testFailedGroupCommit() {
+        FileCommitter fileCommitter = new FileCommitter(Durability.GROUP_COMMIT, List.of());
+        Path file = home.resolve("missing.txt");
+        Path tmpFile = FileCommitter.getTempFile(file);
+        assertThrows(IOException.class, () ->
+                fileCommitter.commit(Paths.get("missing.txt"), tmpFile, file));
+        assertFalse(Files.exists(file));
+    }
+
+}
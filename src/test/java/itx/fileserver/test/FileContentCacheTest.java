@@ -0,0 +1,154 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.CacheStats;
+import itx.fileserver.services.BufferPool;
+import itx.fileserver.services.FileChangeEvent;
+import itx.fileserver.services.download.DownloadService;
+import itx.fileserver.services.download.DownloadServiceImpl;
+import itx.fileserver.services.download.FileContentCache;
+import itx.fileserver.services.download.FileMetadataCache;
+import itx.fileserver.services.download.MappedFileRegions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileContentCacheTest {
+
+    private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private FileMetadataCache fileMetadataCache;
+    private FileContentCache fileContentCache;
+
+    @BeforeEach
+    public void init() throws IOException {
+        file = tempDir.resolve("data.txt");
+        Files.writeString(file, CONTENT);
+        fileMetadataCache = new FileMetadataCache(16);
+        fileContentCache = new FileContentCache(fileMetadataCache, true, 1024, 64);
+    }
+
+    @Test
+    void testHitAndMiss() throws IOException {
+        assertEquals(CONTENT, get(file));
+        assertEquals(CONTENT, get(file));
+        assertEquals(CONTENT, get(file));
+        CacheStats stats = fileContentCache.getStats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getEntries());
+        assertEquals(CONTENT.length(), stats.getBytesUsed());
+    }
+
+    @Test
+    void testConcurrentMisses() throws Exception {
+        int threads = 8;
+        String content = CONTENT.repeat(64 * 1024);
+        Path largeFile = tempDir.resolve("large.txt");
+        Files.writeString(largeFile, content);
+        fileContentCache = new FileContentCache(fileMetadataCache, true, 4 * content.length(), content.length());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(threads);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    barrier.await();
+                    return get(largeFile);
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals(content, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        //file is loaded once, other requests wait for it
+        CacheStats stats = fileContentCache.getStats();
+        assertEquals(1, stats.getMissCount());
+        assertEquals(threads - 1, stats.getHitCount());
+    }
+
+    @Test
+    void testLargeFileNotCached() throws IOException {
+        Path largeFile = tempDir.resolve("large.txt");
+        Files.writeString(largeFile, CONTENT.repeat(2));
+        assertNull(fileContentCache.get(largeFile, fileMetadataCache.get(largeFile)));
+        assertEquals(0, fileContentCache.getStats().getEntries());
+    }
+
+    @Test
+    void testFileModified() throws IOException {
+        assertEquals(CONTENT, get(file));
+        Files.writeString(file, "modified");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        assertEquals("modified", get(file));
+        assertEquals(2, fileContentCache.getStats().getMissCount());
+    }
+
+    @Test
+    void testFileChangeEvent() throws IOException {
+        assertEquals(CONTENT, get(file));
+        fileContentCache.onFileChange(new FileChangeEvent(FileChangeEvent.Type.MODIFIED,
+                Paths.get("other.txt"), tempDir.resolve("other.txt")));
+        assertEquals(1, fileContentCache.getStats().getEntries());
+        fileContentCache.onFileChange(new FileChangeEvent(FileChangeEvent.Type.DELETED, Paths.get(""), tempDir));
+        assertEquals(0, fileContentCache.getStats().getEntries());
+    }
+
+    @Test
+    void testDownloadFromCache() throws IOException {
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForDownloadService();
+        DownloadService downloadService = new DownloadServiceImpl(fileServerConfig, new BufferPool(fileServerConfig),
+                fileMetadataCache, fileContentCache, new MappedFileRegions(fileServerConfig),
+                TestUtils.createDisabledCompressedVariants(fileMetadataCache));
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            downloadService.download(new FileSystemResource(file), new MockHttpServletRequest("GET", "/"), response);
+            assertEquals(200, response.getStatus());
+            assertEquals(CONTENT, response.getContentAsString());
+
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+            request.addHeader(HttpHeaders.RANGE, "bytes=0-0,-1");
+            response = new MockHttpServletResponse();
+            downloadService.download(new FileSystemResource(file), request, response);
+            assertEquals(206, response.getStatus());
+            assertTrue(response.getContentAsString().contains("\r\n\r\n0\r\n"));
+            assertTrue(response.getContentAsString().contains("\r\n\r\nz\r\n"));
+        }
+        assertEquals(3, fileContentCache.getStats().getHitCount());
+    }
+
+    private String get(Path path) throws IOException {
+        ByteBuffer content = fileContentCache.get(path, fileMetadataCache.get(path));
+        return StandardCharsets.UTF_8.decode(content).toString();
+    }
+
+}
@@ -0,0 +1,217 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.ArchiveFormat;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.SearchHit;
+import itx.fileserver.dto.SearchResult;
+import itx.fileserver.dto.SearchType;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.FileAccessService;
+import itx.fileserver.services.FileAccessServiceImpl;
+import itx.fileserver.services.FileChangeEvent;
+import itx.fileserver.services.FileService;
+import itx.fileserver.services.FileUtils;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.data.inmemory.AuditServiceInmemory;
+import itx.fileserver.services.data.inmemory.FileAccessManagerServiceInmemory;
+import itx.fileserver.services.search.FileNameIndex;
+import itx.fileserver.services.search.PathIndex;
+import itx.fileserver.services.search.SearchService;
+import itx.fileserver.services.search.SearchServiceImpl;
+import itx.fileserver.services.upload.FileCommitter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileNameIndexTest {
+
+    @TempDir
+    Path root;
+
+    private Path home;
+    private FileServerConfig fileServerConfig;
+    private FileAccessService fileAccessService;
+    private FileNameIndex fileNameIndex;
+    private UserData publicUser;
+
+    @BeforeEach
+    public void init() throws Exception {
+        home = Files.createDirectories(root.resolve("home"));
+        Files.createDirectories(home.resolve("public/a/b"));
+        Files.createDirectories(home.resolve("public/docs"));
+        Files.createDirectories(home.resolve("jane"));
+        Files.createDirectories(home.resolve("joe/for-public"));
+        Files.writeString(home.resolve("public/a/one.txt"), "one");
+        Files.writeString(home.resolve("public/a/b/two.txt"), "two");
+        Files.writeString(home.resolve("public/docs/report-2024.pdf"), "pdf");
+        Files.writeString(home.resolve("jane/secret.txt"), "secret");
+        Files.writeString(home.resolve("joe/for-public/shared.txt"), "shared");
+        Files.writeString(FileCommitter.getTempFile(home.resolve("public/a/uploading.txt")), "partial");
+        fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.setHome(home.toString());
+        fileServerConfig.setDataBasedir(root.resolve("data").toString());
+        fileServerConfig.setBufferSize(16 * 1024);
+        fileServerConfig.setBufferCount(4);
+        fileServerConfig.setSearchMaxResults(100);
+        fileAccessService = new FileAccessServiceImpl(new FileAccessManagerServiceInmemory(fileServerConfig));
+        fileNameIndex = new FileNameIndex(true, home.toAbsolutePath().normalize(), 0, 0);
+        publicUser = new UserData("public", Set.of(new RoleId("public")), "secret");
+        assertTrue(fileNameIndex.rebuild());
+    }
+
+    @Test
+    void testSubstringAndPrefix() {
+        assertEquals(Set.of("public/a/b/two.txt"), search("", SearchType.SUBSTRING, "two"));
+        assertEquals(Set.of("public/a/one.txt", "public/a/b/two.txt"), search("public/a", SearchType.SUBSTRING, ".txt"));
+        assertEquals(Set.of("public/docs/report-2024.pdf"), search("", SearchType.SUBSTRING, "t-20"));
+        assertEquals(Set.of(), search("", SearchType.SUBSTRING, "uploading"));
+        assertEquals(Set.of(), search("public/missing", SearchType.SUBSTRING, "two"));
+
+        assertEquals(Set.of("public/a/one.txt"), search("public", SearchType.PREFIX, "a/o"));
+        assertEquals(Set.of("public/a", "public/a/one.txt", "public/a/b", "public/a/b/two.txt"),
+                search("public", SearchType.PREFIX, "a"));
+        assertEquals(Set.of("public/docs/report-2024.pdf"), search("", SearchType.PREFIX, "public/docs/rep"));
+        assertEquals(Set.of(), search("", SearchType.PREFIX, "public/docs/x"));
+    }
+
+    @Test
+    void testGlobMatchesWildcardMatch() throws Exception {
+        for (String glob : new String[] { "**", "*", "**/*.txt", "*/a/*", "public/**", "**/report-*.pdf",
+                "**/t?o.txt", "{jane,joe}/**", "**/[os]*.txt", "public/a/**.txt" }) {
+            assertEquals(walk(glob), search("", SearchType.GLOB, glob), glob);
+        }
+        assertEquals(Set.of("public/a/b/two.txt"), search("public/a", SearchType.GLOB, "b/*.txt"));
+    }
+
+    @Test
+    void testFileChanges() throws Exception {
+        FileService fileService = TestUtils.newFileServiceBuilder(fileServerConfig)
+                .withFileAccessService(fileAccessService)
+                .withEventPublisher(event -> fileNameIndex.onFileChange((FileChangeEvent) event))
+                .build();
+        fileService.createDirectory(publicUser, Paths.get("public/x/y"));
+        fileService.saveFile(publicUser, Paths.get("public/x/y/new.txt"), stream("new"));
+        assertEquals(Set.of("public/x/y/new.txt"), search("", SearchType.SUBSTRING, "new"));
+
+        fileService.move(publicUser, Paths.get("public/a"), Paths.get("public/x/moved"));
+        assertEquals(Set.of("public/x/moved/b/two.txt"), search("", SearchType.SUBSTRING, "two"));
+        assertEquals(Set.of(), search("public/a", SearchType.SUBSTRING, "two"));
+
+        fileService.delete(publicUser, Paths.get("public/x/moved"));
+        assertEquals(Set.of(), search("", SearchType.SUBSTRING, "two"));
+        assertEquals(walk("**"), search("", SearchType.GLOB, "**"));
+
+        //changes made by other processes are found after rebuild
+        Files.writeString(home.resolve("public/external.txt"), "external");
+        assertEquals(Set.of(), search("", SearchType.SUBSTRING, "external"));
+        fileNameIndex.rebuild();
+        assertEquals(Set.of("public/external.txt"), search("", SearchType.SUBSTRING, "external"));
+    }
+
+    @Test
+    void testExtractedArchive() throws Exception {
+        FileService fileService = TestUtils.newFileServiceBuilder(fileServerConfig)
+                .withFileAccessService(fileAccessService)
+                .withEventPublisher(event -> fileNameIndex.onFileChange((FileChangeEvent) event))
+                .build();
+        Files.writeString(home.resolve("public/a/external.txt"), "external");
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(zip)) {
+            zipOutputStream.putNextEntry(new ZipEntry("extracted/empty/"));
+            zipOutputStream.putNextEntry(new ZipEntry("extracted/data.txt"));
+            zipOutputStream.write("data".getBytes(StandardCharsets.UTF_8));
+        }
+        fileService.extractArchive(publicUser, Paths.get("public/a"), new ByteArrayInputStream(zip.toByteArray()),
+                ArchiveFormat.ZIP);
+        assertEquals(Set.of("public/a/extracted", "public/a/extracted/empty", "public/a/extracted/data.txt"),
+                search("public/a", SearchType.PREFIX, "extracted"));
+        //only extracted entries are indexed, the rest of the directory is left to rebuild
+        assertEquals(Set.of(), search("", SearchType.SUBSTRING, "external"));
+    }
+
+    @Test
+    void testAccessFiltering() throws Exception {
+        SearchService searchService = new SearchServiceImpl(fileServerConfig, fileAccessService,
+                new AuditServiceInmemory(16), fileNameIndex);
+        SearchResult result = searchService.search(publicUser, Paths.get(""), SearchType.SUBSTRING, ".txt", 0);
+        assertEquals(Set.of("public/a/one.txt", "public/a/b/two.txt", "joe/for-public/shared.txt"),
+                result.getHits().stream().map(SearchHit::getPath).collect(Collectors.toSet()));
+        assertFalse(result.isTruncated());
+
+        result = searchService.search(publicUser, Paths.get(""), SearchType.SUBSTRING, ".txt", 2);
+        assertEquals(2, result.getHits().size());
+        assertTrue(result.isTruncated());
+
+        assertThrows(OperationNotAllowedException.class,
+                () -> searchService.search(publicUser, Paths.get("jane"), SearchType.SUBSTRING, "secret", 0));
+        assertThrows(OperationNotAllowedException.class,
+                () -> searchService.search(publicUser, Paths.get("public/../jane"), SearchType.SUBSTRING, "s", 0));
+    }
+
+    @Test
+    void testMemoryUsage() {
+        PathIndex index = new PathIndex();
+        int count = 0;
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < 10; j++) {
+                for (int k = 0; k < 100; k++) {
+                    index.add("projects/project-" + i + "/module-" + j + "/File" + count + "-" + k + ".java", false);
+                    count++;
+                }
+            }
+        }
+        index.trim();
+        assertEquals(count + 1 + 200 + 200 * 10, index.size());
+        //all file names are unique, which is the worst case
+        long bytesPerPath = index.getMemoryUsage() / index.size();
+        assertTrue(bytesPerPath < 80, "bytes per path " + bytesPerPath);
+        assertEquals(Set.of("projects/project-7/module-3/File7345-45.java"),
+                search(index, "projects", SearchType.SUBSTRING, "File7345-"));
+    }
+
+    private Set<String> search(String scope, SearchType type, String query) {
+        Set<String> paths = new HashSet<>();
+        fileNameIndex.search(Paths.get(scope), type, query, (path, directory) -> paths.add(path));
+        return paths;
+    }
+
+    private static Set<String> search(PathIndex index, String scope, SearchType type, String query) {
+        Set<String> paths = new HashSet<>();
+        index.search(scope, type, query, (path, directory) -> paths.add(path));
+        return paths;
+    }
+
+    private Set<String> walk(String glob) throws Exception {
+        try (Stream<Path> paths = Files.walk(home)) {
+            return paths.skip(1)
+                    .map(path -> home.relativize(path).toString())
+                    .filter(path -> !FileCommitter.isTempFile(Paths.get(path).getFileName().toString()))
+                    .filter(path -> FileUtils.wildcardMatch(path, glob))
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    private static ByteArrayInputStream stream(String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
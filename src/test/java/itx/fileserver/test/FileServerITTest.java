@@ -1,5 +1,6 @@
 package itx.fileserver.test;
 
+import itx.fileserver.config.FileServerConfig;
 import itx.fileserver.dto.FileStorageInfo;
 import itx.fileserver.dto.LoginRequest;
 import itx.fileserver.dto.UserData;
@@ -20,8 +21,19 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -42,6 +54,9 @@ class FileServerITTest {
     @Autowired
     TestRestTemplate restTemplate;
 
+    @Autowired
+    FileServerConfig fileServerConfig;
+
     @Test
     @Order(1)
     void testStorageInfoNoLogin() {
@@ -79,6 +94,30 @@ class FileServerITTest {
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
     }
 
+    @Test
+    @Order(4)
+    void testStreamUpload() throws IOException {
+        Files.createDirectories(Paths.get(fileServerConfig.getHome()));
+        byte[] data = "streamed upload data".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+        HttpEntity<byte[]> requestEntity = new HttpEntity<>(data, TestUtils.createHeaders(jSessionId));
+        ResponseEntity<Void> responseEntity = restTemplate.exchange("/services/files/upload/stream-upload.bin",
+                HttpMethod.PUT, requestEntity, Void.class);
+        assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        assertArrayEquals(data, Files.readAllBytes(Paths.get(fileServerConfig.getHome(), "stream-upload.bin")));
+    }
+
+    @Test
+    @Order(5)
+    void testStreamUploadExpectContinue() throws IOException {
+        //access is verified before 100 Continue is sent, client never sends the body
+        List<String> response = sendExpectContinue("Host: localhost\r\n");
+        assertTrue(response.get(0).startsWith("HTTP/1.1 403"), response.get(0));
+
+        response = sendExpectContinue("Host: localhost\r\nCookie: JSESSIONID=" + jSessionId + "\r\n");
+        assertTrue(response.get(0).startsWith("HTTP/1.1 100"), response.get(0));
+        assertTrue(response.get(1).startsWith("HTTP/1.1 200"), response.get(1));
+    }
+
     @Test
     @Order(90)
     void testUserLogout() {
@@ -87,4 +126,34 @@ class FileServerITTest {
         assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
     }
 
+    /**
+     * Send PUT with Expect: 100-continue, body is sent only when server answers with 100 Continue.
+     * @return status lines of received responses.
+     */
+    private List<String> sendExpectContinue(String headers) throws IOException {
+        byte[] body = "expect continue".getBytes(StandardCharsets.US_ASCII);
+        List<String> statusLines = new ArrayList<>();
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(10_000);
+            OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(("PUT /services/files/upload/expect-continue.txt HTTP/1.1\r\n" + headers
+                    + "Content-Length: " + body.length + "\r\nExpect: 100-continue\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            outputStream.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            String line = reader.readLine();
+            statusLines.add(line);
+            if (line.startsWith("HTTP/1.1 100")) {
+                while (!reader.readLine().isEmpty()) {
+                    //skip headers of interim response
+                }
+                outputStream.write(body);
+                outputStream.flush();
+                statusLines.add(reader.readLine());
+            }
+        }
+        return statusLines;
+    }
+
 }
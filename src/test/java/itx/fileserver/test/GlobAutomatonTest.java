@@ -0,0 +1,269 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.AccessType;
+import itx.fileserver.dto.FilterConfig;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.services.AccessRules;
+import itx.fileserver.services.FileAccessService;
+import itx.fileserver.services.FileAccessServiceImpl;
+import itx.fileserver.services.FileUtils;
+import itx.fileserver.services.GlobAutomaton;
+import itx.fileserver.services.SubtreeVerdict;
+import itx.fileserver.services.data.inmemory.FileAccessManagerServiceInmemory;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GlobAutomatonTest {
+
+    private static final String[] GLOB_TOKENS = { "a", "b", "c", ".", "/", "-", "^", "*", "**", "?", "[ab]", "[!a-c]",
+            "[-a]", "[a-]", "[^b]", "[!-]", "[a-c-e]", "[z-a]", "[]", "[!]", "[a/b]", "[a", "[\\]", "{a,b*,c/d}", "{,x}",
+            "{a", "{a{b}}", "}", ",", "\\*", "\\a", "\\", "\u00e9", "\ud83d\ude00" };
+    private static final String[] NAME_CHARS = { "a", "b", "c", "x", ".", "-", "^", "*", "\\", "{", ",",
+            "\n" };
+
+    @Test
+    void testGlobsMatchLikePathMatcher() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String glob = createGlob(random);
+            GlobAutomaton automaton = null;
+            try {
+                automaton = GlobAutomaton.newBuilder().withGlob(glob, 1).build();
+            } catch (PatternSyntaxException e) {
+                assertThrows(PatternSyntaxException.class, () -> FileUtils.wildcardMatch("a", glob), glob);
+                continue;
+            }
+            for (int j = 0; j < 50; j++) {
+                String path = createPath(random);
+                assertEquals(FileUtils.wildcardMatch(path, glob), automaton.match(path) == 1,
+                        "glob=" + glob + " path=" + path);
+            }
+        }
+    }
+
+    @Test
+    void testTagsOfMatchingGlobs() {
+        GlobAutomaton automaton = GlobAutomaton.newBuilder()
+                .withGlob("**", 1)
+                .withGlob("public/**", 2)
+                .withGlob("public/*.txt", 4)
+                .withGlob("{jane,joe}/**", 8)
+                .build();
+        assertEquals(1 | 2 | 4, automaton.match("public/a.txt"));
+        assertEquals(1 | 2, automaton.match("public/b/a.txt"));
+        assertEquals(1 | 8, automaton.match("joe/a.txt"));
+        assertEquals(1, automaton.match("jane"));
+        assertEquals(1, automaton.match(""));
+        assertEquals(0, GlobAutomaton.newBuilder().build().match("public"));
+    }
+
+    @Test
+    void testAccessLikeFilterLoop() {
+        Random random = new Random(7);
+        String[] globs = { "**", "*", "a/**", "a/*", "a/b/**", "a/b", "*/b/**", "{a,c}/**", "a/?", "a/[bc]/**",
+                "a/**/c", "c/**" };
+        for (int i = 0; i < 200; i++) {
+            List<FilterConfig> filters = new ArrayList<>();
+            for (int j = random.nextInt(6); j > 0; j--) {
+                filters.add(new FilterConfig(globs[random.nextInt(globs.length)],
+                        AccessType.values()[random.nextInt(AccessType.values().length)].name(),
+                        "role" + random.nextInt(3)));
+            }
+            FileServerConfig fileServerConfig = new FileServerConfig();
+            fileServerConfig.setFilters(filters);
+            FileAccessService fileAccessService =
+                    new FileAccessServiceImpl(new FileAccessManagerServiceInmemory(fileServerConfig));
+            Set<RoleId> roles = Set.of(new RoleId("role0"), new RoleId("role1"));
+            for (int j = 0; j < 20; j++) {
+                Path path = Paths.get(createPath(random).replace('\n', 'n'));
+                assertEquals(checkAccess(filters, roles, path, AccessType.READ), fileAccessService.canRead(roles, path));
+                assertEquals(checkAccess(filters, roles, path, AccessType.READ_WRITE),
+                        fileAccessService.canReadAndWrite(roles, path));
+                assertEquals(checkAccess(filters, roles, path, AccessType.READ),
+                        fileAccessService.getAccessRules(roles).canRead(path));
+            }
+        }
+    }
+
+    @Test
+    void testMergedRulesOfManyRoles() {
+        Random random = new Random(3);
+        String[] globs = { "**", "*", "a/**", "a/*", "a/b/**", "{a,c}/**", "a/?", "a/**/c", "c/**", "[" };
+        for (int i = 0; i < 50; i++) {
+            List<FilterConfig> filters = new ArrayList<>();
+            for (int j = random.nextInt(40); j > 0; j--) {
+                filters.add(new FilterConfig(globs[random.nextInt(globs.length)],
+                        AccessType.values()[random.nextInt(AccessType.values().length)].name(),
+                        "role" + random.nextInt(25)));
+            }
+            FileServerConfig fileServerConfig = new FileServerConfig();
+            fileServerConfig.setFilters(filters);
+            FileAccessService fileAccessService =
+                    new FileAccessServiceImpl(new FileAccessManagerServiceInmemory(fileServerConfig));
+            Set<RoleId> roles = new HashSet<>();
+            for (int j = random.nextInt(25); j > 0; j--) {
+                roles.add(new RoleId("role" + random.nextInt(25)));
+            }
+            AccessRules accessRules = fileAccessService.getAccessRules(roles);
+            for (int j = 0; j < 20; j++) {
+                Path path = Paths.get(createPath(random).replace('\n', 'n'));
+                assertEquals(checkAccess(filters, roles, path, AccessType.READ), accessRules.canRead(path),
+                        "filters=" + filters + " path=" + path);
+                assertEquals(checkAccess(filters, roles, path, AccessType.READ_WRITE),
+                        accessRules.canReadAndWrite(path));
+            }
+        }
+    }
+
+    @Test
+    void testFiltersRecompiledOnChange() {
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        FileAccessManagerServiceInmemory fileAccessManagerService =
+                new FileAccessManagerServiceInmemory(fileServerConfig);
+        FileAccessService fileAccessService = new FileAccessServiceImpl(fileAccessManagerService);
+        Set<RoleId> roles = Set.of(new RoleId("public"));
+        Path path = Paths.get("public/a.txt");
+        assertTrue(fileAccessService.canReadAndWrite(roles, path));
+        FilterConfig filterConfig = new FilterConfig("public/*.txt", "READ", "public");
+        fileAccessManagerService.addFilter(filterConfig);
+        assertFalse(fileAccessService.canReadAndWrite(roles, path));
+        assertTrue(fileAccessService.canRead(roles, path));
+        fileAccessManagerService.removeFilter(filterConfig);
+        assertTrue(fileAccessService.canReadAndWrite(roles, path));
+
+        //role with invalid filter has no access
+        fileAccessManagerService.addFilter(new FilterConfig("public/[", "READ", "public"));
+        assertFalse(fileAccessService.canRead(roles, path));
+    }
+
+    @Test
+    void testSubtreeVerdictLikePathChecks() {
+        Random random = new Random(11);
+        String[] globs = { "**", "*", "a/**", "a/*", "a/b/**", "a/b", "*/b/**", "{a,c}/**", "a/?", "a/[bc]/**",
+                "a/**/c", "c/**", "**/x", "a*/**", "b/**" };
+        String[] directories = { "", "a", "b", "c", "a/b", "a/c", "c/b", "x" };
+        int uniform = 0;
+        for (int i = 0; i < 300; i++) {
+            List<FilterConfig> filters = new ArrayList<>();
+            for (int j = random.nextInt(5); j > 0; j--) {
+                filters.add(new FilterConfig(globs[random.nextInt(globs.length)],
+                        AccessType.values()[random.nextInt(AccessType.values().length)].name(),
+                        "role" + random.nextInt(3)));
+            }
+            FileServerConfig fileServerConfig = new FileServerConfig();
+            fileServerConfig.setFilters(filters);
+            FileAccessService fileAccessService =
+                    new FileAccessServiceImpl(new FileAccessManagerServiceInmemory(fileServerConfig));
+            Set<RoleId> roles = Set.of(new RoleId("role0"), new RoleId("role1"));
+            AccessRules accessRules = fileAccessService.getAccessRules(roles);
+            for (String directory : directories) {
+                SubtreeVerdict verdict = fileAccessService.getSubtreeVerdict(roles, Paths.get(directory));
+                if (verdict == SubtreeVerdict.MIXED) {
+                    continue;
+                }
+                uniform++;
+                for (int j = 0; j < 30; j++) {
+                    String below = createPath(random).replace('\n', 'n');
+                    if (below.isEmpty()) {
+                        continue;
+                    }
+                    Path path = Paths.get(directory, below);
+                    String message = "filters=" + filters + " path=" + path + " verdict=" + verdict;
+                    assertEquals(checkAccess(filters, roles, path, AccessType.READ), verdict != SubtreeVerdict.DENIED,
+                            message);
+                    assertEquals(checkAccess(filters, roles, path, AccessType.READ_WRITE),
+                            verdict == SubtreeVerdict.WRITABLE, message);
+                    assertEquals(fileAccessService.canRead(roles, path), accessRules.canRead(path, verdict), message);
+                }
+            }
+        }
+        assertTrue(uniform > 300);
+    }
+
+    @Test
+    void testSubtreeVerdicts() {
+        FileAccessService fileAccessService = new FileAccessServiceImpl(
+                new FileAccessManagerServiceInmemory(TestUtils.createFileServerConfigForFileAccessService()));
+        Set<RoleId> master = Set.of(new RoleId("master"));
+        Set<RoleId> publicRoles = Set.of(new RoleId("public"));
+        assertEquals(SubtreeVerdict.WRITABLE, fileAccessService.getSubtreeVerdict(master, Paths.get("")));
+        assertEquals(SubtreeVerdict.MIXED, fileAccessService.getSubtreeVerdict(publicRoles, Paths.get("")));
+        assertEquals(SubtreeVerdict.MIXED, fileAccessService.getSubtreeVerdict(publicRoles, Paths.get("public")));
+        assertEquals(SubtreeVerdict.WRITABLE, fileAccessService.getSubtreeVerdict(publicRoles, Paths.get("public/a")));
+        assertEquals(SubtreeVerdict.READABLE,
+                fileAccessService.getSubtreeVerdict(publicRoles, Paths.get("public/readonly")));
+        assertEquals(SubtreeVerdict.DENIED, fileAccessService.getSubtreeVerdict(publicRoles, Paths.get("jane")));
+
+        //'**' does not match names with line terminators, such paths are checked one by one
+        AccessRules accessRules = fileAccessService.getAccessRules(master);
+        assertFalse(accessRules.canRead(Paths.get("a\nb"), SubtreeVerdict.WRITABLE));
+    }
+
+    /**
+     * Access check evaluating every filter separately.
+     */
+    private static boolean checkAccess(List<FilterConfig> filters, Set<RoleId> roles, Path path,
+                                       AccessType expectedAccessType) {
+        for (RoleId role : roles) {
+            Set<AccessType> accessTypes = EnumSet.noneOf(AccessType.class);
+            boolean valid = true;
+            for (FilterConfig filter : filters) {
+                if (!filter.getRoles().contains(role.getId())) {
+                    continue;
+                }
+                try {
+                    if (FileUtils.wildcardMatch(path.toString(), filter.getPath())) {
+                        accessTypes.add(AccessType.valueOf(filter.getAccess()));
+                    }
+                } catch (PatternSyntaxException e) {
+                    //role with invalid filter has no access
+                    valid = false;
+                }
+            }
+            if (valid && FileAccessServiceImpl.checkAccessUseMostRestrictive(accessTypes, expectedAccessType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String createGlob(Random random) {
+        StringBuilder glob = new StringBuilder();
+        for (int i = 1 + random.nextInt(6); i > 0; i--) {
+            glob.append(GLOB_TOKENS[random.nextInt(GLOB_TOKENS.length)]);
+        }
+        return glob.toString();
+    }
+
+    /**
+     * @return normalized relative path.
+     */
+    private static String createPath(Random random) {
+        StringBuilder path = new StringBuilder();
+        for (int i = random.nextInt(4); i > 0; i--) {
+            if (!path.isEmpty()) {
+                path.append('/');
+            }
+            for (int j = 1 + random.nextInt(3); j > 0; j--) {
+                path.append(NAME_CHARS[random.nextInt(NAME_CHARS.length)]);
+            }
+        }
+        return path.toString();
+    }
+
+}
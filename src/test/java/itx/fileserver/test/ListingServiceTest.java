@@ -0,0 +1,275 @@
+package itx.fileserver.test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.FilterConfig;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.FileAccessServiceImpl;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.data.inmemory.AuditServiceInmemory;
+import itx.fileserver.services.data.inmemory.FileAccessManagerServiceInmemory;
+import itx.fileserver.services.listing.DirectoryUsageIndex;
+import itx.fileserver.services.listing.ListingService;
+import itx.fileserver.services.listing.ListingServiceImpl;
+import itx.fileserver.services.upload.FileCommitter;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ListingServiceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @TempDir
+    Path home;
+
+    private ListingService listingService;
+    private Set<String> expectedNames;
+
+    @BeforeEach
+    public void init() throws IOException {
+        Path directory = Files.createDirectories(home.resolve("public/large"));
+        expectedNames = new TreeSet<>();
+        for (int i = 0; i < 40; i++) {
+            String name = String.format("file-%02d.txt", i);
+            Files.writeString(directory.resolve(name), "data " + i);
+            expectedNames.add(name);
+        }
+        for (int i = 0; i < 5; i++) {
+            String name = "dir-" + i;
+            Files.createDirectory(directory.resolve(name));
+            expectedNames.add(name);
+        }
+        Files.createDirectory(directory.resolve("secret"));
+        Files.writeString(directory.resolve("secret/inner.txt"), "inner");
+        Files.createDirectories(directory.resolve("dir-0/a/b"));
+        Files.writeString(directory.resolve("dir-0/a/b/deep.txt"), "deep");
+        Files.writeString(FileCommitter.getTempFile(directory.resolve("uploading.bin")), "partial");
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.getFilters().add(new FilterConfig("public/large/secret", "NONE", "public"));
+        fileServerConfig.setHome(home.toString());
+        fileServerConfig.setListingMaxPageSize(10);
+        fileServerConfig.setListingTreeParallelism(4);
+        listingService = new ListingServiceImpl(fileServerConfig,
+                new FileAccessServiceImpl(new FileAccessManagerServiceInmemory(fileServerConfig)),
+                new AuditServiceInmemory(1024), new DirectoryUsageIndex(fileServerConfig));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { true, false })
+    void testListAllPages(boolean sorted) throws Exception {
+        List<String> names = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            JsonNode page = list(cursor, 7, sorted);
+            assertEquals("public/large", page.get("path").asText());
+            assertTrue(page.get("entries").size() <= 7);
+            for (JsonNode entry : page.get("entries")) {
+                String name = entry.get("name").asText();
+                names.add(name);
+                assertEquals(name.startsWith("dir-"), entry.get("directory").asBoolean());
+                assertEquals(!name.startsWith("dir-"), entry.has("size"));
+                assertTrue(entry.get("lastModified").asLong() > 0);
+            }
+            cursor = page.has("nextCursor") ? page.get("nextCursor").asText() : null;
+            pages++;
+        } while (cursor != null);
+        assertEquals(7, pages);
+        assertEquals(expectedNames.size(), names.size());
+        assertEquals(expectedNames, new HashSet<>(names));
+        if (sorted) {
+            assertEquals(new ArrayList<>(expectedNames), names);
+        }
+    }
+
+    @Test
+    void testSortedPagesDoNotShift() throws Exception {
+        JsonNode first = list(null, 5, true);
+        String cursor = first.get("nextCursor").asText();
+        assertEquals("dir-4", first.get("entries").get(4).get("name").asText());
+        //entries created or deleted before the cursor do not change next page
+        Files.writeString(home.resolve("public/large/a-new.txt"), "new");
+        Files.delete(home.resolve("public/large/file-00.txt"));
+        JsonNode second = list(cursor, 5, true);
+        assertEquals("file-01.txt", second.get("entries").get(0).get("name").asText());
+        assertEquals(5, second.get("entries").size());
+    }
+
+    @Test
+    void testLimit() throws Exception {
+        assertEquals(10, list(null, 0, false).get("entries").size());
+        assertEquals(10, list(null, 1000, true).get("entries").size());
+        JsonNode page = list(null, 100, true);
+        assertEquals(10, page.get("entries").size());
+        assertFalse(page.get("nextCursor").asText().isEmpty());
+    }
+
+    @Test
+    void testInvalidRequests() {
+        assertThrows(IllegalArgumentException.class, () -> list("not base64 !", 5, true));
+        assertThrows(IllegalArgumentException.class, () -> {
+            String sortedCursor = list(null, 5, true).get("nextCursor").asText();
+            list(sortedCursor, 5, false);
+        });
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThrows(FileNotFoundException.class, () -> listingService.list(createUser("public"),
+                Paths.get("public/missing"), null, 5, false, response));
+        assertThrows(OperationNotAllowedException.class, () -> listingService.list(createUser("public"),
+                Paths.get("jane"), null, 5, false, response));
+        assertFalse(response.isCommitted());
+    }
+
+    @Test
+    void testEmptyDirectory() throws Exception {
+        Files.createDirectories(home.resolve("public/empty"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        listingService.list(createUser("public"), Paths.get("public/empty"), null, 5, true, response);
+        JsonNode page = MAPPER.readTree(response.getContentAsByteArray());
+        assertEquals(0, page.get("entries").size());
+        assertNull(page.get("nextCursor"));
+    }
+
+    @Test
+    void testTree() throws Exception {
+        Map<String, JsonNode> tree = tree(0);
+        Set<String> expected = new HashSet<>(expectedNames);
+        //directory itself is not readable, its content matches public/**
+        expected.addAll(List.of("secret/inner.txt", "dir-0/a", "dir-0/a/b", "dir-0/a/b/deep.txt"));
+        assertEquals(expected, tree.keySet());
+        assertTrue(tree.get("dir-0/a").get("directory").asBoolean());
+        assertEquals(4, tree.get("dir-0/a/b/deep.txt").get("size").asLong());
+
+        assertEquals(expectedNames, tree(1).keySet());
+        Set<String> depthTwo = new HashSet<>(expectedNames);
+        depthTwo.addAll(List.of("secret/inner.txt", "dir-0/a"));
+        assertEquals(depthTwo, tree(2).keySet());
+    }
+
+    @Test
+    void testTreeStalledClients() throws Exception {
+        Path directory = Files.createDirectories(home.resolve("public/many"));
+        for (int i = 0; i < 500; i++) {
+            Files.writeString(directory.resolve(String.format("file-with-long-name-%03d.txt", i)), "data");
+        }
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            //more stalled clients than threads reading directories
+            List<Future<?>> stalled = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                stalled.add(executor.submit(() -> {
+                    listingService.tree(createUser("public"), Paths.get("public/many"), 0,
+                            new StalledResponse(release));
+                    return null;
+                }));
+            }
+            Thread.sleep(200);
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertEquals(expectedNames, tree(1).keySet()));
+            release.countDown();
+            for (Future<?> future : stalled) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, JsonNode> tree(int depth) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        listingService.tree(createUser("public"), Paths.get("public/large"), depth, response);
+        assertEquals(200, response.getStatus());
+        assertEquals("application/x-ndjson", response.getContentType());
+        Map<String, JsonNode> entries = new HashMap<>();
+        for (String line : response.getContentAsString().split("\n")) {
+            JsonNode entry = MAPPER.readTree(line);
+            assertNull(entries.put(entry.get("path").asText(), entry));
+        }
+        return entries;
+    }
+
+    private JsonNode list(String cursor, int limit, boolean sorted) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        listingService.list(createUser("public"), Paths.get("public/large"), cursor, limit, sorted, response);
+        assertEquals(200, response.getStatus());
+        assertEquals("application/json", response.getContentType());
+        return MAPPER.readTree(response.getContentAsByteArray());
+    }
+
+    private static UserData createUser(String role) {
+        return new UserData(role, Set.of(new RoleId(role)), "secret");
+    }
+
+    /**
+     * Response of a client which does not read the response until released.
+     */
+    private static class StalledResponse extends MockHttpServletResponse {
+
+        private final CountDownLatch release;
+
+        private StalledResponse(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+            };
+        }
+
+    }
+
+}
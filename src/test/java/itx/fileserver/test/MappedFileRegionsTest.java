@@ -0,0 +1,100 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.services.BufferPool;
+import itx.fileserver.services.FileChangeEvent;
+import itx.fileserver.services.download.DownloadService;
+import itx.fileserver.services.download.DownloadServiceImpl;
+import itx.fileserver.services.download.FileContentCache;
+import itx.fileserver.services.download.FileMetadataCache;
+import itx.fileserver.services.download.MappedFileRegions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedFileRegionsTest {
+
+    private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    @TempDir
+    Path tempDir;
+
+    private MappedFileRegions mappedFileRegions;
+    private DownloadService downloadService;
+
+    @BeforeEach
+    public void init() throws IOException {
+        Files.writeString(tempDir.resolve("first.txt"), CONTENT);
+        Files.writeString(tempDir.resolve("second.txt"), CONTENT);
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForDownloadService();
+        FileMetadataCache fileMetadataCache = new FileMetadataCache(fileServerConfig);
+        //small chunks, so ranges span several mapped chunks
+        mappedFileRegions = new MappedFileRegions(true, 0, 1, 8);
+        downloadService = new DownloadServiceImpl(fileServerConfig, new BufferPool(fileServerConfig),
+                fileMetadataCache, new FileContentCache(fileServerConfig, fileMetadataCache), mappedFileRegions,
+                TestUtils.createDisabledCompressedVariants(fileMetadataCache));
+    }
+
+    @Test
+    void testFullContent() throws IOException {
+        MockHttpServletResponse response = download("first.txt", null);
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+        assertEquals(1, mappedFileRegions.getLiveRegions());
+    }
+
+    @Test
+    void testRanges() throws IOException {
+        MockHttpServletResponse response = download("first.txt", "bytes=6-17");
+        assertEquals(206, response.getStatus());
+        assertEquals("6789abcdefgh", response.getContentAsString());
+        response = download("first.txt", "bytes=0-1,30-35");
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentAsString().contains("\r\n\r\n01\r\n"));
+        assertTrue(response.getContentAsString().contains("\r\n\r\nuvwxyz\r\n"));
+        assertEquals(1, mappedFileRegions.getLiveRegions());
+    }
+
+    @Test
+    void testMaxRegions() throws IOException {
+        assertEquals(CONTENT, download("first.txt", null).getContentAsString());
+        assertEquals(CONTENT, download("second.txt", null).getContentAsString());
+        assertEquals(1, mappedFileRegions.getLiveRegions());
+    }
+
+    @Test
+    void testUnmappedOnFileChange() throws IOException {
+        assertEquals(CONTENT, download("first.txt", null).getContentAsString());
+        mappedFileRegions.onFileChange(new FileChangeEvent(FileChangeEvent.Type.DELETED,
+                Paths.get("second.txt"), tempDir.resolve("second.txt")));
+        assertEquals(1, mappedFileRegions.getLiveRegions());
+        mappedFileRegions.onFileChange(new FileChangeEvent(FileChangeEvent.Type.MOVED,
+                Paths.get("first.txt"), tempDir.resolve("first.txt"),
+                Paths.get("third.txt"), tempDir.resolve("third.txt"), false));
+        assertEquals(0, mappedFileRegions.getLiveRegions());
+        assertEquals(CONTENT, download("first.txt", null).getContentAsString());
+    }
+
+    private MockHttpServletResponse download(String fileName, String range) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        downloadService.download(new FileSystemResource(tempDir.resolve(fileName)), request, response);
+        return response;
+    }
+
+}
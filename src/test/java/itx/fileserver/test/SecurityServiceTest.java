@@ -4,6 +4,7 @@ import itx.fileserver.config.FileServerConfig;
 import itx.fileserver.dto.RoleId;
 import itx.fileserver.dto.Sessions;
 import itx.fileserver.dto.UserData;
+import itx.fileserver.services.Principal;
 import itx.fileserver.services.SecurityService;
 import itx.fileserver.services.SecurityServiceImpl;
 import itx.fileserver.services.data.AuditService;
@@ -14,6 +15,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -237,4 +239,65 @@ class SecurityServiceTest {
         assertFalse(securityService.isAuthorizedAdmin(authorizedSessionAdmin));
     }
 
+    @Test
+    void testPrincipalRefresh() {
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        UserManagerService userManagerService = new UserManagerServiceInmemory(fileServerConfig);
+        AuditService auditService = new AuditServiceInmemory(1024);
+        SecurityService securityService = new SecurityServiceImpl(userManagerService, auditService);
+
+        assertTrue(securityService.authorize(authorizedSessionJoe, "joe", validPassword).isPresent());
+        securityService.createAnonymousSession(anonymousSession);
+        Optional<Principal> principal = securityService.getPrincipal(authorizedSessionJoe);
+        assertTrue(principal.isPresent());
+        assertFalse(principal.get().isAdmin());
+        assertFalse(principal.get().isAnonymous());
+        assertThrows(UnsupportedOperationException.class, () -> principal.get().getRoles().add(new RoleId("x")));
+        assertSame(principal.get(), securityService.getPrincipal(authorizedSessionJoe).get());
+
+        //user change refreshes roles
+        userManagerService.removeUser("joe");
+        userManagerService.addUser(new UserData("joe", Set.of(new RoleId("jane")), validPassword));
+        Optional<Principal> refreshed = securityService.getPrincipal(authorizedSessionJoe);
+        assertTrue(refreshed.isPresent());
+        assertEquals(Set.of(new RoleId("jane")), refreshed.get().getRoles());
+        assertEquals(userManagerService.getVersion(), refreshed.get().getUserVersion());
+        assertSame(refreshed.get(), securityService.getPrincipal(authorizedSessionJoe).get());
+
+        //removed user loses the session, anonymous session is kept
+        userManagerService.removeUser("joe");
+        assertFalse(securityService.getPrincipal(authorizedSessionJoe).isPresent());
+        assertFalse(securityService.isAuthorized(authorizedSessionJoe).isPresent());
+        assertTrue(securityService.isAnonymous(anonymousSession));
+        assertEquals(userManagerService.getVersion(),
+                securityService.getPrincipal(anonymousSession).get().getUserVersion());
+    }
+
+    @Test
+    void testPrincipalRefreshConcurrentUserChange() {
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        AtomicBoolean changeOnRead = new AtomicBoolean();
+        UserManagerService userManagerService = new UserManagerServiceInmemory(fileServerConfig) {
+            @Override
+            public Optional<UserData> getUser(String id) {
+                Optional<UserData> userData = super.getUser(id);
+                if (changeOnRead.getAndSet(false)) {
+                    //user is changed right after it has been read
+                    removeUser(id);
+                    addUser(new UserData(id, Set.of(new RoleId("jane")), validPassword));
+                }
+                return userData;
+            }
+        };
+        SecurityService securityService = new SecurityServiceImpl(userManagerService, new AuditServiceInmemory(1024));
+        assertTrue(securityService.authorize(authorizedSessionJoe, "joe", validPassword).isPresent());
+
+        userManagerService.removeUser("nobody");
+        changeOnRead.set(true);
+        assertEquals(Set.of(new RoleId("joe"), new RoleId("public")),
+                securityService.getRoles(authorizedSessionJoe).get());
+        //principal created from the user read before the change is refreshed again
+        assertEquals(Set.of(new RoleId("jane")), securityService.getRoles(authorizedSessionJoe).get());
+    }
+
 }
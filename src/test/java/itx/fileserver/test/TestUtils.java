@@ -3,8 +3,26 @@ package itx.fileserver.test;
 import itx.fileserver.config.FileServerConfig;
 import itx.fileserver.dto.FilterConfig;
 import itx.fileserver.dto.UserConfig;
+import itx.fileserver.services.BufferPool;
+import itx.fileserver.services.FileAccessService;
+import itx.fileserver.services.FileAccessServiceImpl;
+import itx.fileserver.services.FileServiceImpl;
+import itx.fileserver.services.data.AuditService;
+import itx.fileserver.services.data.inmemory.AuditServiceInmemory;
+import itx.fileserver.services.data.inmemory.FileAccessManagerServiceInmemory;
+import itx.fileserver.services.download.CompressedVariants;
+import itx.fileserver.services.download.FileMetadataCache;
+import itx.fileserver.services.listing.DirectoryListingCache;
+import itx.fileserver.services.listing.DirectoryUsageIndex;
+import itx.fileserver.services.upload.BlobStore;
+import itx.fileserver.services.upload.DigestIndex;
+import itx.fileserver.services.upload.FileCommitter;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpHeaders;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -43,6 +61,34 @@ public final class TestUtils {
         return fileServerConfig;
     }
 
+    public static FileServerConfig createFileServerConfigForDownloadService() {
+        FileServerConfig fileServerConfig = new FileServerConfig();
+        fileServerConfig.setBufferSize(16 * 1024);
+        fileServerConfig.setBufferCount(4);
+        fileServerConfig.setDownloadZeroCopy(true);
+        fileServerConfig.setDownloadSendfileMinSize(48 * 1024);
+        fileServerConfig.setDownloadMetadataCacheSize(16);
+        fileServerConfig.setDownloadCacheEnabled(false);
+        return fileServerConfig;
+    }
+
+    public static CompressedVariants createDisabledCompressedVariants(FileMetadataCache fileMetadataCache) {
+        try {
+            return new CompressedVariants(fileMetadataCache, false, Paths.get("not-used"), 0, 0, List.of());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static FileServiceImpl createFileService(FileServerConfig fileServerConfig,
+                                                    ApplicationEventPublisher eventPublisher) throws IOException {
+        return newFileServiceBuilder(fileServerConfig).withEventPublisher(eventPublisher).build();
+    }
+
+    public static FileServiceBuilder newFileServiceBuilder(FileServerConfig fileServerConfig) {
+        return new FileServiceBuilder(fileServerConfig);
+    }
+
     public static Optional<String> getJSessionId(String cookies) {
         String[] split = cookies.split(";");
         for (String s : split) {
@@ -62,4 +108,79 @@ public final class TestUtils {
         return requestHeaders;
     }
 
+    /**
+     * Builder of {@link FileServiceImpl}, collaborators which are not set are created from the configuration,
+     * listing cache is disabled and change events are discarded.
+     */
+    public static class FileServiceBuilder {
+
+        private final FileServerConfig fileServerConfig;
+        private FileAccessService fileAccessService;
+        private AuditService auditService;
+        private ApplicationEventPublisher eventPublisher = event -> { };
+        private FileCommitter fileCommitter;
+        private BlobStore blobStore;
+        private DigestIndex digestIndex;
+        private DirectoryListingCache directoryListingCache;
+        private DirectoryUsageIndex usageIndex;
+
+        private FileServiceBuilder(FileServerConfig fileServerConfig) {
+            this.fileServerConfig = fileServerConfig;
+        }
+
+        public FileServiceBuilder withFileAccessService(FileAccessService fileAccessService) {
+            this.fileAccessService = fileAccessService;
+            return this;
+        }
+
+        public FileServiceBuilder withAuditService(AuditService auditService) {
+            this.auditService = auditService;
+            return this;
+        }
+
+        public FileServiceBuilder withEventPublisher(ApplicationEventPublisher eventPublisher) {
+            this.eventPublisher = eventPublisher;
+            return this;
+        }
+
+        public FileServiceBuilder withFileCommitter(FileCommitter fileCommitter) {
+            this.fileCommitter = fileCommitter;
+            return this;
+        }
+
+        public FileServiceBuilder withBlobStore(BlobStore blobStore) {
+            this.blobStore = blobStore;
+            return this;
+        }
+
+        public FileServiceBuilder withDigestIndex(DigestIndex digestIndex) {
+            this.digestIndex = digestIndex;
+            return this;
+        }
+
+        public FileServiceBuilder withDirectoryListingCache(DirectoryListingCache directoryListingCache) {
+            this.directoryListingCache = directoryListingCache;
+            return this;
+        }
+
+        public FileServiceBuilder withUsageIndex(DirectoryUsageIndex usageIndex) {
+            this.usageIndex = usageIndex;
+            return this;
+        }
+
+        public FileServiceImpl build() throws IOException {
+            return new FileServiceImpl(fileServerConfig,
+                    (fileAccessService != null) ? fileAccessService
+                            : new FileAccessServiceImpl(new FileAccessManagerServiceInmemory(fileServerConfig)),
+                    (auditService != null) ? auditService : new AuditServiceInmemory(16),
+                    eventPublisher, new BufferPool(fileServerConfig),
+                    (fileCommitter != null) ? fileCommitter : new FileCommitter(fileServerConfig),
+                    (blobStore != null) ? blobStore : new BlobStore(fileServerConfig),
+                    (digestIndex != null) ? digestIndex : new DigestIndex(fileServerConfig),
+                    (directoryListingCache != null) ? directoryListingCache : new DirectoryListingCache(false, 0, 0),
+                    (usageIndex != null) ? usageIndex : new DirectoryUsageIndex(fileServerConfig));
+        }
+
+    }
+
 }
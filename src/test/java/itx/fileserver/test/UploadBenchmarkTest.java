@@ -0,0 +1,89 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.Durability;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.FileService;
+import itx.fileserver.services.upload.FileCommitter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Throughput of uploads with different durability modes, run with -Dbenchmark=true.
+ * Many concurrent uploads of small files, where the cost of syncing dominates.
+ * Results depend on file system and storage device, on tmpfs all modes are equal.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UploadBenchmarkTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UploadBenchmarkTest.class);
+
+    private static final int THREADS = 16;
+    private static final int FILES = 2048;
+    private static final int FILE_SIZE = 64 * 1024;
+
+    @TempDir
+    Path home;
+
+    @Test
+    void uploadThroughput() throws Exception {
+        byte[] data = new byte[FILE_SIZE];
+        for (int i = 0; i < 2; i++) {
+            for (Durability durability : Durability.values()) {
+                run(durability, data, FILES / 8);
+            }
+        }
+        for (Durability durability : Durability.values()) {
+            long start = System.nanoTime();
+            run(durability, data, FILES);
+            long duration = System.nanoTime() - start;
+            LOG.info("BENCHMARK {}: {} files/s, {} MB/s", durability,
+                    String.format("%.0f", FILES / (duration / 1e9)),
+                    String.format("%.1f", (double) FILES * FILE_SIZE / (1024 * 1024) / (duration / 1e9)));
+        }
+    }
+
+    private void run(Durability durability, byte[] data, int files) throws Exception {
+        FileServerConfig fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.setHome(home.toString());
+        fileServerConfig.setBufferSize(64 * 1024);
+        fileServerConfig.setBufferCount(THREADS);
+        FileService fileService = TestUtils.newFileServiceBuilder(fileServerConfig)
+                .withFileCommitter(new FileCommitter(durability, List.of()))
+                .build();
+        UserData userData = new UserData("master", Set.of(new RoleId("master")), "secret");
+        Path directory = Files.createTempDirectory(home, durability.name());
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < files; i++) {
+                Path filePath = Paths.get(directory.getFileName().toString(), "file-" + (i % 256) + ".bin");
+                futures.add(executor.submit(() -> {
+                    fileService.saveFile(userData, filePath, new ByteArrayInputStream(data));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package itx.fileserver.test;
+
+import itx.fileserver.config.FileServerConfig;
+import itx.fileserver.dto.RoleId;
+import itx.fileserver.dto.UploadSessionInfo;
+import itx.fileserver.dto.UserData;
+import itx.fileserver.services.BufferPool;
+import itx.fileserver.services.FileAccessServiceImpl;
+import itx.fileserver.services.OperationNotAllowedException;
+import itx.fileserver.services.data.inmemory.AuditServiceInmemory;
+import itx.fileserver.services.data.inmemory.FileAccessManagerServiceInmemory;
+import itx.fileserver.services.listing.DirectoryUsageIndex;
+import itx.fileserver.services.upload.FileCommitter;
+import itx.fileserver.services.upload.UploadConflictException;
+import itx.fileserver.services.upload.UploadSessionService;
+import itx.fileserver.services.upload.UploadSessionServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadSessionServiceTest {
+
+    private static final int CHUNK_SIZE = 100_000;
+
+    @TempDir
+    Path home;
+
+    @TempDir
+    Path sessionsDir;
+
+    private FileServerConfig fileServerConfig;
+    private byte[] data;
+
+    @BeforeEach
+    public void init() throws Exception {
+        Files.createDirectories(home.resolve("public"));
+        fileServerConfig = TestUtils.createFileServerConfigForFileAccessService();
+        fileServerConfig.setHome(home.toString());
+        fileServerConfig.setUploadSessionsDir(sessionsDir.toString());
+        fileServerConfig.setUploadSessionTimeout(3600);
+        fileServerConfig.setBufferSize(16 * 1024);
+        fileServerConfig.setBufferCount(4);
+        data = new byte[CHUNK_SIZE * 8 + 123];
+        new Random(42).nextBytes(data);
+    }
+
+    @Test
+    void testParallelChunks() throws Exception {
+        UploadSessionService uploadSessionService = createUploadSessionService();
+        UploadSessionInfo info = uploadSessionService.createSession(createUser("public"),
+                Paths.get("public/data.bin"), data.length);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<UploadSessionInfo>> futures = new ArrayList<>();
+            for (int offset = 0; offset < data.length; offset += CHUNK_SIZE) {
+                int chunkOffset = offset;
+                futures.add(executor.submit(() -> writeChunk(uploadSessionService, info.getId(), chunkOffset,
+                        Math.min(CHUNK_SIZE, data.length - chunkOffset))));
+            }
+            for (Future<UploadSessionInfo> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        UploadSessionInfo completed = uploadSessionService.getSession(createUser("public"), info.getId());
+        assertEquals(data.length, completed.getOffset());
+        assertEquals(1, completed.getRanges().size());
+        assertFalse(Files.exists(home.resolve("public/data.bin")));
+        uploadSessionService.finishSession(createUser("public"), info.getId());
+        assertArrayEquals(data, Files.readAllBytes(home.resolve("public/data.bin")));
+        assertThrows(FileNotFoundException.class, () ->
+                uploadSessionService.getSession(createUser("public"), info.getId()));
+        try (var files = Files.list(sessionsDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testResumeAfterRestart() throws Exception {
+        UploadSessionService uploadSessionService = createUploadSessionService();
+        UploadSessionInfo info = uploadSessionService.createSession(createUser("public"),
+                Paths.get("public/resumed.bin"), data.length);
+        writeChunk(uploadSessionService, info.getId(), 0, CHUNK_SIZE);
+        writeChunk(uploadSessionService, info.getId(), 3 * CHUNK_SIZE, CHUNK_SIZE);
+        //interrupted chunk, received part is kept
+        assertThrows(Exception.class, () -> uploadSessionService.writeChunk(createUser("public"), info.getId(),
+                CHUNK_SIZE, CHUNK_SIZE, new ByteArrayInputStream(data, CHUNK_SIZE, 1000)));
+
+        UploadSessionService restarted = createUploadSessionService();
+        UploadSessionInfo resumed = restarted.getSession(createUser("public"), info.getId());
+        assertEquals(CHUNK_SIZE + 1000, resumed.getOffset());
+        assertEquals(2, resumed.getRanges().size());
+        assertArrayEquals(new long[] { 3 * CHUNK_SIZE, 4 * CHUNK_SIZE }, resumed.getRanges().get(1));
+        assertThrows(UploadConflictException.class, () ->
+                restarted.finishSession(createUser("public"), info.getId()));
+
+        writeChunk(restarted, info.getId(), (int) resumed.getOffset(), 3 * CHUNK_SIZE - (int) resumed.getOffset());
+        writeChunk(restarted, info.getId(), 4 * CHUNK_SIZE, data.length - 4 * CHUNK_SIZE);
+        restarted.finishSession(createUser("public"), info.getId());
+        assertArrayEquals(data, Files.readAllBytes(home.resolve("public/resumed.bin")));
+    }
+
+    @Test
+    void testConflictingChunks() throws Exception {
+        UploadSessionService uploadSessionService = createUploadSessionService();
+        UploadSessionInfo info = uploadSessionService.createSession(createUser("public"),
+                Paths.get("public/conflict.bin"), data.length);
+        writeChunk(uploadSessionService, info.getId(), 0, CHUNK_SIZE);
+        assertThrows(UploadConflictException.class, () ->
+                writeChunk(uploadSessionService, info.getId(), CHUNK_SIZE - 1, CHUNK_SIZE));
+        assertThrows(UploadConflictException.class, () ->
+                writeChunk(uploadSessionService, info.getId(), data.length - 10, 11));
+        assertThrows(UploadConflictException.class, () ->
+                writeChunk(uploadSessionService, info.getId(), -1, 10));
+        assertEquals(CHUNK_SIZE, uploadSessionService.getSession(createUser("public"), info.getId()).getOffset());
+    }
+
+    @Test
+    void testSessionAccess() throws Exception {
+        UploadSessionService uploadSessionService = createUploadSessionService();
+        assertThrows(OperationNotAllowedException.class, () ->
+                uploadSessionService.createSession(createUser("public"), Paths.get("jane/data.bin"), 10));
+        UploadSessionInfo info = uploadSessionService.createSession(createUser("public"),
+                Paths.get("public/access.bin"), 10);
+        assertThrows(OperationNotAllowedException.class, () ->
+                uploadSessionService.getSession(createUser("jane"), info.getId()));
+        assertThrows(OperationNotAllowedException.class, () ->
+                uploadSessionService.cancelSession(createUser("jane"), info.getId()));
+        uploadSessionService.cancelSession(createUser("public"), info.getId());
+        assertThrows(FileNotFoundException.class, () ->
+                uploadSessionService.getSession(createUser("public"), info.getId()));
+    }
+
+    @Test
+    void testSessionPathOutsideStorage() throws Exception {
+        UploadSessionService uploadSessionService = createUploadSessionService();
+        //master role has READ_WRITE access to '**'
+        Path outside = home.resolveSibling(home.getFileName() + "-outside.bin");
+        assertThrows(OperationNotAllowedException.class, () ->
+                uploadSessionService.createSession(createUser("master"), outside, 10));
+        assertThrows(OperationNotAllowedException.class, () ->
+                uploadSessionService.createSession(createUser("master"),
+                        Paths.get("public/../../" + outside.getFileName()), 10));
+        assertFalse(Files.exists(outside));
+        UploadSessionInfo info = uploadSessionService.createSession(createUser("master"),
+                Paths.get("public/../public/inside.bin"), 10);
+        assertEquals("public/inside.bin", info.getPath());
+    }
+
+    @Test
+    void testCollectStaleSessions() throws Exception {
+        fileServerConfig.setUploadSessionTimeout(0);
+        UploadSessionServiceImpl uploadSessionService = createUploadSessionService();
+        UploadSessionInfo info = uploadSessionService.createSession(createUser("public"),
+                Paths.get("public/stale.bin"), data.length);
+        writeChunk(uploadSessionService, info.getId(), 0, CHUNK_SIZE);
+        Thread.sleep(5);
+        uploadSessionService.collectStaleSessions();
+        assertThrows(FileNotFoundException.class, () ->
+                uploadSessionService.getSession(createUser("public"), info.getId()));
+        try (var files = Files.list(sessionsDir)) {
+            assertTrue(files.findAny().isEmpty());
+        }
+    }
+
+    private UploadSessionServiceImpl createUploadSessionService() throws Exception {
+        return new UploadSessionServiceImpl(fileServerConfig,
+                new FileAccessServiceImpl(new FileAccessManagerServiceInmemory(fileServerConfig)),
+                new AuditServiceInmemory(1024), event -> { }, new BufferPool(fileServerConfig),
+                new FileCommitter(fileServerConfig),
+                new DirectoryUsageIndex(fileServerConfig));
+    }
+
+    private UploadSessionInfo writeChunk(UploadSessionService uploadSessionService, String sessionId, int offset,
+                                         int length) throws Exception {
+        return uploadSessionService.writeChunk(createUser("public"), sessionId, offset, length,
+                new ByteArrayInputStream(data, offset, length));
+    }
+
+    private static UserData createUser(String role) {
+        return new UserData(role, Set.of(new RoleId(role)), "secret");
+    }
+
+}